@@ -11,8 +11,10 @@ import rsp.util.json.JsonDataType;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static rsp.compositions.ui.FormField.formField;
 import static rsp.dsl.Html.*;
@@ -66,40 +68,20 @@ public class DefaultEditView implements ComponentView<EditView.EditViewState, Ed
                             attr("class", "save-button"),
                             text("Save"),
                             on("click", ctx -> {
-                                // Collect field values from input elements asynchronously
-                                Map<String, java.util.concurrent.CompletableFuture<Object>> futureValues = new HashMap<>();
-
+                                // Collect field values from input elements in one round trip
+                                Map<ElementRef, Set<String>> properties = new LinkedHashMap<>();
                                 for (FieldDef field : fields) {
-                                    String fieldName = field.name();
-                                    ElementRef ref = fieldRefs.get(fieldName);
-
-                                    // Get property value asynchronously
-                                    // For checkboxes, read "checked" property; for other inputs, read "value"
-                                    String property = (field.widget() == Widget.CHECKBOX) ? "checked" : "value";
-
-                                    futureValues.put(
-                                        fieldName,
-                                        ctx.propertiesByRef(ref).get(property)
-                                            .thenApply(json -> convertJsonValue(json, field.type()))
-                                    );
+                                    properties.put(fieldRefs.get(field.name()), Set.of(valueProperty(field)));
                                 }
 
-                                // Wait for all values to be collected, then validate and send action
-                                java.util.concurrent.CompletableFuture.allOf(
-                                    futureValues.values().toArray(new java.util.concurrent.CompletableFuture[0])
-                                ).thenRun(() -> {
+                                ctx.propertiesByRefs(properties).thenAccept(values -> {
+                                    // An element which wasn't found or an undefined property converts to the default value
                                     Map<String, Object> collectedValues = new HashMap<>();
-                                    futureValues.forEach((name, future) -> {
-                                        try {
-                                            collectedValues.put(name, future.get());
-                                        } catch (Exception e) {
-                                            // Use default value on error
-                                            FieldDef fld = state.schema().field(name);
-                                            if (fld != null) {
-                                                collectedValues.put(name, getDefaultValue(fld.type()));
-                                            }
-                                        }
-                                    });
+                                    for (FieldDef field : fields) {
+                                        JsonDataType.Object fieldValues = values.get(fieldRefs.get(field.name()));
+                                        collectedValues.put(field.name(),
+                                                            convertJsonValue(fieldValues.value(valueProperty(field)), field.type()));
+                                    }
 
                                     intents.dispatch(new EditView.FormValuesCollected(collectedValues));
                                 });
@@ -277,6 +259,13 @@ public class DefaultEditView implements ComponentView<EditView.EditViewState, Ed
         );
     }
 
+    /**
+     * For checkboxes, the "checked" property; for other inputs, the "value" property.
+     */
+    private static String valueProperty(FieldDef field) {
+        return field.widget() == Widget.CHECKBOX ? "checked" : "value";
+    }
+
     /**
      * Convert JSON value from input to the appropriate type.
      */
@@ -1,6 +1,8 @@
 package rsp.component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -18,9 +20,12 @@ import java.util.Objects;
  *
  * <p><strong>Storage Strategy:</strong> Uses two separate internal maps to prevent collisions:</p>
  * <ul>
- *   <li>{@code Map<Class<?>, Object>} for ClassKey storage</li>
- *   <li>{@code Map<String, Object>} for StringKey and DynamicKey storage</li>
+ *   <li>a map of {@code Class<?>} keys for ClassKey storage</li>
+ *   <li>a map of {@code String} keys for StringKey and DynamicKey storage</li>
  * </ul>
+ * The maps are persistent hash tries: a derived context shares all but the changed path with its parent,
+ * so a {@code with(...)} allocates a few small nodes instead of copying a map.
+ * Adding a key with the value instance it already holds returns the same context.
  *
  * <p>By default, the context is propagated down the component tree. However, a component can choose to
  * isolate its subtree by creating a new, empty {@code ComponentContext} instead of extending the parent's context.</p>
@@ -42,8 +47,8 @@ import java.util.Objects;
 public final class ComponentContext {
 
     // Separate maps for different key types to prevent collisions
-    private final Map<Class<?>, Object> classBased;     // ClassKey storage
-    private final Map<String, Object> stringBased;      // StringKey + DynamicKey storage
+    private final PersistentHashMap<Class<?>, Object> classBased;     // ClassKey storage
+    private final PersistentHashMap<String, Object> stringBased;      // StringKey + DynamicKey storage
 
     /**
      * Creates a new, empty component context.
@@ -51,15 +56,27 @@ public final class ComponentContext {
      * from the parent context, effectively clearing all upstream attributes.
      */
     public ComponentContext() {
-        this(new HashMap<>(), new HashMap<>());
+        this(PersistentHashMap.empty(), PersistentHashMap.empty());
     }
 
-    private ComponentContext(final Map<Class<?>, Object> classBased,
-                             final Map<String, Object> stringBased) {
+    private ComponentContext(final PersistentHashMap<Class<?>, Object> classBased,
+                             final PersistentHashMap<String, Object> stringBased) {
         this.classBased = classBased;
         this.stringBased = stringBased;
     }
 
+    /**
+     * Checks cheaply whether this context is known to hold the same entries as another one,
+     * which is the case when one of them was derived from the other without changing any value.
+     * A false result doesn't mean the entries differ.
+     *
+     * @param other the context to compare with, must not be null
+     * @return true if both contexts share their storage
+     */
+    boolean hasSameEntries(final ComponentContext other) {
+        return this == other || (classBased == other.classBased && stringBased == other.stringBased);
+    }
+
     /**
      * Retrieves a value by a type-safe key using pattern matching.
      * Returns null if the key is not present in the context.
@@ -115,24 +132,19 @@ public final class ComponentContext {
         Objects.requireNonNull(key, "Context key cannot be null");
         validateValueType(key, value);
         return switch (key) {
-            case ContextKey.ClassKey<T>(var clazz) -> {
-                final Map<Class<?>, Object> newClassBased = new HashMap<>(classBased);
-                newClassBased.put(clazz, value);
-                yield new ComponentContext(newClassBased, stringBased);
-            }
-            case ContextKey.StringKey<T>(var str, var type) -> {
-                final Map<String, Object> newStringBased = new HashMap<>(stringBased);
-                newStringBased.put(str, value);
-                yield new ComponentContext(classBased, newStringBased);
-            }
-            case ContextKey.DynamicKey<T>(var base, var type) -> {
-                final Map<String, Object> newStringBased = new HashMap<>(stringBased);
-                newStringBased.put(base, value);
-                yield new ComponentContext(classBased, newStringBased);
-            }
+            case ContextKey.ClassKey<T>(var clazz) -> withStorage(classBased.put(clazz, value), stringBased);
+            case ContextKey.StringKey<T>(var str, var type) -> withStorage(classBased, stringBased.put(str, value));
+            case ContextKey.DynamicKey<T>(var base, var type) -> withStorage(classBased, stringBased.put(base, value));
         };
     }
 
+    private ComponentContext withStorage(final PersistentHashMap<Class<?>, Object> newClassBased,
+                                         final PersistentHashMap<String, Object> newStringBased) {
+        return newClassBased == classBased && newStringBased == stringBased
+                ? this
+                : new ComponentContext(newClassBased, newStringBased);
+    }
+
     /**
      * Validates that a value matches the key's declared type at runtime.
      * This provides an additional safety net against type erasure exploits.
@@ -212,9 +224,17 @@ public final class ComponentContext {
      */
     public ComponentContext withoutStringPrefix(final String prefix) {
         Objects.requireNonNull(prefix, "prefix cannot be null");
-        final Map<String, Object> newStringBased = new HashMap<>(stringBased);
-        newStringBased.keySet().removeIf(k -> k.startsWith(prefix));
-        return new ComponentContext(classBased, newStringBased);
+        final List<String> keys = new ArrayList<>();
+        stringBased.forEach((key, _) -> {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        });
+        PersistentHashMap<String, Object> newStringBased = stringBased;
+        for (final String key : keys) {
+            newStringBased = newStringBased.remove(key);
+        }
+        return withStorage(classBased, newStringBased);
     }
 
     /**
@@ -227,11 +247,11 @@ public final class ComponentContext {
     public Map<String, Object> stringEntriesWithPrefix(final String prefix) {
         Objects.requireNonNull(prefix, "prefix cannot be null");
         final Map<String, Object> matches = new HashMap<>();
-        for (Map.Entry<String, Object> entry : stringBased.entrySet()) {
-            if (entry.getKey().startsWith(prefix)) {
-                matches.put(entry.getKey(), entry.getValue());
+        stringBased.forEach((key, value) -> {
+            if (key.startsWith(prefix)) {
+                matches.put(key, value);
             }
-        }
+        });
         return Map.copyOf(matches);
     }
 
@@ -50,4 +50,24 @@ public interface ComponentRuntimePolicy {
     default boolean isReusable() {
         return false;
     }
+
+    /**
+     * The inputs a reused segment's subtree depends on, compared by {@code equals} to skip its re-render.
+     * <p>
+     * When a parent re-renders and reuses this segment, its state did not change and the inputs equal the ones
+     * of its previous render, the segment is not rendered again: its previous DOM subtree, its descendant segments,
+     * DOM event handlers and refs are kept as they are, and the parent's diff skips the subtree. Neither
+     * {@link ComponentCallbacks#onBeforeRendered} nor {@link ComponentCallbacks#onAfterRendered} runs then.
+     * The segment renders as usual if its DOM position has moved, or if its subtree starts or ends with a text node.
+     * <p>
+     * The default is {@code null}, which disables memoization. Only a reusable segment, see {@link #isReusable()},
+     * is memoized. Return a value which captures everything the subtree reads from the context, for example
+     * a record of the values of the context keys the view uses; a value which ignores a context change leaves
+     * the subtree stale.
+     * @param context the upstream context of the render, the one of the parent's re-render for a reused segment
+     * @return the memoization inputs, or null to render every time
+     */
+    default Object memoInputs(final ComponentContext context) {
+        return null;
+    }
 }
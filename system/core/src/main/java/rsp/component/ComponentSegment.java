@@ -6,6 +6,8 @@ import rsp.dsl.Definition;
 import rsp.metrics.MetricNames;
 import rsp.metrics.Metrics;
 import rsp.page.EventContext;
+import rsp.page.EventDispatchTable;
+import rsp.page.RenderScheduler;
 import rsp.page.events.GenericTaskEvent;
 import rsp.page.events.RemoteCommand;
 import rsp.ref.Ref;
@@ -91,6 +93,11 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
     private final ComponentRuntimePolicy runtimePolicy;
     private final TreeBuilderFactory treeBuilderFactory;
     private final Metrics metrics;
+    /**
+     * The page's scheduler for deferred state updates, or null if the page has none,
+     * then each deferred update is posted as a separate task.
+     */
+    private final RenderScheduler renderScheduler;
 
     private final List<PendingDomEventEntry> domEventEntries = new ArrayList<>();
     private final List<ComponentEventEntry> componentEventEntries = new ArrayList<>(); // should it be a dictionary?
@@ -114,6 +121,15 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
     private boolean stateInitialized;
     private List<ComponentSegment<?>> previousChildrenForReconciliation = List.of();
     private Set<ComponentSegment<?>> claimedChildrenForReconciliation = Set.of();
+    private Function<S, Optional<S>> stagedStateTransformation;
+    /**
+     * The {@link ComponentRuntimePolicy#memoInputs} of the last successful render, or null.
+     */
+    private Object memoInputs;
+    /**
+     * The live page's event handlers index, or null before the page goes live.
+     */
+    private EventDispatchTable eventDispatchTable;
 
     /**
      * This component's current state. It is expected that the state's type is immutable.
@@ -189,6 +205,7 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
         this.contextScope = new ContextScope(Objects.requireNonNull(componentContext));
         this.commandsEnqueue = Objects.requireNonNull(commandsEnqueue);
         this.metrics = Metrics.from(componentContext);
+        this.renderScheduler = componentContext.get(RenderScheduler.class);
 
         this.metrics.incrementCounter(MetricNames.SEGMENT_CREATED);
         logger.log(TRACE, () -> "New component is created: " + this);
@@ -391,6 +408,7 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
             state = Objects.requireNonNull(stateResolver.getState(componentId, componentContext()),
                                            "Initial state cannot be null for component " + componentId);
             stateInitialized = true;
+            memoInputs = runtimePolicy.memoInputs(componentContext());
             withCallbackOwner(this, () -> callbacks.onBeforeRendered(this, state));
             renderContext.setComponentContext(descendantContextResolver().apply(componentContext(), state));
 
@@ -403,12 +421,25 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
             withCallbackOwner(this, () ->
                     callbacks.onMounted(this, componentId, state, commandsEnqueue, this.new EnqueueTaskStateUpdater()));
         } catch (Throwable renderEx) {
+            memoInputs = null;
             renderContext.addException(renderEx);
             logger.log(DEBUG, () -> "Component " + this + " rendering exception", renderEx);
         }
     }
 
     private void renderReused(final TreeBuilder renderContext) {
+        final S previousState = state;
+        final boolean stateUpdated = applyStagedState();
+        final Object previousMemoInputs = memoInputs;
+        memoInputs = runtimePolicy.memoInputs(componentContext());
+        if (!stateUpdated
+                && memoInputs != null
+                && memoInputs.equals(previousMemoInputs)
+                && spliceRootNodes(renderContext)) {
+            metrics.incrementCounter(MetricNames.SEGMENT_MEMOIZED);
+            logger.log(TRACE, () -> "Component " + componentId + " inputs unchanged, kept its previous subtree");
+            return;
+        }
         final List<ComponentSegment<?>> oldChildren = new ArrayList<>(children);
         prepareForRender(true, oldChildren, true);
         try {
@@ -419,7 +450,12 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
             uiDefinition.render(renderContext);
             withCallbackOwner(this, () ->
                     callbacks.onAfterRendered(state, subscriber, commandsEnqueue, this.new EnqueueTaskStateUpdater()));
+            if (stateUpdated) {
+                withCallbackOwner(this, () ->
+                        callbacks.onUpdated(componentId, previousState, state, this.new EnqueueTaskStateUpdater()));
+            }
         } catch (Throwable renderEx) {
+            memoInputs = null;
             renderContext.addException(renderEx);
             logger.log(DEBUG, () -> "Component " + this + " rendering exception", renderEx);
         } finally {
@@ -427,6 +463,49 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
         }
     }
 
+    /**
+     * Puts the root nodes of the previous render to the parent's tree being built, in place of a new render.
+     * A text node at either end would merge with the parent's adjacent text, so such a subtree renders instead.
+     * @return true if the nodes were spliced at the DOM position they were rendered at before
+     */
+    private boolean spliceRootNodes(final TreeBuilder renderContext) {
+        if (rootNodes.isEmpty()
+                || !(rootNodes.getFirst() instanceof TagNode)
+                || !(rootNodes.getLast() instanceof TagNode)) {
+            return false;
+        }
+        final TagNode newParentTag = renderContext.spliceNodes(startNodeDomPath, rootNodes);
+        if (newParentTag == null) {
+            return false;
+        }
+        parentTag = newParentTag;
+        return true;
+    }
+
+    /**
+     * Applies a transformation staged by the render scheduler when this segment is reused by a parent's re-render,
+     * so that one render covers both updates.
+     * @return true if the state was replaced
+     */
+    private boolean applyStagedState() {
+        if (stagedStateTransformation == null) {
+            return false;
+        }
+        final Function<S, Optional<S>> stateTransformer = stagedStateTransformation;
+        stagedStateTransformation = null;
+        try {
+            final Optional<S> newState = stateTransformer.apply(state);
+            if (newState.isEmpty() || !callbacks.onBeforeUpdated(newState.get(), commandsEnqueue)) {
+                return false;
+            }
+            state = newState.get();
+            return true;
+        } catch (final RuntimeException ex) {
+            logger.log(ERROR, () -> "Staged state update failed for component " + componentId, ex);
+            return false;
+        }
+    }
+
     private BiFunction<ComponentContext, S, ComponentContext> descendantContextResolver() {
         return (ctx, s) -> {
             final ComponentContext resolved = contextResolver.apply(ctx, s);
@@ -675,6 +754,7 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
             metrics.incrementCounter(MetricNames.SEGMENT_UPDATE_DROPPED_UNMOUNTED);
             return;
         }
+        applyStagedBeforeSynchronousUpdate();
 
         final S newState = Objects.requireNonNull(newStateFunction.apply(state),
                                                   "State transformer function cannot return null for component " + componentId);
@@ -683,6 +763,7 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
             return; // update vetoed by component
         }
 
+        final long updateStartedNanos = System.nanoTime();
         // Snapshot everything BEFORE starting tearing down or clearing.
         final RenderSnapshot<S> snapshot = snapshot();
         final S oldState = state;
@@ -698,18 +779,22 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
 
             logger.log(TRACE, () -> "Component state updated, previous: " + oldState + " new: " + state + " for " + componentId);
 
+            final long renderStartedNanos = System.nanoTime();
             final TreeBuilder renderContext = treeBuilderFactory.createTreeBuilder(startNodeDomPath);
             renderContext.setComponentContext(descendantContextResolver().apply(componentContext(), state));
             renderContext.openComponent(this);
             final Definition view = resolveView().apply(state);
             view.render(renderContext);
             renderContext.closeComponent();
+            metrics.recordTime(MetricNames.SEGMENT_RENDER_TIME, System.nanoTime() - renderStartedNanos);
             withCallbackOwner(this, () ->
                     callbacks.onAfterRendered(state, subscriber, commandsEnqueue, this.new EnqueueTaskStateUpdater()));
 
             // Calculate diff between an old and new DOM trees before unmounting old children.
+            final long diffStartedNanos = System.nanoTime();
             final DefaultDomChangesContext domChangePerformer = new DefaultDomChangesContext();
             NodesTreeDiff.diffChildren(oldRootNodes, rootNodes(), startNodeDomPath, domChangePerformer, new HtmlBuilder(new StringBuilder()));
+            metrics.recordTime(MetricNames.SEGMENT_DIFF_TIME, System.nanoTime() - diffStartedNanos);
             final Set<NodeId> elementsToRemove = domChangePerformer.elementsToRemove;
             final Set<NodeId> elementsToCreate = domChangePerformer.elementsToCreate;
 
@@ -722,7 +807,9 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
             updateParentTagTree(oldRootNodes);
 
             // Unregister events
-            final Set<DomEventEntry> newEvents = new HashSet<>(recursiveDomEvents());
+            final Set<DomEventEntry> newEvents = new HashSet<>(eventDispatchTable != null
+                                                               ? indexDomEvents(eventDispatchTable)
+                                                               : recursiveDomEvents());
             for (final DomEventEntry event : oldEvents) {
                 if (!newEvents.contains(event)
                     && event instanceof DomEventEntry domEventEntry
@@ -744,8 +831,13 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
 
             withCallbackOwner(this, () ->
                     callbacks.onUpdated(componentId, oldState, state, this.new EnqueueTaskStateUpdater()));
+            metrics.recordTime(MetricNames.SEGMENT_UPDATE_TIME, System.nanoTime() - updateStartedNanos);
         } catch (RuntimeException | Error failure) {
+            final List<ComponentSegment<?>> failedDescendants = eventDispatchTable != null ? recursiveChildren() : List.of();
             restore(snapshot);
+            if (eventDispatchTable != null) {
+                reindexAfterFailedRender(failedDescendants);
+            }
             throw failure;
         } finally {
             if (!childReconciliationFinished) {
@@ -755,6 +847,40 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
         }
     }
 
+    /**
+     * Applies a transformation staged by the render scheduler ahead of a synchronous update, e.g. one made by
+     * an ancestor's callback during the flush, so that the staged update, requested earlier, is not applied after it.
+     */
+    private void applyStagedBeforeSynchronousUpdate() {
+        if (stagedStateTransformation != null) {
+            applyStagedStateTransformation();
+        }
+    }
+
+    /**
+     * Holds a state transformation until a re-render of an ancestor reuses this segment.
+     * <p>
+     * Called by the {@link RenderScheduler} for a dirty segment below another dirty segment, which is then
+     * rendered once, as a part of its ancestor. The scheduler calls {@link #applyStagedStateTransformation()}
+     * afterwards in case the ancestor did not reuse or did not render this segment.
+     * @param stateTransformer the folded transformation, returns empty to keep the state; must not be null
+     */
+    public void stageStateTransformation(final Function<S, Optional<S>> stateTransformer) {
+        this.stagedStateTransformation = Objects.requireNonNull(stateTransformer);
+    }
+
+    /**
+     * Applies and re-renders a transformation held by {@link #stageStateTransformation(Function)},
+     * if no ancestor's re-render has applied it.
+     */
+    public void applyStagedStateTransformation() {
+        if (stagedStateTransformation != null) {
+            final Function<S, Optional<S>> stateTransformer = stagedStateTransformation;
+            stagedStateTransformation = null;
+            applyStateTransformationIfPresent(stateTransformer);
+        }
+    }
+
     public List<ComponentSegment<?>> directChildren() {
         return children;
     }
@@ -768,6 +894,10 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
         withCallbackOwner(this, () -> callbacks.onUnmounted(componentId, state));
         componentEventOwners.clear();
         componentEventEntries.clear();
+        if (eventDispatchTable != null) {
+            eventDispatchTable.removeDomEvents(this);
+            eventDispatchTable.invalidateComponentEvents();
+        }
         contextScope.clear();
         contextMirrors.clear();
         metrics.incrementCounter(MetricNames.SEGMENT_UNMOUNTED);
@@ -835,15 +965,53 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
     }
 
     public List<DomEventEntry> recursiveDomEvents() {
-        final Map<TreePositionPath, NodeId> nodeIdsByPath = nodeIdsByPath();
         final List<DomEventEntry> recursiveEvents = new ArrayList<>();
+        collectDomEvents(recursiveEvents, null);
+        return recursiveEvents;
+    }
+
+    /**
+     * Puts the DOM event handlers of this segment and its descendants to a live page's index,
+     * which they then keep up to date on re-renders and unmounts.
+     * @param eventDispatchTable the page's index, must not be null
+     * @return the handlers of this segment and its descendants, as {@link #recursiveDomEvents()}
+     */
+    public List<DomEventEntry> indexDomEvents(final EventDispatchTable eventDispatchTable) {
+        Objects.requireNonNull(eventDispatchTable);
+        final List<DomEventEntry> recursiveEvents = new ArrayList<>();
+        collectDomEvents(recursiveEvents, eventDispatchTable);
+        eventDispatchTable.invalidateComponentEvents();
+        return recursiveEvents;
+    }
+
+    private void collectDomEvents(final List<DomEventEntry> recursiveEvents, final EventDispatchTable index) {
+        final Map<TreePositionPath, NodeId> nodeIdsByPath = nodeIdsByPath();
+        final List<DomEventEntry> ownEvents = new ArrayList<>(domEventEntries.size());
         for (final PendingDomEventEntry event : domEventEntries) {
-            recursiveEvents.add(event.resolve(nodeIdsByPath));
+            ownEvents.add(event.resolve(nodeIdsByPath));
         }
+        if (index != null) {
+            eventDispatchTable = index;
+            index.putDomEvents(this, ownEvents);
+        }
+        recursiveEvents.addAll(ownEvents);
         for (final ComponentSegment<?> childComponent : children) {
-            recursiveEvents.addAll(childComponent.recursiveDomEvents());
+            childComponent.collectDomEvents(recursiveEvents, index);
         }
-        return recursiveEvents;
+    }
+
+    /**
+     * Restores the index entries of a subtree after a failed re-render restored the subtree itself.
+     */
+    private void reindexAfterFailedRender(final List<ComponentSegment<?>> failedDescendants) {
+        final Set<ComponentSegment<?>> restored = Collections.newSetFromMap(new IdentityHashMap<>());
+        restored.addAll(recursiveChildren());
+        for (final ComponentSegment<?> segment : failedDescendants) {
+            if (!restored.contains(segment)) {
+                eventDispatchTable.removeDomEvents(segment);
+            }
+        }
+        indexDomEvents(eventDispatchTable);
     }
 
     public List<ComponentEventEntry> recursiveComponentEvents() {
@@ -945,10 +1113,8 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
     }
 
     private static boolean isAtOrUnderAny(final NodeId nodeId, final Set<NodeId> candidates) {
-        final String id = nodeId.toString();
         for (final NodeId candidate : candidates) {
-            final String ancestor = candidate.toString();
-            if (id.equals(ancestor) || ancestor.isEmpty() || id.startsWith(ancestor + NodeId.SEPARATOR)) {
+            if (nodeId.isAtOrUnder(candidate)) {
                 return true;
             }
         }
@@ -972,12 +1138,14 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
         if (owner != null) {
             componentEventOwners.put(entry, owner);
         }
+        componentEventsChanged();
         return () -> removeComponentEventHandler(entry);
     }
 
     private void removeComponentEventHandler(final ComponentEventEntry entry) {
         componentEventEntries.removeIf(e -> e == entry);
         componentEventOwners.remove(entry);
+        componentEventsChanged();
     }
 
     private void removeComponentEventHandlersOwnedBy(final ComponentSegment<?> owner) {
@@ -992,6 +1160,13 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
                 componentEventOwners.remove(entry);
             }
         }
+        componentEventsChanged();
+    }
+
+    private void componentEventsChanged() {
+        if (eventDispatchTable != null) {
+            eventDispatchTable.invalidateComponentEvents();
+        }
     }
 
     /**
@@ -1094,6 +1269,11 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
 
         @Override
         public void setState(final S newState) {
+            if (renderScheduler != null) {
+                Objects.requireNonNull(newState, "New state cannot be null for component " + componentId);
+                renderScheduler.schedule(ComponentSegment.this, _ -> Optional.of(newState));
+                return;
+            }
             commandsEnqueue.offer(new GenericTaskEvent(() -> {
                 ComponentSegment.this.setState(newState);
             }));
@@ -1101,6 +1281,12 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
 
         @Override
         public void applyStateTransformation(final UnaryOperator<S> stateTransformer) {
+            if (renderScheduler != null) {
+                renderScheduler.schedule(ComponentSegment.this, s -> Optional.of(Objects.requireNonNull(
+                        stateTransformer.apply(s),
+                        "State transformer function cannot return null for component " + componentId)));
+                return;
+            }
             commandsEnqueue.offer(new GenericTaskEvent(() -> {
                 ComponentSegment.this.applyStateTransformation(stateTransformer);
             }));
@@ -1108,6 +1294,10 @@ public final class ComponentSegment<S> implements Segment, StateUpdater<S>, Inte
 
         @Override
         public void applyStateTransformationIfPresent(final Function<S, Optional<S>> stateTransformer) {
+            if (renderScheduler != null) {
+                renderScheduler.schedule(ComponentSegment.this, stateTransformer);
+                return;
+            }
             commandsEnqueue.offer(new GenericTaskEvent(() -> {
                 ComponentSegment.this.applyStateTransformationIfPresent(stateTransformer);
             }));
@@ -44,7 +44,7 @@ public final class ContextScope {
         final ComponentContext previous = current;
         current = next;
 
-        if (watchers.isEmpty()) {
+        if (watchers.isEmpty() || next.hasSameEntries(previous)) {
             return;
         }
 
@@ -0,0 +1,300 @@
+package rsp.component;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash map implemented as a hash array mapped trie.
+ * <p>
+ * An update copies only the path from the root to the changed entry, at most seven nodes of up to 32 slots,
+ * and shares the rest of the trie with the original map. Updating a key with the value it already holds
+ * returns the same map, so callers can detect unchanged maps by identity.
+ * <p>
+ * Keys must not be null; values may be null, in which case {@link #get(Object)} doesn't distinguish
+ * a null value from an absent key.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+final class PersistentHashMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object NOT_FOUND = new Object();
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(final K key) {
+        final Object value = root.find(0, key.hashCode(), key);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    boolean containsKey(final K key) {
+        return root.find(0, key.hashCode(), key) != NOT_FOUND;
+    }
+
+    /**
+     * Adds or replaces an entry.
+     * @return a map with the entry, or this map if it already maps the key to the same value instance
+     */
+    PersistentHashMap<K, V> put(final K key, final V value) {
+        Objects.requireNonNull(key);
+        final boolean[] added = new boolean[1];
+        final Node newRoot = root.put(0, key.hashCode(), key, value, added);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Removes an entry.
+     * @return a map without the key, or this map if it has no such key
+     */
+    PersistentHashMap<K, V> remove(final K key) {
+        Objects.requireNonNull(key);
+        final Node newRoot = root.remove(0, key.hashCode(), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(final BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    private interface Node {
+        Object find(int shift, int hash, Object key);
+
+        Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * @return this node if the key is absent, or null if the node became empty
+         */
+        Node remove(int shift, int hash, Object key);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * A node with up to 32 slots, indexed by 5 bits of the hash at its depth. The present slots are stored compactly,
+     * each as a key and a value, or as a null key and a child node.
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        private BitmapNode(final int bitmap, final Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(final int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Object find(final int shift, final int hash, final Object key) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            final int idx = index(bit);
+            final Object keyOrNull = array[2 * idx];
+            final Object valueOrNode = array[2 * idx + 1];
+            if (keyOrNull == null) {
+                return ((Node) valueOrNode).find(shift + BITS, hash, key);
+            }
+            return key.equals(keyOrNull) ? valueOrNode : NOT_FOUND;
+        }
+
+        @Override
+        public Node put(final int shift, final int hash, final Object key, final Object value, final boolean[] added) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            final int idx = index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                final Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * idx);
+                newArray[2 * idx] = key;
+                newArray[2 * idx + 1] = value;
+                System.arraycopy(array, 2 * idx, newArray, 2 * idx + 2, array.length - 2 * idx);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            final Object keyOrNull = array[2 * idx];
+            final Object valueOrNode = array[2 * idx + 1];
+            if (keyOrNull == null) {
+                final Node child = (Node) valueOrNode;
+                final Node newChild = child.put(shift + BITS, hash, key, value, added);
+                return newChild == child ? this : withSlot(2 * idx + 1, newChild);
+            }
+            if (key.equals(keyOrNull)) {
+                return valueOrNode == value ? this : withSlot(2 * idx + 1, value);
+            }
+            added[0] = true;
+            final Node child = createNode(shift + BITS, keyOrNull, valueOrNode, hash, key, value);
+            final Object[] newArray = array.clone();
+            newArray[2 * idx] = null;
+            newArray[2 * idx + 1] = child;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        @Override
+        public Node remove(final int shift, final int hash, final Object key) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int idx = index(bit);
+            final Object keyOrNull = array[2 * idx];
+            final Object valueOrNode = array[2 * idx + 1];
+            if (keyOrNull == null) {
+                final Node child = (Node) valueOrNode;
+                final Node newChild = child.remove(shift + BITS, hash, key);
+                if (newChild == child) {
+                    return this;
+                }
+                return newChild != null ? withSlot(2 * idx + 1, newChild) : withoutSlot(bit, idx);
+            }
+            return key.equals(keyOrNull) ? withoutSlot(bit, idx) : this;
+        }
+
+        @Override
+        public void forEach(final BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private BitmapNode withSlot(final int slot, final Object valueOrNode) {
+            final Object[] newArray = array.clone();
+            newArray[slot] = valueOrNode;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private BitmapNode withoutSlot(final int bit, final int idx) {
+            if (bitmap == bit) {
+                return null;
+            }
+            final Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, 2 * idx);
+            System.arraycopy(array, 2 * idx + 2, newArray, 2 * idx, newArray.length - 2 * idx);
+            return new BitmapNode(bitmap ^ bit, newArray);
+        }
+
+        private static Node createNode(final int shift,
+                                       final Object key1,
+                                       final Object value1,
+                                       final int hash2,
+                                       final Object key2,
+                                       final Object value2) {
+            final int hash1 = key1.hashCode();
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            final boolean[] added = new boolean[1];
+            return EMPTY.put(shift, hash1, key1, value1, added)
+                        .put(shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * A leaf for keys with equal hash codes, searched linearly.
+     */
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final Object[] array;
+
+        private CollisionNode(final int hash, final Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(final Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object find(final int shift, final int hash, final Object key) {
+            final int i = this.hash == hash ? indexOf(key) : -1;
+            return i < 0 ? NOT_FOUND : array[i + 1];
+        }
+
+        @Override
+        public Node put(final int shift, final int hash, final Object key, final Object value, final boolean[] added) {
+            if (this.hash != hash) {
+                final BitmapNode wrapper = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[] {null, this});
+                return wrapper.put(shift, hash, key, value, added);
+            }
+            final int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                final Object[] newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            added[0] = true;
+            final Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public Node remove(final int shift, final int hash, final Object key) {
+            final int i = this.hash == hash ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            final Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public void forEach(final BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+}
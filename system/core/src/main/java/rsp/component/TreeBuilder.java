@@ -134,13 +134,43 @@ public class TreeBuilder implements TreeBuilderFactory {
         component.setStartNodeDomPath(domPath);
         component.addRootDomNode(domPath, tag);
 
+        setAscendantsStartNodeDomPath(domPath);
+    }
+
+    /**
+     * Appends nodes built by an earlier render of the current component to the current tag,
+     * as they are, without descending into them.
+     * @param startNodeDomPath the DOM path of the first node in the earlier render
+     * @param nodes the root nodes of the earlier render
+     * @return the tag the nodes were appended to, or null if there is no current tag or the first node's
+     *         position differs from the earlier one, then nothing is appended
+     */
+    public TagNode spliceNodes(final TreePositionPath startNodeDomPath, final List<? extends Node> nodes) {
+        Objects.requireNonNull(startNodeDomPath);
+        Objects.requireNonNull(nodes);
+        final TagFrame parentFrame = tagsStack.peek();
+        if (parentFrame == null) {
+            return null;
+        }
+        final TagNode parent = parentFrame.tag;
+        if (!domPath.addChild(parent.children.size() + 1).equals(startNodeDomPath)) {
+            return null;
+        }
+        for (final Node node : nodes) {
+            parent.addChild(node);
+        }
+        setAscendantsStartNodeDomPath(startNodeDomPath);
+        return parent;
+    }
+
+    private void setAscendantsStartNodeDomPath(final TreePositionPath startNodeDomPath) {
         if (componentsStack.size() > 1) {
             var ascendantComponentsIterator = componentsStack.iterator();
             ascendantComponentsIterator.next();// skip a current component
             while (ascendantComponentsIterator.hasNext()) {
                 final ComponentSegment<?> ascendantComponent = ascendantComponentsIterator.next();
                 if (!ascendantComponent.hasStartNodeDomPath()) {
-                    ascendantComponent.setStartNodeDomPath(domPath);
+                    ascendantComponent.setStartNodeDomPath(startNodeDomPath);
                 } else {
                     break;
                 }
@@ -258,15 +288,23 @@ public class TreeBuilder implements TreeBuilderFactory {
     }
 
     public String html() {
-        final StringBuilder sb = new StringBuilder();
-        final HtmlBuilder hb = new HtmlBuilder(sb, true);
+        final HtmlBuilder hb = new HtmlBuilder(new StringBuilder(), true);
+        html(hb);
+        return hb.toString();
+    }
+
+    /**
+     * Appends the HTML text of the built tree, including the document type if set.
+     * @param hb the destination builder in the text escaping mode
+     */
+    public void html(final HtmlBuilder hb) {
+        Objects.requireNonNull(hb);
         if (docType != null) {
-            sb.append(docType);
+            hb.append(docType);
         }
         if (rootComponent != null) {
             rootComponent.html(hb);
         }
-        return hb.toString();
     }
 
     public List<DomEventEntry> recursiveEvents() {
@@ -277,6 +315,20 @@ public class TreeBuilder implements TreeBuilderFactory {
         }
     }
 
+    /**
+     * Puts the DOM event handlers of the tree to a live page's index.
+     * @param eventDispatchTable the page's index, must not be null
+     * @return all the DOM event handlers of the tree, as {@link #recursiveEvents()}
+     */
+    public List<DomEventEntry> indexEvents(final EventDispatchTable eventDispatchTable) {
+        Objects.requireNonNull(eventDispatchTable);
+        if (rootComponent != null) {
+            return rootComponent.indexDomEvents(eventDispatchTable);
+        } else {
+            return List.of();
+        }
+    }
+
     public List<ComponentEventEntry> recursiveComponentEvents() {
         if (rootComponent != null) {
             return rootComponent.recursiveComponentEvents();
@@ -0,0 +1,153 @@
+package rsp.dom;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * The attributes and properties of a {@link TagNode}, kept in parallel name, value and kind arrays
+ * in their insertion order.
+ *
+ * <p>An attribute is identified by its name and whether it is a property: adding an attribute with an identity
+ * already present replaces its value in place. A lookup is a linear scan while a node has a few attributes,
+ * a node with more of them gets a hash index.
+ * Not thread-safe, like the rest of a nodes tree.
+ */
+public final class Attributes implements Iterable<AttributeNode> {
+    private static final String[] NO_STRINGS = new String[0];
+    private static final boolean[] NO_FLAGS = new boolean[0];
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * The number of attributes a linear scan looks through before an index is built.
+     */
+    static final int LINEAR_SCAN_LIMIT = 8;
+
+    private String[] names = NO_STRINGS;
+    private String[] values = NO_STRINGS;
+    private boolean[] properties = NO_FLAGS;
+    private int size;
+    private Map<String, Integer> index;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String name(final int i) {
+        return names[Objects.checkIndex(i, size)];
+    }
+
+    public String value(final int i) {
+        return values[Objects.checkIndex(i, size)];
+    }
+
+    public boolean isProperty(final int i) {
+        return properties[Objects.checkIndex(i, size)];
+    }
+
+    /**
+     * Adds an attribute, or replaces the value of the attribute with the same name and kind.
+     */
+    public void add(final String name, final String value, final boolean isProperty) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(value);
+        final int i = indexOf(name, isProperty);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        if (size == names.length) {
+            final int capacity = size == 0 ? INITIAL_CAPACITY : size * 2;
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+            properties = Arrays.copyOf(properties, capacity);
+        }
+        names[size] = name;
+        values[size] = value;
+        properties[size] = isProperty;
+        if (index != null) {
+            index.put(indexKey(name, isProperty), size);
+        }
+        size++;
+    }
+
+    /**
+     * @return the position of an attribute, or -1 if there is no such attribute
+     */
+    public int indexOf(final String name, final boolean isProperty) {
+        if (size > LINEAR_SCAN_LIMIT) {
+            if (index == null) {
+                index = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    index.put(indexKey(names[i], properties[i]), i);
+                }
+            }
+            final Integer i = index.get(indexKey(name, isProperty));
+            return i == null ? -1 : i;
+        }
+        for (int i = 0; i < size; i++) {
+            if (properties[i] == isProperty && names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes an attribute.
+     * @return true if the attribute was present
+     */
+    public boolean remove(final String name, final boolean isProperty) {
+        final int i = indexOf(name, isProperty);
+        if (i < 0) {
+            return false;
+        }
+        final int tail = size - i - 1;
+        System.arraycopy(names, i + 1, names, i, tail);
+        System.arraycopy(values, i + 1, values, i, tail);
+        System.arraycopy(properties, i + 1, properties, i, tail);
+        size--;
+        names[size] = null;
+        values[size] = null;
+        index = null;
+        return true;
+    }
+
+    /**
+     * Iterates over the attributes as nodes, allocating one per attribute; the rendering code uses
+     * the positional accessors instead.
+     */
+    @Override
+    public Iterator<AttributeNode> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public AttributeNode next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                final AttributeNode attribute = new AttributeNode(names[next], values[next], properties[next]);
+                next++;
+                return attribute;
+            }
+        };
+    }
+
+    private static String indexKey(final String name, final boolean isProperty) {
+        // '=' is not allowed in attribute names
+        return isProperty ? "=" + name : name;
+    }
+}
@@ -63,25 +63,25 @@ public class HtmlBuilder {
             sb.append(tag.key());
             sb.append('"');
         }
-        AttributeNode deferredInnerHtml = null;
-        if (tag.attributes.size() > 0) {
-            for (final AttributeNode attribute: tag.attributes) {
-                if ("innerHTML".equals(attribute.name()) && attribute.isProperty()) {
-                    deferredInnerHtml = attribute;
-                    continue;
-                }
-                sb.append(' ');
-                sb.append(attribute.name());
-                sb.append('=');
-                sb.append('"');
-                sb.append(attribute.value());
-                sb.append('"');
+        final Attributes attributes = tag.attributes;
+        boolean deferredInnerHtml = false;
+        for (int i = 0; i < attributes.size(); i++) {
+            final String name = attributes.name(i);
+            if (attributes.isProperty(i) && "innerHTML".equals(name)) {
+                deferredInnerHtml = true;
+                continue;
             }
+            sb.append(' ');
+            sb.append(name);
+            sb.append('=');
+            sb.append('"');
+            sb.append(attributes.value(i));
+            sb.append('"');
         }
         // Strip innerHTML property from the SSR virtual DOM tree so the first
         // client-side diff will detect it as new and apply it via WebSocket.
-        if (deferredInnerHtml != null && escapeText) {
-            tag.attributes.remove(deferredInnerHtml);
+        if (deferredInnerHtml && escapeText) {
+            attributes.remove("innerHTML", true);
         }
         if (tag.isSelfClosing) {
             sb.append(" />");
@@ -104,11 +104,28 @@ public class HtmlBuilder {
         }
 
         inRawTextElement = previousInRawText;
+        nodeBuilt(tag);
     }
 
     private void buildHtml(TextNode textNode) {
         final boolean shouldEscape = escapeText && !inRawTextElement;
         textNode.parts.forEach(part -> sb.append(shouldEscape ? HtmlEscape.escape(part) : part));
+        nodeBuilt(textNode);
+    }
+
+    /**
+     * Appends an HTML text as is, for example a document type declaration.
+     * @param html a raw HTML fragment
+     */
+    public void append(final String html) {
+        sb.append(Objects.requireNonNull(html));
+    }
+
+    /**
+     * Invoked after the HTML text of a node, including its children, is appended.
+     * @param node the built node
+     */
+    protected void nodeBuilt(final Node node) {
     }
 
     /**
@@ -15,91 +15,268 @@ import java.util.Objects;
  *
  * <p>The string form joins segments with {@code "_"} and is what travels on the wire and keys the
  * client's element map.
+ *
+ * <p>Positional segments are packed as ints and key segments are interned strings, so walking siblings
+ * and levels doesn't format or parse numbers. The hash code and the string form are computed once per id.
  */
 public final class NodeId {
 
     public static final String SEPARATOR = "_";
 
-    private final String[] segments;
+    private static final int[] NO_POSITIONS = new int[0];
+
+    /**
+     * Marks a keyed segment in {@link #positions}.
+     */
+    private static final int KEYED = -1;
+
+    private final int[] positions;
+
+    /**
+     * The key segments at the {@link #KEYED} positions, or null if all segments are positional.
+     */
+    private final String[] keys;
+
+    private int hash;
+    private String wireString;
 
     public NodeId(final String... segments) {
-        this.segments = Objects.requireNonNull(segments);
+        Objects.requireNonNull(segments);
+        final int[] positions = new int[segments.length];
+        String[] keys = null;
+        for (int i = 0; i < segments.length; i++) {
+            final String segment = Objects.requireNonNull(segments[i]);
+            final int position = parsePosition(segment);
+            if (position == KEYED) {
+                if (keys == null) {
+                    keys = new String[segments.length];
+                }
+                keys[i] = segment.intern();
+            }
+            positions[i] = position;
+        }
+        this.positions = positions;
+        this.keys = keys;
+    }
+
+    private NodeId(final int[] positions, final String[] keys) {
+        this.positions = positions;
+        this.keys = keys;
     }
 
     /** The id of a node at the given positional path, all segments positional. */
     public static NodeId of(final TreePositionPath path) {
         Objects.requireNonNull(path);
-        final String[] s = new String[path.elementsCount()];
-        for (int i = 0; i < s.length; i++) {
-            s[i] = Integer.toString(path.elementAt(i));
+        final int count = path.elementsCount();
+        if (count == 0) {
+            return new NodeId(NO_POSITIONS, null);
         }
-        return new NodeId(s);
+        final int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = path.elementAt(i);
+        }
+        return new NodeId(positions, null);
     }
 
     /** Parses a wire id string back into a {@code NodeId}. */
     public static NodeId of(final String s) {
         Objects.requireNonNull(s);
-        return s.isBlank() ? new NodeId() : new NodeId(s.split(SEPARATOR));
+        final NodeId id = s.isBlank() ? new NodeId(NO_POSITIONS, null) : new NodeId(s.split(SEPARATOR));
+        id.wireString = s.isBlank() ? "" : s;
+        return id;
     }
 
     /** Descends to the first child, appending the positional segment {@code "1"}. */
     public NodeId incLevel() {
-        return child("1");
+        return child(1);
     }
 
     /** The next positional sibling: increments the last segment, which must be positional. */
     public NodeId incSibling() {
-        if (segments.length == 0) {
+        if (positions.length == 0) {
             throw new IllegalStateException("It is not possible to get a sibling of a root id");
         }
-        final String[] a = Arrays.copyOf(segments, segments.length);
-        final String last = a[a.length - 1];
-        try {
-            a[a.length - 1] = Integer.toString(Integer.parseInt(last) + 1);
-        } catch (final NumberFormatException e) {
-            throw new IllegalStateException("Cannot increment a keyed segment as a sibling: " + last);
+        final int last = positions.length - 1;
+        if (positions[last] == KEYED) {
+            throw new IllegalStateException("Cannot increment a keyed segment as a sibling: " + keys[last]);
         }
-        return new NodeId(a);
+        final int[] a = Arrays.copyOf(positions, positions.length);
+        a[last]++;
+        return new NodeId(a, keys);
     }
 
     /** Appends an arbitrary child segment (a positional decimal or a key segment). */
     public NodeId child(final String segment) {
         Objects.requireNonNull(segment);
-        final String[] a = Arrays.copyOf(segments, segments.length + 1);
-        a[a.length - 1] = segment;
-        return new NodeId(a);
+        final int position = parsePosition(segment);
+        if (position != KEYED) {
+            return child(position);
+        }
+        final int[] a = Arrays.copyOf(positions, positions.length + 1);
+        a[a.length - 1] = KEYED;
+        final String[] k = keys == null ? new String[a.length] : Arrays.copyOf(keys, a.length);
+        k[a.length - 1] = segment.intern();
+        return new NodeId(a, k);
+    }
+
+    /** Appends a positional child segment. */
+    public NodeId child(final int position) {
+        if (position < 0) {
+            throw new IllegalArgumentException("A position must not be negative: " + position);
+        }
+        final int[] a = Arrays.copyOf(positions, positions.length + 1);
+        a[a.length - 1] = position;
+        return new NodeId(a, keys == null ? null : Arrays.copyOf(keys, a.length));
     }
 
     public NodeId parent() {
-        if (segments.length == 0) {
+        if (positions.length == 0) {
             throw new IllegalStateException("It is not possible to get a parent of a root id");
         }
-        return new NodeId(Arrays.copyOf(segments, segments.length - 1));
+        final int length = positions.length - 1;
+        return new NodeId(Arrays.copyOf(positions, length), parentKeys(length));
+    }
+
+    private String[] parentKeys(final int length) {
+        if (keys == null) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (keys[i] != null) {
+                return Arrays.copyOf(keys, length);
+            }
+        }
+        return null;
     }
 
     public int elementsCount() {
-        return segments.length;
+        return positions.length;
+    }
+
+    /**
+     * @param index a segment's index, starting from 0 at the root
+     * @return whether the segment is a key segment rather than a positional one
+     */
+    public boolean isKeyAt(final int index) {
+        return positions[checkIndex(index)] == KEYED;
+    }
+
+    /**
+     * @param index a segment's index, starting from 0 at the root
+     * @return the positional segment's value
+     * @throws IllegalStateException if the segment is a key segment
+     */
+    public int positionAt(final int index) {
+        final int position = positions[checkIndex(index)];
+        if (position == KEYED) {
+            throw new IllegalStateException("Segment " + index + " is a key segment: " + keys[index]);
+        }
+        return position;
+    }
+
+    /**
+     * @param index a segment's index, starting from 0 at the root
+     * @return a positional decimal or a key segment
+     */
+    public String segmentAt(final int index) {
+        final int position = positions[checkIndex(index)];
+        return position == KEYED ? keys[index] : Integer.toString(position);
     }
 
     public String lastSegment() {
-        if (segments.length == 0) {
+        if (positions.length == 0) {
             throw new IllegalStateException("Root id has no last segment");
         }
-        return segments[segments.length - 1];
+        return segmentAt(positions.length - 1);
+    }
+
+    /**
+     * Checks if this id is the same as another one or is one of its descendants, without building strings.
+     * @param ancestor a candidate id, the root id contains all ids
+     */
+    public boolean isAtOrUnder(final NodeId ancestor) {
+        final int length = ancestor.positions.length;
+        if (length > positions.length) {
+            return false;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            final int position = positions[i];
+            if (position != ancestor.positions[i]
+                || position == KEYED && !keys[i].equals(ancestor.keys[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int checkIndex(final int index) {
+        if (index < 0 || index >= positions.length) {
+            throw new IllegalArgumentException("Index " + index + " out of bounds for id length " + positions.length);
+        }
+        return index;
+    }
+
+    /**
+     * @return the segment's position if it is a canonical decimal which fits an int, or {@link #KEYED}
+     */
+    private static int parsePosition(final String segment) {
+        final int length = segment.length();
+        if (length == 0 || length > 9 || (length > 1 && segment.charAt(0) == '0')) {
+            return KEYED;
+        }
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = segment.charAt(i);
+            if (c < '0' || c > '9') {
+                return KEYED;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
 
     @Override
     public String toString() {
-        return String.join(SEPARATOR, segments);
+        String s = wireString;
+        if (s == null) {
+            final StringBuilder sb = new StringBuilder(positions.length * 3);
+            for (int i = 0; i < positions.length; i++) {
+                if (i > 0) {
+                    sb.append(SEPARATOR);
+                }
+                if (positions[i] == KEYED) {
+                    sb.append(keys[i]);
+                } else {
+                    sb.append(positions[i]);
+                }
+            }
+            s = sb.toString();
+            wireString = s;
+        }
+        return s;
     }
 
     @Override
     public boolean equals(final Object other) {
-        return other instanceof NodeId n && Arrays.equals(segments, n.segments);
+        if (this == other) {
+            return true;
+        }
+        return other instanceof NodeId n
+               && hashCode() == n.hashCode()
+               && Arrays.equals(positions, n.positions)
+               && Arrays.equals(keys, n.keys);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(segments);
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(positions);
+            if (keys != null) {
+                h = 31 * h + Arrays.hashCode(keys);
+            }
+            hash = h;
+        }
+        return h;
     }
 }
@@ -14,6 +14,8 @@ import java.util.*;
  *       keys removed.</li>
  * </ul>
  * Mixing keyed and unkeyed siblings under one parent, or duplicate keys among siblings, is rejected.
+ * <p>A tag which is the same object in both trees, as a memoized component keeps its previous subtree,
+ * is skipped without comparing its attributes and children.
  *
  * @see DefaultDomChangesContext.DomChange for an atomic transformation
  */
@@ -50,6 +52,10 @@ public final class NodesTreeDiff {
                                  final NodeId id,
                                  final DomChangesContext changesPerformer,
                                  final HtmlBuilder htmlBuilder) {
+        if (tree1 == tree2) {
+            // A subtree kept by a memoized component, in both trees
+            return;
+        }
         if (!sameElementType(tree1, tree2)) {
             changesPerformer.removeNode(id.parent(), id);
             createNode(tree2, id, changesPerformer, htmlBuilder);
@@ -205,16 +211,48 @@ public final class NodesTreeDiff {
         return a.xmlns.equals(b.xmlns) && a.name.equals(b.name);
     }
 
-    private static void diffAttributes(final Set<AttributeNode> attributes1,
-                                       final Set<AttributeNode> attributes2,
+    /**
+     * Diffs two attribute lists in one pass over their common prefix, where a render usually sets the same
+     * attributes in the same order and only values change. From the first position where the names differ,
+     * the rest of the old attributes are looked up in the new ones and the other way around.
+     */
+    private static void diffAttributes(final Attributes attributes1,
+                                       final Attributes attributes2,
                                        final NodeId nodeId,
                                        final DomChangesContext changesPerformer) {
-        final Set<AttributeNode> attrs1 = new java.util.concurrent.CopyOnWriteArraySet<>(attributes1);
-        final Set<AttributeNode> attrs2 = new java.util.concurrent.CopyOnWriteArraySet<>(attributes2);
-        attrs1.removeAll(attributes2);
-        attrs1.forEach(attribute -> changesPerformer.removeAttr(nodeId, XmlNs.html, attribute.name(), attribute.isProperty()));
-        attrs2.removeAll(attributes1);
-        attrs2.forEach(attribute -> changesPerformer.setAttr(nodeId, XmlNs.html, attribute.name(), attribute.value(), attribute.isProperty()));
+        final int size1 = attributes1.size();
+        final int size2 = attributes2.size();
+        int i = 0;
+        for (; i < size1 && i < size2; i++) {
+            final String name = attributes2.name(i);
+            final boolean isProperty = attributes2.isProperty(i);
+            if (attributes1.isProperty(i) != isProperty || !attributes1.name(i).equals(name)) {
+                break;
+            }
+            final String value = attributes2.value(i);
+            if (!attributes1.value(i).equals(value)) {
+                changesPerformer.setAttr(nodeId, XmlNs.html, name, value, isProperty);
+            }
+        }
+        if (i == size1 && i == size2) {
+            return;
+        }
+        for (int j = i; j < size1; j++) {
+            final String name = attributes1.name(j);
+            final boolean isProperty = attributes1.isProperty(j);
+            if (attributes2.indexOf(name, isProperty) < 0) {
+                changesPerformer.removeAttr(nodeId, XmlNs.html, name, isProperty);
+            }
+        }
+        for (int j = i; j < size2; j++) {
+            final String name = attributes2.name(j);
+            final boolean isProperty = attributes2.isProperty(j);
+            final String value = attributes2.value(j);
+            final int oldIndex = attributes1.indexOf(name, isProperty);
+            if (oldIndex < 0 || !attributes1.value(oldIndex).equals(value)) {
+                changesPerformer.setAttr(nodeId, XmlNs.html, name, value, isProperty);
+            }
+        }
     }
 
     /** Creates {@code node} at {@code nodeId}: a tag (with its subtree) or a text node. */
@@ -237,8 +275,9 @@ public final class NodesTreeDiff {
                                    final HtmlBuilder htmlBuilder) {
         changesPerformer.createTag(nodeId, tag.xmlns, tag.name);
 
-        for (final AttributeNode attribute : tag.attributes) {
-            changesPerformer.setAttr(nodeId, XmlNs.html, attribute.name(), attribute.value(), attribute.isProperty());
+        final Attributes attributes = tag.attributes;
+        for (int i = 0; i < attributes.size(); i++) {
+            changesPerformer.setAttr(nodeId, XmlNs.html, attributes.name(i), attributes.value(i), attributes.isProperty(i));
         }
 
         final List<NodeId> childIds = childIds(nodeId, tag.children);
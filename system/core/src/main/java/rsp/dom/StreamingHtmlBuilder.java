@@ -0,0 +1,121 @@
+package rsp.dom;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * An HTML builder which encodes its text into UTF-8 bytes on an output stream as nodes trees are built,
+ * holding at most a chunk of the text in memory.
+ * <p>
+ * The text is written out when the pending part grows beyond the chunk size, and written out and flushed
+ * after the {@code </head>} tag, so a client can start loading the resources a document head refers to
+ * while the rest of the document is being produced.
+ * The builder's methods throw {@link UncheckedIOException} for the stream's errors.
+ */
+public final class StreamingHtmlBuilder extends HtmlBuilder {
+    /**
+     * The default size of a pending text part, in chars.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final StringBuilder pending;
+    private final OutputStream output;
+    private final int chunkSize;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                                                                  .onMalformedInput(CodingErrorAction.REPLACE)
+                                                                  .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes;
+
+    private int writtenChars;
+
+    public StreamingHtmlBuilder(final OutputStream output) {
+        this(output, DEFAULT_CHUNK_SIZE);
+    }
+
+    public StreamingHtmlBuilder(final OutputStream output, final int chunkSize) {
+        this(new StringBuilder(chunkSize), output, chunkSize);
+    }
+
+    private StreamingHtmlBuilder(final StringBuilder pending, final OutputStream output, final int chunkSize) {
+        super(pending, true);
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        this.pending = pending;
+        this.output = Objects.requireNonNull(output);
+        this.chunkSize = chunkSize;
+        this.bytes = ByteBuffer.allocate((int) Math.ceil(chunkSize * (double) encoder.maxBytesPerChar()));
+    }
+
+    /**
+     * @return the number of chars of the HTML text built so far, including the pending ones
+     */
+    public int length() {
+        return writtenChars + pending.length();
+    }
+
+    /**
+     * Writes out the pending text. Doesn't flush the output stream.
+     */
+    public void finish() throws IOException {
+        encode(true);
+        encoder.reset();
+    }
+
+    @Override
+    public void reset() {
+        throw new UnsupportedOperationException("A streamed HTML text cannot be cleared");
+    }
+
+    @Override
+    public String toString() {
+        throw new UnsupportedOperationException("A streamed HTML text is not retained");
+    }
+
+    @Override
+    protected void nodeBuilt(final Node node) {
+        try {
+            if (node instanceof TagNode tag && "head".equals(tag.name)) {
+                encode(false);
+                output.flush();
+            } else if (pending.length() >= chunkSize) {
+                encode(false);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void encode(final boolean endOfInput) throws IOException {
+        final CharBuffer chars = CharBuffer.wrap(pending);
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, endOfInput);
+            writeBytes();
+        } while (result.isOverflow());
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+            writeBytes();
+        }
+        // a trailing high surrogate waits for its pair
+        writtenChars += chars.position();
+        pending.delete(0, chars.position());
+    }
+
+    private void writeBytes() throws IOException {
+        if (bytes.position() > 0) {
+            output.write(bytes.array(), 0, bytes.position());
+            bytes.clear();
+        }
+    }
+}
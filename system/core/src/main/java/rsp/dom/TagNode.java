@@ -3,7 +3,6 @@ package rsp.dom;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * Server-side virtual-DOM representation of a single HTML (or SVG) element.
@@ -22,10 +21,9 @@ import java.util.concurrent.CopyOnWriteArraySet;
  *   <li>{@link #xmlns} and {@link #name} identify the element type. A diff that detects a change
  *       in either treats it as a different element and emits a remove + recreate, not a mutation.</li>
  *   <li>{@link #isSelfClosing} controls how {@link HtmlBuilder} serializes the SSR output.</li>
- *   <li>{@link #attributes} is the live, order-preserving set of HTML attributes (using
- *       {@code CopyOnWriteArraySet} so iteration order matches insertion order for stable diff
- *       output). Diffed by set difference: removed attrs emit {@code RemoveAttr}, added attrs emit
- *       {@code SetAttr}, common attrs are skipped.</li>
+ *   <li>{@link #attributes} is the compact, insertion-ordered storage of HTML attributes and properties,
+ *       one per name and kind. Diffed in one pass: removed attrs emit {@code RemoveAttr}, added or changed
+ *       attrs emit {@code SetAttr}, unchanged attrs are skipped.</li>
  *   <li>{@link #children} is the ordered list of child nodes. Diffed positionally by default;
  *       when every child carries a non-null {@link #key()}, the keyed branch of
  *       {@link NodesTreeDiff} matches children across renders by key and uses
@@ -52,7 +50,7 @@ public final class TagNode implements Node {
     public final String name;
     public final boolean isSelfClosing;
 
-    public final CopyOnWriteArraySet<AttributeNode> attributes = new CopyOnWriteArraySet<>();
+    public final Attributes attributes = new Attributes();
     public final List<Node> children = new ArrayList<>();
 
     /**
@@ -83,9 +81,7 @@ public final class TagNode implements Node {
     }
 
     public void addAttribute(final String name, final String value, final boolean isProperty) {
-        Objects.requireNonNull(name);
-        Objects.requireNonNull(value);
-        attributes.add(new AttributeNode(name, value, isProperty));
+        attributes.add(name, value, isProperty);
     }
 
     @Override
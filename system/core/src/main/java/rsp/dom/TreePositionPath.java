@@ -18,6 +18,9 @@ public final class TreePositionPath {
 
     private final int[] elements;
 
+    private int hash;
+    private String string;
+
     /**
      * Creates a new path to a node.
      * @param elements representing a sequence of positions starting with a root or a subroot and of branches when descending in a tree
@@ -33,7 +36,21 @@ public final class TreePositionPath {
      */
     public static TreePositionPath of(final String path) {
         Objects.requireNonNull(path);
-        return path.isBlank() ? new TreePositionPath() : new TreePositionPath(Arrays.stream(path.split(SEPARATOR)).mapToInt(Integer::parseInt).toArray());
+        if (path.isBlank()) {
+            return new TreePositionPath();
+        }
+        int count = 1;
+        for (int i = path.indexOf(SEPARATOR); i >= 0; i = path.indexOf(SEPARATOR, i + 1)) {
+            count++;
+        }
+        final int[] elements = new int[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            final int end = i == count - 1 ? path.length() : path.indexOf(SEPARATOR, start);
+            elements[i] = Integer.parseInt(path, start, end, 10);
+            start = end + SEPARATOR.length();
+        }
+        return new TreePositionPath(elements);
     }
 
     public int elementAt(final int i) {
@@ -72,9 +89,9 @@ public final class TreePositionPath {
     }
 
     public TreePositionPath addChild(final int num) {
-        final TreePositionPath childPath = incLevel();
-        childPath.elements[childPath.elementsCount() - 1] = num;
-        return childPath;
+        final int[] a = Arrays.copyOf(elements, elements.length + 1);
+        a[a.length - 1] = num;
+        return new TreePositionPath(a);
     }
 
     private TreePositionPath take(final int level) {
@@ -85,24 +102,40 @@ public final class TreePositionPath {
 
     @Override
     public String toString() {
-        if (elements.length == 0) {
-            return "";
-        } else {
-            return String.join(SEPARATOR, Arrays.stream(elements).mapToObj(Integer::toString).toList());
+        String s = string;
+        if (s == null) {
+            final StringBuilder sb = new StringBuilder(elements.length * 3);
+            for (int i = 0; i < elements.length; i++) {
+                if (i > 0) {
+                    sb.append(SEPARATOR);
+                }
+                sb.append(elements[i]);
+            }
+            s = sb.toString();
+            string = s;
         }
+        return s;
     }
 
     @Override
     public boolean equals(final Object other) {
-        if (other instanceof TreePositionPath) {
-            return Arrays.equals(elements, ((TreePositionPath) other).elements);
+        if (this == other) {
+            return true;
+        }
+        if (other instanceof TreePositionPath otherPath) {
+            return hashCode() == otherPath.hashCode() && Arrays.equals(elements, otherPath.elements);
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(elements);
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(elements);
+            hash = h;
+        }
+        return h;
     }
 
 }
@@ -29,4 +29,133 @@ public final class MetricNames {
      * the framework's reconciliation invariant is being violated somewhere.
      */
     public static final String SEGMENT_UPDATE_DROPPED_UNMOUNTED = "rsp.segment.update.dropped_unmounted";
+
+    /**
+     * A reused segment kept its previous subtree instead of rendering, as its memoization inputs did not change.
+     * @see rsp.component.ComponentRuntimePolicy#memoInputs
+     */
+    public static final String SEGMENT_MEMOIZED = "rsp.segment.memoized";
+
+    /**
+     * Timer: a segment's state update, from the new state to the DOM changes and events commands enqueued,
+     * including {@link #SEGMENT_RENDER_TIME} and {@link #SEGMENT_DIFF_TIME}.
+     */
+    public static final String SEGMENT_UPDATE_TIME = "rsp.segment.update.time";
+
+    /** Timer: the render phase of a segment's state update, building the nodes tree of its view. */
+    public static final String SEGMENT_RENDER_TIME = "rsp.segment.render.time";
+
+    /** Timer: the diff phase of a segment's state update, comparing its old and new nodes trees. */
+    public static final String SEGMENT_DIFF_TIME = "rsp.segment.diff.time";
+
+    // ===== Render scheduling =====
+
+    /** A deferred state update was scheduled; divide {@link #RENDER_FLUSHES} by this to see the batching ratio. */
+    public static final String RENDER_UPDATES_SCHEDULED = "rsp.render.updates.scheduled";
+
+    /** A deferred state update was folded into one already pending for its segment, saving a re-render. */
+    public static final String RENDER_UPDATES_FOLDED = "rsp.render.updates.folded";
+
+    /** A deferred state update found the pending ones at the session queue's capacity and was queued as a task. */
+    public static final String RENDER_UPDATES_OVERFLOWED = "rsp.render.updates.overflowed";
+
+    /** A dirty segment's update was staged to be rendered by a dirty ancestor's re-render instead of its own. */
+    public static final String RENDER_SEGMENTS_STAGED = "rsp.render.segments.staged";
+
+    /** A render scheduler flush ran on a page's event loop. */
+    public static final String RENDER_FLUSHES = "rsp.render.flushes";
+
+    // ===== Live page sessions =====
+
+    /** Timer: a DOM event dispatched to its handlers, including the state updates they make synchronously. */
+    public static final String SESSION_DOM_EVENT_TIME = "rsp.session.dom_event.time";
+
+    /** Timer: how long a command waited in a live page session's queue before its event loop took it. */
+    public static final String SESSION_QUEUE_WAIT_TIME = "rsp.session.queue.wait_time";
+
+    /** Histogram: the number of commands in a live page session's queue after one was added. */
+    public static final String SESSION_QUEUE_DEPTH = "rsp.session.queue.depth";
+
+    /** A command was refused by a full or closed session queue; a rising rate means a runaway producer. */
+    public static final String SESSION_QUEUE_REJECTED = "rsp.session.queue.rejected";
+
+    /** A queued coalescible command was replaced by a newer one of the same kind as its queue was full. */
+    public static final String SESSION_QUEUE_COALESCED = "rsp.session.queue.coalesced";
+
+    /** A producer waited for a place in a full session queue. */
+    public static final String SESSION_QUEUE_BLOCKED = "rsp.session.queue.blocked";
+
+    /** A live page session was shut down as its queue overflowed. */
+    public static final String SESSION_OVERLOADED = "rsp.session.overloaded";
+
+    /** A request to a page's browser, such as a JavaScript evaluation, got no result within its timeout. */
+    public static final String SESSION_REMOTE_REQUESTS_TIMED_OUT = "rsp.session.remote_requests.timed_out";
+
+    /** A request to a page's browser was still waiting for its result when its session was shut down. */
+    public static final String SESSION_REMOTE_REQUESTS_ORPHANED = "rsp.session.remote_requests.orphaned";
+
+    /**
+     * Histogram: the size of an outbound protocol message as passed to its connection, before any compression:
+     * bytes for the binary protocol, chars for the text protocol, which are mostly ASCII.
+     */
+    public static final String PROTOCOL_MESSAGE_SIZE = "rsp.protocol.message.size";
+
+    // ===== HTTP =====
+
+    /**
+     * Timer: handling a page request, from resolving the root component to the response.
+     * A streamed page's body is written after this.
+     */
+    public static final String HTTP_PAGE_TIME = "rsp.http.page.time";
+
+    // ===== Server =====
+
+    /** Gauge: HTTP connections, or requests on the selector transport, holding one of the connection limit's permits. */
+    public static final String SERVER_CONNECTIONS_IN_USE = "rsp.server.connections.in_use";
+
+    /** Gauge: the configured connection limit, the saturation point of {@link #SERVER_CONNECTIONS_IN_USE}. */
+    public static final String SERVER_CONNECTIONS_LIMIT = "rsp.server.connections.limit";
+
+    /** Gauge: open live page WebSockets, each served by its own virtual thread on the blocking transport. */
+    public static final String SERVER_WEBSOCKETS_ACTIVE = "rsp.server.websockets.active";
+
+    /** Gauge: live page sessions whose WebSockets closed, waiting for their clients to reconnect. */
+    public static final String SERVER_SESSIONS_PARKED = "rsp.server.sessions.parked";
+
+    /** Gauge: live page sessions served over HTTP long polling to clients which couldn't open a WebSocket. */
+    public static final String SERVER_LONG_POLLING_SESSIONS = "rsp.server.long_polling.sessions";
+
+    // ===== WebSocket compression =====
+
+    /** A WebSocket handshake negotiated permessage-deflate; compare with sessions started to see client support. */
+    public static final String WEBSOCKET_DEFLATE_NEGOTIATED = "rsp.websocket.deflate.negotiated";
+
+    /** An outbound WebSocket message was sent compressed; messages below the threshold are not counted. */
+    public static final String WEBSOCKET_DEFLATE_MESSAGES = "rsp.websocket.deflate.messages";
+
+    /**
+     * Uncompressed bytes of compressed outbound messages. The compression ratio is
+     * {@link #WEBSOCKET_DEFLATE_OUTPUT_BYTES} divided by this counter.
+     */
+    public static final String WEBSOCKET_DEFLATE_INPUT_BYTES = "rsp.websocket.deflate.input_bytes";
+
+    /** Compressed payload bytes of outbound messages, the wire cost of {@link #WEBSOCKET_DEFLATE_INPUT_BYTES}. */
+    public static final String WEBSOCKET_DEFLATE_OUTPUT_BYTES = "rsp.websocket.deflate.output_bytes";
+
+    // ===== Rendered pages store =====
+
+    /** Rendered pages stored to wait for their WebSocket sessions. */
+    public static final String RENDERED_PAGES_STORED = "rsp.pages.stored";
+
+    /** Rendered pages evicted as their WebSocket sessions didn't bind within the TTL. */
+    public static final String RENDERED_PAGES_EVICTED_EXPIRED = "rsp.pages.evicted.expired";
+
+    /** Rendered pages evicted as the store grew beyond its page count or retained bytes limit. */
+    public static final String RENDERED_PAGES_EVICTED_SIZE = "rsp.pages.evicted.size";
+
+    /** Gauge: the number of rendered pages waiting for their WebSocket sessions. */
+    public static final String RENDERED_PAGES_COUNT = "rsp.pages.count";
+
+    /** Gauge: the approximate memory retained by the waiting rendered pages, in bytes. */
+    public static final String RENDERED_PAGES_RETAINED_BYTES = "rsp.pages.retained_bytes";
 }
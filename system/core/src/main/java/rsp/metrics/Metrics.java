@@ -3,9 +3,11 @@ package rsp.metrics;
 import rsp.component.ComponentContext;
 
 /**
- * Framework metrics SPI. Single counter / gauge interface, no tags, no histograms.
+ * Framework metrics SPI. Counters, gauges and value distributions: histograms and timers. No tags.
  * <p>
  * Default {@link NoOpMetrics} is zero-cost — virtual calls to empty methods, JIT-inlined.
+ * The framework times its code with {@link System#nanoTime()} and passes primitives, so a disabled
+ * metric costs no allocation.
  * Tests use {@link RecordingMetrics}. Production embeds plug their own adapter
  * (Micrometer/OpenTelemetry/etc.) by placing a {@code Metrics} instance into
  * the page session's root {@link ComponentContext}.
@@ -33,6 +35,24 @@ public interface Metrics {
      */
     void setGauge(String name, long value);
 
+    /**
+     * Record a value into a histogram, for example a message size.
+     * The default implementation ignores it, for adapters written before histograms were added.
+     * @param name a metric name from {@link MetricNames}
+     * @param value a non-negative value
+     */
+    default void recordValue(final String name, final long value) {
+    }
+
+    /**
+     * Record a duration into a timer, a histogram of durations.
+     * The default implementation ignores it, for adapters written before timers were added.
+     * @param name a metric name from {@link MetricNames}
+     * @param nanos a duration in nanoseconds, usually a difference of two {@link System#nanoTime()} readings
+     */
+    default void recordTime(final String name, final long nanos) {
+    }
+
     /**
      * @return the no-op singleton; safe to call from any thread.
      */
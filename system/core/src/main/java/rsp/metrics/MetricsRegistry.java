@@ -0,0 +1,82 @@
+package rsp.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process {@link Metrics} implementation which keeps the current values for an exporter to read,
+ * for example the HTTP server's OpenMetrics endpoint. Thread-safe.
+ * <p>
+ * Counters use {@link LongAdder}, gauges use {@link AtomicLong}, histograms and timers use {@link Histogram}.
+ * Timers are kept apart from histograms, so an exporter can convert their nanoseconds to its time unit.
+ * Unlike {@link RecordingMetrics}, values are never reset: counters and histograms cover the registry's lifetime.
+ */
+public final class MetricsRegistry implements Metrics {
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public void incrementCounter(final String name) {
+        incrementCounter(name, 1L);
+    }
+
+    @Override
+    public void incrementCounter(final String name, final long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    @Override
+    public void setGauge(final String name, final long value) {
+        gauges.computeIfAbsent(name, k -> new AtomicLong()).set(value);
+    }
+
+    @Override
+    public void recordValue(final String name, final long value) {
+        histograms.computeIfAbsent(name, k -> new Histogram()).record(value);
+    }
+
+    @Override
+    public void recordTime(final String name, final long nanos) {
+        timers.computeIfAbsent(name, k -> new Histogram()).record(nanos);
+    }
+
+    /**
+     * @return the current counter values by name, sorted by name
+     */
+    public Map<String, Long> counters() {
+        final Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, adder) -> result.put(name, adder.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return the current gauge values by name, sorted by name
+     */
+    public Map<String, Long> gauges() {
+        final Map<String, Long> result = new TreeMap<>();
+        gauges.forEach((name, value) -> result.put(name, value.get()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return the live histograms of {@link #recordValue} by name, sorted by name
+     */
+    public Map<String, Histogram> histograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(histograms));
+    }
+
+    /**
+     * @return the live histograms of {@link #recordTime}, in nanoseconds, by name, sorted by name
+     */
+    public Map<String, Histogram> timers() {
+        return Collections.unmodifiableMap(new TreeMap<>(timers));
+    }
+}
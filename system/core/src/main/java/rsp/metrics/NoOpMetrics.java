@@ -18,4 +18,10 @@ public final class NoOpMetrics implements Metrics {
 
     @Override
     public void setGauge(final String name, final long value) {}
+
+    @Override
+    public void recordValue(final String name, final long value) {}
+
+    @Override
+    public void recordTime(final String name, final long nanos) {}
 }
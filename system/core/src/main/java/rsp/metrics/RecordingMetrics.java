@@ -10,12 +10,13 @@ import java.util.concurrent.atomic.LongAdder;
 /**
  * In-memory {@link Metrics} implementation for tests. Thread-safe.
  * Counters use {@link LongAdder} (lock-free, contention-tolerant);
- * gauges use {@link AtomicLong}.
+ * gauges use {@link AtomicLong}; histograms and timers use {@link Histogram}, timers in nanoseconds.
  */
 public final class RecordingMetrics implements Metrics {
 
     private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
 
     @Override
     public void incrementCounter(final String name) {
@@ -32,6 +33,16 @@ public final class RecordingMetrics implements Metrics {
         gauges.computeIfAbsent(name, k -> new AtomicLong()).set(value);
     }
 
+    @Override
+    public void recordValue(final String name, final long value) {
+        histograms.computeIfAbsent(name, k -> new Histogram()).record(value);
+    }
+
+    @Override
+    public void recordTime(final String name, final long nanos) {
+        recordValue(name, nanos);
+    }
+
     /**
      * @return current counter value, or 0 if the counter was never incremented.
      */
@@ -48,6 +59,14 @@ public final class RecordingMetrics implements Metrics {
         return a == null ? 0L : a.get();
     }
 
+    /**
+     * @return the histogram or timer of the given name, an empty one if nothing was recorded to it.
+     */
+    public Histogram histogram(final String name) {
+        final Histogram h = histograms.get(name);
+        return h == null ? new Histogram() : h;
+    }
+
     /**
      * @return all counter names that have been touched.
      */
@@ -62,6 +81,13 @@ public final class RecordingMetrics implements Metrics {
         return Set.copyOf(gauges.keySet());
     }
 
+    /**
+     * @return all histogram and timer names that have been recorded to.
+     */
+    public Set<String> histogramNames() {
+        return Set.copyOf(histograms.keySet());
+    }
+
     /**
      * Snapshot all counters as an immutable map.
      */
@@ -73,10 +99,11 @@ public final class RecordingMetrics implements Metrics {
     }
 
     /**
-     * Reset all counters and gauges. Useful between scenarios in a single test class.
+     * Reset all counters, gauges and histograms. Useful between scenarios in a single test class.
      */
     public void reset() {
         counters.clear();
         gauges.clear();
+        histograms.clear();
     }
 }
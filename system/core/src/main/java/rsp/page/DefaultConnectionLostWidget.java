@@ -12,6 +12,8 @@ import rsp.dom.TreePositionPath;
 import rsp.server.RemoteOut;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static rsp.dsl.Html.*;
 import static rsp.page.PageBuilder.DOCUMENT_DOM_PATH;
@@ -78,6 +80,11 @@ public final class DefaultConnectionLostWidget {
             // no-op
         }
 
+        @Override
+        public void extractProperties(int descriptor, Map<NodeId, Set<String>> properties) {
+            // no-op
+        }
+
         @Override
         public void modifyDom(List<DefaultDomChangesContext.DomChange> domChange) {
             // no-op
@@ -6,7 +6,11 @@ import rsp.ref.ElementRef;
 import rsp.ref.Ref;
 import rsp.util.json.JsonDataType;
 
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -54,6 +58,33 @@ public final class EventContext {
         return propertiesHandleLookup.apply(ref);
     }
 
+    /**
+     * Reads properties of several elements in the client's browser in one round trip,
+     * for example the values of a form's inputs.
+     * @param properties the names of the properties to read by the references to their elements, must not be null
+     * @return CompletableFuture of the JSON objects of the values by property name by the references,
+     *         where an undefined property or a function is absent
+     */
+    public CompletableFuture<Map<ElementRef, JsonDataType.Object>> propertiesByRefs(final Map<ElementRef, Set<String>> properties) {
+        Objects.requireNonNull(properties);
+        if (properties.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        final Map<ElementRef, NodeId> nodeIds = new LinkedHashMap<>();
+        final Map<NodeId, Set<String>> request = new LinkedHashMap<>();
+        PropertiesHandle handle = null;
+        for (final Map.Entry<ElementRef, Set<String>> element : properties.entrySet()) {
+            handle = propertiesByRef(element.getKey());
+            nodeIds.put(element.getKey(), handle.nodeId());
+            request.computeIfAbsent(handle.nodeId(), _ -> new HashSet<>()).addAll(element.getValue());
+        }
+        return handle.extract(request).thenApply(values -> {
+            final Map<ElementRef, JsonDataType.Object> result = new LinkedHashMap<>();
+            nodeIds.forEach((ref, nodeId) -> result.put(ref, PropertiesHandle.elementValues(values, nodeId)));
+            return result;
+        });
+    }
+
     /**
      * Evaluates a provided JavaScript expression in the browser returning the evaluation's result.
      * @param js code to execute
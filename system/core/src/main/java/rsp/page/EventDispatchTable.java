@@ -0,0 +1,147 @@
+package rsp.page;
+
+import rsp.component.ComponentEventEntry;
+import rsp.dom.DomEventEntry;
+import rsp.dom.NodeId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A live page's index of its event handlers, used to dispatch events from the client without walking the components tree.
+ * <p>
+ * DOM event handlers are indexed by their target node id and event name. The index is maintained incrementally:
+ * a component segment replaces its own handlers here each time it is rendered, and removes them when it is unmounted.
+ * <p>
+ * Component event handlers may be registered and removed at any time, so their index is invalidated on any change
+ * and rebuilt from the tree on the next dispatch, once per event name. A rebuilt list keeps the tree order of the handlers,
+ * and includes the wildcard handlers matching the name.
+ * <p>
+ * All methods must be called from the page's event loop thread.
+ */
+public final class EventDispatchTable {
+    /**
+     * Bounds the cached lookups, as wildcard handlers match an open set of event names.
+     */
+    private static final int MAX_CACHED_COMPONENT_EVENT_NAMES = 256;
+
+    private final Map<NodeId, Map<String, List<DomEventEntry>>> domEvents = new HashMap<>();
+    private final Map<Object, List<DomEventEntry>> domEventsByOwner = new IdentityHashMap<>();
+    private final Supplier<List<ComponentEventEntry>> componentEventsSource;
+    private final Map<String, List<ComponentEventEntry>> componentEventsByName = new HashMap<>();
+    private List<ComponentEventEntry> componentEvents;
+
+    /**
+     * Creates a new table.
+     * @param componentEventsSource provides all the component event handlers of the page in the tree order, must not be null
+     */
+    public EventDispatchTable(final Supplier<List<ComponentEventEntry>> componentEventsSource) {
+        this.componentEventsSource = Objects.requireNonNull(componentEventsSource);
+    }
+
+    /**
+     * Replaces the DOM event handlers registered by an owner.
+     * @param owner an owner, compared by identity, must not be null
+     * @param events the owner's current handlers, must not be null
+     */
+    public void putDomEvents(final Object owner, final List<DomEventEntry> events) {
+        Objects.requireNonNull(events);
+        removeDomEvents(owner);
+        if (events.isEmpty()) {
+            return;
+        }
+        final List<DomEventEntry> ownerEvents = List.copyOf(events);
+        domEventsByOwner.put(owner, ownerEvents);
+        for (final DomEventEntry event : ownerEvents) {
+            domEvents.computeIfAbsent(event.eventTarget.nodeId(), _ -> new HashMap<>())
+                     .computeIfAbsent(event.eventName, _ -> new ArrayList<>(1))
+                     .add(event);
+        }
+    }
+
+    /**
+     * Removes all the DOM event handlers registered by an owner.
+     * @param owner an owner, compared by identity, must not be null
+     */
+    public void removeDomEvents(final Object owner) {
+        Objects.requireNonNull(owner);
+        final List<DomEventEntry> ownerEvents = domEventsByOwner.remove(owner);
+        if (ownerEvents == null) {
+            return;
+        }
+        for (final DomEventEntry event : ownerEvents) {
+            final NodeId nodeId = event.eventTarget.nodeId();
+            final Map<String, List<DomEventEntry>> nodeEvents = domEvents.get(nodeId);
+            if (nodeEvents == null) {
+                continue;
+            }
+            final List<DomEventEntry> handlers = nodeEvents.get(event.eventName);
+            if (handlers == null) {
+                continue;
+            }
+            handlers.removeIf(e -> e == event);
+            if (handlers.isEmpty()) {
+                nodeEvents.remove(event.eventName);
+                if (nodeEvents.isEmpty()) {
+                    domEvents.remove(nodeId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the DOM event handlers for an event on an element, not including its ancestors.
+     * @param nodeId the element's id, must not be null
+     * @param eventName the event's name, must not be null
+     * @return a snapshot of the matching handlers, may be empty
+     */
+    public List<DomEventEntry> domEvents(final NodeId nodeId, final String eventName) {
+        final Map<String, List<DomEventEntry>> nodeEvents = domEvents.get(Objects.requireNonNull(nodeId));
+        if (nodeEvents == null) {
+            return List.of();
+        }
+        final List<DomEventEntry> handlers = nodeEvents.get(Objects.requireNonNull(eventName));
+        return handlers == null ? List.of() : List.copyOf(handlers);
+    }
+
+    /**
+     * Marks the component event handlers index stale, after a handler has been registered or removed.
+     */
+    public void invalidateComponentEvents() {
+        componentEvents = null;
+        componentEventsByName.clear();
+    }
+
+    /**
+     * Finds the component event handlers matching an event name, by exact name or by a wildcard pattern.
+     * @param eventName the event's name, must not be null
+     * @return the matching handlers in the tree order, may be empty
+     */
+    public List<ComponentEventEntry> componentEvents(final String eventName) {
+        Objects.requireNonNull(eventName);
+        final List<ComponentEventEntry> cached = componentEventsByName.get(eventName);
+        if (cached != null) {
+            return cached;
+        }
+        if (componentEvents == null) {
+            componentEvents = List.copyOf(componentEventsSource.get());
+        }
+        final List<ComponentEventEntry> matching = new ArrayList<>();
+        for (final ComponentEventEntry event : componentEvents) {
+            if (event.matches(eventName)) {
+                matching.add(event);
+            }
+        }
+        final List<ComponentEventEntry> result = List.copyOf(matching);
+        if (componentEventsByName.size() >= MAX_CACHED_COMPONENT_EVENT_NAMES) {
+            componentEventsByName.clear();
+        }
+        componentEventsByName.put(eventName, result);
+        return result;
+    }
+}
@@ -17,4 +17,21 @@ public interface EventLoop {
      * Stops the event loop.
      */
     void stop();
+
+    /**
+     * Tells whether the loop runs its logic only when it is woken up, rather than repeatedly.
+     * The logic of such a loop must not block waiting for events: a run with nothing to do returns at once.
+     * @return true for a loop scheduled on demand, false for one which runs its logic in a loop
+     */
+    default boolean runsOnDemand() {
+        return false;
+    }
+
+    /**
+     * Tells the loop that its logic has one more unit of work, for example a queued event.
+     * Called from any thread. A loop scheduled on demand runs its logic once for every call,
+     * other loops ignore it.
+     */
+    default void wakeUp() {
+    }
 }
@@ -4,15 +4,23 @@ import rsp.component.CommandsEnqueue;
 import rsp.component.ComponentContext;
 import rsp.component.ContextKey;
 import rsp.component.definitions.Component;
+import rsp.dom.StreamingHtmlBuilder;
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
 import rsp.server.StaticResourceHandler;
 import rsp.server.http.AuthorizationException;
 import rsp.server.http.Header;
+import rsp.server.http.HttpMethod;
 import rsp.server.http.HttpRequest;
 import rsp.server.http.HttpResponse;
 import rsp.server.http.NotFoundException;
+import rsp.server.http.StaticContent;
 import rsp.util.RandomString;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
@@ -26,22 +34,110 @@ public final class HttpHandler {
     public static final String DEVICE_ID_COOKIE_NAME = "deviceId";
     public static final String JS_CLIENT_BUNDLE_PATH = "/static/js-client.min.js";
 
+    /**
+     * The query parameter of the JS client bundle's URL with the bundle's fingerprint.
+     * A request with the current fingerprint is answered as immutable, so a browser doesn't revalidate it.
+     */
+    public static final String JS_CLIENT_BUNDLE_VERSION_PARAMETER = "v";
+
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
     private final RandomString randomStringGenerator = new RandomString(KEY_LENGTH);
 
-    private final Map<QualifiedSessionId, RenderedPage> renderedPages;
+    private final RenderedPagesStore renderedPages;
     private final Function<HttpRequest, Component<?, ?>> rootComponentDefinition;
     private final Optional<StaticResourceHandler> staticResourceHandler;
     private final int heartBeatIntervalMs;
+    private final long renderFrameIntervalMs;
+    private final boolean streamingRendering;
+    private final SessionQueueOptions queueOptions;
+    private final Metrics metrics;
 
-    public HttpHandler(final Map<QualifiedSessionId, RenderedPage> pagesStorage,
+    public HttpHandler(final RenderedPagesStore pagesStorage,
                        final Function<HttpRequest, Component<?, ?>> rootComponentDefinition,
                        final Optional<StaticResourceHandler> staticResourceHandler,
                        final int heartBeatIntervalMs) {
+        this(pagesStorage, rootComponentDefinition, staticResourceHandler, heartBeatIntervalMs, 0);
+    }
+
+    public HttpHandler(final RenderedPagesStore pagesStorage,
+                       final Function<HttpRequest, Component<?, ?>> rootComponentDefinition,
+                       final Optional<StaticResourceHandler> staticResourceHandler,
+                       final int heartBeatIntervalMs,
+                       final long renderFrameIntervalMs) {
+        this(pagesStorage, rootComponentDefinition, staticResourceHandler, heartBeatIntervalMs, renderFrameIntervalMs, false);
+    }
+
+    public HttpHandler(final RenderedPagesStore pagesStorage,
+                       final Function<HttpRequest, Component<?, ?>> rootComponentDefinition,
+                       final Optional<StaticResourceHandler> staticResourceHandler,
+                       final int heartBeatIntervalMs,
+                       final long renderFrameIntervalMs,
+                       final boolean streamingRendering) {
+        this(pagesStorage,
+             rootComponentDefinition,
+             staticResourceHandler,
+             heartBeatIntervalMs,
+             renderFrameIntervalMs,
+             streamingRendering,
+             Metrics.noop());
+    }
+
+    /**
+     * Creates a handler.
+     * @param renderFrameIntervalMs how long a page's {@link RenderScheduler} collects deferred state updates
+     *                              before rendering them, {@code 0} renders them on the next event loop turn
+     * @param streamingRendering whether a page's HTML is encoded straight into its response body as a stream,
+     *                           with the {@code <head>} flushed first, instead of being built as a string
+     * @param metrics the server's metrics, put to every page's root context, must not be null
+     */
+    public HttpHandler(final RenderedPagesStore pagesStorage,
+                       final Function<HttpRequest, Component<?, ?>> rootComponentDefinition,
+                       final Optional<StaticResourceHandler> staticResourceHandler,
+                       final int heartBeatIntervalMs,
+                       final long renderFrameIntervalMs,
+                       final boolean streamingRendering,
+                       final Metrics metrics) {
+        this(pagesStorage,
+             rootComponentDefinition,
+             staticResourceHandler,
+             heartBeatIntervalMs,
+             renderFrameIntervalMs,
+             streamingRendering,
+             SessionQueueOptions.defaults(),
+             metrics);
+    }
+
+    /**
+     * Creates a handler whose pages' deferred state updates are bounded like their session queues.
+     * @param renderFrameIntervalMs how long a page's {@link RenderScheduler} collects deferred state updates
+     *                              before rendering them, {@code 0} renders them on the next event loop turn
+     * @param streamingRendering whether a page's HTML is encoded straight into its response body as a stream,
+     *                           with the {@code <head>} flushed first, instead of being built as a string
+     * @param queueOptions the options of the pages' session queues, must not be null
+     * @param metrics the server's metrics, put to every page's root context, must not be null
+     */
+    public HttpHandler(final RenderedPagesStore pagesStorage,
+                       final Function<HttpRequest, Component<?, ?>> rootComponentDefinition,
+                       final Optional<StaticResourceHandler> staticResourceHandler,
+                       final int heartBeatIntervalMs,
+                       final long renderFrameIntervalMs,
+                       final boolean streamingRendering,
+                       final SessionQueueOptions queueOptions,
+                       final Metrics metrics) {
 
         this.renderedPages = Objects.requireNonNull(pagesStorage);
         this.rootComponentDefinition = Objects.requireNonNull(rootComponentDefinition);
         this.staticResourceHandler = Objects.requireNonNull(staticResourceHandler);
         this.heartBeatIntervalMs = heartBeatIntervalMs;
+        if (renderFrameIntervalMs < 0) {
+            throw new IllegalArgumentException("renderFrameIntervalMs must not be negative");
+        }
+        this.renderFrameIntervalMs = renderFrameIntervalMs;
+        this.streamingRendering = streamingRendering;
+        this.queueOptions = Objects.requireNonNull(queueOptions);
+        this.metrics = Objects.requireNonNull(metrics);
     }
 
     public CompletableFuture<HttpResponse> handle(final HttpRequest request) {
@@ -49,20 +145,29 @@ public final class HttpHandler {
         if (request.path.endsWith("favicon.ico")) {
             return CompletableFuture.completedFuture(new HttpResponse(404, Collections.emptyList(), "No favicon.ico"));
         } else if (request.path.toString().equals(JS_CLIENT_BUNDLE_PATH)) {
-            return CompletableFuture.completedFuture(jsClientBundleResponse());
+            return CompletableFuture.completedFuture(jsClientBundleResponse(request));
         } else if (staticResourceHandler.isPresent() && staticResourceHandler.get().shouldHandle(request.path)) {
-            return CompletableFuture.completedFuture(staticResourceHandler.get().handle(request.path));
+            return CompletableFuture.completedFuture(staticResourceHandler.get().handle(request));
         } else {
             return handlePage(request);
         }
     }
 
-    private HttpResponse jsClientBundleResponse() {
-        final InputStream inputStream = this.getClass().getResourceAsStream(JS_CLIENT_BUNDLE_PATH);
-        if (inputStream != null) {
-            return new HttpResponse(200,
-                                    Collections.singletonList(new Header("Content-Type", "application/javascript")),
-                                    inputStream);
+    /**
+     * @return the JS client bundle's URL with its fingerprint, or its bare path if the bundle isn't on the classpath
+     */
+    public static String jsClientBundleUrl() {
+        return JsClientBundle.URL;
+    }
+
+    private HttpResponse jsClientBundleResponse(final HttpRequest request) {
+        if (JsClientBundle.CONTENT.isPresent()) {
+            final StaticContent bundle = JsClientBundle.CONTENT.get();
+            final boolean fingerprinted = JsClientBundle.fingerprint(bundle)
+                    .equals(request.queryParameters.parameterValue(JS_CLIENT_BUNDLE_VERSION_PARAMETER));
+            return bundle.respond(request,
+                                  List.of(new Header("Cache-Control",
+                                                     fingerprinted ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL)));
         } else {
             return new HttpResponse(500,
                                     Collections.emptyList(),
@@ -72,6 +177,15 @@ public final class HttpHandler {
 
     private CompletableFuture<HttpResponse> handlePage(final HttpRequest request) {
         Objects.requireNonNull(request);
+        final long startedNanos = System.nanoTime();
+        try {
+            return renderPage(request);
+        } finally {
+            metrics.recordTime(MetricNames.HTTP_PAGE_TIME, System.nanoTime() - startedNanos);
+        }
+    }
+
+    private CompletableFuture<HttpResponse> renderPage(final HttpRequest request) {
         try {
             final String deviceId = request.cookies(DEVICE_ID_COOKIE_NAME).stream().findFirst().orElse(randomStringGenerator.newString());
             final String sessionId = randomStringGenerator.newString();
@@ -86,7 +200,10 @@ public final class HttpHandler {
 
             final ComponentContext componentContext = new ComponentContext()
                 .with(new ContextKey.ClassKey<>(QualifiedSessionId.class), pageId)
-                .with(new ContextKey.ClassKey<>(CommandsEnqueue.class), commandsEnqueue);
+                .with(new ContextKey.ClassKey<>(CommandsEnqueue.class), commandsEnqueue)
+                .with(new ContextKey.ClassKey<>(Metrics.class), metrics)
+                .with(new ContextKey.ClassKey<>(RenderScheduler.class),
+                      new RenderScheduler(commandsEnqueue, renderFrameIntervalMs, queueOptions, metrics));
 
 
             final PageBuilder pageBuilder = new PageBuilder(pageId,
@@ -113,8 +230,25 @@ public final class HttpHandler {
             }
 
             final RenderedPage pageSnapshot = new RenderedPage(pageBuilder, commandsEnqueue);
-            renderedPages.put(pageId, pageSnapshot);
-            final String responseBody = pageBuilder.html();
+            // a HEAD response has no body, so no client connects to the page
+            final boolean live = request.method != HttpMethod.HEAD;
+            if (streamingRendering) {
+                return CompletableFuture.completedFuture(new HttpResponse(pageBuilder.statusCode(),
+                                                                          renderedHeaders(pageBuilder.headers(), deviceId),
+                                                                          output -> streamPage(pageId, pageSnapshot, live, output)));
+            }
+
+            final String responseBody;
+            try {
+                responseBody = pageBuilder.html();
+            } finally {
+                if (!live) {
+                    pageBuilder.shutdown();
+                }
+            }
+            if (live) {
+                renderedPages.put(pageId, pageSnapshot, RenderedPagesStore.approximateRetainedBytes(responseBody.length()));
+            }
 
             logger.log(TRACE, () -> "Page body: " + responseBody);
 
@@ -127,6 +261,41 @@ public final class HttpHandler {
         }
     }
 
+    private void streamPage(final QualifiedSessionId pageId,
+                            final RenderedPage page,
+                            final boolean live,
+                            final OutputStream output) throws IOException {
+        final StreamingHtmlBuilder hb = new StreamingHtmlBuilder(output);
+        boolean stored = false;
+        try {
+            page.pageBuilder().html(hb);
+            if (live) {
+                // The end of the document is held back until the page is ready for the client's WebSocket
+                renderedPages.put(pageId, page, RenderedPagesStore.approximateRetainedBytes(hb.length()));
+                stored = true;
+            }
+            hb.finish();
+        } catch (final UncheckedIOException ex) {
+            discardPage(pageId, page, stored);
+            throw ex.getCause();
+        } catch (final IOException | RuntimeException ex) {
+            discardPage(pageId, page, stored);
+            throw ex;
+        }
+        if (!live) {
+            page.pageBuilder().shutdown();
+        }
+    }
+
+    /**
+     * Shuts down a page whose response failed, unless its client has connected to it already.
+     */
+    private void discardPage(final QualifiedSessionId pageId, final RenderedPage page, final boolean stored) {
+        if (!stored || renderedPages.remove(pageId) == page) {
+            page.pageBuilder().shutdown();
+        }
+    }
+
     private List<Header> renderedHeaders(final Map<String, List<String>> headers, final String deviceId) {
         Objects.requireNonNull(headers);
         Objects.requireNonNull(deviceId);
@@ -146,4 +315,32 @@ public final class HttpHandler {
                 return resultHeaders;
 
     }
+
+    /**
+     * The JS client bundle, read from the classpath once.
+     */
+    private static final class JsClientBundle {
+        private static final Optional<StaticContent> CONTENT = load();
+        private static final String URL = CONTENT.map(bundle -> JS_CLIENT_BUNDLE_PATH + "?" + JS_CLIENT_BUNDLE_VERSION_PARAMETER
+                                                                + "=" + fingerprint(bundle))
+                                                 .orElse(JS_CLIENT_BUNDLE_PATH);
+
+        private static Optional<StaticContent> load() {
+            try (InputStream inputStream = HttpHandler.class.getResourceAsStream(JS_CLIENT_BUNDLE_PATH)) {
+                if (inputStream == null) {
+                    return Optional.empty();
+                }
+                return Optional.of(StaticContent.of(inputStream.readAllBytes(),
+                                                    "application/javascript",
+                                                    System.currentTimeMillis()));
+            } catch (final IOException ex) {
+                throw new UncheckedIOException("Failed to read the JS client bundle", ex);
+            }
+        }
+
+        private static String fingerprint(final StaticContent bundle) {
+            final String etag = bundle.etag();
+            return etag.substring(1, etag.length() - 1);
+        }
+    }
 }
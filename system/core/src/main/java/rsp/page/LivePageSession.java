@@ -5,37 +5,128 @@ import rsp.dom.DomEventEntry;
 import rsp.dom.NodeId;
 import rsp.dom.TreePositionPath;
 import rsp.dsl.Window;
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
 import rsp.page.events.*;
 import rsp.ref.Ref;
 import rsp.server.ExtractPropertyResponse;
 import rsp.server.RemoteOut;
+import rsp.util.TimerWheel;
 import rsp.util.json.JsonDataType;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.WARNING;
 import static rsp.page.PageBuilder.DOCUMENT_DOM_PATH;
 
 /**
  * A server-side session object representing an open and connected browser's page / tab.
  * Every live page session has its events loop thread.
+ * <p>
+ * A session created with {@link SessionResumeOptions#enabled()} numbers the renders it sends, keeps the commands
+ * its client has not acknowledged yet and can be parked when its connection is lost and resumed on a new one,
+ * see {@link ParkSessionCommand} and {@link ResumeSessionCommand}.
+ * <p>
+ * The results of JavaScript evaluations and of DOM properties reads which don't arrive within the remote requests
+ * timeout fail with a {@link java.util.concurrent.TimeoutException}, the ones still pending when the session
+ * is shut down fail with a {@link CancellationException}.
  */
 public final class LivePageSession implements Consumer<Command> {
     private static final System.Logger logger = System.getLogger(LivePageSession.class.getName());
 
-    private final Map<Integer, CompletableFuture<JsonDataType>> registeredEventHandlers = new HashMap<>();
+    /**
+     * The DOM event types a client fires continuously, where only the latest event of a burst matters.
+     */
+    private static final Set<String> COALESCIBLE_EVENT_TYPES = Set.of("mousemove",
+                                                                      "pointermove",
+                                                                      "touchmove",
+                                                                      "scroll",
+                                                                      "wheel",
+                                                                      "input");
+
+    /**
+     * The default time to wait for a result of a request to the browser.
+     */
+    public static final long DEFAULT_REMOTE_REQUEST_TIMEOUT_MS = 30_000;
+
     private final Reactor<Command> reactor;
+    private final RemoteRequests remoteRequests;
+    private final ReplayBuffer replayBuffer;
+    private final Metrics metrics;
 
     private PageBuilder pageRenderContext;
+    private EventDispatchTable eventDispatchTable;
     private RemoteOut remoteOut;
-    private int descriptorsCounter;
 
     public LivePageSession(final EventLoop eventLoop) {
-        this.reactor = new Reactor<>(this, Objects.requireNonNull(eventLoop));
+        this(eventLoop, SessionResumeOptions.disabled());
+    }
+
+    /**
+     * Creates a session.
+     * @param eventLoop runs the session's events, must not be null
+     * @param resumeOptions whether the session can be parked and resumed, must not be null
+     */
+    public LivePageSession(final EventLoop eventLoop, final SessionResumeOptions resumeOptions) {
+        this(eventLoop, resumeOptions, Metrics.noop());
+    }
+
+    /**
+     * Creates a session which records the time of its DOM events handling and of its events queue.
+     * @param eventLoop runs the session's events, must not be null
+     * @param resumeOptions whether the session can be parked and resumed, must not be null
+     * @param metrics the server's metrics, must not be null
+     */
+    public LivePageSession(final EventLoop eventLoop, final SessionResumeOptions resumeOptions, final Metrics metrics) {
+        this(eventLoop, resumeOptions, SessionQueueOptions.defaults(), metrics);
+    }
+
+    /**
+     * Creates a session with a bounded events queue.
+     * @param eventLoop runs the session's events, must not be null
+     * @param resumeOptions whether the session can be parked and resumed, must not be null
+     * @param queueOptions the capacity of the session's events queue and what happens when it overflows,
+     *                     must not be null
+     * @param metrics the server's metrics, must not be null
+     */
+    public LivePageSession(final EventLoop eventLoop,
+                           final SessionResumeOptions resumeOptions,
+                           final SessionQueueOptions queueOptions,
+                           final Metrics metrics) {
+        this(eventLoop, resumeOptions, queueOptions, DEFAULT_REMOTE_REQUEST_TIMEOUT_MS, metrics);
+    }
+
+    /**
+     * Creates a session with a bounded events queue and a timeout for the requests to its browser.
+     * @param eventLoop runs the session's events, must not be null
+     * @param resumeOptions whether the session can be parked and resumed, must not be null
+     * @param queueOptions the capacity of the session's events queue and what happens when it overflows,
+     *                     must not be null
+     * @param remoteRequestTimeoutMs how long to wait for a result of a JavaScript evaluation or a DOM property read,
+     *                               in milliseconds, 0 for no timeout
+     * @param metrics the server's metrics, must not be null
+     */
+    public LivePageSession(final EventLoop eventLoop,
+                           final SessionResumeOptions resumeOptions,
+                           final SessionQueueOptions queueOptions,
+                           final long remoteRequestTimeoutMs,
+                           final Metrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+        this.reactor = new Reactor<>(this,
+                                     Objects.requireNonNull(eventLoop),
+                                     this::flush,
+                                     metrics,
+                                     Objects.requireNonNull(queueOptions),
+                                     LivePageSession::coalescingKey,
+                                     this::overloaded);
+        this.remoteRequests = new RemoteRequests(TimerWheel.shared(), remoteRequestTimeoutMs, reactor, metrics);
+        this.replayBuffer = resumeOptions.enabled() ? new ReplayBuffer(resumeOptions.maxBufferedCommands()) : null;
     }
 
     public Consumer<Command> eventsConsumer() {
@@ -53,11 +144,18 @@ public final class LivePageSession implements Consumer<Command> {
             case InitSessionCommand e -> init(e);
             case SessionCustomEvent e -> handleDomEvent(0, e.nodeId(), e.customEvent().eventName(), e.customEvent().eventData());
             case ComponentEventNotification e -> handleComponentEvent(e.eventType(), e.eventObject());
-            case DomEventNotification e -> handleDomEvent(e.renderNumber(), e.nodeId(), e.eventType(), e.eventObject());
+            case DomEventNotification e -> {
+                acknowledge(e.renderNumber());
+                handleDomEvent(e.renderNumber(), e.nodeId(), e.eventType(), e.eventObject());
+            }
+            case RenderAcknowledgedEvent e -> acknowledge(e.renderNumber());
             case EvalJsResponseEvent e -> handleEvalJsResponse(e.descriptorId(), e.value());
             case ExtractPropertyResponseEvent e -> handleExtractPropertyResponse(e.descriptorId(), e.result());
-            case RemoteCommand e -> e.accept(remoteOut);
+            case ExtractPropertiesResponseEvent e -> handleExtractPropertiesResponse(e.descriptorId(), e.values());
+            case RemoteCommand e -> sendRemoteCommand(e);
             case GenericTaskEvent e -> e.task().run();
+            case ParkSessionCommand _ -> park();
+            case ResumeSessionCommand e -> resume(e.remoteOut(), e.lastRenderNumber());
             case ShutdownSessionCommand _ -> shutdown();
         }
     }
@@ -66,44 +164,146 @@ public final class LivePageSession implements Consumer<Command> {
         this.pageRenderContext = Objects.requireNonNull(initSessionEvent.pageRenderContext());
         this.remoteOut = Objects.requireNonNull(initSessionEvent.remoteOut());
         initSessionEvent.commandsEnqueue().redirect(reactor);
-        this.accept(new RemoteCommand.ListenEvent(pageRenderContext.recursiveEvents()
-                                                                   .stream()
-                                                                   .toList()));
+        this.eventDispatchTable = new EventDispatchTable(pageRenderContext::recursiveComponentEvents);
+        this.accept(new RemoteCommand.ListenEvent(pageRenderContext.indexEvents(eventDispatchTable)));
+    }
+
+    private void sendRemoteCommand(final RemoteCommand command) {
+        if (replayBuffer != null && isReplayed(command)) {
+            replayBuffer.add(command);
+        }
+        if (remoteOut != null) {
+            command.accept(remoteOut);
+        }
+    }
+
+    /**
+     * Only the commands changing the page's DOM and location are replayed. Events subscriptions are not,
+     * a resumed client gets all the current ones at once. Scripts and property reads are not either, replaying
+     * them would repeat their side effects on the client and answer requests nobody waits for anymore.
+     */
+    private static boolean isReplayed(final RemoteCommand command) {
+        return command instanceof RemoteCommand.ModifyDom
+               || command instanceof RemoteCommand.PushHistory
+               || command instanceof RemoteCommand.SetHref;
+    }
+
+    /**
+     * Sends the remote commands of the current event loop turn, which a batching {@link RemoteOut} may hold.
+     * With a replay buffer, the turn's commands make a render, followed by its number.
+     */
+    private void flush() {
+        if (replayBuffer != null) {
+            final int renderNumber = replayBuffer.endRender();
+            if (renderNumber > 0 && remoteOut != null) {
+                remoteOut.setRenderNum(renderNumber);
+            }
+        }
+        if (remoteOut != null) {
+            remoteOut.flush();
+        }
+    }
+
+    private void acknowledge(final int renderNumber) {
+        if (replayBuffer != null) {
+            replayBuffer.acknowledge(renderNumber);
+        }
+    }
+
+    private void park() {
+        logger.log(DEBUG, () -> "Live Page parked: " + this);
+        if (replayBuffer != null) {
+            // the commands sent to the lost connection before it closed are replayed as a render of their own
+            replayBuffer.endRender();
+        }
+        remoteOut = null;
+    }
+
+    private void resume(final RemoteOut newRemoteOut, final int lastRenderNumber) {
+        final List<RemoteCommand> missedCommands = replayBuffer != null ? replayBuffer.commandsAfter(lastRenderNumber)
+                                                                        : null;
+        if (missedCommands == null) {
+            logger.log(DEBUG, () -> "Live Page can't resume from render " + lastRenderNumber + ": " + this);
+            newRemoteOut.evalJs(-1, "RSP.reload()");
+            newRemoteOut.flush();
+            shutdown();
+            return;
+        }
+        logger.log(DEBUG, () -> "Live Page resumed from render " + lastRenderNumber
+                                + ", replaying " + missedCommands.size() + " commands: " + this);
+        remoteOut = newRemoteOut;
+        for (final RemoteCommand command : missedCommands) {
+            command.accept(remoteOut);
+        }
+        remoteOut.listenEvents(pageRenderContext.recursiveEvents());
+        remoteOut.setRenderNum(replayBuffer.renderNumber());
     }
 
     private void shutdown() {
         logger.log(DEBUG, () -> "Live Page shutdown: " + this);
-        pageRenderContext.shutdown();
+        if (pageRenderContext != null) {
+            pageRenderContext.shutdown();
+        }
+        final int orphaned = remoteRequests.failAll(new CancellationException("The live page session was shut down"));
+        if (orphaned > 0) {
+            metrics.incrementCounter(MetricNames.SESSION_REMOTE_REQUESTS_ORPHANED, orphaned);
+        }
         reactor.stop();
     }
 
+    /**
+     * Runs after the session's queue overflowed with {@link SessionQueueOptions.OverflowPolicy#DISCONNECT}
+     * and dropped the queued events, so the page can't be kept consistent with its client.
+     */
+    private void overloaded() {
+        logger.log(WARNING, () -> "Live Page overloaded, shutting down: " + this);
+        if (remoteOut != null) {
+            remoteOut.evalJs(-1, "RSP.reload()");
+            remoteOut.flush();
+        }
+        shutdown();
+    }
+
+    /**
+     * Under {@link SessionQueueOptions.OverflowPolicy#DROP_OLDEST}, a high-frequency DOM event, such as a
+     * {@code mousemove}, replaces a queued one of the same type on the same element, and a render acknowledgement
+     * replaces an older one. Discrete events, such as a {@code click}, a {@code submit} or a {@code keydown}, are user
+     * input which must not be lost, so they are never dropped: a queue full of them overflows as with
+     * {@link SessionQueueOptions.OverflowPolicy#DISCONNECT}.
+     */
+    private static Object coalescingKey(final Command command) {
+        return switch (command) {
+            case DomEventNotification e when COALESCIBLE_EVENT_TYPES.contains(e.eventType())
+                    -> new DomEventKey(e.nodeId(), e.eventType());
+            case RenderAcknowledgedEvent _ -> RenderAcknowledgedEvent.class;
+            default -> null;
+        };
+    }
+
+    private record DomEventKey(NodeId nodeId, String eventType) {
+    }
+
     private void handleExtractPropertyResponse(final int descriptorId, final ExtractPropertyResponse result) {
         Objects.requireNonNull(result);
         if (result instanceof ExtractPropertyResponse.NotFound) {
             logger.log(DEBUG, () -> "extractProperty: " + descriptorId + " failed");
-            final CompletableFuture<JsonDataType> cf = registeredEventHandlers.get(descriptorId);
-            if (cf != null) {
-                cf.completeExceptionally(new RuntimeException("Extract property: " + descriptorId + " not found"));
-                registeredEventHandlers.remove(descriptorId);
-            }
+            remoteRequests.fail(descriptorId, new RuntimeException("Extract property: " + descriptorId + " not found"));
         } else if (result instanceof ExtractPropertyResponse.Value(JsonDataType value)) {
             logger.log(DEBUG, () -> "extractProperty: " + descriptorId + " value: " + value);
-            final CompletableFuture<JsonDataType> cf = registeredEventHandlers.get(descriptorId);
-            if (cf != null) {
-                cf.complete(value);
-                registeredEventHandlers.remove(descriptorId);
-            }
+            remoteRequests.complete(descriptorId, value);
         }
     }
 
+    private void handleExtractPropertiesResponse(final int descriptorId, final JsonDataType.Object values) {
+        Objects.requireNonNull(values);
+        logger.log(DEBUG, () -> "extractProperties: " + descriptorId + " values: " + values);
+        remoteRequests.complete(descriptorId, values);
+    }
+
     private void handleEvalJsResponse(final int descriptorId, final JsonDataType value) {
         Objects.requireNonNull(value);
         logger.log(DEBUG, () -> "evalJsResponse: " + descriptorId + " value: " + value.toString());
-        final CompletableFuture<JsonDataType> cf = registeredEventHandlers.get(descriptorId);
-        if (cf != null) {
-            cf.complete(value);
-            registeredEventHandlers.remove(descriptorId);
-        }
+        remoteRequests.complete(descriptorId, value);
     }
 
     private void handleDomEvent(final int renderNumber,
@@ -114,14 +314,11 @@ public final class LivePageSession implements Consumer<Command> {
         Objects.requireNonNull(eventType);
         Objects.requireNonNull(eventObject);
         logger.log(DEBUG, () -> "DOM event " + renderNumber + ", nodeId: " + nodeId + ", type: " + eventType + ", event data: " + eventObject);
+        final long startedNanos = System.nanoTime();
         NodeId currentNodeId = nodeId;
         while (currentNodeId.elementsCount() >= 0) {
-            for (final DomEventEntry event: pageRenderContext.recursiveEvents()) {
-                if (event instanceof DomEventEntry domEventEntry
-                    && domEventEntry.eventTarget.nodeId().equals(currentNodeId)
-                    && event.eventName.equals(eventType)) {
-                    event.eventHandler.accept(createEventContext(currentNodeId, eventObject));
-                }
+            for (final DomEventEntry event: eventDispatchTable.domEvents(currentNodeId, eventType)) {
+                event.eventHandler.accept(createEventContext(currentNodeId, eventObject));
             }
             if (currentNodeId.elementsCount() > 0) {
                 currentNodeId = currentNodeId.parent();
@@ -129,16 +326,15 @@ public final class LivePageSession implements Consumer<Command> {
                 break;
             }
         }
+        metrics.recordTime(MetricNames.SESSION_DOM_EVENT_TIME, System.nanoTime() - startedNanos);
     }
 
     private void handleComponentEvent(final String eventType,
                                       final Object eventObject) {
         Objects.requireNonNull(eventType);
         Objects.requireNonNull(eventObject);
-        for (final ComponentEventEntry event: pageRenderContext.recursiveComponentEvents()) {
-            if (event.matches(eventType)) {
-                event.eventHandler().accept(new ComponentEventEntry.EventContext(eventType, eventObject));
-            }
+        for (final ComponentEventEntry event: eventDispatchTable.componentEvents(eventType)) {
+            event.eventHandler().accept(new ComponentEventEntry.EventContext(eventType, eventObject));
         }
     }
 
@@ -160,7 +356,7 @@ public final class LivePageSession implements Consumer<Command> {
         if (nodeId == null) {
             throw new IllegalStateException("Ref not found: " + ref);
         }
-        return new PropertiesHandle(nodeId, () -> ++descriptorsCounter, registeredEventHandlers, this);
+        return new PropertiesHandle(nodeId, remoteRequests::register, this);
     }
 
     private NodeId resolveRef(final Ref ref) {
@@ -172,9 +368,8 @@ public final class LivePageSession implements Consumer<Command> {
     private CompletableFuture<JsonDataType> evalJs(final String js) {
         Objects.requireNonNull(js);
         logger.log(DEBUG, () -> "Called an JS evaluation: " + js);
-        final int newDescriptor = ++descriptorsCounter;
         final CompletableFuture<JsonDataType> resultHandler = new CompletableFuture<>();
-        registeredEventHandlers.put(newDescriptor, resultHandler);
+        final int newDescriptor = remoteRequests.register(resultHandler);
         this.accept(new RemoteCommand.EvalJs(newDescriptor, js));
         return resultHandler;
     }
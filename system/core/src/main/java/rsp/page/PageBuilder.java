@@ -12,7 +12,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 
-import static rsp.page.HttpHandler.JS_CLIENT_BUNDLE_PATH;
+import static rsp.page.HttpHandler.jsClientBundleUrl;
 
 /**
  * A mutable collector of a component segments tree, HTTP headers and a status code for materializing of an HTML page.
@@ -82,7 +82,7 @@ public final class PageBuilder extends TreeBuilder {
         super.closeNode("script", false);
 
         super.openNode(XmlNs.html, "script", false);
-        super.setAttr(XmlNs.html, "src", JS_CLIENT_BUNDLE_PATH, false);
+        super.setAttr(XmlNs.html, "src", jsClientBundleUrl(), false);
         super.setAttr(XmlNs.html, "defer", "defer", true);
         super.closeNode("script", true);
     }
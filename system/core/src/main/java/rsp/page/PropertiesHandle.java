@@ -10,41 +10,55 @@ import rsp.util.json.JsonDataType;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 public final class PropertiesHandle {
     private final NodeId nodeId;
-    private final Supplier<Integer> descriptorSupplier;
-    private final Map<Integer, CompletableFuture<JsonDataType>> registeredEventHandlers;
+    private final ToIntFunction<CompletableFuture<JsonDataType>> requests;
     private final Consumer<Command> remoteOut;
 
+    /**
+     * @param nodeId the DOM element's id, must not be null
+     * @param requests registers a future for a result from the browser and returns its descriptor, must not be null
+     * @param remoteOut the commands to the browser, must not be null
+     */
     public PropertiesHandle(final NodeId nodeId,
-                            final Supplier<Integer> descriptorSupplier,
-                            final Map<Integer, CompletableFuture<JsonDataType>> registeredEventHandlers,
+                            final ToIntFunction<CompletableFuture<JsonDataType>> requests,
                             final Consumer<Command> remoteOut) {
         this.nodeId = Objects.requireNonNull(nodeId);
-        this.descriptorSupplier = Objects.requireNonNull(descriptorSupplier);
-        this.registeredEventHandlers = Objects.requireNonNull(registeredEventHandlers);
+        this.requests = Objects.requireNonNull(requests);
         this.remoteOut = Objects.requireNonNull(remoteOut);
     }
 
     /**
      * Reads a property of a DOM element
      * @param propertyName a property name
-     * @return CompletableFuture of the JSON data type
+     * @return CompletableFuture of the JSON data type, completed exceptionally with a
+     *         {@link java.util.concurrent.TimeoutException} if the browser doesn't respond in time
      */
     public CompletableFuture<JsonDataType> get(final String propertyName) {
         Objects.requireNonNull(propertyName);
-        final Integer newDescriptor = descriptorSupplier.get();
         final CompletableFuture<JsonDataType> valueFuture = new CompletableFuture<>();
-        registeredEventHandlers.put(newDescriptor, valueFuture);
+        final int newDescriptor = requests.applyAsInt(valueFuture);
         remoteOut.accept(new RemoteCommand.ExtractProperty(newDescriptor, nodeId, propertyName));
         return valueFuture;
     }
 
+    /**
+     * Reads several properties of a DOM element in one round trip.
+     * @param propertyNames the properties' names, must not be null
+     * @return CompletableFuture of a JSON object of the values by property name,
+     *         where an undefined property or a function is absent
+     */
+    public CompletableFuture<JsonDataType.Object> getAll(final Set<String> propertyNames) {
+        Objects.requireNonNull(propertyNames);
+        return extract(Map.of(nodeId, Set.copyOf(propertyNames))).thenApply(values -> elementValues(values, nodeId));
+    }
+
     public CompletionStage<String> getString(final String propertyName) {
         Objects.requireNonNull(propertyName);
         return get(propertyName).thenApply(v -> v.toString());
@@ -57,5 +71,25 @@ public final class PropertiesHandle {
         return new CompletableFuture<>();
     }
 
+    NodeId nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Reads properties of this or other elements of the same page in one round trip.
+     * @param properties the names of the properties by the id of their element
+     * @return CompletableFuture of a JSON object of the values by element id and by property name
+     */
+    CompletableFuture<JsonDataType.Object> extract(final Map<NodeId, Set<String>> properties) {
+        final CompletableFuture<JsonDataType> valuesFuture = new CompletableFuture<>();
+        final int newDescriptor = requests.applyAsInt(valuesFuture);
+        remoteOut.accept(new RemoteCommand.ExtractProperties(newDescriptor, properties));
+        return valuesFuture.thenApply(values -> values instanceof JsonDataType.Object o ? o : JsonDataType.Object.EMPTY);
+    }
+
+    static JsonDataType.Object elementValues(final JsonDataType.Object values, final NodeId nodeId) {
+        return values.value(nodeId.toString()) instanceof JsonDataType.Object o ? o : JsonDataType.Object.EMPTY;
+    }
+
 
 }
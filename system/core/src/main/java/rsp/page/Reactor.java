@@ -1,8 +1,17 @@
 package rsp.page;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
+import rsp.metrics.NoOpMetrics;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static java.lang.System.Logger;
 
@@ -10,14 +19,52 @@ import static java.lang.System.Logger;
  * A Reactor is responsible for processing a sequential queue of events for a single component session.
  * It ensures that events are processed one at a time in a single-threaded manner.
  * The execution of the event loop is delegated to an {@link EventLoop}.
+ * <p>
+ * The queue may be bounded, see {@link SessionQueueOptions}. Events accepted on the event loop's own thread
+ * bypass the bound, so that handling an event never waits for itself.
+ * <p>
+ * With an event loop which {@link EventLoop#runsOnDemand() runs on demand}, a step takes an event without waiting
+ * and every queued event {@link EventLoop#wakeUp() wakes the loop up}, so an idle reactor holds no thread.
  * @param <T> the type of events in the queue
  */
 public final class Reactor<T> implements Consumer<T> {
     private static final Logger logger = System.getLogger(Reactor.class.getName());
 
-    private final BlockingQueue<T> eventsQueue = new LinkedBlockingDeque<>();
+    /**
+     * Put into the queue in place of its events when it overflows with {@link SessionQueueOptions.OverflowPolicy#DISCONNECT}.
+     */
+    private static final Object OVERLOADED = new Object();
+
+    /**
+     * Holds the events, or {@link Queued} events when the queue is measured. Guarded by {@link #lock}.
+     */
+    private final ArrayDeque<Object> eventsQueue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
     private final Consumer<T> consumer;
     private final EventLoop eventLoop;
+    private final Runnable queueDrained;
+    private final Metrics metrics;
+    private final int capacity;
+    private final SessionQueueOptions.OverflowPolicy overflowPolicy;
+    private final Function<? super T, Object> coalescingKey;
+    private final Runnable overloaded;
+    /**
+     * Whether events are timestamped on their way through the queue, only for a recording metrics implementation,
+     * so that the default one costs no allocation per event.
+     */
+    private final boolean measured;
+
+    /**
+     * Whether the queue refuses all events, after {@link #stop()} or an overload. Guarded by {@link #lock}.
+     */
+    private boolean closed;
+    /**
+     * The thread running a step, so that events it accepts bypass the capacity.
+     */
+    private volatile Thread loopThread;
+    private boolean onDemand;
 
     /**
      * Creates a new Reactor.
@@ -25,8 +72,65 @@ public final class Reactor<T> implements Consumer<T> {
      * @param eventLoop the execution context that runs the event loop
      */
     public Reactor(final Consumer<T> consumer, final EventLoop eventLoop) {
+        this(consumer, eventLoop, () -> {});
+    }
+
+    /**
+     * Creates a new Reactor with an end of turn callback.
+     * @param consumer the business logic that consumes events
+     * @param eventLoop the execution context that runs the event loop
+     * @param queueDrained runs on the event loop after an event is processed and no more events are queued,
+     *                     so that the results of a burst of events can be handled together
+     */
+    public Reactor(final Consumer<T> consumer, final EventLoop eventLoop, final Runnable queueDrained) {
+        this(consumer, eventLoop, queueDrained, Metrics.noop());
+    }
+
+    /**
+     * Creates a new Reactor which records its queue's depth and the time its events wait in the queue.
+     * @param consumer the business logic that consumes events
+     * @param eventLoop the execution context that runs the event loop
+     * @param queueDrained runs on the event loop after an event is processed and no more events are queued
+     * @param metrics records {@link MetricNames#SESSION_QUEUE_DEPTH} and {@link MetricNames#SESSION_QUEUE_WAIT_TIME},
+     *                must not be null
+     */
+    public Reactor(final Consumer<T> consumer,
+                   final EventLoop eventLoop,
+                   final Runnable queueDrained,
+                   final Metrics metrics) {
+        this(consumer, eventLoop, queueDrained, metrics, SessionQueueOptions.unbounded(), _ -> null, () -> {});
+    }
+
+    /**
+     * Creates a new Reactor with a bounded queue.
+     * @param consumer the business logic that consumes events
+     * @param eventLoop the execution context that runs the event loop
+     * @param queueDrained runs on the event loop after an event is processed and no more events are queued
+     * @param metrics records the queue's depth, waiting time, and its rejected, coalesced and blocked events,
+     *                must not be null
+     * @param queueOptions the queue's capacity and overflow policy, must not be null
+     * @param coalescingKey gives the key of a coalescible event, a newer event replaces a queued one with an equal key
+     *                      under {@link SessionQueueOptions.OverflowPolicy#DROP_OLDEST}, or null for other events;
+     *                      must not be null
+     * @param overloaded runs on the event loop after the queue overflowed
+     *                   with {@link SessionQueueOptions.OverflowPolicy#DISCONNECT} and was closed, must not be null
+     */
+    public Reactor(final Consumer<T> consumer,
+                   final EventLoop eventLoop,
+                   final Runnable queueDrained,
+                   final Metrics metrics,
+                   final SessionQueueOptions queueOptions,
+                   final Function<? super T, Object> coalescingKey,
+                   final Runnable overloaded) {
         this.consumer = consumer;
         this.eventLoop = eventLoop;
+        this.queueDrained = Objects.requireNonNull(queueDrained);
+        this.metrics = Objects.requireNonNull(metrics);
+        this.measured = !(metrics instanceof NoOpMetrics);
+        this.capacity = queueOptions.capacity();
+        this.overflowPolicy = queueOptions.overflowPolicy();
+        this.coalescingKey = Objects.requireNonNull(coalescingKey);
+        this.overloaded = Objects.requireNonNull(overloaded);
     }
 
     /**
@@ -34,55 +138,245 @@ public final class Reactor<T> implements Consumer<T> {
      * This will begin the process of repeatedly executing the event processing step.
      */
     public void start() {
+        onDemand = eventLoop.runsOnDemand();
         eventLoop.start(this::processNextEvent);
     }
 
     /**
      * Stops the event loop by delegating to the {@link EventLoop}.
+     * The queue refuses events from now on, producers waiting for a place give up.
      */
     public void stop()  {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
         eventLoop.stop();
     }
 
     /**
      * Accepts a new event and adds it to the processing queue.
-     * This method is thread-safe.
+     * This method is thread-safe. If the queue is full, the event is handled by the queue's overflow policy,
+     * so the calling thread may wait for a place.
      * @param s the event to be processed
      */
     @Override
     public void accept(T s) {
+        final Object element = measured ? new Queued(s, System.nanoTime()) : s;
+        final int depth;
+        lock.lock();
         try {
-            eventsQueue.put(s);
-        } catch (InterruptedException e) {
-            logger.log(Logger.Level.ERROR, "Event loop queue put InterruptedException", e);
-            Thread.currentThread().interrupt();
+            // a closed queue, which may hold the overload marker, rejects the event below
+            if (!closed && eventsQueue.size() >= capacity && Thread.currentThread() != loopThread
+                && !makeRoom(s, element)) {
+                return;
+            }
+            if (closed) {
+                metrics.incrementCounter(MetricNames.SESSION_QUEUE_REJECTED);
+                return;
+            }
+            eventsQueue.addLast(element);
+            depth = eventsQueue.size();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        eventLoop.wakeUp();
+        if (measured) {
+            metrics.recordValue(MetricNames.SESSION_QUEUE_DEPTH, depth);
         }
     }
 
+    /**
+     * Applies the overflow policy to a full queue, called holding the lock.
+     * @param element the event as it is queued
+     * @return whether the event is still to be added
+     */
+    private boolean makeRoom(final T event, final Object element) {
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                metrics.incrementCounter(MetricNames.SESSION_QUEUE_BLOCKED);
+                try {
+                    // lets a ForkJoinPool add a worker while one of its workers, e.g. another page's loop, waits
+                    ForkJoinPool.managedBlock(new NotFullBlocker());
+                } catch (final InterruptedException e) {
+                    logger.log(Logger.Level.ERROR, "Event loop queue put InterruptedException", e);
+                    Thread.currentThread().interrupt();
+                    metrics.incrementCounter(MetricNames.SESSION_QUEUE_REJECTED);
+                    return false;
+                }
+                return true;
+            }
+            case DROP_OLDEST -> {
+                final Object key = coalescingKey.apply(event);
+                if (key != null && replaceQueued(key, element)) {
+                    metrics.incrementCounter(MetricNames.SESSION_QUEUE_COALESCED);
+                    return false;
+                }
+                final Iterator<Object> queued = eventsQueue.iterator();
+                while (queued.hasNext()) {
+                    if (coalescingKey.apply(event(queued.next(), false)) != null) {
+                        queued.remove();
+                        metrics.incrementCounter(MetricNames.SESSION_QUEUE_REJECTED);
+                        return true;
+                    }
+                }
+                if (key != null) {
+                    metrics.incrementCounter(MetricNames.SESSION_QUEUE_REJECTED);
+                    return false;
+                }
+                // nothing can be shed without losing a state update, the queue is not to grow beyond its capacity
+                return disconnect();
+            }
+            case DISCONNECT -> {
+                return disconnect();
+            }
+        }
+        throw new IllegalStateException("Unknown overflow policy: " + overflowPolicy);
+    }
+
+    /**
+     * Replaces the oldest queued event with the given coalescing key in its place, called holding the lock.
+     * @return whether there was such an event
+     */
+    private boolean replaceQueued(final Object key, final Object element) {
+        int index = 0;
+        for (final Object queued : eventsQueue) {
+            if (key.equals(coalescingKey.apply(event(queued, false)))) {
+                // the deque has no positional update, one rotation keeps the order of the others
+                final int size = eventsQueue.size();
+                for (int i = 0; i < size; i++) {
+                    final Object next = eventsQueue.removeFirst();
+                    eventsQueue.addLast(i == index ? element : next);
+                }
+                return true;
+            }
+            index++;
+        }
+        return false;
+    }
+
+    /**
+     * Drops the queued events and closes the queue, called holding the lock.
+     * @return false, the event is not to be added
+     */
+    private boolean disconnect() {
+        logger.log(Logger.Level.WARNING, () -> "Event loop queue overloaded, dropping "
+                                               + eventsQueue.size() + " events");
+        metrics.incrementCounter(MetricNames.SESSION_QUEUE_REJECTED, eventsQueue.size() + 1L);
+        metrics.incrementCounter(MetricNames.SESSION_OVERLOADED);
+        eventsQueue.clear();
+        eventsQueue.addLast(OVERLOADED);
+        closed = true;
+        notEmpty.signal();
+        notFull.signalAll();
+        eventLoop.wakeUp();
+        return false;
+    }
+
     /**
      * Checks if the event queue is empty.
      * This is primarily useful for testing to avoid blocking when manually stepping through events.
      * @return true if the queue is empty, false otherwise
      */
     public boolean isEmpty() {
-        return eventsQueue.isEmpty();
+        lock.lock();
+        try {
+            return eventsQueue.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next event, waiting for one unless the event loop runs on demand.
+     * @return the next event, or null if the queue of an on demand reactor is empty
+     */
+    private Object take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (eventsQueue.isEmpty()) {
+                if (onDemand) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            final Object queued = eventsQueue.pollFirst();
+            notFull.signal();
+            return queued;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Processes the next available event from the queue.
-     * This method will block until an event is available.
+     * This method will block until an event is available, unless the event loop runs on demand.
      * This represents a single step in the event loop's execution.
+     * A turn of the event loop ends when a step leaves the queue empty.
      */
     private void processNextEvent() {
+        loopThread = Thread.currentThread();
         try {
-            final T event = eventsQueue.take(); // This blocks until an event is ready
-            consumer.accept(event);
+            final Object queued = take(); // This blocks until an event is ready
+            if (queued == null) {
+                return;
+            }
+            if (queued == OVERLOADED) {
+                overloaded.run();
+                return;
+            }
+            final T event = event(queued, true);
+            try {
+                consumer.accept(event);
+            } finally {
+                if (isEmpty()) {
+                    queueDrained.run();
+                }
+            }
         } catch (final InterruptedException e) {
             // This is an expected part of the shutdown sequence, where the blocking
             // call to take() is interrupted by the EventLoop's stop() method.
             Thread.currentThread().interrupt();
         } catch (final Throwable e) {
             logger.log(Logger.Level.ERROR, "Event loop error", e);
+        } finally {
+            loopThread = null;
         }
     }
+
+    /**
+     * Waits for a place in the queue, called holding the lock.
+     */
+    private final class NotFullBlocker implements ForkJoinPool.ManagedBlocker {
+        @Override
+        public boolean block() throws InterruptedException {
+            if (!isReleasable()) {
+                notFull.await();
+            }
+            return isReleasable();
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return eventsQueue.size() < capacity || closed;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T event(final Object queued, final boolean dequeued) {
+        if (queued instanceof Queued(Object event, long enqueuedNanos)) {
+            if (dequeued) {
+                metrics.recordTime(MetricNames.SESSION_QUEUE_WAIT_TIME, System.nanoTime() - enqueuedNanos);
+            }
+            return (T) event;
+        }
+        return (T) queued;
+    }
+
+    private record Queued(Object event, long enqueuedNanos) {
+    }
 }
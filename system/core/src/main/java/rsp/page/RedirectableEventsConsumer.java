@@ -8,19 +8,19 @@ import java.util.function.Consumer;
 
 /**
  * Initially commands are enqueued but after a redirect those commands are moved to the new destination and all new commands also sent there.
+ * Commands are delivered to the destination outside of this object's monitor, so a destination that blocks a producer,
+ * like a full {@link Reactor} under {@link SessionQueueOptions.OverflowPolicy#BLOCK}, does not stall other producers,
+ * including the event loop thread itself.
  */
 public final class RedirectableEventsConsumer implements CommandsEnqueue {
 
-    private final Queue<Command> queue = new LinkedList<>();
-    private Consumer<Command> eventConsumer;
+    private final Queue<Command> queue = new ArrayDeque<>();
+    private volatile Consumer<Command> redirectedConsumer;
 
     /**
      * Creates a new instance with an internal queue as the destination for commands.
      */
     public RedirectableEventsConsumer() {
-        this.eventConsumer = event -> {
-            queue.add(event);
-        };
     }
 
     /**
@@ -28,21 +28,38 @@ public final class RedirectableEventsConsumer implements CommandsEnqueue {
      * @param command the input command
      */
     @Override
-    public synchronized void offer(Command command) {
-       Objects.requireNonNull(command);
-       this.eventConsumer.accept(command);
+    public void offer(final Command command) {
+        Objects.requireNonNull(command);
+        Consumer<Command> consumer = redirectedConsumer;
+        if (consumer == null) {
+            synchronized (this) {
+                consumer = redirectedConsumer;
+                if (consumer == null) {
+                    queue.add(command);
+                    return;
+                }
+            }
+        }
+        consumer.accept(command);
     }
 
     /**
      * Redirects commands to the provided destination.
+     * The queued commands are moved first, commands offered while they are being moved are queued after them.
      * @param newCommandsConsumer where to send commands.
      */
-    public synchronized void redirect(final Consumer<Command> newCommandsConsumer) {
-        eventConsumer = Objects.requireNonNull(newCommandsConsumer);
-        while (!queue.isEmpty()) {
-            final Command e = queue.remove();
-            eventConsumer.accept(e);
-
+    public void redirect(final Consumer<Command> newCommandsConsumer) {
+        Objects.requireNonNull(newCommandsConsumer);
+        while (true) {
+            final Command command;
+            synchronized (this) {
+                command = queue.poll();
+                if (command == null) {
+                    redirectedConsumer = newCommandsConsumer;
+                    return;
+                }
+            }
+            newCommandsConsumer.accept(command);
         }
     }
 }
@@ -0,0 +1,129 @@
+package rsp.page;
+
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
+import rsp.page.events.Command;
+import rsp.page.events.GenericTaskEvent;
+import rsp.util.TimerWheel;
+import rsp.util.json.JsonDataType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * The requests a live page session sent to its browser and waits for the results of,
+ * such as a JavaScript evaluation or a DOM element's property.
+ * <p>
+ * Confined to the session's event loop. A request which is not answered within its timeout is failed
+ * with a {@link TimeoutException}: the wheel's thread only enqueues the expiry as a session event,
+ * so the request's future is always completed on the event loop.
+ */
+final class RemoteRequests {
+    private static final System.Logger logger = System.getLogger(RemoteRequests.class.getName());
+
+    private final Map<Integer, Request> requests = new HashMap<>();
+    private final TimerWheel timerWheel;
+    private final long timeoutMs;
+    private final Consumer<Command> sessionEvents;
+    private final Metrics metrics;
+
+    private int descriptorsCounter;
+
+    /**
+     * @param timerWheel the wheel for the requests' deadlines, must not be null
+     * @param timeoutMs how long to wait for a result, in milliseconds, 0 for no timeout
+     * @param sessionEvents the session's events queue the expiries are enqueued to, must not be null
+     * @param metrics the server's metrics, must not be null
+     */
+    RemoteRequests(final TimerWheel timerWheel,
+                   final long timeoutMs,
+                   final Consumer<Command> sessionEvents,
+                   final Metrics metrics) {
+        if (timeoutMs < 0) {
+            throw new IllegalArgumentException("timeoutMs must not be negative");
+        }
+        this.timerWheel = Objects.requireNonNull(timerWheel);
+        this.timeoutMs = timeoutMs;
+        this.sessionEvents = Objects.requireNonNull(sessionEvents);
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Registers a new request.
+     * @return the request's descriptor to send to the browser
+     */
+    int register(final CompletableFuture<JsonDataType> result) {
+        Objects.requireNonNull(result);
+        final int descriptor = ++descriptorsCounter;
+        final TimerWheel.Timeout timeout = timeoutMs > 0
+                ? timerWheel.schedule(() -> sessionEvents.accept(new GenericTaskEvent(() -> expire(descriptor))), timeoutMs)
+                : null;
+        requests.put(descriptor, new Request(result, timeout));
+        return descriptor;
+    }
+
+    /**
+     * Completes a request with its result, a result for an unknown or expired request is ignored.
+     */
+    void complete(final int descriptor, final JsonDataType value) {
+        final Request request = remove(descriptor);
+        if (request != null) {
+            request.result.complete(value);
+        }
+    }
+
+    /**
+     * Completes a request exceptionally, an unknown or expired request is ignored.
+     */
+    void fail(final int descriptor, final Throwable ex) {
+        final Request request = remove(descriptor);
+        if (request != null) {
+            request.result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Completes all the pending requests exceptionally, for example when their session is shut down
+     * and their results will never arrive.
+     * @return the number of the failed requests
+     */
+    int failAll(final Throwable ex) {
+        Objects.requireNonNull(ex);
+        final List<Integer> descriptors = new ArrayList<>(requests.keySet());
+        for (final int descriptor : descriptors) {
+            fail(descriptor, ex);
+        }
+        return descriptors.size();
+    }
+
+    int size() {
+        return requests.size();
+    }
+
+    private Request remove(final int descriptor) {
+        final Request request = requests.remove(descriptor);
+        if (request != null && request.timeout != null) {
+            request.timeout.cancel();
+        }
+        return request;
+    }
+
+    private void expire(final int descriptor) {
+        final Request request = requests.remove(descriptor);
+        if (request != null) {
+            logger.log(System.Logger.Level.DEBUG, () -> "Remote request " + descriptor + " timed out after " + timeoutMs + " ms");
+            metrics.incrementCounter(MetricNames.SESSION_REMOTE_REQUESTS_TIMED_OUT);
+            request.result.completeExceptionally(
+                    new TimeoutException("Remote request " + descriptor + " timed out after " + timeoutMs + " ms"));
+        }
+    }
+
+    private record Request(CompletableFuture<JsonDataType> result, TimerWheel.Timeout timeout) {
+    }
+}
@@ -0,0 +1,255 @@
+package rsp.page;
+
+import rsp.component.CommandsEnqueue;
+import rsp.component.ComponentSegment;
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
+import rsp.page.events.GenericTaskEvent;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.lang.System.Logger.Level.ERROR;
+
+/**
+ * Coalesces the deferred state updates of a page's components into one re-render per component per flush.
+ * <p>
+ * State updaters handed to component callbacks, for example to a service pushing updates into a widget,
+ * mark their segment dirty here instead of posting a render task per update. Transformations scheduled
+ * for the same segment before a flush are kept in a list and applied one after another, in the order they were
+ * scheduled, with one re-render.
+ * <p>
+ * The number of pending transformations is bounded by the session queue's {@link SessionQueueOptions#capacity()}.
+ * A transformation beyond it is posted to the page's commands queue as a task of its own, which applies the pending
+ * ones first. So a runaway producer meets the session queue's {@link SessionQueueOptions.OverflowPolicy}: it waits
+ * for a place, or the session disconnects, as state updates are never dropped. While such tasks are queued, later
+ * transformations follow them the same way, keeping their order.
+ * <p>
+ * A flush runs on the page's event loop, as a task enqueued with the first update after the previous flush,
+ * or after the frame interval if one is configured. It renders dirty segments parents first. A dirty segment
+ * below another dirty segment is not rendered on its own: its folded transformation is staged and applied
+ * when the ancestor's re-render reuses it, and applied separately only if that did not happen. A synchronous
+ * update of such a segment during the flush applies the staged transformation first, keeping their order.
+ * <p>
+ * A page has one scheduler, available to its components from the root {@link rsp.component.ComponentContext}.
+ * {@link #schedule} is thread-safe; a flush must run on the page's event loop thread.
+ */
+public final class RenderScheduler {
+    private static final System.Logger logger = System.getLogger(RenderScheduler.class.getName());
+
+    private final CommandsEnqueue commandsEnqueue;
+    private final long frameIntervalMs;
+    private final Metrics metrics;
+
+    private final int capacity;
+
+    private final Map<ComponentSegment<?>, List<Function<Object, Optional<Object>>>> pending = new IdentityHashMap<>();
+    private final List<ComponentSegment<?>> pendingOrder = new ArrayList<>();
+    private int pendingCount;
+    /**
+     * The transformations posted as tasks of their own and not applied yet.
+     */
+    private int overflowedCount;
+    private boolean flushRequested;
+
+    /**
+     * Creates a scheduler.
+     * @param commandsEnqueue the page's commands queue, must not be null
+     * @param frameIntervalMs how long a flush waits after the first update, in milliseconds;
+     *                        {@code 0} flushes on the next turn of the event loop, must not be negative
+     * @param metrics the metrics to record flushes and folded updates, must not be null
+     */
+    public RenderScheduler(final CommandsEnqueue commandsEnqueue, final long frameIntervalMs, final Metrics metrics) {
+        this(commandsEnqueue, frameIntervalMs, SessionQueueOptions.defaults(), metrics);
+    }
+
+    /**
+     * Creates a scheduler bounded like its page's session queue.
+     * @param commandsEnqueue the page's commands queue, must not be null
+     * @param frameIntervalMs how long a flush waits after the first update, in milliseconds;
+     *                        {@code 0} flushes on the next turn of the event loop, must not be negative
+     * @param queueOptions the options of the page's session queue, its capacity bounds the pending transformations,
+     *                     must not be null
+     * @param metrics the metrics to record flushes and folded updates, must not be null
+     */
+    public RenderScheduler(final CommandsEnqueue commandsEnqueue,
+                           final long frameIntervalMs,
+                           final SessionQueueOptions queueOptions,
+                           final Metrics metrics) {
+        this.commandsEnqueue = Objects.requireNonNull(commandsEnqueue);
+        if (frameIntervalMs < 0) {
+            throw new IllegalArgumentException("frameIntervalMs must not be negative");
+        }
+        this.frameIntervalMs = frameIntervalMs;
+        this.capacity = queueOptions.capacity();
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Marks a segment dirty with a state transformation.
+     * @param segment the segment to update, must not be null
+     * @param stateTransformer the transformation, returns empty to keep the state; must not be null
+     * @param <S> the segment's state type
+     */
+    @SuppressWarnings("unchecked")
+    public <S> void schedule(final ComponentSegment<S> segment, final Function<S, Optional<S>> stateTransformer) {
+        Objects.requireNonNull(segment);
+        Objects.requireNonNull(stateTransformer);
+        final Function<Object, Optional<Object>> transformer = (Function<Object, Optional<Object>>) (Function<?, ?>) stateTransformer;
+        final boolean requestFlush;
+        final boolean overflow;
+        synchronized (pending) {
+            overflow = overflowedCount > 0 || pendingCount >= capacity;
+            if (overflow) {
+                overflowedCount++;
+                requestFlush = false;
+            } else {
+                final List<Function<Object, Optional<Object>>> transformers = pending.get(segment);
+                if (transformers == null) {
+                    final List<Function<Object, Optional<Object>>> added = new ArrayList<>();
+                    added.add(transformer);
+                    pending.put(segment, added);
+                    pendingOrder.add(segment);
+                } else {
+                    transformers.add(transformer);
+                    metrics.incrementCounter(MetricNames.RENDER_UPDATES_FOLDED);
+                }
+                pendingCount++;
+                requestFlush = !flushRequested;
+                flushRequested = true;
+            }
+        }
+        metrics.incrementCounter(MetricNames.RENDER_UPDATES_SCHEDULED);
+        if (overflow) {
+            metrics.incrementCounter(MetricNames.RENDER_UPDATES_OVERFLOWED);
+            // may wait for a place in the session queue, or make the session disconnect
+            commandsEnqueue.offer(new GenericTaskEvent(() -> applyOverflowed(segment, transformer)));
+        } else if (requestFlush) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Applies a transformation which did not fit the pending ones, after them. Runs on the page's event loop.
+     */
+    private void applyOverflowed(final ComponentSegment<?> segment, final Function<Object, Optional<Object>> transformer) {
+        flush();
+        synchronized (pending) {
+            overflowedCount--;
+        }
+        apply(segment, transformer);
+    }
+
+    /**
+     * @return the number of pending transformations
+     */
+    int pendingCount() {
+        synchronized (pending) {
+            return pendingCount;
+        }
+    }
+
+    private void requestFlush() {
+        final GenericTaskEvent flushTask = new GenericTaskEvent(this::flush);
+        if (frameIntervalMs == 0) {
+            commandsEnqueue.offer(flushTask);
+        } else {
+            CompletableFuture.delayedExecutor(frameIntervalMs, TimeUnit.MILLISECONDS)
+                             .execute(() -> commandsEnqueue.offer(flushTask));
+        }
+    }
+
+    /**
+     * Renders the dirty segments. Runs on the page's event loop.
+     */
+    void flush() {
+        final Map<ComponentSegment<?>, Function<Object, Optional<Object>>> dirty = new IdentityHashMap<>();
+        final List<ComponentSegment<?>> order;
+        synchronized (pending) {
+            if (pendingOrder.isEmpty() && !flushRequested) {
+                // the pending transformations were applied ahead of an overflowed one
+                return;
+            }
+            pending.forEach((segment, transformers) -> dirty.put(segment, inOrder(transformers)));
+            order = new ArrayList<>(pendingOrder);
+            pending.clear();
+            pendingOrder.clear();
+            pendingCount = 0;
+            flushRequested = false;
+        }
+        metrics.incrementCounter(MetricNames.RENDER_FLUSHES);
+
+        // Descendants of dirty segments, parents before children
+        final Map<ComponentSegment<?>, Boolean> covered = new IdentityHashMap<>();
+        final List<ComponentSegment<?>> coveredOrder = new ArrayList<>();
+        for (final ComponentSegment<?> segment : order) {
+            if (covered.containsKey(segment)) {
+                continue;
+            }
+            for (final ComponentSegment<?> descendant : segment.recursiveChildren()) {
+                if (dirty.containsKey(descendant) && covered.put(descendant, Boolean.TRUE) == null) {
+                    coveredOrder.add(descendant);
+                }
+            }
+        }
+
+        for (final ComponentSegment<?> segment : coveredOrder) {
+            stage(segment, dirty.get(segment));
+        }
+        metrics.incrementCounter(MetricNames.RENDER_SEGMENTS_STAGED, coveredOrder.size());
+        for (final ComponentSegment<?> segment : order) {
+            if (!covered.containsKey(segment)) {
+                apply(segment, dirty.get(segment));
+            }
+        }
+        // Staged transformations an ancestor's re-render did not pick up, for example when it vetoed its update
+        for (final ComponentSegment<?> segment : coveredOrder) {
+            try {
+                segment.applyStagedStateTransformation();
+            } catch (final RuntimeException ex) {
+                logger.log(ERROR, "Scheduled state update failed for " + segment, ex);
+            }
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static void stage(final ComponentSegment segment, final Function<Object, Optional<Object>> transformer) {
+        segment.stageStateTransformation(transformer);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static void apply(final ComponentSegment segment, final Function<Object, Optional<Object>> transformer) {
+        try {
+            segment.applyStateTransformationIfPresent(transformer);
+        } catch (final RuntimeException ex) {
+            logger.log(ERROR, "Scheduled state update failed for " + segment, ex);
+        }
+    }
+
+    /**
+     * Applies transformations one after another, each to the last present state, in a loop rather than
+     * nested calls, so a long burst of them doesn't deepen the stack.
+     */
+    private static Function<Object, Optional<Object>> inOrder(final List<Function<Object, Optional<Object>>> transformers) {
+        if (transformers.size() == 1) {
+            return transformers.get(0);
+        }
+        return state -> {
+            Optional<Object> result = Optional.empty();
+            for (final Function<Object, Optional<Object>> transformer : transformers) {
+                final Optional<Object> next = transformer.apply(result.orElse(state));
+                if (next.isPresent()) {
+                    result = next;
+                }
+            }
+            return result;
+        };
+    }
+}
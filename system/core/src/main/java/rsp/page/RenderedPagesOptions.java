@@ -0,0 +1,79 @@
+package rsp.page;
+
+/**
+ * Immutable bounds of a {@link RenderedPagesStore}.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()}.
+ * A rendered page waits in the store from its HTTP response until its WebSocket session binds, normally well under
+ * a second. Pages requested by crawlers, health checks or browsers closed before the JS client loaded never bind,
+ * so the store expires them and evicts the oldest ones when it grows beyond its limits.
+ *
+ * @param ttlMs how long a page waits for its WebSocket session before it expires, in milliseconds, must be positive
+ * @param maxPages the maximum number of waiting pages, must be positive
+ * @param maxRetainedBytes the maximum approximate memory retained by waiting pages, in bytes, must be positive
+ * @param sweepIntervalMs how often expired pages are evicted in the background, in milliseconds, must be positive
+ */
+public record RenderedPagesOptions(long ttlMs, int maxPages, long maxRetainedBytes, long sweepIntervalMs) {
+
+    /**
+     * The default waiting time of a page, generous for a slow network loading the JS client.
+     */
+    public static final long DEFAULT_TTL_MS = 60_000;
+
+    /**
+     * The default number of waiting pages.
+     */
+    public static final int DEFAULT_MAX_PAGES = 10_000;
+
+    /**
+     * The default approximate memory retained by waiting pages.
+     */
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * The default interval of the background sweep.
+     */
+    public static final long DEFAULT_SWEEP_INTERVAL_MS = 5_000;
+
+    public RenderedPagesOptions {
+        if (ttlMs < 1) {
+            throw new IllegalArgumentException("ttlMs must be greater than 0");
+        }
+        if (maxPages < 1) {
+            throw new IllegalArgumentException("maxPages must be greater than 0");
+        }
+        if (maxRetainedBytes < 1) {
+            throw new IllegalArgumentException("maxRetainedBytes must be greater than 0");
+        }
+        if (sweepIntervalMs < 1) {
+            throw new IllegalArgumentException("sweepIntervalMs must be greater than 0");
+        }
+    }
+
+    /**
+     * Creates the default options: {@link #DEFAULT_TTL_MS}, {@link #DEFAULT_MAX_PAGES},
+     * {@link #DEFAULT_MAX_RETAINED_BYTES} and {@link #DEFAULT_SWEEP_INTERVAL_MS}.
+     */
+    public static RenderedPagesOptions defaults() {
+        return new RenderedPagesOptions(DEFAULT_TTL_MS,
+                                        DEFAULT_MAX_PAGES,
+                                        DEFAULT_MAX_RETAINED_BYTES,
+                                        DEFAULT_SWEEP_INTERVAL_MS);
+    }
+
+    public RenderedPagesOptions withTtlMs(final long ttlMs) {
+        return new RenderedPagesOptions(ttlMs, maxPages, maxRetainedBytes, sweepIntervalMs);
+    }
+
+    public RenderedPagesOptions withMaxPages(final int maxPages) {
+        return new RenderedPagesOptions(ttlMs, maxPages, maxRetainedBytes, sweepIntervalMs);
+    }
+
+    public RenderedPagesOptions withMaxRetainedBytes(final long maxRetainedBytes) {
+        return new RenderedPagesOptions(ttlMs, maxPages, maxRetainedBytes, sweepIntervalMs);
+    }
+
+    public RenderedPagesOptions withSweepIntervalMs(final long sweepIntervalMs) {
+        return new RenderedPagesOptions(ttlMs, maxPages, maxRetainedBytes, sweepIntervalMs);
+    }
+}
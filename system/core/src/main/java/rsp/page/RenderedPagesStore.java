@@ -0,0 +1,280 @@
+package rsp.page;
+
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * Rendered pages waiting for their WebSocket sessions to bind, bounded by {@link RenderedPagesOptions}.
+ * <p>
+ * A page expires once it has waited longer than the TTL. When the store grows beyond the maximum number of pages
+ * or the maximum approximate retained bytes, the oldest pages are evicted first. As pages leave the store only
+ * when their sessions bind, the oldest page is also the least recently used one. An evicted or expired page
+ * is shut down, so its components get unmounted. A background sweeper, started by {@link #start()}, evicts expired
+ * pages of a server that receives no new requests. A page has no event loop before its session binds, so the pages
+ * the sweeper evicts are shut down on a virtual thread, and the components' callbacks don't hold the sweeper up.
+ * <p>
+ * Reports the {@link MetricNames#RENDERED_PAGES_COUNT} and {@link MetricNames#RENDERED_PAGES_RETAINED_BYTES}
+ * gauges and the eviction counters. This class is thread-safe.
+ */
+public final class RenderedPagesStore {
+    private static final System.Logger logger = System.getLogger(RenderedPagesStore.class.getName());
+
+    /**
+     * The approximate retained memory of an empty page's tree.
+     */
+    static final long PAGE_BASE_BYTES = 4 * 1024;
+
+    /**
+     * The approximate retained memory of a page's tree per character of its HTML: the DOM nodes keep names, attributes
+     * and texts with object headers, node ids and the component segments around them.
+     */
+    static final long BYTES_PER_HTML_CHAR = 8;
+
+    private final RenderedPagesOptions options;
+    private final Metrics metrics;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<QualifiedSessionId, Entry> pages = new LinkedHashMap<>();
+
+    private long retainedBytes;
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Creates a store.
+     * @param options the store's bounds, must not be null
+     * @param metrics receives the store's gauges and eviction counters, must not be null
+     */
+    public RenderedPagesStore(final RenderedPagesOptions options, final Metrics metrics) {
+        this(options, metrics, System::nanoTime);
+    }
+
+    RenderedPagesStore(final RenderedPagesOptions options, final Metrics metrics, final LongSupplier nanoClock) {
+        this.options = Objects.requireNonNull(options);
+        this.metrics = Objects.requireNonNull(metrics);
+        this.nanoClock = Objects.requireNonNull(nanoClock);
+    }
+
+    /**
+     * Estimates the memory retained by a rendered page.
+     * @param htmlLength the length of the page's rendered HTML
+     * @return the approximate retained bytes
+     */
+    public static long approximateRetainedBytes(final int htmlLength) {
+        return PAGE_BASE_BYTES + BYTES_PER_HTML_CHAR * htmlLength;
+    }
+
+    /**
+     * Adds a page, evicting the oldest pages if the store grows beyond its limits.
+     * The added page itself is kept even if it alone exceeds the retained bytes limit.
+     * @param sessionId the page's session id, must not be null
+     * @param page the page, must not be null
+     * @param approximateBytes the page's approximate retained memory, see {@link #approximateRetainedBytes(int)}
+     */
+    public void put(final QualifiedSessionId sessionId, final RenderedPage page, final long approximateBytes) {
+        Objects.requireNonNull(sessionId);
+        Objects.requireNonNull(page);
+        final List<RenderedPage> evicted = new ArrayList<>();
+        final Entry replaced;
+        synchronized (this) {
+            replaced = pages.remove(sessionId);
+            if (replaced != null) {
+                retainedBytes -= replaced.approximateBytes;
+            }
+            pages.put(sessionId, new Entry(page, approximateBytes, nanoClock.getAsLong()));
+            retainedBytes += approximateBytes;
+
+            final Iterator<Map.Entry<QualifiedSessionId, Entry>> iterator = pages.entrySet().iterator();
+            while (pages.size() > 1 && (pages.size() > options.maxPages() || retainedBytes > options.maxRetainedBytes())) {
+                final Entry oldest = iterator.next().getValue();
+                iterator.remove();
+                retainedBytes -= oldest.approximateBytes;
+                evicted.add(oldest.page);
+            }
+            updateGauges();
+        }
+        metrics.incrementCounter(MetricNames.RENDERED_PAGES_STORED);
+        if (!evicted.isEmpty()) {
+            metrics.incrementCounter(MetricNames.RENDERED_PAGES_EVICTED_SIZE, evicted.size());
+            shutdown(evicted);
+        }
+        if (replaced != null) {
+            shutdown(List.of(replaced.page));
+        }
+    }
+
+    /**
+     * Takes a page out of the store for its binding WebSocket session.
+     * @param sessionId the page's session id, must not be null
+     * @return the page, or null if there is no such page or it has expired
+     */
+    public RenderedPage remove(final QualifiedSessionId sessionId) {
+        Objects.requireNonNull(sessionId);
+        final Entry entry;
+        synchronized (this) {
+            entry = pages.remove(sessionId);
+            if (entry == null) {
+                return null;
+            }
+            retainedBytes -= entry.approximateBytes;
+            updateGauges();
+        }
+        if (isExpired(entry, nanoClock.getAsLong())) {
+            metrics.incrementCounter(MetricNames.RENDERED_PAGES_EVICTED_EXPIRED);
+            shutdown(List.of(entry.page));
+            return null;
+        }
+        return entry.page;
+    }
+
+    /**
+     * Evicts the expired pages.
+     * @return the number of evicted pages
+     */
+    public int sweep() {
+        final List<RenderedPage> expired = evictExpired();
+        shutdown(expired);
+        return expired.size();
+    }
+
+    private void sweepInBackground() {
+        final List<RenderedPage> expired = evictExpired();
+        if (!expired.isEmpty()) {
+            Thread.ofVirtual().name("rsp-rendered-pages-shutdown").start(() -> shutdown(expired));
+        }
+    }
+
+    private List<RenderedPage> evictExpired() {
+        final List<RenderedPage> expired = new ArrayList<>();
+        synchronized (this) {
+            final long now = nanoClock.getAsLong();
+            final Iterator<Entry> iterator = pages.values().iterator();
+            while (iterator.hasNext()) {
+                final Entry entry = iterator.next();
+                if (!isExpired(entry, now)) {
+                    // pages are in the order of their storing, so all the next ones are younger
+                    break;
+                }
+                iterator.remove();
+                retainedBytes -= entry.approximateBytes;
+                expired.add(entry.page);
+            }
+            updateGauges();
+        }
+        if (!expired.isEmpty()) {
+            metrics.incrementCounter(MetricNames.RENDERED_PAGES_EVICTED_EXPIRED, expired.size());
+        }
+        return expired;
+    }
+
+    /**
+     * Shuts down and removes all the pages.
+     */
+    public void clear() {
+        final List<RenderedPage> removed;
+        synchronized (this) {
+            removed = new ArrayList<>(pages.size());
+            for (final Entry entry : pages.values()) {
+                removed.add(entry.page);
+            }
+            pages.clear();
+            retainedBytes = 0;
+            updateGauges();
+        }
+        shutdown(removed);
+    }
+
+    /**
+     * @return a snapshot of the waiting pages' session ids, from the oldest to the newest
+     */
+    public synchronized Set<QualifiedSessionId> keySet() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(pages.keySet()));
+    }
+
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return pages.isEmpty();
+    }
+
+    /**
+     * @return the approximate memory retained by the waiting pages
+     */
+    public synchronized long retainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Starts the background sweeper, if it is not running yet.
+     */
+    public synchronized void start() {
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                                                                       .name("rsp-rendered-pages-sweeper")
+                                                                       .daemon()
+                                                                       .factory());
+            sweeper.scheduleWithFixedDelay(this::sweepInBackground,
+                                           options.sweepIntervalMs(),
+                                           options.sweepIntervalMs(),
+                                           TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the background sweeper and removes all the pages.
+     */
+    public void stop() {
+        final ScheduledExecutorService sweeperToStop;
+        synchronized (this) {
+            sweeperToStop = sweeper;
+            sweeper = null;
+        }
+        if (sweeperToStop != null) {
+            sweeperToStop.shutdownNow();
+        }
+        clear();
+    }
+
+    private boolean isExpired(final Entry entry, final long nowNanos) {
+        return nowNanos - entry.storedNanos >= TimeUnit.MILLISECONDS.toNanos(options.ttlMs());
+    }
+
+    private void updateGauges() {
+        metrics.setGauge(MetricNames.RENDERED_PAGES_COUNT, pages.size());
+        metrics.setGauge(MetricNames.RENDERED_PAGES_RETAINED_BYTES, retainedBytes);
+    }
+
+    private static void shutdown(final List<RenderedPage> evicted) {
+        if (evicted.isEmpty()) {
+            return;
+        }
+        for (final RenderedPage page : evicted) {
+            try {
+                page.pageBuilder().shutdown();
+            } catch (final RuntimeException ex) {
+                logger.log(WARNING, "Failed to shut down an evicted page", ex);
+            }
+        }
+        logger.log(DEBUG, () -> "Shut down evicted pages: " + evicted.size());
+    }
+
+    private record Entry(RenderedPage page, long approximateBytes, long storedNanos) {
+    }
+}
@@ -0,0 +1,114 @@
+package rsp.page;
+
+import rsp.page.events.RemoteCommand;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The remote commands of a live page session that its client may not have applied yet, grouped by render numbers.
+ * <p>
+ * The commands of an event loop turn make a render, numbered when the turn ends. The client reports the number
+ * of the last render it applied, and the buffer drops the renders up to it. When the buffer grows beyond its limit,
+ * it drops its oldest renders, and a client that didn't apply them can't be brought up to date by a replay.
+ * A current render which alone grows beyond the limit is dropped as a whole, only a client which applied it
+ * can resume.
+ * Not thread-safe, owned by the session's event loop.
+ */
+final class ReplayBuffer {
+    private final int maxCommands;
+    private final ArrayDeque<Render> renders = new ArrayDeque<>();
+
+    private List<RemoteCommand> currentRender = new ArrayList<>();
+    private boolean currentRenderDropped;
+    private int bufferedCommands;
+    private int renderNumber;
+    private int replayableFrom;
+
+    ReplayBuffer(final int maxCommands) {
+        if (maxCommands < 1) {
+            throw new IllegalArgumentException("maxCommands must be greater than 0");
+        }
+        this.maxCommands = maxCommands;
+    }
+
+    /**
+     * @return the number of the last ended render
+     */
+    int renderNumber() {
+        return renderNumber;
+    }
+
+    void add(final RemoteCommand command) {
+        if (currentRenderDropped) {
+            return;
+        }
+        currentRender.add(command);
+        bufferedCommands++;
+        while (bufferedCommands > maxCommands && !renders.isEmpty()) {
+            final Render dropped = renders.removeFirst();
+            bufferedCommands -= dropped.commands.size();
+            replayableFrom = dropped.number;
+        }
+        if (bufferedCommands > maxCommands) {
+            bufferedCommands -= currentRender.size();
+            currentRender = new ArrayList<>();
+            currentRenderDropped = true;
+        }
+    }
+
+    /**
+     * Ends the current render.
+     * @return the render's number, or 0 if it has no commands
+     */
+    int endRender() {
+        if (currentRenderDropped) {
+            currentRenderDropped = false;
+            replayableFrom = ++renderNumber;
+            return renderNumber;
+        }
+        if (currentRender.isEmpty()) {
+            return 0;
+        }
+        renders.addLast(new Render(++renderNumber, currentRender));
+        currentRender = new ArrayList<>();
+        return renderNumber;
+    }
+
+    /**
+     * Drops the renders the client has applied.
+     * @param appliedRenderNumber the number of the last render the client applied
+     */
+    void acknowledge(final int appliedRenderNumber) {
+        if (appliedRenderNumber > renderNumber) {
+            return;
+        }
+        while (!renders.isEmpty() && renders.peekFirst().number <= appliedRenderNumber) {
+            bufferedCommands -= renders.removeFirst().commands.size();
+        }
+        replayableFrom = Math.max(replayableFrom, appliedRenderNumber);
+    }
+
+    /**
+     * Collects the commands a client missed, including the ones of the current render.
+     * @param appliedRenderNumber the number of the last render the client applied
+     * @return the commands in their order, or null if the buffer doesn't have all of them
+     */
+    List<RemoteCommand> commandsAfter(final int appliedRenderNumber) {
+        if (currentRenderDropped || appliedRenderNumber < replayableFrom || appliedRenderNumber > renderNumber) {
+            return null;
+        }
+        final List<RemoteCommand> result = new ArrayList<>();
+        for (final Render render : renders) {
+            if (render.number > appliedRenderNumber) {
+                result.addAll(render.commands);
+            }
+        }
+        result.addAll(currentRender);
+        return result;
+    }
+
+    private record Render(int number, List<RemoteCommand> commands) {
+    }
+}
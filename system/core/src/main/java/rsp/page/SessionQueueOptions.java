@@ -0,0 +1,78 @@
+package rsp.page;
+
+import java.util.Objects;
+
+/**
+ * Immutable options of the queue of a live page session's events.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()} or {@link #unbounded()}.
+ * A session's events, such as DOM events from its client and state updates from services, wait in the queue for
+ * the session's event loop. The capacity protects the server's memory from a runaway producer; the overflow policy
+ * decides what happens to an event which arrives at a full queue. Events enqueued by the session's own event loop,
+ * for example a render flush requested while handling an event, are never held back.
+ *
+ * @param capacity the number of events the queue holds before its overflow policy applies, must be positive
+ * @param overflowPolicy what happens to an event which arrives at a full queue, must not be null
+ */
+public record SessionQueueOptions(int capacity, OverflowPolicy overflowPolicy) {
+
+    /**
+     * The default capacity, far above the queue depth of a responsive page.
+     */
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    /**
+     * What happens to an event which arrives at a full queue.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The producer waits until the event loop frees a place. A WebSocket's reader thread waiting here
+         * stops reading, so the TCP flow control slows the client down.
+         */
+        BLOCK,
+
+        /**
+         * A newer coalescible event, such as another {@code mousemove} on the same element, replaces the oldest
+         * queued one of the same kind in its place. Otherwise the oldest queued coalescible event is dropped
+         * to make room, or the new event itself if it is coalescible. Only high-frequency DOM events, like
+         * {@code mousemove}, {@code scroll} or {@code input}, are coalescible. Other events, like clicks, key
+         * presses and state updates, are never dropped, as losing them would lose user input or leave the page
+         * inconsistent: when there is no coalescible event to drop, the queue overflows as with {@link #DISCONNECT}.
+         */
+        DROP_OLDEST,
+
+        /**
+         * The queued events are dropped and the session is shut down, its client reloads the page.
+         */
+        DISCONNECT
+    }
+
+    public SessionQueueOptions {
+        Objects.requireNonNull(overflowPolicy);
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+    }
+
+    /**
+     * Creates the default options: {@link #DEFAULT_CAPACITY} with {@link OverflowPolicy#BLOCK}.
+     */
+    public static SessionQueueOptions defaults() {
+        return new SessionQueueOptions(DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Creates options of a queue without a capacity limit.
+     */
+    public static SessionQueueOptions unbounded() {
+        return defaults().withCapacity(Integer.MAX_VALUE);
+    }
+
+    public SessionQueueOptions withCapacity(final int capacity) {
+        return new SessionQueueOptions(capacity, overflowPolicy);
+    }
+
+    public SessionQueueOptions withOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        return new SessionQueueOptions(capacity, overflowPolicy);
+    }
+}
@@ -0,0 +1,64 @@
+package rsp.page;
+
+/**
+ * Immutable options for resuming live page sessions after their connections are lost.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()} or {@link #disabled()}.
+ * When enabled, a session whose WebSocket closes is parked for a grace period instead of being shut down.
+ * A parked session keeps its components and buffers its remote commands. A client that reconnects within
+ * the grace period with its last applied render number gets the missed commands replayed instead of reloading
+ * the page.
+ *
+ * @param enabled whether sessions are parked when their connections close
+ * @param gracePeriodMs how long a parked session waits for its client to reconnect, in milliseconds, must be positive
+ * @param maxBufferedCommands the maximum number of remote commands kept for a replay; a client that missed more
+ *                            of them reloads the page, must be positive
+ */
+public record SessionResumeOptions(boolean enabled, long gracePeriodMs, int maxBufferedCommands) {
+
+    /**
+     * The default waiting time of a parked session, enough to switch a mobile network.
+     */
+    public static final long DEFAULT_GRACE_PERIOD_MS = 30_000;
+
+    /**
+     * The default number of remote commands kept for a replay.
+     */
+    public static final int DEFAULT_MAX_BUFFERED_COMMANDS = 1_000;
+
+    public SessionResumeOptions {
+        if (gracePeriodMs < 1) {
+            throw new IllegalArgumentException("gracePeriodMs must be greater than 0");
+        }
+        if (maxBufferedCommands < 1) {
+            throw new IllegalArgumentException("maxBufferedCommands must be greater than 0");
+        }
+    }
+
+    /**
+     * Creates the default options: resuming enabled with {@link #DEFAULT_GRACE_PERIOD_MS}
+     * and {@link #DEFAULT_MAX_BUFFERED_COMMANDS}.
+     */
+    public static SessionResumeOptions defaults() {
+        return new SessionResumeOptions(true, DEFAULT_GRACE_PERIOD_MS, DEFAULT_MAX_BUFFERED_COMMANDS);
+    }
+
+    /**
+     * Creates options that shut a session down as soon as its connection closes.
+     */
+    public static SessionResumeOptions disabled() {
+        return defaults().withEnabled(false);
+    }
+
+    public SessionResumeOptions withEnabled(final boolean enabled) {
+        return new SessionResumeOptions(enabled, gracePeriodMs, maxBufferedCommands);
+    }
+
+    public SessionResumeOptions withGracePeriodMs(final long gracePeriodMs) {
+        return new SessionResumeOptions(enabled, gracePeriodMs, maxBufferedCommands);
+    }
+
+    public SessionResumeOptions withMaxBufferedCommands(final int maxBufferedCommands) {
+        return new SessionResumeOptions(enabled, gracePeriodMs, maxBufferedCommands);
+    }
+}
@@ -0,0 +1,150 @@
+package rsp.page;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Creates {@link EventLoop}s which share a sized work-stealing {@link ForkJoinPool} instead of holding a thread each.
+ * <p>
+ * A loop is an actor mailbox: it {@link EventLoop#runsOnDemand() runs on demand} and counts the units of work
+ * it is {@link EventLoop#wakeUp() woken up} for. The first one schedules a turn on the pool. A turn runs the loop's
+ * logic for at most {@code maxEventsPerTurn} units, then the loop goes to the back of the pool's queue if it has
+ * more, so a busy page can't starve the others. Only one turn of a loop is scheduled at a time, which keeps
+ * the single thread at a time guarantee the components of a page rely on. An idle loop costs a few objects
+ * and no thread, where a {@link DefaultEventLoop} keeps a parked virtual thread.
+ * <p>
+ * Pass an instance where a {@code Supplier<EventLoop>} is expected, for example to {@code WebServer},
+ * and {@link #close()} it after the server stops.
+ */
+public final class SharedEventLoops implements Supplier<EventLoop>, AutoCloseable {
+    private static final System.Logger logger = System.getLogger(SharedEventLoops.class.getName());
+
+    /**
+     * The default number of events a page handles before it yields its worker thread to another page.
+     */
+    public static final int DEFAULT_MAX_EVENTS_PER_TURN = 64;
+
+    private final ForkJoinPool pool;
+    private final int maxEventsPerTurn;
+
+    /**
+     * Creates event loops sharing a pool with a worker per available processor.
+     */
+    public SharedEventLoops() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_EVENTS_PER_TURN);
+    }
+
+    /**
+     * Creates event loops sharing a pool.
+     * @param parallelism the number of the pool's worker threads, must be positive
+     * @param maxEventsPerTurn the number of events a loop handles before it yields its worker, must be positive
+     */
+    public SharedEventLoops(final int parallelism, final int maxEventsPerTurn) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be greater than 0");
+        }
+        if (maxEventsPerTurn < 1) {
+            throw new IllegalArgumentException("maxEventsPerTurn must be greater than 0");
+        }
+        this.maxEventsPerTurn = maxEventsPerTurn;
+        // FIFO local queues, so a loop which yields runs after the loops already waiting on its worker
+        this.pool = new ForkJoinPool(parallelism,
+                                     ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                                     (thread, ex) -> logger.log(System.Logger.Level.ERROR, "Event loop error", ex),
+                                     true);
+    }
+
+    @Override
+    public EventLoop get() {
+        return new MailboxEventLoop();
+    }
+
+    /**
+     * Stops running the loops' turns, a turn in progress completes.
+     * @param timeoutMs how long to wait for the worker threads to finish, in milliseconds
+     * @return true if the pool terminated within the timeout
+     */
+    public boolean close(final long timeoutMs) throws InterruptedException {
+        pool.shutdown();
+        return pool.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private final class MailboxEventLoop implements EventLoop, Runnable {
+        /**
+         * The units of work the loop was woken up for and hasn't run yet, a turn is scheduled while it is positive.
+         * Starts with a unit held until the loop is started, so the work queued before doesn't schedule a turn.
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private volatile Runnable logic;
+        private volatile boolean stopped;
+
+        @Override
+        public void start(final Runnable logic) {
+            this.logic = Objects.requireNonNull(logic);
+            if (pending.decrementAndGet() > 0) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public boolean runsOnDemand() {
+            return true;
+        }
+
+        @Override
+        public void wakeUp() {
+            if (pending.getAndIncrement() == 0) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void run() {
+            final Runnable step = logic;
+            int done = 0;
+            while (done < maxEventsPerTurn && done < pending.get() && !stopped) {
+                done++;
+                step.run();
+            }
+            if (stopped) {
+                return;
+            }
+            if (pending.addAndGet(-done) > 0) {
+                // a worker's own queue is taken before the pool's submission queues,
+                // so a loop which yields joins the latter to let the loops woken up meanwhile run first
+                yieldTurn();
+            }
+        }
+
+        private void schedule() {
+            try {
+                pool.execute(this);
+            } catch (final RejectedExecutionException ex) {
+                logger.log(System.Logger.Level.DEBUG, "Event loop turn rejected by a closed pool", ex);
+            }
+        }
+
+        private void yieldTurn() {
+            try {
+                pool.externalSubmit(ForkJoinTask.adapt(this));
+            } catch (final RejectedExecutionException ex) {
+                logger.log(System.Logger.Level.DEBUG, "Event loop turn rejected by a closed pool", ex);
+            }
+        }
+    }
+}
@@ -5,16 +5,21 @@ public sealed interface Command permits
         ComponentEventNotification,
         EvalJsResponseEvent,
         ExtractPropertyResponseEvent,
+        ExtractPropertiesResponseEvent,
         GenericTaskEvent,
         InitSessionCommand,
+        ParkSessionCommand,
         RemoteCommand.EvalJs,
         RemoteCommand.ExtractProperty,
+        RemoteCommand.ExtractProperties,
         RemoteCommand.ForgetEvent,
         RemoteCommand.ListenEvent,
         RemoteCommand.ModifyDom,
         RemoteCommand.PushHistory,
         RemoteCommand.SetHref,
         RemoteCommand.SetRenderNum,
+        RenderAcknowledgedEvent,
+        ResumeSessionCommand,
         SessionCustomEvent,
         ShutdownSessionCommand {
 }
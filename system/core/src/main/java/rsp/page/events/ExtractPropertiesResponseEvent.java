@@ -0,0 +1,12 @@
+package rsp.page.events;
+
+import rsp.util.json.JsonDataType;
+
+/**
+ * The properties of one or more DOM elements read by the client in one batch.
+ * @param descriptorId the descriptor of the request
+ * @param values the properties by element id, and by property name for each element;
+ *               an element which wasn't found and a property which is undefined or a function are absent
+ */
+public record ExtractPropertiesResponseEvent(int descriptorId, JsonDataType.Object values) implements Command {
+}
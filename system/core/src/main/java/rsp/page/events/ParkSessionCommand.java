@@ -0,0 +1,8 @@
+package rsp.page.events;
+
+/**
+ * Detaches a live page session from its closed connection, the session keeps running and buffers its remote commands
+ * until a {@link ResumeSessionCommand} or a {@link ShutdownSessionCommand}.
+ */
+public record ParkSessionCommand() implements Command {
+}
@@ -6,6 +6,8 @@ import rsp.dom.NodeId;
 import rsp.server.RemoteOut;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Commands to the client-side running in the browser.
@@ -46,6 +48,13 @@ public sealed interface RemoteCommand {
         }
     }
 
+    record ExtractProperties(int descriptor, Map<NodeId, Set<String>> properties) implements RemoteCommand, Command {
+        @Override
+        public void accept(RemoteOut remoteOut) {
+            remoteOut.extractProperties(descriptor, properties);
+        }
+    }
+
     record ModifyDom(List<DefaultDomChangesContext.DomChange> domChanges) implements RemoteCommand, Command {
         @Override
         public void accept(RemoteOut remoteOut) {
@@ -0,0 +1,8 @@
+package rsp.page.events;
+
+/**
+ * Notifies that the client has applied the remote commands up to a render number.
+ * @param renderNumber the client's current render number
+ */
+public record RenderAcknowledgedEvent(int renderNumber) implements Command {
+}
@@ -0,0 +1,16 @@
+package rsp.page.events;
+
+import rsp.server.RemoteOut;
+
+import java.util.Objects;
+
+/**
+ * Attaches a parked live page session to a new connection.
+ * @param remoteOut the new connection's output, must not be null
+ * @param lastRenderNumber the last render number the client applied before its connection was lost
+ */
+public record ResumeSessionCommand(RemoteOut remoteOut, int lastRenderNumber) implements Command {
+    public ResumeSessionCommand {
+        Objects.requireNonNull(remoteOut);
+    }
+}
@@ -5,6 +5,8 @@ import rsp.dom.NodeId;
 import rsp.dom.DefaultDomChangesContext;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents remote actions within an open live session.
@@ -37,6 +39,14 @@ public interface RemoteOut {
      */
     void extractProperty(int descriptor, NodeId nodeId, String name);
 
+    /**
+     * Extracts properties from one or more elements on the client-side, the client responds with one JSON object
+     * of the values by element id and by property name.
+     * @param descriptor the descriptor of the request
+     * @param properties the names of the properties by the id of their element, must not be null
+     */
+    void extractProperties(int descriptor, Map<NodeId, Set<String>> properties);
+
     /**
      * Modifies the DOM on the client-side.
      * @param domChange a list of DOM changes, must not be null
@@ -61,4 +71,12 @@ public interface RemoteOut {
      * @param js the JavaScript to evaluate, must not be null
      */
     void evalJs(int descriptor, String js);
+
+    /**
+     * Sends the messages an implementation may have buffered.
+     * A live page calls it when its events queue runs empty, so that the commands of one burst of events
+     * can be sent together.
+     */
+    default void flush() {
+    }
 }
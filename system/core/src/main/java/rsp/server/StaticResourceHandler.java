@@ -1,23 +1,41 @@
 package rsp.server;
 
+import rsp.server.http.AcceptEncoding;
 import rsp.server.http.Header;
+import rsp.server.http.HttpMethod;
+import rsp.server.http.HttpRequest;
 import rsp.server.http.HttpResponse;
 import rsp.server.http.MimeType;
+import rsp.server.http.StaticContent;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
  * Handles serving static resources from a file system directory.
+ * <p>
+ * Files are answered with strong entity tags, computed from a file's content once per change of its size
+ * or modification time, and revalidated by clients on every use with {@code Cache-Control: no-cache}.
+ * A {@code .br} or {@code .gz} sibling of a file, precompressed at build time, is sent instead of the file
+ * to a client which accepts its coding.
  */
 public final class StaticResourceHandler {
+    private static final System.Logger logger = System.getLogger(StaticResourceHandler.class.getName());
+
     private static final Pattern RESOURCE_PATH_VALIDATION_REGEX = Pattern.compile("^/.*"); // TODO
+    private static final List<Coding> PRECOMPRESSED_CODINGS = List.of(new Coding("br", ".br"),
+                                                                      new Coding("gzip", ".gz"));
     private final File baseDirectory;
     private final rsp.server.Path webContextPath;
+    private final Map<Path, Fingerprint> fingerprints = new ConcurrentHashMap<>();
 
     /**
      * Creates a new static resource handler.
@@ -47,15 +65,29 @@ public final class StaticResourceHandler {
     }
 
     /**
-     * Handles a request for a static resource.
+     * Handles an unconditional request for a static resource.
      * @param requestPath the path of the requested resource, must start with the web context path
      * @return an HttpResponse with the file content, or a 404 response if not found or not allowed
      */
     public HttpResponse handle(final rsp.server.Path requestPath) {
         Objects.requireNonNull(requestPath);
-        
+        return handle(new HttpRequest(HttpMethod.GET,
+                                      URI.create(requestPath.toString()),
+                                      requestPath.toString(),
+                                      requestPath));
+    }
+
+    /**
+     * Handles a request for a static resource, honouring its conditional, range and accepted coding headers.
+     * @param request the request, its path must start with the web context path
+     * @return an HttpResponse with the file content, a {@code 304} or {@code 206} response,
+     *         or a 404 response if not found or not allowed
+     */
+    public HttpResponse handle(final HttpRequest request) {
+        Objects.requireNonNull(request);
+
         // 1. Resolve the path relative to the base directory and normalize it
-        final rsp.server.Path subRequestPath = requestPath.relativize(webContextPath);
+        final rsp.server.Path subRequestPath = request.path.relativize(webContextPath);
         final Path targetPath = baseDirectory.toPath().resolve(subRequestPath.toString()).normalize();
 
         // 2. Security Check: Ensure the resolved path is still within the base directory to prevent directory traversal
@@ -63,22 +95,62 @@ public final class StaticResourceHandler {
             return new HttpResponse(403, Collections.emptyList(), "Forbidden");
         }
 
-        final File file = targetPath.toFile();
-
         // 3. Check if file exists and is a regular file (not a directory)
-        if (!file.exists() || !file.isFile()) {
+        if (!Files.isRegularFile(targetPath)) {
             return new HttpResponse(404, Collections.emptyList(), "Not Found");
         }
 
-        // 4. Serve the file content
+        // 4. Serve the file content, or its precompressed sibling the client accepts
         try {
-            final String mimeType = MimeType.of(file.getName());
-            return new HttpResponse(200,
-                                    Collections.singletonList(new Header("Content-Type", mimeType)),
-                                    new FileInputStream(file));
-        } catch (final FileNotFoundException e) {
+            final String mimeType = MimeType.of(targetPath.getFileName().toString());
+            final List<Header> headers = new ArrayList<>();
+            headers.add(new Header("Cache-Control", "no-cache"));
+            final List<Coding> siblings = PRECOMPRESSED_CODINGS.stream()
+                                                               .filter(c -> Files.isRegularFile(c.sibling(targetPath)))
+                                                               .toList();
+            if (!siblings.isEmpty()) {
+                headers.add(new Header("Vary", "Accept-Encoding"));
+            }
+            final Optional<Coding> coding = siblings.stream()
+                                                    .filter(c -> AcceptEncoding.accepts(request.header("Accept-Encoding"), c.name))
+                                                    .findFirst();
+            final Path servedPath = coding.map(c -> c.sibling(targetPath)).orElse(targetPath);
+            final BasicFileAttributes attributes = Files.readAttributes(servedPath, BasicFileAttributes.class);
+            final Fingerprint fingerprint = fingerprint(servedPath, attributes);
+            return StaticContent.of(servedPath,
+                                    mimeType,
+                                    coding.map(c -> c.name),
+                                    attributes.size(),
+                                    attributes.lastModifiedTime().toMillis(),
+                                    fingerprint.etag)
+                                .respond(request, headers);
+        } catch (final NoSuchFileException e) {
             // Handle race condition where file might be deleted between check and open
             return new HttpResponse(404, Collections.emptyList(), "Not Found");
+        } catch (final IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Failed to read a static resource: " + targetPath, e);
+            return new HttpResponse(500, Collections.emptyList(), "Internal Server Error");
         }
     }
+
+    private Fingerprint fingerprint(final Path file, final BasicFileAttributes attributes) throws IOException {
+        final long size = attributes.size();
+        final long lastModifiedMs = attributes.lastModifiedTime().toMillis();
+        final Fingerprint cached = fingerprints.get(file);
+        if (cached != null && cached.size == size && cached.lastModifiedMs == lastModifiedMs) {
+            return cached;
+        }
+        final Fingerprint fingerprint = new Fingerprint(size, lastModifiedMs, StaticContent.entityTag(file));
+        fingerprints.put(file, fingerprint);
+        return fingerprint;
+    }
+
+    private record Coding(String name, String extension) {
+        Path sibling(final Path file) {
+            return file.resolveSibling(file.getFileName() + extension);
+        }
+    }
+
+    private record Fingerprint(long size, long lastModifiedMs, String etag) {
+    }
 }
@@ -0,0 +1,48 @@
+package rsp.server.http;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Content coding negotiation with a request's {@code Accept-Encoding} header.
+ */
+public final class AcceptEncoding {
+
+    private AcceptEncoding() {}
+
+    /**
+     * Checks whether a client accepts a content coding.
+     * A coding listed, or matched by {@code *}, with a zero quality value is refused.
+     * @param acceptEncoding the request's {@code Accept-Encoding} header, null if absent
+     * @param coding the content coding in lower case, such as {@code gzip}, must not be null
+     * @return true if the coding is acceptable
+     */
+    public static boolean accepts(final String acceptEncoding, final String coding) {
+        Objects.requireNonNull(coding);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (final String element : acceptEncoding.split(",")) {
+            final String[] parts = element.split(";");
+            final String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (name.equals(coding)) {
+                return !isZeroQuality(parts);
+            }
+            if (name.equals("*")) {
+                wildcard = !isZeroQuality(parts);
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static boolean isZeroQuality(final String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            final String parameter = parts[i].trim().toLowerCase(Locale.ROOT);
+            if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0{0,3})?")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -17,6 +17,7 @@ public final class HttpRequest {
 
     public final Query queryParameters;
     private final List<Header> headers;
+    private final Map<String, String> headersIndex;
 
     /**
      * Creates a new instance of an HTTP request.
@@ -39,6 +40,7 @@ public final class HttpRequest {
         this.path = Objects.requireNonNull(path);
         this.queryParameters = Objects.requireNonNull(queryParameters);
         this.headers = Objects.requireNonNull(headers);
+        this.headersIndex = indexHeaders(headers);
     }
 
     /**
@@ -77,7 +79,18 @@ public final class HttpRequest {
      */
     public String header(final String headerName) {
         Objects.requireNonNull(headerName);
-        return headers.stream().filter(h -> headerName.equals(h.name())).map(Header::value).findFirst().orElse(null);
+        return headersIndex.get(headerName);
+    }
+
+    /**
+     * Indexes the first value of each header name, so that a lookup does not scan the headers list.
+     */
+    private static Map<String, String> indexHeaders(final List<Header> headers) {
+        final Map<String, String> index = HashMap.newHashMap(headers.size());
+        for (final Header header : headers) {
+            index.putIfAbsent(header.name(), header.value());
+        }
+        return index;
     }
 
     /**
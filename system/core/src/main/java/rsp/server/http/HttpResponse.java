@@ -1,12 +1,17 @@
 package rsp.server.http;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Objects;
 
 /**
  * Represents a HTTP response.
+ * <p>
+ * A response body is either an input stream the server copies, or a {@link BodyWriter} the server invokes
+ * to write the body straight into the connection.
  */
 public final class HttpResponse {
 
@@ -17,12 +22,18 @@ public final class HttpResponse {
     public final List<Header> headers;
     public final InputStream bodyStream;
 
+    /**
+     * The writer of a streamed body, or null if the body is {@link #bodyStream}.
+     */
+    public final BodyWriter bodyWriter;
+
     public HttpResponse(final int status,
                         final List<Header> headers,
                         final InputStream bodyStream) {
         this.status = status;
         this.headers = Objects.requireNonNull(headers);
         this.bodyStream = Objects.requireNonNull(bodyStream);
+        this.bodyWriter = null;
     }
 
     public HttpResponse(final int status,
@@ -30,4 +41,31 @@ public final class HttpResponse {
                         final String body) {
         this(status, headers, new ByteArrayInputStream(body.getBytes()));
     }
+
+    /**
+     * Creates a response with a streamed body of an unknown length.
+     * @param bodyWriter writes the body, it is invoked exactly once, with a discarding stream for a response
+     *                   that must not have a body
+     */
+    public HttpResponse(final int status,
+                        final List<Header> headers,
+                        final BodyWriter bodyWriter) {
+        this.status = status;
+        this.headers = Objects.requireNonNull(headers);
+        this.bodyStream = InputStream.nullInputStream();
+        this.bodyWriter = Objects.requireNonNull(bodyWriter);
+    }
+
+    /**
+     * Writes a response body to a connection as it is produced.
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        /**
+         * Writes the body.
+         * @param output the connection's body stream, flushing it sends the bytes written so far to the client,
+         *               the writer must not close it
+         */
+        void writeTo(OutputStream output) throws IOException;
+    }
 }
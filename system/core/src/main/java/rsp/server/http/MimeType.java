@@ -1,6 +1,7 @@
 package rsp.server.http;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 
@@ -30,6 +31,17 @@ public final class MimeType {
 
     private MimeType() {}
 
+    /**
+     * Gets the MIME type of a {@code Content-Type} header's value without its parameters.
+     * @param contentType the header's value, such as {@code text/html; charset=utf-8}
+     * @return the type and subtype in lower case, such as {@code text/html}
+     */
+    public static String essence(final String contentType) {
+        Objects.requireNonNull(contentType);
+        final int semicolon = contentType.indexOf(';');
+        return (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Guesses the MIME type from a file name.
      * @param fileName the file name
@@ -0,0 +1,310 @@
+package rsp.server.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A representation of a static resource, such as a file or the JS client bundle, with its validators.
+ * <p>
+ * Answers a request for the resource with its strong {@code ETag} and {@code Last-Modified} validators,
+ * a {@code 304} to a conditional {@code GET} the client's copy satisfies, a {@code 206} to a single byte
+ * {@code Range} and a {@code 416} to a range outside of the content. A file's body is sent with
+ * {@link FileChannel#transferTo}, so a large file is not copied through a heap buffer per request.
+ * Multiple ranges in one request are not supported, such a request gets the whole content.
+ */
+public final class StaticContent {
+    private static final int ETAG_DIGEST_BYTES = 16;
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    private final String contentType;
+    private final Optional<String> contentEncoding;
+    private final long length;
+    private final long lastModifiedMs;
+    private final String etag;
+    private final Body body;
+
+    private StaticContent(final String contentType,
+                          final Optional<String> contentEncoding,
+                          final long length,
+                          final long lastModifiedMs,
+                          final String etag,
+                          final Body body) {
+        this.contentType = Objects.requireNonNull(contentType);
+        this.contentEncoding = Objects.requireNonNull(contentEncoding);
+        this.length = length;
+        this.lastModifiedMs = lastModifiedMs;
+        this.etag = Objects.requireNonNull(etag);
+        this.body = Objects.requireNonNull(body);
+    }
+
+    /**
+     * Creates an in-memory representation, its entity tag is the content's hash.
+     * @param content the content, must not be null
+     * @param contentType the content's media type, must not be null
+     * @param lastModifiedMs when the content last changed, in milliseconds since the epoch
+     */
+    public static StaticContent of(final byte[] content, final String contentType, final long lastModifiedMs) {
+        Objects.requireNonNull(content);
+        return new StaticContent(contentType,
+                                 Optional.empty(),
+                                 content.length,
+                                 lastModifiedMs,
+                                 entityTag(content),
+                                 (output, offset, count) -> output.write(content, (int) offset, (int) count));
+    }
+
+    /**
+     * Creates a representation of a file.
+     * @param file the file, must not be null
+     * @param contentType the media type of the file's content, must not be null
+     * @param contentEncoding the coding the file is stored in, such as {@code gzip} for a precompressed sibling,
+     *                        must not be null
+     * @param length the file's size in bytes
+     * @param lastModifiedMs when the file last changed, in milliseconds since the epoch
+     * @param etag the file's entity tag, see {@link #entityTag(java.nio.file.Path)}, must not be null
+     */
+    public static StaticContent of(final java.nio.file.Path file,
+                                   final String contentType,
+                                   final Optional<String> contentEncoding,
+                                   final long length,
+                                   final long lastModifiedMs,
+                                   final String etag) {
+        Objects.requireNonNull(file);
+        return new StaticContent(contentType,
+                                 contentEncoding,
+                                 length,
+                                 lastModifiedMs,
+                                 etag,
+                                 (output, offset, count) -> transfer(file, output, offset, count));
+    }
+
+    /**
+     * @return the strong entity tag of this content, quoted
+     */
+    public String etag() {
+        return etag;
+    }
+
+    /**
+     * Answers a request for this content.
+     * @param request the request, must not be null
+     * @param headers additional response headers, such as {@code Cache-Control} and {@code Vary}, must not be null
+     * @return a {@code 200}, {@code 206}, {@code 304} or {@code 416} response
+     */
+    public HttpResponse respond(final HttpRequest request, final List<Header> headers) {
+        Objects.requireNonNull(request);
+        Objects.requireNonNull(headers);
+        final List<Header> responseHeaders = new ArrayList<>(headers);
+        responseHeaders.add(new Header("ETag", etag));
+        responseHeaders.add(new Header("Last-Modified", httpDate(lastModifiedMs)));
+        if (isNotModified(request)) {
+            return new HttpResponse(304, responseHeaders, InputStream.nullInputStream());
+        }
+        responseHeaders.add(new Header("Content-Type", contentType));
+        contentEncoding.ifPresent(coding -> responseHeaders.add(new Header("Content-Encoding", coding)));
+        responseHeaders.add(new Header("Accept-Ranges", "bytes"));
+
+        final Optional<Range> range = isRangeApplicable(request)
+                                      ? Range.parse(request.header("Range"), length)
+                                      : Optional.empty();
+        if (range.isPresent() && !range.get().isSatisfiable()) {
+            responseHeaders.add(new Header("Content-Range", "bytes */" + length));
+            return new HttpResponse(416, responseHeaders, "Range Not Satisfiable");
+        }
+        final long offset = range.map(Range::first).orElse(0L);
+        final long count = range.map(Range::length).orElse(length);
+        range.ifPresent(r -> responseHeaders.add(new Header("Content-Range",
+                                                            "bytes " + r.first() + "-" + r.last() + "/" + length)));
+        responseHeaders.add(new Header("Content-Length", Long.toString(count)));
+        final int status = range.isPresent() ? 206 : HttpResponse.OK_STATUS_CODE;
+        if (request.method == HttpMethod.HEAD) {
+            return new HttpResponse(status, responseHeaders, InputStream.nullInputStream());
+        }
+        return new HttpResponse(status, responseHeaders, output -> body.write(output, offset, count));
+    }
+
+    /**
+     * Computes a file's strong entity tag from its content.
+     * @param file the file, must not be null
+     * @return the quoted entity tag
+     * @throws IOException if the file can't be read
+     */
+    public static String entityTag(final java.nio.file.Path file) throws IOException {
+        final MessageDigest digest = sha256();
+        try (InputStream input = Files.newInputStream(file)) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return entityTag(digest);
+    }
+
+    /**
+     * Computes a content's strong entity tag.
+     * @param content the content, must not be null
+     * @return the quoted entity tag
+     */
+    public static String entityTag(final byte[] content) {
+        final MessageDigest digest = sha256();
+        digest.update(content);
+        return entityTag(digest);
+    }
+
+    /**
+     * Formats a time as an HTTP date.
+     * @param epochMs the time in milliseconds since the epoch
+     * @return the IMF-fixdate, in GMT with a seconds precision
+     */
+    public static String httpDate(final long epochMs) {
+        return HTTP_DATE.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneOffset.UTC));
+    }
+
+    private boolean isNotModified(final HttpRequest request) {
+        if (request.method != HttpMethod.GET && request.method != HttpMethod.HEAD) {
+            return false;
+        }
+        final String ifNoneMatch = request.header("If-None-Match");
+        if (ifNoneMatch != null) {
+            // weak comparison, a client may have been given a weakened tag by an intermediary
+            for (final String tag : ifNoneMatch.split(",")) {
+                final String trimmed = tag.trim();
+                if ("*".equals(trimmed) || etag.equals(trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final Optional<Long> ifModifiedSince = parseHttpDate(request.header("If-Modified-Since"));
+        return ifModifiedSince.isPresent() && lastModifiedMs / 1000 <= ifModifiedSince.get() / 1000;
+    }
+
+    private boolean isRangeApplicable(final HttpRequest request) {
+        if (request.method != HttpMethod.GET || request.header("Range") == null) {
+            return false;
+        }
+        final String ifRange = request.header("If-Range");
+        return ifRange == null || etag.equals(ifRange.trim()) || httpDate(lastModifiedMs).equals(ifRange.trim());
+    }
+
+    private static Optional<Long> parseHttpDate(final String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(ZonedDateTime.parse(value.trim(), HTTP_DATE).toInstant().toEpochMilli());
+        } catch (final DateTimeParseException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private static void transfer(final java.nio.file.Path file,
+                                 final OutputStream output,
+                                 final long offset,
+                                 final long count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final WritableByteChannel target = Channels.newChannel(output);
+            long position = offset;
+            long remaining = count;
+            while (remaining > 0) {
+                final long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new IOException("File truncated while being sent: " + file);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    private static String entityTag(final MessageDigest digest) {
+        final byte[] hash = digest.digest();
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, ETAG_DIGEST_BYTES)) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(OutputStream output, long offset, long count) throws IOException;
+    }
+
+    /**
+     * A single byte range of a {@code Range} request, {@code first} and {@code last} inclusive.
+     */
+    record Range(long first, long last) {
+
+        /**
+         * Parses a {@code Range} header.
+         * @param value the header's value
+         * @param length the content's length
+         * @return the requested range, which may be unsatisfiable, or empty if the header is malformed,
+         *         not in bytes or asks for several ranges, so the whole content is sent
+         */
+        static Optional<Range> parse(final String value, final long length) {
+            if (value == null || !value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+                return Optional.empty();
+            }
+            final String spec = value.substring("bytes=".length()).trim();
+            final int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return Optional.empty();
+            }
+            final long first = number(spec.substring(0, dash));
+            final long last = number(spec.substring(dash + 1));
+            if (dash == 0) {
+                // a suffix range, the last bytes of the content
+                return last < 0 ? Optional.empty()
+                                : Optional.of(new Range(Math.max(0, length - last), length - 1));
+            }
+            if (first < 0 || (last >= 0 && last < first) || (last < 0 && dash + 1 < spec.length())) {
+                return Optional.empty();
+            }
+            return Optional.of(new Range(first, last < 0 ? length - 1 : Math.min(last, length - 1)));
+        }
+
+        /**
+         * @return the decimal number, or -1 if the value is empty or not all digits
+         */
+        private static long number(final String value) {
+            if (value.isEmpty() || value.length() > 18 || !value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                return -1;
+            }
+            return Long.parseLong(value);
+        }
+
+        boolean isSatisfiable() {
+            return first <= last;
+        }
+
+        long length() {
+            return last - first + 1;
+        }
+    }
+}
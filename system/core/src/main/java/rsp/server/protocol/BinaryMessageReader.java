@@ -0,0 +1,118 @@
+package rsp.server.protocol;
+
+import rsp.dom.NodeId;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the primitives written by {@link BinaryMessageWriter} and by the browser client.
+ * <p>
+ * Keeps the string table of one direction of one connection between messages; not thread-safe.
+ */
+final class BinaryMessageReader {
+    private final List<String> stringTable = new ArrayList<>();
+    private byte[] bytes = new byte[0];
+    private int position;
+
+    void reset(final byte[] message) {
+        this.bytes = message;
+        this.position = 0;
+    }
+
+    boolean hasRemaining() {
+        return position < bytes.length;
+    }
+
+    int readByte() {
+        if (position >= bytes.length) {
+            throw new IllegalArgumentException("Truncated binary message");
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    int readVarInt() {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (result < 0) {
+                    throw new IllegalArgumentException("Varint out of range");
+                }
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    int readSignedVarInt() {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (result >>> 1) ^ -(result & 1);
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    String readString() {
+        final int length = readVarInt();
+        if (length > bytes.length - position) {
+            throw new IllegalArgumentException("Truncated binary message string");
+        }
+        try {
+            final String value = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes, position, length))
+                    .toString();
+            position += length;
+            return value;
+        } catch (final CharacterCodingException ex) {
+            throw new IllegalArgumentException("Invalid UTF-8 string in binary message", ex);
+        }
+    }
+
+    String readName() {
+        final int reference = readVarInt();
+        if (reference >= 2) {
+            final int index = reference - 2;
+            if (index >= stringTable.size()) {
+                throw new IllegalArgumentException("Unknown string table index: " + index);
+            }
+            return stringTable.get(index);
+        }
+        final String name = readString();
+        if (reference == 0) {
+            if (stringTable.size() >= BinaryMessageWriter.STRING_TABLE_CAPACITY) {
+                throw new IllegalArgumentException("String table overflow");
+            }
+            stringTable.add(name);
+        }
+        return name;
+    }
+
+    NodeId readNodeId() {
+        final int count = readVarInt();
+        if (count > bytes.length - position) {
+            throw new IllegalArgumentException("Truncated binary message node id");
+        }
+        NodeId nodeId = NodeId.of("");
+        for (int i = 0; i < count; i++) {
+            final int segment = readVarInt();
+            nodeId = segment == 0 ? nodeId.child(readName()) : nodeId.child(segment - 1);
+        }
+        return nodeId;
+    }
+}
@@ -0,0 +1,142 @@
+package rsp.server.protocol;
+
+import rsp.dom.NodeId;
+import rsp.dom.TreePositionPath;
+import rsp.dom.XmlNs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the primitives of the binary protocol into a reusable growing buffer.
+ * <p>
+ * Integers are unsigned LEB128 varints, signed ones are zigzag-encoded first. Strings are a varint UTF-8 length
+ * followed by the bytes. Names, such as tags, attributes and event types, are interned: the first occurrence is sent
+ * as a literal and appended to a string table both sides keep for the lifetime of the connection, later
+ * occurrences are sent as the table index. A name reference is a varint:
+ * <ul>
+ *     <li>{@code 0} - a literal follows and is appended to the table;</li>
+ *     <li>{@code 1} - a literal follows and is not appended, as the table is full;</li>
+ *     <li>{@code n >= 2} - the table entry {@code n - 2}.</li>
+ * </ul>
+ * A node id is a varint segments count followed by its segments, where a positional segment {@code p} is
+ * the varint {@code p + 1} and a key segment is {@code 0} followed by a name reference.
+ * <p>
+ * Not thread-safe, the string table belongs to one direction of one connection.
+ */
+final class BinaryMessageWriter {
+    static final int STRING_TABLE_CAPACITY = 4096;
+
+    private final Map<String, Integer> stringTable = new HashMap<>();
+    private byte[] bytes = new byte[256];
+    private int length;
+
+    void reset() {
+        length = 0;
+    }
+
+    int length() {
+        return length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    byte[] toByteArray(final int from) {
+        return Arrays.copyOfRange(bytes, from, length);
+    }
+
+    void writeByte(final int value) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) value;
+    }
+
+    void writeBoolean(final boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    void writeVarInt(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative varint: " + value);
+        }
+        ensureCapacity(5);
+        int remaining = value;
+        while (remaining >= 0x80) {
+            bytes[length++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        bytes[length++] = (byte) remaining;
+    }
+
+    void writeSignedVarInt(final int value) {
+        final int zigzag = (value << 1) ^ (value >> 31);
+        ensureCapacity(5);
+        int remaining = zigzag;
+        while ((remaining & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        bytes[length++] = (byte) remaining;
+    }
+
+    void writeString(final String value) {
+        final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length);
+        ensureCapacity(utf8.length);
+        System.arraycopy(utf8, 0, bytes, length, utf8.length);
+        length += utf8.length;
+    }
+
+    void writeName(final String name) {
+        final Integer index = stringTable.get(name);
+        if (index != null) {
+            writeVarInt(index + 2);
+        } else if (stringTable.size() < STRING_TABLE_CAPACITY) {
+            stringTable.put(name, stringTable.size());
+            writeVarInt(0);
+            writeString(name);
+        } else {
+            writeVarInt(1);
+            writeString(name);
+        }
+    }
+
+    void writeNodeId(final NodeId nodeId) {
+        final int count = nodeId.elementsCount();
+        writeVarInt(count);
+        for (int i = 0; i < count; i++) {
+            if (nodeId.isKeyAt(i)) {
+                writeVarInt(0);
+                writeName(nodeId.segmentAt(i));
+            } else {
+                writeVarInt(nodeId.positionAt(i) + 1);
+            }
+        }
+    }
+
+    void writePath(final TreePositionPath path) {
+        final int count = path.elementsCount();
+        writeVarInt(count);
+        for (int i = 0; i < count; i++) {
+            writeVarInt(path.elementAt(i) + 1);
+        }
+    }
+
+    void writeXmlNs(final XmlNs xmlNs) {
+        if (xmlNs.uri().equals(XmlNs.html.uri())) {
+            writeByte(0);
+        } else {
+            writeByte(1);
+            writeName(xmlNs.uri());
+        }
+    }
+
+    private void ensureCapacity(final int additional) {
+        if (length + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+        }
+    }
+}
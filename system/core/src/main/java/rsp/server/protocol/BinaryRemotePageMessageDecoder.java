@@ -0,0 +1,73 @@
+package rsp.server.protocol;
+
+import rsp.dom.NodeId;
+import rsp.page.events.Command;
+import rsp.page.events.DomEventNotification;
+import rsp.util.json.JsonDataType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Decodes binary messages of the {@value BinaryRemotePageMessageEncoder#SUBPROTOCOL} protocol from a client.
+ * <p>
+ * The client sends DOM event notifications as binary messages:
+ * the {@code DOM_EVENT} code byte, a varint render number, the target node id, the interned event type,
+ * a varint count of event object properties and, for each, an interned name and a string value.
+ * Other callbacks keep using JSON text messages handled by {@link RemotePageMessageDecoder}.
+ * One decoder must be used for one connection, as the client's string table spans messages.
+ */
+public final class BinaryRemotePageMessageDecoder {
+    private static final System.Logger logger = System.getLogger(BinaryRemotePageMessageDecoder.class.getName());
+
+    private final Consumer<Command> remoteIn;
+    private final BinaryMessageReader reader = new BinaryMessageReader();
+
+    public BinaryRemotePageMessageDecoder(final Consumer<Command> remoteIn) {
+        this.remoteIn = Objects.requireNonNull(remoteIn);
+    }
+
+    /**
+     * Decodes a message.
+     * @param message the message to decode, must not be null
+     */
+    public void decode(final byte[] message) {
+        Objects.requireNonNull(message);
+        try {
+            reader.reset(message);
+            final int messageType = reader.readByte();
+            if (messageType == RemotePageMessageDecoder.DOM_EVENT) {
+                parseDomEvent();
+            } else {
+                throw new IllegalArgumentException("Unsupported binary message type: " + messageType);
+            }
+        } catch (final RuntimeException ex) {
+            logger.log(System.Logger.Level.ERROR, "Incoming binary message parse exception, length: " + message.length, ex);
+        }
+    }
+
+    private void parseDomEvent() {
+        final int renderNumber = reader.readVarInt();
+        final NodeId nodeId = reader.readNodeId();
+        final String eventType = reader.readName();
+        final int propertiesCount = reader.readVarInt();
+        final Map<String, JsonDataType> properties = HashMap.newHashMap(Math.min(propertiesCount, 64));
+        for (int i = 0; i < propertiesCount; i++) {
+            final String name = reader.readName();
+            properties.put(name, new JsonDataType.String(reader.readString()));
+        }
+        requireEnd();
+        remoteIn.accept(new DomEventNotification(renderNumber,
+                                                 nodeId,
+                                                 eventType,
+                                                 new JsonDataType.Object(properties)));
+    }
+
+    private void requireEnd() {
+        if (reader.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected trailing bytes in binary message");
+        }
+    }
+}
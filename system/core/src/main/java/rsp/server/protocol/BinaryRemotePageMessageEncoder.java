@@ -0,0 +1,293 @@
+package rsp.server.protocol;
+
+import rsp.dom.DefaultDomChangesContext.*;
+import rsp.dom.DomEventEntry;
+import rsp.dom.NodeId;
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
+import rsp.server.RemoteOut;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static rsp.server.protocol.RemotePageMessageEncoder.*;
+
+/**
+ * Serializes RemoteOut actions to binary messages, an alternative to the JSON text protocol of
+ * {@link RemotePageMessageEncoder} with the same message and command codes.
+ * <p>
+ * A message is its type code byte followed by the type's fields, see {@link BinaryMessageWriter} for the encoding
+ * of integers, strings, interned names and node ids. Tag, attribute, style, event and property names are interned,
+ * so a list re-render sends each of them once per connection. One encoder must be used for one connection.
+ * <p>
+ * The protocol is negotiated with the {@value #SUBPROTOCOL} WebSocket subprotocol; clients which do not offer it
+ * use the text protocol.
+ */
+public final class BinaryRemotePageMessageEncoder implements RemoteOut {
+
+    /**
+     * The {@code Sec-WebSocket-Protocol} token of the binary protocol.
+     */
+    public static final String SUBPROTOCOL = "rsp.binary.v1";
+
+    private final Consumer<byte[]> messagesOut;
+    private final MessageBatchingOptions batching;
+    private final Metrics metrics;
+    private final BinaryMessageWriter writer = new BinaryMessageWriter();
+
+    private int batchedMessages;
+    private long batchStartedNanos;
+
+    /**
+     * Creates an encoder which sends every message as soon as it is encoded.
+     * @param messagesOut the consumer of encoded messages, must not be null
+     */
+    public BinaryRemotePageMessageEncoder(final Consumer<byte[]> messagesOut) {
+        this(messagesOut, MessageBatchingOptions.disabled());
+    }
+
+    /**
+     * Creates an encoder.
+     * With batching enabled, messages are held until {@link #flush()} or a batching limit and then sent as
+     * one {@code BATCH} message, the code byte followed by the batched messages back to back;
+     * a batch of one message is sent as is.
+     * @param messagesOut the consumer of encoded messages, must not be null
+     * @param batching the batching options, must not be null
+     */
+    public BinaryRemotePageMessageEncoder(final Consumer<byte[]> messagesOut, final MessageBatchingOptions batching) {
+        this(messagesOut, batching, Metrics.noop());
+    }
+
+    /**
+     * Creates an encoder which records the sizes of the messages it sends.
+     * @param messagesOut the consumer of encoded messages, must not be null
+     * @param batching the batching options, must not be null
+     * @param metrics records {@link MetricNames#PROTOCOL_MESSAGE_SIZE}, must not be null
+     */
+    public BinaryRemotePageMessageEncoder(final Consumer<byte[]> messagesOut,
+                                          final MessageBatchingOptions batching,
+                                          final Metrics metrics) {
+        this.messagesOut = Objects.requireNonNull(messagesOut);
+        this.batching = Objects.requireNonNull(batching);
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    @Override
+    public void setRenderNum(final int renderNum) {
+        beginMessage();
+        writer.writeByte(SET_RENDER_NUM);
+        writer.writeVarInt(renderNum);
+        endMessage();
+    }
+
+    @Override
+    public void listenEvents(final List<DomEventEntry> events) {
+        Objects.requireNonNull(events);
+        if (!events.isEmpty()) {
+            beginMessage();
+            writer.writeByte(LISTEN_EVENT);
+            writer.writeVarInt(events.size());
+            for (final DomEventEntry event : events) {
+                writer.writeName(event.eventName);
+                writer.writeBoolean(event.preventDefault);
+                writer.writeNodeId(event.eventTarget.nodeId());
+                writeModifier(event.modifier);
+            }
+            endMessage();
+        }
+    }
+
+    @Override
+    public void forgetEvent(final String eventType, final NodeId nodeId) {
+        Objects.requireNonNull(eventType);
+        Objects.requireNonNull(nodeId);
+        beginMessage();
+        writer.writeByte(FORGET_EVENT);
+        writer.writeName(eventType);
+        writer.writeNodeId(nodeId);
+        endMessage();
+    }
+
+    @Override
+    public void extractProperty(final int descriptor, final NodeId nodeId, final String name) {
+        Objects.requireNonNull(nodeId);
+        Objects.requireNonNull(name);
+        beginMessage();
+        writer.writeByte(EXTRACT_PROPERTY);
+        writer.writeSignedVarInt(descriptor);
+        writer.writeNodeId(nodeId);
+        writer.writeName(name);
+        endMessage();
+    }
+
+    @Override
+    public void extractProperties(final int descriptor, final Map<NodeId, Set<String>> properties) {
+        Objects.requireNonNull(properties);
+        beginMessage();
+        writer.writeByte(EXTRACT_PROPERTIES);
+        writer.writeSignedVarInt(descriptor);
+        writer.writeVarInt(properties.size());
+        for (final Map.Entry<NodeId, Set<String>> element : properties.entrySet()) {
+            writer.writeNodeId(element.getKey());
+            writer.writeVarInt(element.getValue().size());
+            for (final String name : element.getValue()) {
+                writer.writeName(name);
+            }
+        }
+        endMessage();
+    }
+
+    @Override
+    public void modifyDom(final List<DomChange> domChanges) {
+        Objects.requireNonNull(domChanges);
+        if (!domChanges.isEmpty()) {
+            beginMessage();
+            writer.writeByte(MODIFY_DOM);
+            writer.writeVarInt(domChanges.size());
+            for (final DomChange domChange : domChanges) {
+                writeDomChange(domChange);
+            }
+            endMessage();
+        }
+    }
+
+    @Override
+    public void setHref(final String path) {
+        Objects.requireNonNull(path);
+        changePageUrl(HREF_LOCATION_TYPE, path);
+    }
+
+    @Override
+    public void pushHistory(final String path) {
+        Objects.requireNonNull(path);
+        changePageUrl(PUSH_STATE_TYPE, path);
+    }
+
+    @Override
+    public void evalJs(final int descriptor, final String js) {
+        Objects.requireNonNull(js);
+        beginMessage();
+        writer.writeByte(EVAL_JS);
+        writer.writeSignedVarInt(descriptor);
+        writer.writeString(js);
+        endMessage();
+    }
+
+    private void changePageUrl(final int locationType, final String path) {
+        beginMessage();
+        writer.writeByte(CHANGE_PAGE_URL);
+        writer.writeByte(locationType);
+        writer.writeString(path);
+        endMessage();
+    }
+
+    private void writeDomChange(final DomChange domChange) {
+        switch (domChange) {
+            case RemoveAttr c -> {
+                writer.writeByte(REMOVE_ATTR);
+                writer.writeNodeId(c.path());
+                writer.writeXmlNs(c.xmlNs());
+                writer.writeName(c.name());
+                writer.writeBoolean(c.isProperty());
+            }
+            case RemoveStyle c -> {
+                writer.writeByte(REMOVE_STYLE);
+                writer.writePath(c.path());
+                writer.writeName(c.name());
+            }
+            case Remove c -> {
+                writer.writeByte(REMOVE);
+                writer.writeNodeId(c.parentPath());
+                writer.writeNodeId(c.path());
+            }
+            case SetAttr c -> {
+                writer.writeByte(SET_ATTR);
+                writer.writeNodeId(c.path());
+                writer.writeXmlNs(c.xmlNs());
+                writer.writeName(c.name());
+                writer.writeString(c.value());
+                writer.writeBoolean(c.isProperty());
+            }
+            case SetStyle c -> {
+                writer.writeByte(SET_STYLE);
+                writer.writePath(c.path());
+                writer.writeName(c.name());
+                writer.writeString(c.value());
+            }
+            case CreateText c -> {
+                writer.writeByte(CREATE_TEXT);
+                writer.writeNodeId(c.parentPath());
+                writer.writeNodeId(c.path());
+                writer.writeString(c.text());
+            }
+            case Create c -> {
+                writer.writeByte(CREATE);
+                writer.writeNodeId(c.path().parent());
+                writer.writeNodeId(c.path());
+                writer.writeXmlNs(c.xmlNs());
+                writer.writeName(c.tag());
+            }
+            case InsertBefore c -> {
+                writer.writeByte(INSERT_BEFORE);
+                writer.writeNodeId(c.parentPath());
+                writer.writeNodeId(c.path());
+                writer.writeBoolean(c.beforePath() != null);
+                if (c.beforePath() != null) {
+                    writer.writeNodeId(c.beforePath());
+                }
+            }
+        }
+    }
+
+    private void writeModifier(final DomEventEntry.Modifier modifier) {
+        if (modifier instanceof DomEventEntry.ThrottleModifier(int timeFrameMs)) {
+            writer.writeByte(THROTTLE_EVENT_MODIFIER);
+            writer.writeVarInt(timeFrameMs);
+        } else if (modifier instanceof DomEventEntry.DebounceModifier(int waitMs, boolean immediate)) {
+            writer.writeByte(DEBOUNCE_EVENT_MODIFIER);
+            writer.writeVarInt(waitMs);
+            writer.writeBoolean(immediate);
+        } else {
+            writer.writeByte(NO_EVENT_MODIFIER);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (batchedMessages == 1) {
+            sendOut(writer.toByteArray(1));
+        } else if (batchedMessages > 1) {
+            sendOut(writer.toByteArray());
+        }
+        batchedMessages = 0;
+    }
+
+    private void beginMessage() {
+        if (!batching.enabled()) {
+            writer.reset();
+        } else if (batchedMessages == 0) {
+            writer.reset();
+            writer.writeByte(BATCH);
+            batchStartedNanos = System.nanoTime();
+        }
+    }
+
+    private void endMessage() {
+        if (!batching.enabled()) {
+            sendOut(writer.toByteArray());
+            return;
+        }
+        batchedMessages++;
+        if (batching.isFlushDue(writer.length(), batchStartedNanos)) {
+            flush();
+        }
+    }
+
+    private void sendOut(final byte[] message) {
+        metrics.recordValue(MetricNames.PROTOCOL_MESSAGE_SIZE, message.length);
+        messagesOut.accept(message);
+    }
+}
@@ -0,0 +1,78 @@
+package rsp.server.protocol;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable options for coalescing the messages of a live page into batch messages.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()} or {@link #disabled()}.
+ * A live page flushes its batch when its events queue runs empty, so the messages produced by one burst of
+ * events, such as a click re-rendering several components, reach the client as one WebSocket frame.
+ * The limits bound a batch while the queue stays busy.
+ *
+ * @param enabled whether messages are batched; when disabled every message is sent as soon as it is encoded
+ * @param maxBytes a batch is flushed once its encoded size reaches this limit, in characters for the text protocol
+ *                 and bytes for the binary one, must be positive
+ * @param maxLatencyMs a batch is flushed when a message is added to it this long after its first one,
+ *                     in milliseconds, must not be negative
+ */
+public record MessageBatchingOptions(boolean enabled, int maxBytes, long maxLatencyMs) {
+
+    /**
+     * The default size limit of a batch.
+     */
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+
+    /**
+     * The default age limit of a batch, a little more than a 60 Hz frame.
+     */
+    public static final long DEFAULT_MAX_LATENCY_MS = 20;
+
+    public MessageBatchingOptions {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be greater than 0");
+        }
+        if (maxLatencyMs < 0) {
+            throw new IllegalArgumentException("maxLatencyMs must not be negative");
+        }
+    }
+
+    /**
+     * Creates the default options: batching enabled with {@link #DEFAULT_MAX_BYTES}
+     * and {@link #DEFAULT_MAX_LATENCY_MS} limits.
+     */
+    public static MessageBatchingOptions defaults() {
+        return new MessageBatchingOptions(true, DEFAULT_MAX_BYTES, DEFAULT_MAX_LATENCY_MS);
+    }
+
+    /**
+     * Creates options that send every message on its own.
+     */
+    public static MessageBatchingOptions disabled() {
+        return defaults().withEnabled(false);
+    }
+
+    public MessageBatchingOptions withEnabled(final boolean enabled) {
+        return new MessageBatchingOptions(enabled, maxBytes, maxLatencyMs);
+    }
+
+    public MessageBatchingOptions withMaxBytes(final int maxBytes) {
+        return new MessageBatchingOptions(enabled, maxBytes, maxLatencyMs);
+    }
+
+    public MessageBatchingOptions withMaxLatencyMs(final long maxLatencyMs) {
+        return new MessageBatchingOptions(enabled, maxBytes, maxLatencyMs);
+    }
+
+    /**
+     * Checks whether a batch has reached one of the limits.
+     *
+     * @param batchSize the batch's encoded size
+     * @param startedNanos the {@link System#nanoTime()} when the batch's first message was added
+     * @return true if the batch must be flushed now
+     */
+    boolean isFlushDue(final int batchSize, final long startedNanos) {
+        return batchSize >= maxBytes
+               || System.nanoTime() - startedNanos >= TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+    }
+}
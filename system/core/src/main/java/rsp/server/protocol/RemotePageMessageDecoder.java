@@ -5,7 +5,9 @@ import rsp.dom.NodeId;
 import rsp.page.events.DomEventNotification;
 import rsp.page.events.EvalJsResponseEvent;
 import rsp.page.events.ExtractPropertyResponseEvent;
+import rsp.page.events.ExtractPropertiesResponseEvent;
 import rsp.page.events.Command;
+import rsp.page.events.RenderAcknowledgedEvent;
 import rsp.server.ExtractPropertyResponse;
 import rsp.util.json.JsonDataType;
 import rsp.util.json.JsonParser;
@@ -24,13 +26,14 @@ public final class RemotePageMessageDecoder implements MessageDecoder {
     private JsonParser jsonParser;
     private final Consumer<Command> remoteIn;
 
-    private static final int DOM_EVENT = 0; // `$renderNum:$elementId:$eventType`
+    static final int DOM_EVENT = 0; // `$renderNum:$elementId:$eventType`
     private static final int CUSTOM_CALLBACK = 1; // `$name:arg`
     private static final int EXTRACT_PROPERTY_RESPONSE = 2; // `$descriptor:$value`
     private static final int HISTORY = 3; // URL
     private static final int EVAL_JS_RESPONSE = 4; // `$descriptor:$status:$value`
     private static final int EXTRACT_EVENT_DATA_RESPONSE = 5; // `$descriptor:$dataJson`
-    private static final int HEARTBEAT = 6;
+    private static final int HEARTBEAT = 6; // `$renderNum`, optional
+    private static final int EXTRACT_PROPERTIES_RESPONSE = 7; // `$descriptor`, {$elementId: {$propertyName: $value}}
 
     private static final int JSON_METADATA_DATA = 0;
     private static final int JSON_METADATA_UNDEFINED = 1;
@@ -71,6 +74,16 @@ public final class RemotePageMessageDecoder implements MessageDecoder {
                                     + messageJson.length + ", elements: " + java.util.Arrays.toString(messageJson));
                             }
                         }
+                        case EXTRACT_PROPERTIES_RESPONSE -> {
+                            if (messageJson.length == 3
+                                && messageJson[1] instanceof JsonDataType.String(String str)
+                                && messageJson[2] instanceof JsonDataType.Object values) {
+                                remoteIn.accept(new ExtractPropertiesResponseEvent(Integer.parseInt(str), values));
+                            } else {
+                                throw new JsonDataType.JsonException("Invalid EXTRACT_PROPERTIES_RESPONSE message format, length="
+                                    + messageJson.length + ", elements: " + java.util.Arrays.toString(messageJson));
+                            }
+                        }
                         case EVAL_JS_RESPONSE -> {
                             if (messageJson.length >= 2 && messageJson[1] instanceof JsonDataType.String(String metadata)) {
                                 if (messageJson.length == 2) {
@@ -83,7 +96,13 @@ public final class RemotePageMessageDecoder implements MessageDecoder {
                                     + messageJson.length + ", elements: " + java.util.Arrays.toString(messageJson));
                             }
                         }
-                        case HEARTBEAT -> heartBeat();
+                        case HEARTBEAT -> {
+                            if (messageJson.length >= 2 && messageJson[1] instanceof JsonDataType.String(String str)) {
+                                heartBeat(str);
+                            } else {
+                                heartBeat();
+                            }
+                        }
                     }
                 }
             }
@@ -127,4 +146,9 @@ public final class RemotePageMessageDecoder implements MessageDecoder {
     private void heartBeat() {
         logger.log(TRACE, () -> "Heartbeat message received");
     }
+
+    private void heartBeat(final String renderNumber) {
+        heartBeat();
+        remoteIn.accept(new RenderAcknowledgedEvent(Integer.parseInt(renderNumber)));
+    }
 }
@@ -5,11 +5,15 @@ import rsp.dom.NodeId;
 import rsp.dom.XmlNs;
 import rsp.dom.TreePositionPath;
 import rsp.dom.DefaultDomChangesContext.*;
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
 import rsp.server.RemoteOut;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import static rsp.util.json.JsonUtils.escape;
@@ -22,55 +26,93 @@ import static rsp.util.json.JsonUtils.escape;
  */
 public final class RemotePageMessageEncoder implements RemoteOut {
 
-    private static final int SET_RENDER_NUM = 0; // (n)
-    private static final int CLEAN_ROOT = 1; // ()
-    private static final int LISTEN_EVENT = 2; // (type, preventDefault, id, modifier)
-    private static final int EXTRACT_PROPERTY = 3; // (descriptor, id, propertyName )
-    private static final int MODIFY_DOM = 4; // (commands)
-    private static final int FOCUS = 5; // (id) {
-    private static final int CHANGE_PAGE_URL = 6; // (componentPath)
-    private static final int UPLOAD_FORM = 7; // (id, descriptor)
-    private static final int RELOAD_CSS = 8; // ()
-    private static final int KEEP_ALIVE = 9; // ()
-    private static final int EVAL_JS = 10; // (code)
-    private static final int EXTRACT_EVENT_DATA = 11; // (descriptor, renderNum)
-    private static final int LIST_FILES = 12; // (id, descriptor)
-    private static final int UPLOAD_FILE = 13; // (id, descriptor, fileName)
-    private static final int REST_FORM = 14; // (id)
-    private static final int FORGET_EVENT = 15; // (type, id)
+    static final int SET_RENDER_NUM = 0; // (n)
+    static final int CLEAN_ROOT = 1; // ()
+    static final int LISTEN_EVENT = 2; // (type, preventDefault, id, modifier)
+    static final int EXTRACT_PROPERTY = 3; // (descriptor, id, propertyName )
+    static final int MODIFY_DOM = 4; // (commands)
+    static final int FOCUS = 5; // (id) {
+    static final int CHANGE_PAGE_URL = 6; // (componentPath)
+    static final int UPLOAD_FORM = 7; // (id, descriptor)
+    static final int RELOAD_CSS = 8; // ()
+    static final int KEEP_ALIVE = 9; // ()
+    static final int EVAL_JS = 10; // (code)
+    static final int EXTRACT_EVENT_DATA = 11; // (descriptor, renderNum)
+    static final int LIST_FILES = 12; // (id, descriptor)
+    static final int UPLOAD_FILE = 13; // (id, descriptor, fileName)
+    static final int REST_FORM = 14; // (id)
+    static final int FORGET_EVENT = 15; // (type, id)
+    static final int BATCH = 16; // (messages)
+    static final int EXTRACT_PROPERTIES = 17; // (descriptor, [id, [propertyName...]]...)
 
     // MODIFY_DOM commands
-    private static final int  CREATE = 0; // (id, childId, xmlNs, tag)
-    private static final int  CREATE_TEXT = 1; // (id, childId, text)
-    private static final int  REMOVE = 2; // (id, childId)
-    private static final int  SET_ATTR = 3; // (id, xmlNs, name, value, isProperty)
-    private static final int  REMOVE_ATTR = 4; // (id, xmlNs, name, isProperty)
-    private static final int  SET_STYLE = 5; // (id, name, value)
-    private static final int  REMOVE_STYLE = 6; // (id, name)
-    private static final int  INSERT_BEFORE = 7; // (id, childId, beforeChildId) — beforeChildId "" means append
+    static final int  CREATE = 0; // (id, childId, xmlNs, tag)
+    static final int  CREATE_TEXT = 1; // (id, childId, text)
+    static final int  REMOVE = 2; // (id, childId)
+    static final int  SET_ATTR = 3; // (id, xmlNs, name, value, isProperty)
+    static final int  REMOVE_ATTR = 4; // (id, xmlNs, name, isProperty)
+    static final int  SET_STYLE = 5; // (id, name, value)
+    static final int  REMOVE_STYLE = 6; // (id, name)
+    static final int  INSERT_BEFORE = 7; // (id, childId, beforeChildId) — beforeChildId "" means append
 
     // EVENT modifier
-    private static final int  NO_EVENT_MODIFIER = 0;
-    private static final int  THROTTLE_EVENT_MODIFIER = 1;
-    private static final int  DEBOUNCE_EVENT_MODIFIER = 2;
+    static final int  NO_EVENT_MODIFIER = 0;
+    static final int  THROTTLE_EVENT_MODIFIER = 1;
+    static final int  DEBOUNCE_EVENT_MODIFIER = 2;
 
     //SET URL LOCATION type
-    private static final int  HREF_LOCATION_TYPE = 0;
-    private static final int  PATHNAME_LOCATION_TYPE = 1;
-    private static final int  HASH_LOCATION_TYPE = 2;
-    private static final int  SEARCH_LOCATION_TYPE = 3;
-    private static final int  PUSH_STATE_TYPE = 4;
+    static final int  HREF_LOCATION_TYPE = 0;
+    static final int  PATHNAME_LOCATION_TYPE = 1;
+    static final int  HASH_LOCATION_TYPE = 2;
+    static final int  SEARCH_LOCATION_TYPE = 3;
+    static final int  PUSH_STATE_TYPE = 4;
 
     private final Consumer<String> messagesOut;
+    private final MessageBatchingOptions batching;
+    private final Metrics metrics;
+    private final StringBuilder batch = new StringBuilder();
 
+    private String firstBatchedMessage;
+    private int batchedMessages;
+    private long batchStartedNanos;
+
+    /**
+     * Creates an encoder which sends every message as soon as it is encoded.
+     * @param messagesOut the consumer of encoded messages, must not be null
+     */
     public RemotePageMessageEncoder(final Consumer<String> messagesOut) {
+        this(messagesOut, MessageBatchingOptions.disabled());
+    }
+
+    /**
+     * Creates an encoder.
+     * With batching enabled, messages are held until {@link #flush()} or a batching limit and then sent as
+     * one {@code BATCH} message, an array of the batched messages; a batch of one message is sent as is.
+     * @param messagesOut the consumer of encoded messages, must not be null
+     * @param batching the batching options, must not be null
+     */
+    public RemotePageMessageEncoder(final Consumer<String> messagesOut, final MessageBatchingOptions batching) {
+        this(messagesOut, batching, Metrics.noop());
+    }
+
+    /**
+     * Creates an encoder which records the sizes of the messages it sends.
+     * @param messagesOut the consumer of encoded messages, must not be null
+     * @param batching the batching options, must not be null
+     * @param metrics records {@link MetricNames#PROTOCOL_MESSAGE_SIZE}, must not be null
+     */
+    public RemotePageMessageEncoder(final Consumer<String> messagesOut,
+                                    final MessageBatchingOptions batching,
+                                    final Metrics metrics) {
         this.messagesOut = Objects.requireNonNull(messagesOut);
+        this.batching = Objects.requireNonNull(batching);
+        this.metrics = Objects.requireNonNull(metrics);
     }
 
     @Override
     public void setRenderNum(final int renderNum) {
         final String message = addSquareBrackets(joinString(SET_RENDER_NUM, renderNum));
-        messagesOut.accept(message);
+        send(message);
     }
 
     @Override
@@ -83,7 +125,7 @@ public final class RemotePageMessageEncoder implements RemoteOut {
                                                          quote(modifierString(e.modifier)))).toArray(String[]::new);
             final String message = addSquareBrackets(joinString(LISTEN_EVENT,
                                                                 joinString(changes)));
-            messagesOut.accept(message);
+            send(message);
         }
     }
 
@@ -94,7 +136,7 @@ public final class RemotePageMessageEncoder implements RemoteOut {
         final String message = addSquareBrackets(joinString(FORGET_EVENT,
                                                             quote(escape(eventType)),
                                                             quote(nodeId.toString())));
-        messagesOut.accept(message);
+        send(message);
     }
 
     private static String modifierString(final DomEventEntry.Modifier eventModifier) {
@@ -115,7 +157,22 @@ public final class RemotePageMessageEncoder implements RemoteOut {
                                                             quote(descriptor),
                                                             quote(nodeId),
                                                             quote(escape(name))));
-        messagesOut.accept(message);
+        send(message);
+    }
+
+    @Override
+    public void extractProperties(final int descriptor, final Map<NodeId, Set<String>> properties) {
+        Objects.requireNonNull(properties);
+        final String[] elements = properties.entrySet().stream()
+                .map(e -> joinString(quote(e.getKey()),
+                                     addSquareBrackets(joinString(e.getValue().stream()
+                                                                          .map(name -> quote(escape(name)))
+                                                                          .toArray(String[]::new)))))
+                .toArray(String[]::new);
+        final String message = addSquareBrackets(elements.length == 0
+                                                 ? joinString(EXTRACT_PROPERTIES, descriptor)
+                                                 : joinString(EXTRACT_PROPERTIES, descriptor, joinString(elements)));
+        send(message);
     }
 
     @Override
@@ -125,7 +182,7 @@ public final class RemotePageMessageEncoder implements RemoteOut {
             final String[] changes = domChanges.stream().map(this::modifyDomMessageBody).toArray(String[]::new);
             final String message = addSquareBrackets(joinString(MODIFY_DOM,
                                                                 joinString(changes)));
-            messagesOut.accept(message);
+            send(message);
         }
     }
 
@@ -133,14 +190,14 @@ public final class RemotePageMessageEncoder implements RemoteOut {
     public void setHref(final String path) {
         Objects.requireNonNull(path);
         final String message = addSquareBrackets(joinString(CHANGE_PAGE_URL, HREF_LOCATION_TYPE, quote(escape(path))));
-        messagesOut.accept(message);
+        send(message);
     }
 
     @Override
     public void pushHistory(final String path) {
         Objects.requireNonNull(path);
         final String message = addSquareBrackets(joinString(CHANGE_PAGE_URL, PUSH_STATE_TYPE, quote(escape(path))));
-        messagesOut.accept(message);
+        send(message);
     }
 
     private String modifyDomMessageBody(final DomChange domChange) {
@@ -165,7 +222,53 @@ public final class RemotePageMessageEncoder implements RemoteOut {
     public void evalJs(final int descriptor, final String js) {
         Objects.requireNonNull(js);
         final String message = addSquareBrackets(joinString(EVAL_JS, descriptor, quote(escape(js))));
-        messagesOut.accept(message);
+        send(message);
+    }
+
+    @Override
+    public void flush() {
+        if (batchedMessages == 1) {
+            sendOut(firstBatchedMessage);
+        } else if (batchedMessages > 1) {
+            sendOut(batch.append(']').toString());
+        }
+        batchedMessages = 0;
+        firstBatchedMessage = null;
+    }
+
+    /**
+     * Joins already encoded messages into one {@code BATCH} message, for a transport which delivers the messages
+     * of several event loop turns at once, such as HTTP long polling.
+     * @param messages the encoded messages, must not be empty
+     * @return a batch of the messages, or the message itself if it is the only one
+     */
+    public static String batch(final List<String> messages) {
+        Objects.requireNonNull(messages);
+        if (messages.isEmpty()) {
+            throw new IllegalArgumentException("messages must not be empty");
+        }
+        if (messages.size() == 1) {
+            return messages.getFirst();
+        }
+        return "[" + BATCH + "," + String.join(",", messages) + "]";
+    }
+
+    private void send(final String message) {
+        if (!batching.enabled()) {
+            sendOut(message);
+            return;
+        }
+        if (batchedMessages == 0) {
+            batch.setLength(0);
+            batch.append('[').append(BATCH);
+            firstBatchedMessage = message;
+            batchStartedNanos = System.nanoTime();
+        }
+        batch.append(',').append(message);
+        batchedMessages++;
+        if (batching.isFlushDue(batch.length(), batchStartedNanos)) {
+            flush();
+        }
     }
 
     private String joinString(final String[] strings) {
@@ -183,4 +286,9 @@ public final class RemotePageMessageEncoder implements RemoteOut {
     private String addSquareBrackets(final String str) {
         return "["+ str + "]";
     }
+
+    private void sendOut(final String message) {
+        metrics.recordValue(MetricNames.PROTOCOL_MESSAGE_SIZE, message.length());
+        messagesOut.accept(message);
+    }
 }
@@ -0,0 +1,188 @@
+package rsp.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel for many short-lived timeouts which are usually cancelled before they expire,
+ * such as the deadlines of requests to a page's browser.
+ * <p>
+ * Scheduling and cancelling a timeout are constant time and don't take a lock. A single daemon thread advances
+ * the wheel every tick and hands the expired tasks to an executor, so a slow task doesn't delay the others.
+ * A timeout expires within one tick after its delay. A cancelled timeout releases its task at once and leaves
+ * the wheel when the wheel's thread next passes its bucket.
+ */
+public final class TimerWheel implements AutoCloseable {
+    private static final System.Logger logger = System.getLogger(TimerWheel.class.getName());
+
+    /**
+     * The default resolution of timeouts.
+     */
+    public static final long DEFAULT_TICK_MS = 100;
+
+    /**
+     * The default number of buckets, a timeout shorter than this many ticks is visited once.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final Executor executor;
+    private final List<ArrayDeque<Timeout>> buckets;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final long startNanos;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a wheel and starts its thread.
+     * @param tickMs the resolution of timeouts, in milliseconds, must be positive
+     * @param wheelSize the number of buckets, must be positive
+     * @param executor runs the expired tasks, must not be null
+     */
+    public TimerWheel(final long tickMs, final int wheelSize, final Executor executor) {
+        if (tickMs < 1) {
+            throw new IllegalArgumentException("tickMs must be greater than 0");
+        }
+        if (wheelSize < 1) {
+            throw new IllegalArgumentException("wheelSize must be greater than 0");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.executor = Objects.requireNonNull(executor);
+        final List<ArrayDeque<Timeout>> wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+        this.buckets = List.copyOf(wheel);
+        this.startNanos = System.nanoTime();
+        this.thread = Thread.ofPlatform().name("rsp-timer-wheel").daemon().start(this::run);
+    }
+
+    /**
+     * @return the process-wide wheel with {@link #DEFAULT_TICK_MS}, which runs its expired tasks on virtual threads
+     */
+    public static TimerWheel shared() {
+        return SharedInstance.INSTANCE;
+    }
+
+    /**
+     * Schedules a task.
+     * @param task the task to run when the delay expires, must not be null
+     * @param delayMs the delay in milliseconds, a non-positive delay expires on the next tick
+     * @return the timeout, which can be cancelled
+     */
+    public Timeout schedule(final Runnable task, final long delayMs) {
+        Objects.requireNonNull(task);
+        final long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, delayMs));
+        final Timeout timeout = new Timeout(task, System.nanoTime() - startNanos + delayNanos);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel's thread, the pending timeouts never expire.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            final long sleepNanos = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            tick++;
+            transferScheduled(tick);
+            expire(buckets.get((int) (tick % buckets.size())));
+        }
+    }
+
+    private void transferScheduled(final long currentTick) {
+        for (Timeout timeout = scheduled.poll(); timeout != null; timeout = scheduled.poll()) {
+            if (!timeout.isPending()) {
+                continue;
+            }
+            final long deadlineTick = Math.max(currentTick, (timeout.deadlineNanos + tickNanos - 1) / tickNanos);
+            timeout.remainingRounds = (deadlineTick - currentTick) / buckets.size();
+            buckets.get((int) (deadlineTick % buckets.size())).add(timeout);
+        }
+    }
+
+    private void expire(final ArrayDeque<Timeout> bucket) {
+        final Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            final Timeout timeout = iterator.next();
+            if (!timeout.isPending()) {
+                iterator.remove();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                iterator.remove();
+                final Runnable task = timeout.take();
+                if (task != null) {
+                    try {
+                        executor.execute(task);
+                    } catch (final RuntimeException ex) {
+                        logger.log(System.Logger.Level.ERROR, "Failed to run an expired timeout's task", ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A scheduled task, cancelled or taken to run at most once.
+     */
+    public static final class Timeout {
+        private final long deadlineNanos;
+        private final AtomicReference<Runnable> task;
+        /**
+         * Confined to the wheel's thread.
+         */
+        private long remainingRounds;
+
+        private Timeout(final Runnable task, final long deadlineNanos) {
+            this.task = new AtomicReference<>(task);
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the timeout and releases its task.
+         * @return true if the timeout was pending, false if it has already expired or been cancelled
+         */
+        public boolean cancel() {
+            return take() != null;
+        }
+
+        /**
+         * @return true if the timeout has neither expired nor been cancelled
+         */
+        public boolean isPending() {
+            return task.get() != null;
+        }
+
+        private Runnable take() {
+            return task.getAndSet(null);
+        }
+    }
+
+    private static final class SharedInstance {
+        private static final TimerWheel INSTANCE = new TimerWheel(DEFAULT_TICK_MS,
+                                                                  DEFAULT_WHEEL_SIZE,
+                                                                  Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
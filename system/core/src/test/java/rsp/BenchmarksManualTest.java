@@ -0,0 +1,36 @@
+package rsp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Manual driver for the JMH microbenchmarks of the {@code core} module.
+ *
+ * <p>Gated behind {@code -Dbench.run=true}, so it never runs in the normal build. Select benchmarks with a
+ * regular expression over their class and method names, for example:
+ * {@code mvn -pl system/core -am test -Dtest=BenchmarksManualTest -Dbench.run=true -Dbench.include=EventDispatchBenchmark}.
+ * Add a JMH profiler with {@code -Dbench.prof}, for example {@code -Dbench.prof=gc} for allocation rates.
+ */
+class BenchmarksManualTest {
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench.run", matches = "true")
+    void run_benchmarks() throws Exception {
+        final ChainedOptionsBuilder builder = new OptionsBuilder()
+                .include("rsp\\..*(" + System.getProperty("bench.include", "Benchmark") + ").*")
+                .forks(Integer.getInteger("bench.forks", 1));
+        final String profiler = System.getProperty("bench.prof");
+        if (profiler != null) {
+            builder.addProfiler(profiler);
+        }
+        final Options options = builder.build();
+
+        assertFalse(new Runner(options).run().isEmpty(), "No benchmarks matched bench.include");
+    }
+}
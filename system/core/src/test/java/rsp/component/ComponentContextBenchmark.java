@@ -0,0 +1,161 @@
+package rsp.component;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures deriving component contexts down a deep components tree, as a routed application enriches the context
+ * at each layer, compared with the map-copying context it replaced.
+ * <p>
+ * The root context holds a set of services. Each level of the tree adds string keyed entries, like URL parameters,
+ * and replaces one service. The {@code RootAndTree} variants build the root context too, as a new page does;
+ * the {@code TreeOnly} variants derive from an existing root, as a re-render does. Allocation per operation is the main
+ * metric, run with the GC profiler:
+ * {@code -Dbench.run=true -Dbench.include=ComponentContextBenchmark -Dbench.prof=gc}, see {@code rsp.BenchmarksManualTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentContextBenchmark {
+
+    private static final Class<?>[] SERVICE_TYPES = {
+            Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, Character.class, Boolean.class,
+            StringBuilder.class, StringBuffer.class, Thread.class, ThreadGroup.class, Runtime.class, Object.class,
+            Number.class, CharSequence.class
+    };
+
+    @Param({"8", "32"})
+    public int depth;
+
+    @Param({"1", "4"})
+    public int keysPerLevel;
+
+    private ContextKey.StringKey<String>[][] levelKeys;
+    private String[][] levelValues;
+    private Map<Class<?>, Object> services;
+    private ComponentContext persistentRoot;
+    private CopyingContext copyingRoot;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        services = new HashMap<>();
+        for (final Class<?> type : SERVICE_TYPES) {
+            services.put(type, serviceOf(type));
+        }
+        levelKeys = new ContextKey.StringKey[depth][keysPerLevel];
+        levelValues = new String[depth][keysPerLevel];
+        for (int level = 0; level < depth; level++) {
+            for (int i = 0; i < keysPerLevel; i++) {
+                levelKeys[level][i] = new ContextKey.StringKey<>("url.query.p" + level + "_" + i, String.class);
+                levelValues[level][i] = "value" + level + "_" + i;
+            }
+        }
+        persistentRoot = new ComponentContext().with(services);
+        copyingRoot = CopyingContext.EMPTY.withAll(services);
+    }
+
+    @Benchmark
+    public ComponentContext persistentRootAndTree() {
+        return persistentTree(new ComponentContext().with(services));
+    }
+
+    @Benchmark
+    public CopyingContext copyingRootAndTree() {
+        return copyingTree(CopyingContext.EMPTY.withAll(services));
+    }
+
+    @Benchmark
+    public ComponentContext persistentTreeOnly() {
+        return persistentTree(persistentRoot);
+    }
+
+    @Benchmark
+    public CopyingContext copyingTreeOnly() {
+        return copyingTree(copyingRoot);
+    }
+
+    private ComponentContext persistentTree(final ComponentContext root) {
+        ComponentContext context = root;
+        for (int level = 0; level < depth; level++) {
+            for (int i = 0; i < keysPerLevel; i++) {
+                context = context.with(levelKeys[level][i], levelValues[level][i]);
+            }
+            context = context.with(Integer.class, level);
+        }
+        return context;
+    }
+
+    private CopyingContext copyingTree(final CopyingContext root) {
+        CopyingContext context = root;
+        for (int level = 0; level < depth; level++) {
+            for (int i = 0; i < keysPerLevel; i++) {
+                context = context.with(levelKeys[level][i].key(), levelValues[level][i]);
+            }
+            context = context.with(Integer.class, level);
+        }
+        return context;
+    }
+
+    private static Object serviceOf(final Class<?> type) {
+        if (type == Integer.class) return 0;
+        if (type == Long.class) return 0L;
+        if (type == Short.class) return (short) 0;
+        if (type == Byte.class) return (byte) 0;
+        if (type == Double.class) return 0d;
+        if (type == Float.class) return 0f;
+        if (type == Character.class) return 'c';
+        if (type == Boolean.class) return true;
+        if (type == StringBuilder.class) return new StringBuilder();
+        if (type == StringBuffer.class) return new StringBuffer();
+        if (type == Thread.class) return Thread.currentThread();
+        if (type == ThreadGroup.class) return Thread.currentThread().getThreadGroup();
+        if (type == Runtime.class) return Runtime.getRuntime();
+        if (type == Number.class) return 1;
+        if (type == CharSequence.class) return "s";
+        return new Object();
+    }
+
+    /**
+     * The previous context storage: every added entry copies the map it goes to.
+     */
+    public record CopyingContext(Map<Class<?>, Object> classBased, Map<String, Object> stringBased) {
+        static final CopyingContext EMPTY = new CopyingContext(new HashMap<>(), new HashMap<>());
+
+        CopyingContext with(final Class<?> clazz, final Object value) {
+            final Map<Class<?>, Object> newClassBased = new HashMap<>(classBased);
+            newClassBased.put(clazz, value);
+            return new CopyingContext(newClassBased, stringBased);
+        }
+
+        CopyingContext with(final String key, final Object value) {
+            final Map<String, Object> newStringBased = new HashMap<>(stringBased);
+            newStringBased.put(key, value);
+            return new CopyingContext(classBased, newStringBased);
+        }
+
+        CopyingContext withAll(final Map<Class<?>, Object> instances) {
+            CopyingContext context = this;
+            for (final Map.Entry<Class<?>, Object> entry : instances.entrySet()) {
+                context = context.with(entry.getKey(), entry.getValue());
+            }
+            return context;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package rsp.component;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -154,4 +156,57 @@ public class ComponentContextTests {
             assertEquals("value", modified.get(key));
         }
     }
+
+    @Nested
+    class StructuralSharingTests {
+
+        @Test
+        void with_the_same_value_instance_returns_the_same_context() {
+            final ContextKey.StringKey<String> key = new ContextKey.StringKey<>("test.key", String.class);
+            final ComponentContext context = new ComponentContext().with(key, "value").with(Integer.class, 1);
+
+            assertSame(context, context.with(key, context.get(key)));
+            assertSame(context, context.with(Integer.class, context.get(Integer.class)));
+        }
+
+        @Test
+        void derived_contexts_keep_the_parents_entries() {
+            ComponentContext context = new ComponentContext();
+            for (int i = 0; i < 100; i++) {
+                context = context.with(new ContextKey.StringKey<>("key." + i, Integer.class), i);
+            }
+            final ComponentContext parent = context;
+            final ComponentContext child = parent.with(new ContextKey.StringKey<>("key.50", Integer.class), -1);
+
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, parent.get(new ContextKey.StringKey<>("key." + i, Integer.class)));
+            }
+            assertEquals(-1, child.get(new ContextKey.StringKey<>("key.50", Integer.class)));
+            assertEquals(51, child.get(new ContextKey.StringKey<>("key.51", Integer.class)));
+        }
+
+        @Test
+        void without_string_prefix_removes_only_matching_entries() {
+            final ComponentContext context = new ComponentContext()
+                    .with(new ContextKey.StringKey<>("url.query.a", String.class), "1")
+                    .with(new ContextKey.StringKey<>("url.query.b", String.class), "2")
+                    .with(new ContextKey.StringKey<>("url.path.0", String.class), "p");
+
+            final ComponentContext result = context.withoutStringPrefix("url.query.");
+
+            assertEquals(Map.of(), result.stringEntriesWithPrefix("url.query."));
+            assertEquals(Map.of("url.path.0", "p"), result.stringEntriesWithPrefix("url."));
+            assertEquals(2, context.stringEntriesWithPrefix("url.query.").size());
+            assertSame(result, result.withoutStringPrefix("url.query."));
+        }
+
+        @Test
+        void has_same_entries_for_an_unchanged_derived_context() {
+            final ContextKey.StringKey<String> key = new ContextKey.StringKey<>("test.key", String.class);
+            final ComponentContext context = new ComponentContext().with(key, "value");
+
+            assertTrue(context.hasSameEntries(context.with(key, context.get(key))));
+            assertFalse(context.hasSameEntries(context.with(key, "other")));
+        }
+    }
 }
@@ -17,10 +17,11 @@ import java.util.function.BiFunction;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
- * Verifies the three counters instrumented in {@link ComponentSegment}:
+ * Verifies the metrics instrumented in {@link ComponentSegment}:
  *   - {@code rsp.segment.created}
  *   - {@code rsp.segment.unmounted}
  *   - {@code rsp.segment.update.dropped_unmounted}
+ *   - {@code rsp.segment.update.time}, {@code rsp.segment.render.time} and {@code rsp.segment.diff.time}
  */
 class ComponentSegmentMetricsTests {
 
@@ -124,6 +125,25 @@ class ComponentSegmentMetricsTests {
         assertEquals(0L, metrics.counter(MetricNames.SEGMENT_UPDATE_DROPPED_UNMOUNTED));
     }
 
+    @Test
+    void state_update_records_its_render_and_diff_phases() {
+        final TreeBuilder tb = createTreeBuilder();
+        final ComponentSegment<String> segment = createSegment(tb);
+        tb.openComponent(segment);
+        segment.render(tb);
+        tb.closeComponent();
+
+        segment.applyStateTransformation(s -> "updated");
+        segment.applyStateTransformation(s -> "updated again");
+
+        assertEquals(2L, metrics.histogram(MetricNames.SEGMENT_UPDATE_TIME).count());
+        assertEquals(2L, metrics.histogram(MetricNames.SEGMENT_RENDER_TIME).count());
+        assertEquals(2L, metrics.histogram(MetricNames.SEGMENT_DIFF_TIME).count());
+        assertTrue(metrics.histogram(MetricNames.SEGMENT_UPDATE_TIME).sum()
+                   >= metrics.histogram(MetricNames.SEGMENT_RENDER_TIME).sum()
+                      + metrics.histogram(MetricNames.SEGMENT_DIFF_TIME).sum());
+    }
+
     @Test
     void no_metrics_emitted_when_context_has_no_metrics_instance() {
         // A segment built without Metrics in context falls back to NoOp.
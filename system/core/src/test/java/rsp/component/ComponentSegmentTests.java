@@ -3,6 +3,7 @@ package rsp.component;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import rsp.dom.HtmlBuilder;
 import rsp.dom.TreePositionPath;
 import rsp.dom.TagNode;
 import rsp.dom.Node;
@@ -11,10 +12,12 @@ import rsp.page.QualifiedSessionId;
 import rsp.page.events.Command;
 import rsp.page.events.ComponentEventNotification;
 import rsp.page.events.GenericTaskEvent;
+import rsp.page.events.RemoteCommand;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
@@ -303,6 +306,21 @@ public class ComponentSegmentTests {
             assertEquals(NEW_STATE, callbacks.lastNewState);
             assertEquals(componentId, callbacks.lastComponentId);
         }
+
+        @Test
+        void applies_a_staged_transformation_before_a_later_synchronous_one() {
+            final TreeBuilder treeBuilder = createTreeBuilder();
+            final ComponentSegment<String> segment = createSegment("0", treeBuilder);
+            renderSegment(treeBuilder, segment);
+            callbacks.clear();
+
+            segment.stageStateTransformation(s -> Optional.of(s + "-staged"));
+            segment.applyStateTransformation(s -> s + "-synchronous");
+            segment.applyStagedStateTransformation();
+
+            assertEquals(List.of("onUpdated:0->0-staged", "onUpdated:0-staged->0-staged-synchronous"),
+                         callbacks.callOrder.stream().filter(c -> c.startsWith("onUpdated")).toList());
+        }
     }
 
     @Nested
@@ -1173,6 +1191,117 @@ public class ComponentSegmentTests {
             assertEquals("two", observed.get());
             assertEquals("two", parent.directChildren().get(0).componentContext().get(key));
         }
+
+        private ComponentSegment<String> memoizedParent(final TreeBuilder treeBuilder,
+                                                        final ContextKey.StringKey<String> key,
+                                                        final AtomicInteger childRenders) {
+            final ComponentRuntimePolicy memoPolicy = new ComponentRuntimePolicy() {
+                @Override
+                public boolean isReusable() {
+                    return true;
+                }
+
+                @Override
+                public Object memoInputs(final ComponentContext context) {
+                    return context.get(key);
+                }
+            };
+            final ComponentSegmentFactory<String> childFactory = (sid, path, tbf, ctx, cmd) ->
+                    new ComponentSegment<>(
+                            new ComponentCompositeKey(sid, "memoizedChild", path),
+                            (componentKey, c) -> "child",
+                            (c, s) -> c,
+                            stateUpdate -> state -> rc -> {
+                                childRenders.incrementAndGet();
+                                rc.openNode(XmlNs.html, "span", false);
+                                rc.addTextNode(rc.componentContext.get(key));
+                                rc.closeNode("span", false);
+                            },
+                            new TestCallbacks(),
+                            memoPolicy,
+                            tbf,
+                            ctx,
+                            cmd
+                    );
+
+            final ComponentView<String, Object> parentView = stateUpdate -> state -> rc -> {
+                rc.openNode(XmlNs.html, "div", false);
+                rc.openNode(XmlNs.html, "b", false);
+                rc.addTextNode(state);
+                rc.closeNode("b", false);
+                final ComponentSegment<String> child = rc.openComponent(childFactory);
+                child.render(rc);
+                rc.closeComponent();
+                rc.closeNode("div", false);
+            };
+
+            return new ComponentSegment<>(
+                    componentId,
+                    (componentKey, ctx) -> "one:a",
+                    (ctx, state) -> ctx.with(key, state.substring(state.indexOf(':') + 1)),
+                    parentView,
+                    callbacks,
+                    treeBuilder,
+                    componentContext,
+                    commandsEnqueue
+            );
+        }
+
+        private List<RemoteCommand.ModifyDom> modifyDomCommands() {
+            return capturedCommands.stream()
+                    .filter(RemoteCommand.ModifyDom.class::isInstance)
+                    .map(RemoteCommand.ModifyDom.class::cast)
+                    .toList();
+        }
+
+        @Test
+        void memoized_child_keeps_its_subtree_when_its_inputs_are_unchanged() {
+            final TreeBuilder treeBuilder = createTreeBuilder();
+            final ContextKey.StringKey<String> key = new ContextKey.StringKey<>("memo.input", String.class);
+            final AtomicInteger childRenders = new AtomicInteger();
+            final ComponentSegment<String> parent = memoizedParent(treeBuilder, key, childRenders);
+
+            renderSegment(treeBuilder, parent);
+            final ComponentSegment<?> child = parent.directChildren().get(0);
+            capturedCommands.clear();
+
+            parent.applyStateTransformation(_ -> "two:a");
+
+            assertEquals(1, childRenders.get(), "A child with unchanged inputs must not render again");
+            assertSame(child, parent.directChildren().get(0));
+            final List<RemoteCommand.ModifyDom> modifications = modifyDomCommands();
+            assertEquals(1, modifications.size());
+            assertEquals(1, modifications.get(0).domChanges().size(), "Only the parent's own text changes");
+            assertEquals("<div><b>two:a</b><span>a</span></div>", html(parent));
+
+            parent.applyStateTransformation(_ -> "three:a");
+
+            assertEquals(1, childRenders.get());
+            assertEquals("<div><b>three:a</b><span>a</span></div>", html(parent));
+        }
+
+        @Test
+        void memoized_child_renders_when_its_inputs_change() {
+            final TreeBuilder treeBuilder = createTreeBuilder();
+            final ContextKey.StringKey<String> key = new ContextKey.StringKey<>("memo.input", String.class);
+            final AtomicInteger childRenders = new AtomicInteger();
+            final ComponentSegment<String> parent = memoizedParent(treeBuilder, key, childRenders);
+
+            renderSegment(treeBuilder, parent);
+            capturedCommands.clear();
+
+            parent.applyStateTransformation(_ -> "one:b");
+
+            assertEquals(2, childRenders.get());
+            assertEquals(1, modifyDomCommands().size());
+            assertEquals("<div><b>one:b</b><span>b</span></div>", html(parent));
+        }
+
+        private String html(final ComponentSegment<?> segment) {
+            final HtmlBuilder hb = new HtmlBuilder(new StringBuilder());
+            segment.html(hb);
+            return hb.toString();
+        }
     }
 
     /**
@@ -105,4 +105,18 @@ class ContextScopeTests {
 
         assertEquals("new", observed.get());
     }
+
+    @Test
+    void replace_with_an_unchanged_derived_context_updates_current_without_notifying() {
+        final ComponentContext initial = new ComponentContext().with(KEY, "same");
+        final ContextScope scope = new ContextScope(initial);
+        final AtomicInteger calls = new AtomicInteger();
+        scope.watch(KEY, (_, _) -> calls.incrementAndGet());
+        final ComponentContext next = initial.with(KEY, initial.get(KEY));
+
+        scope.replace(next);
+
+        assertSame(next, scope.current());
+        assertEquals(0, calls.get());
+    }
 }
@@ -0,0 +1,137 @@
+package rsp.component;
+
+import org.junit.jupiter.api.Test;
+import rsp.pbt.Gen;
+import rsp.pbt.Property;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentHashMapTests {
+
+    @Test
+    void empty_map_has_no_entries() {
+        final PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get("a"));
+        assertFalse(map.containsKey("a"));
+    }
+
+    @Test
+    void put_keeps_the_original_map_unchanged() {
+        final PersistentHashMap<String, Integer> original = PersistentHashMap.<String, Integer>empty().put("a", 1);
+
+        final PersistentHashMap<String, Integer> updated = original.put("a", 2).put("b", 3);
+
+        assertEquals(1, original.get("a"));
+        assertNull(original.get("b"));
+        assertEquals(1, original.size());
+        assertEquals(2, updated.get("a"));
+        assertEquals(3, updated.get("b"));
+        assertEquals(2, updated.size());
+    }
+
+    @Test
+    void put_of_the_same_value_instance_returns_the_same_map() {
+        final Object value = new Object();
+        final PersistentHashMap<String, Object> map = PersistentHashMap.<String, Object>empty().put("a", value);
+
+        assertSame(map, map.put("a", value));
+    }
+
+    @Test
+    void remove_of_an_absent_key_returns_the_same_map() {
+        final PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", 1);
+
+        assertSame(map, map.remove("b"));
+    }
+
+    @Test
+    void supports_null_values() {
+        final PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty().put("a", null);
+
+        assertTrue(map.containsKey("a"));
+        assertNull(map.get("a"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void keeps_keys_with_equal_hash_codes_apart() {
+        final PersistentHashMap<CollidingKey, Integer> map = PersistentHashMap.<CollidingKey, Integer>empty()
+                .put(new CollidingKey("a"), 1)
+                .put(new CollidingKey("b"), 2)
+                .put(new CollidingKey("c"), 3);
+
+        final PersistentHashMap<CollidingKey, Integer> removed = map.remove(new CollidingKey("b"));
+
+        assertEquals(3, map.size());
+        assertEquals(2, map.get(new CollidingKey("b")));
+        assertEquals(2, removed.size());
+        assertEquals(1, removed.get(new CollidingKey("a")));
+        assertNull(removed.get(new CollidingKey("b")));
+        assertEquals(3, removed.get(new CollidingKey("c")));
+    }
+
+    @Test
+    void behaves_as_a_hash_map_for_puts_and_removes() {
+        Property.forAll(Gen.maps(Gen.alpha(0, 3), Gen.integers(0, 100), 300),
+                        Gen.maps(Gen.alpha(0, 3), Gen.booleans(), 100))
+                .check((puts, removes) -> {
+                    final Map<String, Integer> expected = new HashMap<>(puts);
+                    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+                    for (final Map.Entry<String, Integer> entry : puts.entrySet()) {
+                        map = map.put(entry.getKey(), entry.getValue());
+                    }
+                    for (final String key : removes.keySet()) {
+                        expected.remove(key);
+                        map = map.remove(key);
+                    }
+
+                    assertEquals(expected, toMap(map));
+                    assertEquals(expected.size(), map.size());
+                    for (final String key : puts.keySet()) {
+                        assertEquals(expected.get(key), map.get(key));
+                    }
+                });
+    }
+
+    @Test
+    void behaves_as_a_hash_map_for_colliding_keys() {
+        Property.forAll(Gen.maps(Gen.alpha(0, 4), Gen.integers(0, 100), 100),
+                        Gen.maps(Gen.alpha(0, 4), Gen.booleans(), 50))
+                .check((puts, removes) -> {
+                    final Map<CollidingKey, Integer> expected = new HashMap<>();
+                    PersistentHashMap<CollidingKey, Integer> map = PersistentHashMap.empty();
+                    for (final Map.Entry<String, Integer> entry : puts.entrySet()) {
+                        expected.put(new CollidingKey(entry.getKey()), entry.getValue());
+                        map = map.put(new CollidingKey(entry.getKey()), entry.getValue());
+                    }
+                    for (final String key : removes.keySet()) {
+                        expected.remove(new CollidingKey(key));
+                        map = map.remove(new CollidingKey(key));
+                    }
+
+                    assertEquals(expected, toMap(map));
+                    assertEquals(expected.size(), map.size());
+                });
+    }
+
+    private static <K, V> Map<K, V> toMap(final PersistentHashMap<K, V> map) {
+        final Map<K, V> result = new HashMap<>();
+        map.forEach(result::put);
+        return result;
+    }
+
+    /**
+     * A key with few distinct hash codes, some differing only in the high bits.
+     */
+    private record CollidingKey(String name) {
+        @Override
+        public int hashCode() {
+            return (name.length() % 3) << 30;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package rsp.dom;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttributesTests {
+
+    @Test
+    void keeps_attributes_in_insertion_order() {
+        final Attributes attributes = new Attributes();
+        attributes.add("id", "a", false);
+        attributes.add("class", "b", false);
+        attributes.add("value", "c", true);
+
+        assertEquals(List.of(new AttributeNode("id", "a", false),
+                             new AttributeNode("class", "b", false),
+                             new AttributeNode("value", "c", true)),
+                     list(attributes));
+    }
+
+    @Test
+    void replaces_the_value_of_an_attribute_with_the_same_name_and_kind() {
+        final Attributes attributes = new Attributes();
+        attributes.add("value", "attribute", false);
+        attributes.add("value", "property", true);
+        attributes.add("value", "changed", false);
+
+        assertEquals(List.of(new AttributeNode("value", "changed", false),
+                             new AttributeNode("value", "property", true)),
+                     list(attributes));
+    }
+
+    @Test
+    void removes_an_attribute() {
+        final Attributes attributes = new Attributes();
+        attributes.add("id", "a", false);
+        attributes.add("class", "b", false);
+        attributes.add("title", "c", false);
+
+        assertTrue(attributes.remove("class", false));
+        assertFalse(attributes.remove("class", false));
+        assertFalse(attributes.remove("id", true));
+
+        assertEquals(List.of(new AttributeNode("id", "a", false), new AttributeNode("title", "c", false)),
+                     list(attributes));
+    }
+
+    @Test
+    void looks_up_attributes_beyond_the_linear_scan_limit() {
+        final Attributes attributes = new Attributes();
+        final int count = Attributes.LINEAR_SCAN_LIMIT * 3;
+        for (int i = 0; i < count; i++) {
+            attributes.add("data-" + i, "v" + i, i % 2 == 0);
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, attributes.indexOf("data-" + i, i % 2 == 0));
+            assertEquals(-1, attributes.indexOf("data-" + i, i % 2 != 0));
+        }
+
+        attributes.remove("data-0", true);
+        attributes.add("data-1", "changed", false);
+        attributes.add("data-last", "v", false);
+
+        assertEquals(0, attributes.indexOf("data-1", false));
+        assertEquals("changed", attributes.value(0));
+        assertEquals(count - 1, attributes.indexOf("data-last", false));
+        assertEquals(count, attributes.size());
+    }
+
+    private static List<AttributeNode> list(final Attributes attributes) {
+        final List<AttributeNode> result = new ArrayList<>();
+        attributes.forEach(result::add);
+        return result;
+    }
+}
@@ -47,4 +47,48 @@ class NodeIdTests {
         assertEquals(NodeId.of(new TreePositionPath(1, 2)), NodeId.of("1_2"));
         assertNotEquals(NodeId.of("1_2"), NodeId.of("1_2_kn2"));
     }
+
+    @Test
+    void ids_built_by_walking_equal_parsed_ids() {
+        final NodeId walked = NodeId.of(new TreePositionPath(1)).child("kn7").child(3).incSibling().parent().child(2);
+        final NodeId parsed = NodeId.of("1_kn7_2");
+
+        assertEquals(parsed, walked);
+        assertEquals(parsed.hashCode(), walked.hashCode());
+        assertEquals(NodeId.of("1_2"), NodeId.of("1_kn7").parent().child("2"));
+    }
+
+    @Test
+    void exposes_positional_and_key_segments() {
+        final NodeId id = NodeId.of("1_ks-a_12");
+
+        assertFalse(id.isKeyAt(0));
+        assertTrue(id.isKeyAt(1));
+        assertEquals(12, id.positionAt(2));
+        assertEquals("ks-a", id.segmentAt(1));
+        assertEquals("12", id.lastSegment());
+        assertThrows(IllegalStateException.class, () -> id.positionAt(1));
+    }
+
+    @Test
+    void non_canonical_decimals_are_key_segments() {
+        final NodeId id = NodeId.of("1_02");
+
+        assertTrue(id.isKeyAt(1));
+        assertEquals("1_02", id.toString());
+        assertNotEquals(NodeId.of("1_2"), id);
+    }
+
+    @Test
+    void checks_ancestors_by_segments() {
+        final NodeId id = NodeId.of("1_kn3_2");
+
+        assertTrue(id.isAtOrUnder(NodeId.of("1_kn3_2")));
+        assertTrue(id.isAtOrUnder(NodeId.of("1_kn3")));
+        assertTrue(id.isAtOrUnder(NodeId.of("")));
+        assertFalse(id.isAtOrUnder(NodeId.of("1_kn31")));
+        assertFalse(id.isAtOrUnder(NodeId.of("1_3")));
+        assertFalse(NodeId.of("1_12").isAtOrUnder(NodeId.of("1_1")));
+        assertFalse(NodeId.of("1").isAtOrUnder(id));
+    }
 }
@@ -0,0 +1,193 @@
+package rsp.dom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building two renders of a tree and diffing them, for a wide table and a deep chain of elements.
+ * <p>
+ * Every element has a few attributes, and the second render changes the class of every tenth element.
+ * {@code compactAttributes} builds {@link TagNode}s and runs {@link NodesTreeDiff}. {@code copyOnWriteSet} is
+ * the storage it replaced, a {@link CopyOnWriteArraySet} of {@link AttributeNode}s per element diffed by set
+ * differences; its diff walks children positionally and skips the rest of {@link NodesTreeDiff}'s work,
+ * so it is a lower bound for the old implementation.
+ * Run with {@code -Dbench.run=true -Dbench.include=NodesTreeDiffBenchmark}, see {@code rsp.BenchmarksManualTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodesTreeDiffBenchmark {
+    private static final TreePositionPath ROOT_PATH = TreePositionPath.of("1");
+
+    @Param({"wide", "deep"})
+    public String shape;
+
+    @Param({"100", "1000"})
+    public int size;
+
+    private final CountingChangesContext changes = new CountingChangesContext();
+    private final HtmlBuilder htmlBuilder = new HtmlBuilder(new StringBuilder());
+
+    @Setup
+    public void setUp() {
+        changes.count = 0;
+    }
+
+    @Benchmark
+    public int compactAttributes() {
+        final TagNode tree1 = tagTree(0);
+        final TagNode tree2 = tagTree(1);
+        NodesTreeDiff.diff(tree1, tree2, ROOT_PATH, changes, htmlBuilder);
+        return changes.count;
+    }
+
+    @Benchmark
+    public int copyOnWriteSet() {
+        final SetNode tree1 = setTree(0);
+        final SetNode tree2 = setTree(1);
+        return diff(tree1, tree2);
+    }
+
+    private TagNode tagTree(final int render) {
+        if ("wide".equals(shape)) {
+            final TagNode table = new TagNode(XmlNs.html, "table", false);
+            for (int i = 0; i < size; i++) {
+                final TagNode row = new TagNode(XmlNs.html, "tr", false);
+                setTagAttributes(row, i, render);
+                for (int j = 0; j < 4; j++) {
+                    final TagNode cell = new TagNode(XmlNs.html, "td", false);
+                    setTagAttributes(cell, i * 4 + j, render);
+                    row.addChild(cell);
+                }
+                table.addChild(row);
+            }
+            return table;
+        }
+        final TagNode root = new TagNode(XmlNs.html, "div", false);
+        setTagAttributes(root, 0, render);
+        TagNode parent = root;
+        for (int i = 1; i < size; i++) {
+            final TagNode child = new TagNode(XmlNs.html, "div", false);
+            setTagAttributes(child, i, render);
+            parent.addChild(child);
+            parent = child;
+        }
+        return root;
+    }
+
+    private static void setTagAttributes(final TagNode tag, final int i, final int render) {
+        tag.addAttribute("id", "n" + i, false);
+        tag.addAttribute("class", className(i, render), false);
+        tag.addAttribute("data-index", Integer.toString(i), false);
+        tag.addAttribute("title", "Node", false);
+        tag.addAttribute("value", "v", true);
+    }
+
+    private SetNode setTree(final int render) {
+        if ("wide".equals(shape)) {
+            final SetNode table = new SetNode();
+            for (int i = 0; i < size; i++) {
+                final SetNode row = new SetNode();
+                setSetAttributes(row, i, render);
+                for (int j = 0; j < 4; j++) {
+                    final SetNode cell = new SetNode();
+                    setSetAttributes(cell, i * 4 + j, render);
+                    row.children.add(cell);
+                }
+                table.children.add(row);
+            }
+            return table;
+        }
+        final SetNode root = new SetNode();
+        setSetAttributes(root, 0, render);
+        SetNode parent = root;
+        for (int i = 1; i < size; i++) {
+            final SetNode child = new SetNode();
+            setSetAttributes(child, i, render);
+            parent.children.add(child);
+            parent = child;
+        }
+        return root;
+    }
+
+    private static void setSetAttributes(final SetNode node, final int i, final int render) {
+        node.attributes.add(new AttributeNode("id", "n" + i, false));
+        node.attributes.add(new AttributeNode("class", className(i, render), false));
+        node.attributes.add(new AttributeNode("data-index", Integer.toString(i), false));
+        node.attributes.add(new AttributeNode("title", "Node", false));
+        node.attributes.add(new AttributeNode("value", "v", true));
+    }
+
+    private static String className(final int i, final int render) {
+        return i % 10 == 0 && render > 0 ? "row changed" : "row";
+    }
+
+    private static int diff(final SetNode node1, final SetNode node2) {
+        final Set<AttributeNode> removed = new CopyOnWriteArraySet<>(node1.attributes);
+        final Set<AttributeNode> added = new CopyOnWriteArraySet<>(node2.attributes);
+        removed.removeAll(node2.attributes);
+        added.removeAll(node1.attributes);
+        int changes = removed.size() + added.size();
+        for (int i = 0; i < node1.children.size(); i++) {
+            changes += diff(node1.children.get(i), node2.children.get(i));
+        }
+        return changes;
+    }
+
+    private static final class SetNode {
+        private final CopyOnWriteArraySet<AttributeNode> attributes = new CopyOnWriteArraySet<>();
+        private final List<SetNode> children = new ArrayList<>();
+    }
+
+    private static final class CountingChangesContext implements DomChangesContext {
+        private int count;
+
+        @Override
+        public void removeAttr(final NodeId path, final XmlNs xmlNs, final String name, final boolean isProperty) {
+            count++;
+        }
+
+        @Override
+        public void removeNode(final NodeId parentPath, final NodeId path) {
+            count++;
+        }
+
+        @Override
+        public void setAttr(final NodeId path, final XmlNs xmlNs, final String name, final String value, final boolean isProperty) {
+            count++;
+        }
+
+        @Override
+        public void createTag(final NodeId path, final XmlNs xmlNs, final String tag) {
+            count++;
+        }
+
+        @Override
+        public void createText(final NodeId parentPath, final NodeId path, final String text) {
+            count++;
+        }
+
+        @Override
+        public void insertBefore(final NodeId parentPath, final NodeId path, final NodeId beforePath) {
+            count++;
+        }
+    }
+}
@@ -656,12 +656,12 @@ class NodesTreeDiffPropertyTests {
 
         void removeAttr(final NodeId path, final String name, final boolean isProperty) {
             final TagNode node = (TagNode) els.get(path.toString());
-            node.attributes.removeIf(a -> a.name().equals(name) && a.isProperty() == isProperty);
+            node.attributes.remove(name, isProperty);
         }
 
         void setAttr(final NodeId path, final String name, final String value, final boolean isProperty) {
             final TagNode node = (TagNode) els.get(path.toString());
-            node.attributes.removeIf(a -> a.name().equals(name) && a.isProperty() == isProperty);
+            node.attributes.remove(name, isProperty);
             node.addAttribute(name, value, isProperty);
         }
     }
@@ -210,6 +210,40 @@ class NodesTreeDiffTests {
         assertEquals("-ATTR:1:attr1", cp.resultAsString());
     }
 
+    @Test
+    void should_set_a_changed_attribute_value_without_removing_it() {
+        final TagNode tree1 = new TagNode(XmlNs.html, "div", false);
+        tree1.addAttribute("id", "row", false);
+        tree1.addAttribute("class", "old", false);
+
+        final TagNode tree2 = new TagNode(XmlNs.html, "div", false);
+        tree2.addAttribute("id", "row", false);
+        tree2.addAttribute("class", "new", false);
+
+        final TestChangesContext cp = new TestChangesContext();
+        NodesTreeDiff.diff(tree1, tree2, basePath, cp, new HtmlBuilder(new StringBuilder()));
+        assertEquals("+ATTR:1:class=new:false", cp.resultAsString());
+    }
+
+    @Test
+    void should_diff_attributes_set_in_a_different_order() {
+        final TagNode tree1 = new TagNode(XmlNs.html, "div", false);
+        tree1.addAttribute("id", "row", false);
+        tree1.addAttribute("hidden", "hidden", false);
+        tree1.addAttribute("class", "a", false);
+        tree1.addAttribute("title", "t", false);
+
+        final TagNode tree2 = new TagNode(XmlNs.html, "div", false);
+        tree2.addAttribute("id", "row", false);
+        tree2.addAttribute("title", "t", false);
+        tree2.addAttribute("class", "b", false);
+        tree2.addAttribute("value", "1", true);
+
+        final TestChangesContext cp = new TestChangesContext();
+        NodesTreeDiff.diff(tree1, tree2, basePath, cp, new HtmlBuilder(new StringBuilder()));
+        assertEquals("-ATTR:1:hidden +ATTR:1:class=b:false +ATTR:1:value=1:true", cp.resultAsString());
+    }
+
     @Nested
     class DiffEmitsRawText {
 
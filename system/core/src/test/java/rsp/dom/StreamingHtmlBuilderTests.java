@@ -0,0 +1,100 @@
+package rsp.dom;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingHtmlBuilderTests {
+
+    @Test
+    void writes_the_same_utf8_text_as_the_string_builder() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final StreamingHtmlBuilder hb = new StreamingHtmlBuilder(output, 4);
+
+        hb.append("<!DOCTYPE html>");
+        hb.buildHtml(document());
+        hb.finish();
+
+        final HtmlBuilder expected = new HtmlBuilder(new StringBuilder("<!DOCTYPE html>"), true);
+        expected.buildHtml(document());
+        assertEquals(expected.toString(), output.toString(StandardCharsets.UTF_8));
+        assertEquals(expected.toString().length(), hb.length());
+    }
+
+    @Test
+    void flushes_the_document_head_before_the_body() throws IOException {
+        final RecordingOutputStream output = new RecordingOutputStream();
+        final StreamingHtmlBuilder hb = new StreamingHtmlBuilder(output);
+
+        hb.buildHtml(document());
+
+        assertEquals(List.of("<html><head><script src=\"/static/js-client.min.js\" defer=\"defer\"></script></head>"),
+                     output.flushed);
+        assertFalse(output.toString(StandardCharsets.UTF_8).contains("<body>"));
+
+        hb.finish();
+
+        assertTrue(output.toString(StandardCharsets.UTF_8).endsWith("</body></html>"));
+    }
+
+    @Test
+    void holds_at_most_a_chunk_of_text_between_nodes() {
+        final RecordingOutputStream output = new RecordingOutputStream();
+        final StreamingHtmlBuilder hb = new StreamingHtmlBuilder(output, 16);
+        final TagNode list = new TagNode(XmlNs.html, "ul", false);
+        for (int i = 0; i < 100; i++) {
+            final TagNode item = new TagNode(XmlNs.html, "li", false);
+            item.addChild(new TextNode("item " + i));
+            list.addChild(item);
+        }
+
+        hb.buildHtml(list);
+
+        assertTrue(hb.length() - output.size() < 16 + "<li>item 99</li>".length());
+    }
+
+    @Test
+    void reports_output_errors_unchecked() {
+        final StreamingHtmlBuilder hb = new StreamingHtmlBuilder(new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                throw new IOException("closed");
+            }
+        });
+
+        assertThrows(UncheckedIOException.class, () -> hb.buildHtml(document()));
+    }
+
+    private static TagNode document() {
+        final TagNode html = new TagNode(XmlNs.html, "html", false);
+        final TagNode head = new TagNode(XmlNs.html, "head", false);
+        final TagNode script = new TagNode(XmlNs.html, "script", false);
+        script.addAttribute("src", "/static/js-client.min.js", false);
+        script.addAttribute("defer", "defer", true);
+        head.addChild(script);
+        html.addChild(head);
+        final TagNode body = new TagNode(XmlNs.html, "body", false);
+        final TagNode h1 = new TagNode(XmlNs.html, "h1", false);
+        h1.addChild(new TextNode("Grüße, 世界 😀 & <friends>"));
+        body.addChild(h1);
+        html.addChild(body);
+        return html;
+    }
+
+    private static final class RecordingOutputStream extends ByteArrayOutputStream {
+        private final List<String> flushed = new ArrayList<>();
+
+        @Override
+        public void flush() {
+            flushed.add(toString(StandardCharsets.UTF_8));
+        }
+    }
+}
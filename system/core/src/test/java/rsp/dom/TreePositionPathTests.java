@@ -13,6 +13,14 @@ class TreePositionPathTests {
         Assertions.assertEquals("", path.toString());
     }
 
+    @Test
+    void parses_and_formats_multi_digit_elements() {
+        final TreePositionPath path = TreePositionPath.of("1_12_305");
+        Assertions.assertEquals(new TreePositionPath(1, 12, 305), path);
+        Assertions.assertEquals("1_12_305", path.toString());
+        Assertions.assertEquals("1_12_305_7", path.addChild(7).toString());
+    }
+
     @Test
     void produces_valid_path() {
         final TreePositionPath path = TreePositionPath.of("1_2_1");
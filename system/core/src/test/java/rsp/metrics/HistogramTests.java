@@ -0,0 +1,114 @@
+package rsp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTests {
+
+    @Test
+    void empty_histogram_reports_zeros() {
+        final Histogram h = new Histogram();
+        assertEquals(0L, h.count());
+        assertEquals(0L, h.sum());
+        assertEquals(0L, h.max());
+        assertEquals(0.0, h.mean());
+        assertEquals(0L, h.valueAtPercentile(99.0));
+    }
+
+    @Test
+    void counts_small_values_exactly() {
+        final Histogram h = new Histogram();
+        for (int i = 1; i <= 10; i++) {
+            h.record(i);
+        }
+        assertEquals(10L, h.count());
+        assertEquals(55L, h.sum());
+        assertEquals(10L, h.max());
+        assertEquals(5L, h.valueAtPercentile(50.0));
+        assertEquals(9L, h.valueAtPercentile(90.0));
+        assertEquals(10L, h.valueAtPercentile(100.0));
+        assertEquals(1L, h.valueAtPercentile(0.0));
+    }
+
+    @Test
+    void reports_large_values_within_the_relative_error() {
+        final Histogram h = new Histogram();
+        for (long v = 1_000; v <= 1_000_000_000L; v *= 10) {
+            h.record(v);
+        }
+        h.record(Long.MAX_VALUE);
+
+        for (long v = 1_000, i = 1; v <= 1_000_000_000L; v *= 10, i++) {
+            final long reported = h.valueAtPercentile(100.0 * i / h.count());
+            assertTrue(reported >= v && reported <= v + v / Histogram.SUB_BUCKET_COUNT,
+                       "value " + v + " reported as " + reported);
+        }
+        assertEquals(Long.MAX_VALUE, h.valueAtPercentile(100.0));
+    }
+
+    @Test
+    void bucket_bounds_cover_every_value_once() {
+        long previousHighest = -1;
+        for (int i = 0; i < Histogram.BUCKETS_COUNT; i++) {
+            final long highest = Histogram.highestEquivalentValue(i);
+            assertEquals(i, Histogram.bucketIndex(previousHighest + 1));
+            assertEquals(i, Histogram.bucketIndex(highest));
+            previousHighest = highest;
+        }
+        assertEquals(Long.MAX_VALUE, previousHighest);
+    }
+
+    @Test
+    void records_negative_values_as_zero() {
+        final Histogram h = new Histogram();
+        h.record(-5);
+        assertEquals(1L, h.count());
+        assertEquals(0L, h.max());
+    }
+
+    @Test
+    void rejects_percentiles_out_of_range() {
+        final Histogram h = new Histogram();
+        assertThrows(IllegalArgumentException.class, () -> h.valueAtPercentile(100.5));
+        assertThrows(IllegalArgumentException.class, () -> h.valueAtPercentile(-1.0));
+    }
+
+    @Test
+    void records_concurrently_without_losing_values() throws InterruptedException {
+        final Histogram h = new Histogram();
+        final int threads = 8;
+        final int perThread = 10_000;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final long base = t * 1_000L;
+            pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    h.record(base + i % 1_000);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals((long) threads * perThread, h.count());
+        assertEquals(threads * 1_000L - 1, h.max());
+    }
+
+    @Test
+    void reset_clears_recorded_values() {
+        final Histogram h = new Histogram();
+        h.record(42);
+        h.reset();
+        assertEquals(0L, h.count());
+        assertEquals(0L, h.max());
+        assertEquals(0L, h.valueAtPercentile(50.0));
+    }
+}
@@ -0,0 +1,54 @@
+package rsp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsRegistryTests {
+
+    @Test
+    void keeps_counters_gauges_histograms_and_timers_apart() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.incrementCounter("b.counter");
+        registry.incrementCounter("a.counter", 4);
+        registry.setGauge("gauge", 3);
+        registry.setGauge("gauge", 2);
+        registry.recordValue("value", 10);
+        registry.recordTime("time", 1_000);
+
+        assertEquals(Map.of("a.counter", 4L, "b.counter", 1L), registry.counters());
+        assertEquals(List.of("a.counter", "b.counter"), List.copyOf(registry.counters().keySet()));
+        assertEquals(Map.of("gauge", 2L), registry.gauges());
+        assertEquals(10L, registry.histograms().get("value").sum());
+        assertEquals(1_000L, registry.timers().get("time").sum());
+        assertTrue(registry.histograms().get("time") == null && registry.timers().get("value") == null);
+    }
+
+    @Test
+    void counts_concurrent_increments() throws InterruptedException {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final int threads = 8;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    registry.incrementCounter("events");
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(threads * 10_000L, registry.counters().get("events"));
+    }
+}
@@ -2,6 +2,7 @@ package rsp.metrics;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -77,6 +78,23 @@ class RecordingMetricsTests {
         assertEquals(0L, m.gauge("g"));
     }
 
+    @Test
+    void records_values_and_times_into_histograms() {
+        final RecordingMetrics m = new RecordingMetrics();
+        m.recordValue("size", 100);
+        m.recordValue("size", 300);
+        m.recordTime("time", 5_000);
+
+        assertEquals(2L, m.histogram("size").count());
+        assertEquals(300L, m.histogram("size").max());
+        assertEquals(5_000L, m.histogram("time").sum());
+        assertEquals(0L, m.histogram("never.recorded").count());
+        assertEquals(Set.of("size", "time"), m.histogramNames());
+
+        m.reset();
+        assertTrue(m.histogramNames().isEmpty());
+    }
+
     @Test
     void snapshot_returns_immutable_copy() {
         final RecordingMetrics m = new RecordingMetrics();
@@ -0,0 +1,162 @@
+package rsp.page;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rsp.component.ComponentContext;
+import rsp.component.ComponentStateSupplier;
+import rsp.component.ComponentView;
+import rsp.component.definitions.Component;
+import rsp.dom.DomEventEntry;
+import rsp.dom.NodeId;
+import rsp.dom.XmlNs;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the dispatch of a click on a list row, against the number of rows on the page.
+ * <p>
+ * Each row is a component with a few handlers. The click targets a text node inside a row's button, so the dispatch
+ * walks up the ancestors of the target. {@code indexed} looks up an {@link EventDispatchTable} at each level;
+ * {@code linearScan} is the algorithm it replaced, which collected all the page's handlers at each level.
+ * Run with {@code -Dbench.run=true -Dbench.include=EventDispatchBenchmark}, see {@code rsp.BenchmarksManualTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatchBenchmark {
+
+    @Param({"10", "100", "500", "2000"})
+    public int rows;
+
+    private PageBuilder pageBuilder;
+    private EventDispatchTable eventDispatchTable;
+    private NodeId target;
+    private int invoked;
+
+    @Setup
+    public void setUp() {
+        pageBuilder = new PageBuilder(new QualifiedSessionId("device", "session"),
+                                      "",
+                                      new ComponentContext(),
+                                      new RedirectableEventsConsumer());
+        new ListComponent(rows).render(pageBuilder);
+        eventDispatchTable = new EventDispatchTable(pageBuilder::recursiveComponentEvents);
+        final List<DomEventEntry> events = pageBuilder.indexEvents(eventDispatchTable);
+        final NodeId button = events.stream()
+                                    .filter(e -> e.eventName.equals("click"))
+                                    .skip(rows / 2)
+                                    .findFirst()
+                                    .orElseThrow()
+                                    .eventTarget
+                                    .nodeId();
+        target = button.child("1");
+    }
+
+    @Benchmark
+    public int indexed() {
+        NodeId currentNodeId = target;
+        while (true) {
+            for (final DomEventEntry event : eventDispatchTable.domEvents(currentNodeId, "click")) {
+                event.eventHandler.accept(null);
+            }
+            if (currentNodeId.elementsCount() > 0) {
+                currentNodeId = currentNodeId.parent();
+            } else {
+                break;
+            }
+        }
+        return invoked;
+    }
+
+    @Benchmark
+    public int linearScan() {
+        NodeId currentNodeId = target;
+        while (true) {
+            for (final DomEventEntry event : pageBuilder.recursiveEvents()) {
+                if (event.eventTarget.nodeId().equals(currentNodeId) && event.eventName.equals("click")) {
+                    event.eventHandler.accept(null);
+                }
+            }
+            if (currentNodeId.elementsCount() > 0) {
+                currentNodeId = currentNodeId.parent();
+            } else {
+                break;
+            }
+        }
+        return invoked;
+    }
+
+    private final class ListComponent extends Component<Integer, Object> {
+        private final int rows;
+
+        private ListComponent(final int rows) {
+            super("list");
+            this.rows = rows;
+        }
+
+        @Override
+        public ComponentStateSupplier<Integer> initStateSupplier() {
+            return (_, _) -> rows;
+        }
+
+        @Override
+        public ComponentView<Integer, Object> componentView() {
+            return _ -> state -> renderContext -> {
+                renderContext.openNode(XmlNs.html, "html", false);
+                renderContext.openNode(XmlNs.html, "body", false);
+                renderContext.openNode(XmlNs.html, "ul", false);
+                renderContext.addEvent("click", _ -> invoked++, false, DomEventEntry.NO_MODIFIER);
+                for (int i = 0; i < state; i++) {
+                    new RowComponent(i).render(renderContext);
+                }
+                renderContext.closeNode("ul", false);
+                renderContext.closeNode("body", false);
+                renderContext.closeNode("html", false);
+            };
+        }
+    }
+
+    private final class RowComponent extends Component<Integer, Object> {
+        private final int row;
+
+        private RowComponent(final int row) {
+            super("row");
+            this.row = row;
+        }
+
+        @Override
+        public ComponentStateSupplier<Integer> initStateSupplier() {
+            return (_, _) -> row;
+        }
+
+        @Override
+        public ComponentView<Integer, Object> componentView() {
+            return _ -> state -> renderContext -> {
+                renderContext.openNode(XmlNs.html, "li", false);
+                renderContext.addEvent("mouseover", _ -> invoked++, false, DomEventEntry.NO_MODIFIER);
+                renderContext.openNode(XmlNs.html, "input", true);
+                renderContext.addEvent("input", _ -> invoked++, false, DomEventEntry.NO_MODIFIER);
+                renderContext.addEvent("change", _ -> invoked++, false, DomEventEntry.NO_MODIFIER);
+                renderContext.closeNode("input", false);
+                renderContext.openNode(XmlNs.html, "button", false);
+                renderContext.addEvent("click", _ -> invoked++, false, DomEventEntry.NO_MODIFIER);
+                renderContext.addTextNode("Row " + state);
+                renderContext.closeNode("button", false);
+                renderContext.closeNode("li", false);
+            };
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package rsp.page;
+
+import org.junit.jupiter.api.Test;
+import rsp.component.ComponentEventEntry;
+import rsp.dom.DomEventEntry;
+import rsp.dom.NodeId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventDispatchTableTests {
+
+    private final List<ComponentEventEntry> componentEvents = new ArrayList<>();
+    private final AtomicInteger componentEventsReads = new AtomicInteger();
+    private final EventDispatchTable table = new EventDispatchTable(() -> {
+        componentEventsReads.incrementAndGet();
+        return componentEvents;
+    });
+
+    @Test
+    void finds_dom_events_by_node_id_and_event_name() {
+        final DomEventEntry click = domEvent("click", "1_1");
+        final DomEventEntry input = domEvent("input", "1_1");
+        final DomEventEntry otherClick = domEvent("click", "1_2");
+        table.putDomEvents("owner", List.of(click, input, otherClick));
+
+        assertEquals(List.of(click), table.domEvents(NodeId.of("1_1"), "click"));
+        assertEquals(List.of(input), table.domEvents(NodeId.of("1_1"), "input"));
+        assertEquals(List.of(otherClick), table.domEvents(NodeId.of("1_2"), "click"));
+        assertTrue(table.domEvents(NodeId.of("1"), "click").isEmpty());
+        assertTrue(table.domEvents(NodeId.of("1_1"), "submit").isEmpty());
+    }
+
+    @Test
+    void put_replaces_only_the_owners_dom_events() {
+        final Object owner = new Object();
+        final Object otherOwner = new Object();
+        final DomEventEntry first = domEvent("popstate", "");
+        final DomEventEntry fromOtherOwner = domEvent("popstate", "");
+        final DomEventEntry second = domEvent("popstate", "");
+        table.putDomEvents(owner, List.of(first));
+        table.putDomEvents(otherOwner, List.of(fromOtherOwner));
+
+        table.putDomEvents(owner, List.of(second));
+
+        final List<DomEventEntry> handlers = table.domEvents(NodeId.of(""), "popstate");
+        assertEquals(2, handlers.size());
+        assertSame(fromOtherOwner, handlers.get(0));
+        assertSame(second, handlers.get(1));
+    }
+
+    @Test
+    void removes_owners_dom_events() {
+        final Object owner = new Object();
+        table.putDomEvents(owner, List.of(domEvent("click", "1_1")));
+
+        table.removeDomEvents(owner);
+
+        assertTrue(table.domEvents(NodeId.of("1_1"), "click").isEmpty());
+    }
+
+    @Test
+    void dom_events_lookup_returns_a_snapshot() {
+        final Object owner = new Object();
+        table.putDomEvents(owner, List.of(domEvent("click", "1_1")));
+
+        final List<DomEventEntry> handlers = table.domEvents(NodeId.of("1_1"), "click");
+        table.removeDomEvents(owner);
+
+        assertEquals(1, handlers.size());
+    }
+
+    @Test
+    void finds_component_events_by_exact_name_and_wildcard_in_tree_order() {
+        final ComponentEventEntry wildcard = componentEvent("stateUpdated.*");
+        final ComponentEventEntry exact = componentEvent("stateUpdated.sort");
+        final ComponentEventEntry other = componentEvent("other");
+        componentEvents.addAll(List.of(wildcard, other, exact));
+
+        assertEquals(List.of(wildcard, exact), table.componentEvents("stateUpdated.sort"));
+        assertEquals(List.of(wildcard), table.componentEvents("stateUpdated.page"));
+        assertEquals(List.of(other), table.componentEvents("other"));
+        assertTrue(table.componentEvents("unknown").isEmpty());
+    }
+
+    @Test
+    void reads_component_events_once_until_invalidated() {
+        componentEvents.add(componentEvent("a"));
+        table.componentEvents("a");
+        table.componentEvents("a");
+        table.componentEvents("b");
+        assertEquals(1, componentEventsReads.get());
+
+        final ComponentEventEntry added = componentEvent("a");
+        componentEvents.add(added);
+        table.invalidateComponentEvents();
+
+        assertEquals(2, table.componentEvents("a").size());
+        assertEquals(2, componentEventsReads.get());
+    }
+
+    private static DomEventEntry domEvent(final String eventName, final String nodeId) {
+        return new DomEventEntry(eventName,
+                                 new DomEventEntry.Target(NodeId.of(nodeId)),
+                                 _ -> {},
+                                 false,
+                                 DomEventEntry.NO_MODIFIER);
+    }
+
+    private static ComponentEventEntry componentEvent(final String eventName) {
+        return new ComponentEventEntry(eventName, _ -> {}, false);
+    }
+}
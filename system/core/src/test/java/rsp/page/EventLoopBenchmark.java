@@ -0,0 +1,116 @@
+package rsp.page;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures the latency of an event through a page's reactor while many other pages are idle, and the heap
+ * an idle page's event loop retains.
+ * <p>
+ * {@code virtualThread} gives every page a {@link DefaultEventLoop}, a virtual thread parked on its queue;
+ * {@code shared} gives it a {@link SharedEventLoops} mailbox, which holds no thread when idle.
+ * The retained heap per idle page is reported as the {@code bytesPerIdleSession} secondary result.
+ * Run with {@code -Dbench.run=true -Dbench.include=EventLoopBenchmark}, see {@code rsp.BenchmarksManualTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventLoopBenchmark {
+
+    @Param({"virtualThread", "shared"})
+    public String eventLoop;
+
+    @Param({"1000", "20000"})
+    public int idleSessions;
+
+    private SharedEventLoops sharedEventLoops;
+    private final List<Reactor<Integer>> idle = new ArrayList<>();
+    private Reactor<Integer> hot;
+    private volatile int handled;
+    private int sent;
+    private long bytesPerIdleSession;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        sharedEventLoops = new SharedEventLoops();
+        final Supplier<EventLoop> eventLoops = "shared".equals(eventLoop) ? sharedEventLoops : DefaultEventLoop::new;
+
+        final long heapBefore = usedHeap();
+        final CountDownLatch started = new CountDownLatch(idleSessions);
+        for (int i = 0; i < idleSessions; i++) {
+            final Reactor<Integer> reactor = new Reactor<>(_ -> started.countDown(), eventLoops.get());
+            reactor.start();
+            // an event makes sure a virtual thread has started and parked on the empty queue
+            reactor.accept(0);
+            idle.add(reactor);
+        }
+        started.await();
+        bytesPerIdleSession = Math.max(0L, usedHeap() - heapBefore) / idleSessions;
+
+        hot = new Reactor<>(_ -> handled++, eventLoops.get());
+        hot.start();
+        handled = 0;
+        sent = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        hot.stop();
+        idle.forEach(Reactor::stop);
+        idle.clear();
+        sharedEventLoops.close();
+    }
+
+    @Benchmark
+    public int eventLatency(final Footprint footprint) {
+        footprint.bytesPerIdleSession = bytesPerIdleSession;
+        hot.accept(++sent);
+        while (handled != sent) {
+            Thread.onSpinWait();
+        }
+        return sent;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Reports the retained heap per idle page next to the latency.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerIdleSession;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerIdleSession = 0;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package rsp.page;
+
+import org.junit.jupiter.api.Test;
+import rsp.component.ComponentCompositeKey;
+import rsp.component.ComponentStateSupplier;
+import rsp.component.ComponentView;
+import rsp.component.definitions.Component;
+import rsp.metrics.Metrics;
+import rsp.server.Path;
+import rsp.server.http.HttpMethod;
+import rsp.server.http.HttpRequest;
+import rsp.server.http.HttpResponse;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static rsp.dsl.Html.body;
+import static rsp.dsl.Html.h1;
+import static rsp.dsl.Html.html;
+
+class HttpHandlerTests {
+
+    private final RenderedPagesStore store = new RenderedPagesStore(RenderedPagesOptions.defaults(), Metrics.noop());
+    private final List<String> unmounted = new ArrayList<>();
+
+    @Test
+    void stores_a_rendered_page_for_its_client() throws Exception {
+        final HttpResponse response = handler(false).handle(request(HttpMethod.GET)).get();
+
+        assertEquals(200, response.status);
+        assertEquals(1, store.size());
+        assertTrue(unmounted.isEmpty());
+    }
+
+    @Test
+    void shuts_down_the_page_of_a_head_request() throws Exception {
+        final HttpResponse response = handler(false).handle(request(HttpMethod.HEAD)).get();
+
+        assertEquals(200, response.status);
+        assertTrue(store.isEmpty());
+        assertEquals(List.of("page"), unmounted);
+    }
+
+    @Test
+    void shuts_down_the_streamed_page_of_a_head_request() throws Exception {
+        final HttpResponse response = handler(true).handle(request(HttpMethod.HEAD)).get();
+
+        response.bodyWriter.writeTo(OutputStream.nullOutputStream());
+
+        assertTrue(store.isEmpty());
+        assertEquals(List.of("page"), unmounted);
+    }
+
+    @Test
+    void shuts_down_a_stored_streamed_page_when_its_response_fails() throws Exception {
+        final HttpResponse response = handler(true).handle(request(HttpMethod.GET)).get();
+
+        // the page is short, so its text is written out with the end of the document, after the page is stored
+        assertThrows(IllegalStateException.class, () -> response.bodyWriter.writeTo(new FailingOutputStream()));
+
+        assertTrue(store.isEmpty());
+        assertEquals(List.of("page"), unmounted);
+    }
+
+    private HttpHandler handler(final boolean streamingRendering) {
+        return new HttpHandler(store, _ -> new Page(), Optional.empty(), 5_000, 0, streamingRendering, Metrics.noop());
+    }
+
+    private static HttpRequest request(final HttpMethod method) {
+        final URI uri = URI.create("http://localhost/page");
+        return new HttpRequest(method, uri, uri.toString(), Path.of("/page"));
+    }
+
+    private static final class FailingOutputStream extends OutputStream {
+        @Override
+        public void write(final int b) {
+            throw new IllegalStateException("write failed");
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            throw new IllegalStateException("write failed");
+        }
+    }
+
+    private final class Page extends Component<String, Object> {
+        private Page() {
+            super("page");
+        }
+
+        @Override
+        public ComponentStateSupplier<String> initStateSupplier() {
+            return (_, _) -> "page";
+        }
+
+        @Override
+        public ComponentView<String, Object> componentView() {
+            return _ -> state -> html(body(h1(state)));
+        }
+
+        @Override
+        public void onUnmounted(final ComponentCompositeKey componentId, final String state) {
+            unmounted.add(state);
+        }
+    }
+}
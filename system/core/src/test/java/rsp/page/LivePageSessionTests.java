@@ -9,12 +9,23 @@ import rsp.dom.NodeId;
 import rsp.dom.TreePositionPath;
 import rsp.dom.XmlNs;
 import rsp.dsl.Key;
+import rsp.metrics.MetricNames;
+import rsp.metrics.RecordingMetrics;
 import rsp.page.events.*;
+import rsp.ref.ElementRef;
 import rsp.server.TestCollectingRemoteOut;
 import rsp.util.json.JsonDataType;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
@@ -132,6 +143,169 @@ public class LivePageSessionTests {
         }
     }
 
+    @Nested
+    public class QueueOverflowTests {
+        private final RecordingMetrics metrics = new RecordingMetrics();
+
+        private void setUpBoundedSession(final SessionQueueOptions.OverflowPolicy policy) {
+            session = new LivePageSession(eventLoop,
+                                          SessionResumeOptions.disabled(),
+                                          new SessionQueueOptions(1, policy),
+                                          metrics);
+        }
+
+        /**
+         * Events from the event loop's own thread bypass the capacity, so these come from another thread.
+         */
+        private void acceptFromAnotherThread(final Command... events) throws InterruptedException {
+            final Thread producer = Thread.startVirtualThread(() -> {
+                for (final Command event : events) {
+                    session.eventsConsumer().accept(event);
+                }
+            });
+            producer.join(2_000);
+            assertFalse(producer.isAlive());
+        }
+
+        @Test
+        void disconnect_policy_reloads_the_client_and_stops_the_session() throws InterruptedException {
+            setUpBoundedSession(SessionQueueOptions.OverflowPolicy.DISCONNECT);
+            initSession(createPageBuilder());
+            remoteOut.commands.clear();
+
+            acceptFromAnotherThread(new RemoteCommand.PushHistory("/a"), new RemoteCommand.PushHistory("/b"));
+            eventLoop.runOneStep();
+
+            assertEquals(List.of(new TestCollectingRemoteOut.EvalJsMessage(-1, "RSP.reload()")), remoteOut.commands);
+            assertTrue(eventLoop.isStopped());
+            assertEquals(1, metrics.counter(MetricNames.SESSION_OVERLOADED));
+        }
+
+        @Test
+        void drop_oldest_policy_coalesces_dom_events_of_the_same_type_on_the_same_element() throws InterruptedException {
+            setUpBoundedSession(SessionQueueOptions.OverflowPolicy.DROP_OLDEST);
+            initSession(createPageBuilder());
+
+            acceptFromAnotherThread(new DomEventNotification(0, NodeId.of("1"), "mousemove", JsonDataType.Object.EMPTY),
+                                    new DomEventNotification(0, NodeId.of("1"), "mousemove", JsonDataType.Object.EMPTY),
+                                    new DomEventNotification(0, NodeId.of("1"), "click", JsonDataType.Object.EMPTY));
+
+            assertEquals(1, metrics.counter(MetricNames.SESSION_QUEUE_COALESCED));
+            assertEquals(1, metrics.counter(MetricNames.SESSION_QUEUE_REJECTED));
+            assertFalse(eventLoop.isStopped());
+        }
+
+        @Test
+        void drop_oldest_policy_keeps_a_queued_click_on_overflow() throws InterruptedException {
+            setUpBoundedSession(SessionQueueOptions.OverflowPolicy.DROP_OLDEST);
+            initSession(createPageBuilder());
+
+            acceptFromAnotherThread(new DomEventNotification(0, NodeId.of("1"), "click", JsonDataType.Object.EMPTY),
+                                    new DomEventNotification(0, NodeId.of("1"), "mousemove", JsonDataType.Object.EMPTY),
+                                    new DomEventNotification(0, NodeId.of("1"), "scroll", JsonDataType.Object.EMPTY));
+
+            assertEquals(0, metrics.counter(MetricNames.SESSION_QUEUE_COALESCED));
+            assertEquals(2, metrics.counter(MetricNames.SESSION_QUEUE_REJECTED));
+            assertFalse(eventLoop.isStopped());
+        }
+
+        @Test
+        void drop_oldest_policy_disconnects_rather_than_drop_a_click() throws InterruptedException {
+            setUpBoundedSession(SessionQueueOptions.OverflowPolicy.DROP_OLDEST);
+            initSession(createPageBuilder());
+            remoteOut.commands.clear();
+
+            acceptFromAnotherThread(new DomEventNotification(0, NodeId.of("1"), "click", JsonDataType.Object.EMPTY),
+                                    new DomEventNotification(0, NodeId.of("1"), "click", JsonDataType.Object.EMPTY));
+            eventLoop.runOneStep();
+
+            assertEquals(0, metrics.counter(MetricNames.SESSION_QUEUE_COALESCED));
+            assertEquals(List.of(new TestCollectingRemoteOut.EvalJsMessage(-1, "RSP.reload()")), remoteOut.commands);
+            assertTrue(eventLoop.isStopped());
+            assertEquals(1, metrics.counter(MetricNames.SESSION_OVERLOADED));
+        }
+    }
+
+    @Nested
+    public class ResumeTests {
+
+        @BeforeEach
+        void setUpResumableSession() {
+            session = new LivePageSession(eventLoop, SessionResumeOptions.defaults().withMaxBufferedCommands(2));
+        }
+
+        @Test
+        void ends_a_render_with_its_number() {
+            initSession(createPageBuilder());
+
+            processEvent(new RemoteCommand.PushHistory("/a"));
+
+            assertEquals(List.of(new TestCollectingRemoteOut.PushHistoryMessage("/a"),
+                                 new TestCollectingRemoteOut.SetRenderNumOutMessage(1)),
+                         remoteOut.commands);
+        }
+
+        @Test
+        void replays_commands_missed_while_parked_on_resume() {
+            initSession(createPageBuilder());
+            processEvent(new RemoteCommand.PushHistory("/a"));
+            processEvent(new ParkSessionCommand());
+            processEvent(new RemoteCommand.PushHistory("/b"));
+            final TestCollectingRemoteOut newRemoteOut = new TestCollectingRemoteOut();
+
+            processEvent(new ResumeSessionCommand(newRemoteOut, 1));
+
+            assertFalse(remoteOut.commands.contains(new TestCollectingRemoteOut.PushHistoryMessage("/b")));
+            assertEquals(List.of(new TestCollectingRemoteOut.PushHistoryMessage("/b"),
+                                 new TestCollectingRemoteOut.SetRenderNumOutMessage(2)),
+                         newRemoteOut.commands);
+            assertFalse(eventLoop.isStopped());
+        }
+
+        @Test
+        void does_not_replay_scripts_on_resume() {
+            initSession(createPageBuilder());
+            processEvent(new ParkSessionCommand());
+            processEvent(new RemoteCommand.EvalJs(1, "alert('once')"));
+            processEvent(new RemoteCommand.PushHistory("/a"));
+            final TestCollectingRemoteOut newRemoteOut = new TestCollectingRemoteOut();
+
+            processEvent(new ResumeSessionCommand(newRemoteOut, 0));
+
+            assertEquals(List.of(new TestCollectingRemoteOut.PushHistoryMessage("/a"),
+                                 new TestCollectingRemoteOut.SetRenderNumOutMessage(1)),
+                         newRemoteOut.commands);
+        }
+
+        @Test
+        void reloads_the_client_when_missed_commands_were_dropped() {
+            initSession(createPageBuilder());
+            processEvent(new ParkSessionCommand());
+            processEvent(new RemoteCommand.PushHistory("/a"));
+            processEvent(new RemoteCommand.PushHistory("/b"));
+            processEvent(new RemoteCommand.PushHistory("/c"));
+            final TestCollectingRemoteOut newRemoteOut = new TestCollectingRemoteOut();
+
+            processEvent(new ResumeSessionCommand(newRemoteOut, 0));
+
+            assertEquals(List.of(new TestCollectingRemoteOut.EvalJsMessage(-1, "RSP.reload()")), newRemoteOut.commands);
+            assertTrue(eventLoop.isStopped());
+        }
+
+        @Test
+        void does_not_replay_acknowledged_renders() {
+            initSession(createPageBuilder());
+            processEvent(new RemoteCommand.PushHistory("/a"));
+            processEvent(new RenderAcknowledgedEvent(1));
+            processEvent(new ParkSessionCommand());
+            final TestCollectingRemoteOut newRemoteOut = new TestCollectingRemoteOut();
+
+            processEvent(new ResumeSessionCommand(newRemoteOut, 1));
+
+            assertEquals(List.of(new TestCollectingRemoteOut.SetRenderNumOutMessage(1)), newRemoteOut.commands);
+        }
+    }
+
     @Nested
     public class RemoteCommandTests {
 
@@ -180,6 +354,146 @@ public class LivePageSessionTests {
 
             // No exception means success
         }
+
+        @Test
+        void eval_js_response_completes_the_future() {
+            final CompletableFuture<JsonDataType> result = evalJsOnClick(createPageBuilder());
+
+            processEvent(new EvalJsResponseEvent(1, new JsonDataType.String("done")));
+
+            assertEquals(new JsonDataType.String("done"), result.join());
+        }
+
+        @Test
+        void eval_js_without_a_response_fails_with_a_timeout() {
+            final RecordingMetrics metrics = new RecordingMetrics();
+            session = new LivePageSession(eventLoop,
+                                          SessionResumeOptions.disabled(),
+                                          SessionQueueOptions.defaults(),
+                                          50,
+                                          metrics);
+            final CompletableFuture<JsonDataType> result = evalJsOnClick(createPageBuilder());
+
+            // Blocks until the timer wheel enqueues the expiry
+            assertTimeoutPreemptively(Duration.ofSeconds(5), eventLoop::runOneStep);
+
+            final CompletionException ex = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(TimeoutException.class, ex.getCause());
+            assertEquals(1, metrics.counter(MetricNames.SESSION_REMOTE_REQUESTS_TIMED_OUT));
+
+            // A late response is ignored
+            processEvent(new EvalJsResponseEvent(1, new JsonDataType.String("late")));
+        }
+
+        @Test
+        void shutdown_fails_pending_eval_js_futures() {
+            final RecordingMetrics metrics = new RecordingMetrics();
+            session = new LivePageSession(eventLoop,
+                                          SessionResumeOptions.disabled(),
+                                          SessionQueueOptions.defaults(),
+                                          0,
+                                          metrics);
+            final CompletableFuture<JsonDataType> result = evalJsOnClick(createPageBuilder());
+
+            processEvent(new ShutdownSessionCommand());
+
+            assertThrows(CancellationException.class, result::join);
+            assertEquals(1, metrics.counter(MetricNames.SESSION_REMOTE_REQUESTS_ORPHANED));
+        }
+
+        private CompletableFuture<JsonDataType> evalJsOnClick(final PageBuilder pageBuilder) {
+            final TreePositionPath elementPath = TreePositionPath.of("1_1");
+            final List<CompletableFuture<JsonDataType>> results = new ArrayList<>();
+            renderComponent(pageBuilder, createComponentWithDomEventHandler(pageBuilder,
+                                                                            elementPath,
+                                                                            "click",
+                                                                            ctx -> results.add(ctx.evalJs("1 + 1"))));
+            initSession(pageBuilder);
+            processEvent(new DomEventNotification(0, NodeId.of(elementPath), "click", JsonDataType.Object.EMPTY));
+            assertEquals(1, results.size());
+            assertFalse(results.get(0).isDone());
+            return results.get(0);
+        }
+    }
+
+    @Nested
+    public class PropertiesTests {
+        private final ElementRef input = new ElementRef() {};
+        private final ElementRef checkbox = new ElementRef() {};
+        private final List<EventContext> clicks = new ArrayList<>();
+
+        private void initSessionWithForm() {
+            final PageBuilder pageBuilder = createPageBuilder();
+            final TreePositionPath formPath = TreePositionPath.of("1_1");
+            renderComponent(pageBuilder, createComponentWithView(_ -> state -> renderContext -> {
+                renderContext.openNode(XmlNs.html, "form", false);
+                renderContext.addEvent(formPath, "click", clicks::add, false, DomEventEntry.NO_MODIFIER);
+                renderContext.openNode(XmlNs.html, "input", true);
+                renderContext.addRef(input);
+                renderContext.closeNode("input", false);
+                renderContext.openNode(XmlNs.html, "input", true);
+                renderContext.addRef(checkbox);
+                renderContext.closeNode("input", false);
+                renderContext.closeNode("form", false);
+            }));
+            initSession(pageBuilder);
+            processEvent(new DomEventNotification(0, NodeId.of(formPath), "click", JsonDataType.Object.EMPTY));
+            assertEquals(1, clicks.size());
+            remoteOut.clear();
+        }
+
+        private TestCollectingRemoteOut.ExtractPropertiesOutMessage lastRequest() {
+            return assertInstanceOf(TestCollectingRemoteOut.ExtractPropertiesOutMessage.class, remoteOut.commands.getLast());
+        }
+
+        @Test
+        void reads_properties_of_several_elements_in_one_request() {
+            initSessionWithForm();
+
+            final CompletableFuture<Map<ElementRef, JsonDataType.Object>> result =
+                    clicks.getFirst().propertiesByRefs(Map.of(input, Set.of("value"), checkbox, Set.of("checked")));
+
+            assertEquals(1, remoteOut.commands.size());
+            final TestCollectingRemoteOut.ExtractPropertiesOutMessage request = lastRequest();
+            assertEquals(2, request.properties().size());
+            final Map<Set<String>, String> ids = new HashMap<>();
+            request.properties().forEach((nodeId, names) -> ids.put(names, nodeId.toString()));
+
+            processEvent(new ExtractPropertiesResponseEvent(request.descriptor(), new JsonDataType.Object(Map.of(
+                    ids.get(Set.of("value")), new JsonDataType.Object(Map.of("value", new JsonDataType.String("text"))),
+                    ids.get(Set.of("checked")), new JsonDataType.Object(Map.of("checked", new JsonDataType.Boolean(true)))))));
+
+            final Map<ElementRef, JsonDataType.Object> values = result.join();
+            assertEquals(new JsonDataType.String("text"), values.get(input).value("value"));
+            assertEquals(new JsonDataType.Boolean(true), values.get(checkbox).value("checked"));
+        }
+
+        @Test
+        void reads_several_properties_of_one_element_and_leaves_out_the_missing_ones() {
+            initSessionWithForm();
+
+            final CompletableFuture<JsonDataType.Object> result =
+                    clicks.getFirst().propertiesByRef(input).getAll(Set.of("value", "selectionStart"));
+
+            final TestCollectingRemoteOut.ExtractPropertiesOutMessage request = lastRequest();
+            final NodeId nodeId = request.properties().keySet().iterator().next();
+            assertEquals(Set.of("value", "selectionStart"), request.properties().get(nodeId));
+
+            processEvent(new ExtractPropertiesResponseEvent(request.descriptor(), new JsonDataType.Object(Map.of(
+                    nodeId.toString(), new JsonDataType.Object(Map.of("value", new JsonDataType.String("text")))))));
+
+            final JsonDataType.Object values = result.join();
+            assertEquals(new JsonDataType.String("text"), values.value("value"));
+            assertNull(values.value("selectionStart"));
+        }
+
+        @Test
+        void reads_nothing_for_no_elements() {
+            initSessionWithForm();
+
+            assertEquals(Map.of(), clicks.getFirst().propertiesByRefs(Map.of()).join());
+            assertTrue(remoteOut.commands.isEmpty());
+        }
     }
 
     @Nested
@@ -346,6 +660,52 @@ public class LivePageSessionTests {
 
             assertEquals(List.of("keyed-parent-clicked"), invocations);
         }
+
+        @Test
+        void dom_event_invokes_handler_of_the_current_render() {
+            final PageBuilder pageBuilder = createPageBuilder();
+            final List<String> invocations = new ArrayList<>();
+            final ComponentSegment<String> segment = createComponentWithView(_ -> state -> renderContext -> {
+                renderContext.openNode(XmlNs.html, "div", false);
+                renderContext.openNode(XmlNs.html, "button", false);
+                renderContext.addEvent("click", _ -> invocations.add(state), false, DomEventEntry.NO_MODIFIER);
+                renderContext.closeNode("button", false);
+                renderContext.closeNode("div", false);
+            });
+            renderComponent(pageBuilder, segment);
+            initSession(pageBuilder);
+
+            processEvent(new DomEventNotification(0, NodeId.of("1_1"), "click", JsonDataType.Object.EMPTY));
+            // Re-render and dispatch in one turn, before the re-render's remote commands are processed
+            processEvent(new GenericTaskEvent(() -> {
+                segment.setState("updated");
+                session.accept(new DomEventNotification(0, NodeId.of("1_1"), "click", JsonDataType.Object.EMPTY));
+            }));
+
+            assertEquals(List.of("state", "updated"), invocations);
+        }
+
+        @Test
+        void dom_event_handler_removed_by_re_render_is_not_invoked() {
+            final PageBuilder pageBuilder = createPageBuilder();
+            final List<String> invocations = new ArrayList<>();
+            final ComponentSegment<String> segment = createComponentWithView(_ -> state -> renderContext -> {
+                renderContext.openNode(XmlNs.html, "div", false);
+                if (state.equals("state")) {
+                    renderContext.addEvent("click", _ -> invocations.add("clicked"), false, DomEventEntry.NO_MODIFIER);
+                }
+                renderContext.closeNode("div", false);
+            });
+            renderComponent(pageBuilder, segment);
+            initSession(pageBuilder);
+
+            processEvent(new GenericTaskEvent(() -> {
+                segment.setState("no handlers");
+                session.accept(new DomEventNotification(0, NodeId.of("1"), "click", JsonDataType.Object.EMPTY));
+            }));
+
+            assertTrue(invocations.isEmpty());
+        }
     }
 
     @Nested
@@ -393,6 +753,28 @@ public class LivePageSessionTests {
             assertEquals(1, invocations.size());
             assertEquals("stateUpdated.sort", invocations.get(0).eventName());
         }
+
+        @Test
+        void component_event_handlers_registered_and_removed_after_init_are_dispatched_accordingly() {
+            final PageBuilder pageBuilder = createPageBuilder();
+            final List<String> invocations = new ArrayList<>();
+            final ComponentSegment<String> segment = createComponentWithComponentEventHandler(
+                    pageBuilder,
+                    "testEvent",
+                    _ -> invocations.add("first")
+            );
+            renderComponent(pageBuilder, segment);
+            initSession(pageBuilder);
+
+            processEvent(new ComponentEventNotification("testEvent", "payload"));
+            final Lookup.Registration registration =
+                    segment.addComponentEventHandler("testEvent", _ -> invocations.add("second"), false);
+            processEvent(new ComponentEventNotification("testEvent", "payload"));
+            registration.unsubscribe();
+            processEvent(new ComponentEventNotification("testEvent", "payload"));
+
+            assertEquals(List.of("first", "first", "second", "first"), invocations);
+        }
     }
 
     // Helper methods for creating components with event handlers
@@ -1,11 +1,17 @@
 package rsp.page;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import rsp.metrics.MetricNames;
+import rsp.metrics.RecordingMetrics;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -88,6 +94,294 @@ class ReactorTests {
         assertEquals(List.of("event-A", "event-B", "event-C"), receivedEvents);
     }
 
+    @Test
+    void runs_queue_drained_callback_after_last_queued_event() {
+        final List<String> calls = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final Reactor<String> reactor = new Reactor<>(calls::add, manualEventLoop, () -> calls.add("drained"));
+        reactor.start();
+
+        reactor.accept("event-A");
+        reactor.accept("event-B");
+        manualEventLoop.runOneStep();
+        manualEventLoop.runOneStep();
+
+        assertEquals(List.of("event-A", "event-B", "drained"), calls);
+    }
+
+    @Test
+    void runs_queue_drained_callback_when_consumer_fails() {
+        final List<String> calls = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final Reactor<String> reactor = new Reactor<>(_ -> { throw new IllegalStateException("failed"); },
+                                                      manualEventLoop,
+                                                      () -> calls.add("drained"));
+        reactor.start();
+
+        reactor.accept("event-A");
+        manualEventLoop.runOneStep();
+
+        assertEquals(List.of("drained"), calls);
+    }
+
+    @Test
+    void records_queue_depth_and_wait_time() {
+        final List<String> receivedEvents = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final Reactor<String> reactor = new Reactor<>(receivedEvents::add, manualEventLoop, () -> {}, metrics);
+        reactor.start();
+
+        reactor.accept("event-A");
+        reactor.accept("event-B");
+        manualEventLoop.runOneStep();
+        manualEventLoop.runOneStep();
+
+        assertEquals(List.of("event-A", "event-B"), receivedEvents);
+        assertEquals(2L, metrics.histogram(MetricNames.SESSION_QUEUE_DEPTH).max());
+        assertEquals(2L, metrics.histogram(MetricNames.SESSION_QUEUE_WAIT_TIME).count());
+    }
+
+    @Test
+    void full_queue_blocks_the_producer_until_the_event_loop_takes_an_event() throws InterruptedException {
+        final List<String> receivedEvents = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final Reactor<String> reactor = bounded(receivedEvents::add, manualEventLoop, metrics, 2,
+                                                SessionQueueOptions.OverflowPolicy.BLOCK, () -> {});
+        reactor.start();
+        reactor.accept("event-A");
+        reactor.accept("event-B");
+
+        final Thread producer = Thread.startVirtualThread(() -> reactor.accept("event-C"));
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        manualEventLoop.runOneStep();
+        producer.join(2_000);
+        assertFalse(producer.isAlive());
+        manualEventLoop.runOneStep();
+        manualEventLoop.runOneStep();
+
+        assertEquals(List.of("event-A", "event-B", "event-C"), receivedEvents);
+        assertEquals(1, metrics.counter(MetricNames.SESSION_QUEUE_BLOCKED));
+    }
+
+    @Test
+    void stop_releases_blocked_producers() throws InterruptedException {
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final Reactor<String> reactor = bounded(_ -> {}, manualEventLoop, metrics, 1,
+                                                SessionQueueOptions.OverflowPolicy.BLOCK, () -> {});
+        reactor.start();
+        reactor.accept("event-A");
+        final Thread producer = Thread.startVirtualThread(() -> reactor.accept("event-B"));
+        producer.join(200);
+
+        reactor.stop();
+        producer.join(2_000);
+
+        assertFalse(producer.isAlive());
+        assertEquals(1, metrics.counter(MetricNames.SESSION_QUEUE_REJECTED));
+    }
+
+    @Test
+    void drop_oldest_replaces_a_queued_event_of_the_same_kind_in_its_place() {
+        final List<String> receivedEvents = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final Reactor<String> reactor = bounded(receivedEvents::add, manualEventLoop, metrics, 3,
+                                                SessionQueueOptions.OverflowPolicy.DROP_OLDEST, () -> {});
+        reactor.start();
+
+        reactor.accept("move-1");
+        reactor.accept("click-1");
+        reactor.accept("task-1");
+        reactor.accept("move-2");
+        for (int i = 0; i < 3; i++) {
+            manualEventLoop.runOneStep();
+        }
+
+        assertEquals(List.of("move-2", "click-1", "task-1"), receivedEvents);
+        assertEquals(1, metrics.counter(MetricNames.SESSION_QUEUE_COALESCED));
+        assertTrue(reactor.isEmpty());
+    }
+
+    @Test
+    void drop_oldest_rejects_a_coalescible_event_with_nothing_to_replace() {
+        final List<String> receivedEvents = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final Reactor<String> reactor = bounded(receivedEvents::add, manualEventLoop, metrics, 1,
+                                                SessionQueueOptions.OverflowPolicy.DROP_OLDEST, () -> {});
+        reactor.start();
+
+        reactor.accept("task-1");
+        reactor.accept("move-1");
+        manualEventLoop.runOneStep();
+
+        assertEquals(List.of("task-1"), receivedEvents);
+        assertEquals(1, metrics.counter(MetricNames.SESSION_QUEUE_REJECTED));
+        assertTrue(reactor.isEmpty());
+    }
+
+    @Test
+    void drop_oldest_drops_the_oldest_coalescible_event_for_another_event() {
+        final List<String> receivedEvents = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final Reactor<String> reactor = bounded(receivedEvents::add, manualEventLoop, metrics, 2,
+                                                SessionQueueOptions.OverflowPolicy.DROP_OLDEST, () -> {});
+        reactor.start();
+
+        reactor.accept("task-1");
+        reactor.accept("move-1");
+        reactor.accept("task-2");
+        manualEventLoop.runOneStep();
+        manualEventLoop.runOneStep();
+
+        assertEquals(List.of("task-1", "task-2"), receivedEvents);
+        assertEquals(1, metrics.counter(MetricNames.SESSION_QUEUE_REJECTED));
+        assertTrue(reactor.isEmpty());
+    }
+
+    @Test
+    void drop_oldest_overflows_when_no_coalescible_event_can_be_dropped() {
+        final List<String> calls = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final Reactor<String> reactor = bounded(calls::add, manualEventLoop, metrics, 2,
+                                                SessionQueueOptions.OverflowPolicy.DROP_OLDEST,
+                                                () -> calls.add("overloaded"));
+        reactor.start();
+
+        reactor.accept("task-1");
+        reactor.accept("task-2");
+        reactor.accept("task-3");
+        reactor.accept("move-1");
+        manualEventLoop.runOneStep();
+
+        assertEquals(List.of("overloaded"), calls);
+        assertTrue(reactor.isEmpty());
+        assertEquals(1, metrics.counter(MetricNames.SESSION_OVERLOADED));
+    }
+
+    @Test
+    void disconnect_drops_the_queued_events_and_runs_the_overloaded_callback() {
+        final List<String> calls = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final Reactor<String> reactor = bounded(calls::add, manualEventLoop, metrics, 2,
+                                                SessionQueueOptions.OverflowPolicy.DISCONNECT,
+                                                () -> calls.add("overloaded"));
+        reactor.start();
+
+        reactor.accept("event-A");
+        reactor.accept("event-B");
+        reactor.accept("event-C");
+        reactor.accept("event-D");
+        manualEventLoop.runOneStep();
+
+        assertEquals(List.of("overloaded"), calls);
+        assertTrue(reactor.isEmpty());
+        assertEquals(1, metrics.counter(MetricNames.SESSION_OVERLOADED));
+        assertEquals(4, metrics.counter(MetricNames.SESSION_QUEUE_REJECTED));
+    }
+
+    @Test
+    void events_accepted_on_the_event_loop_thread_bypass_the_capacity() {
+        final List<String> receivedEvents = new ArrayList<>();
+        final ManualEventLoop manualEventLoop = new ManualEventLoop();
+        final Reactor<String>[] reactor = new Reactor[1];
+        reactor[0] = bounded(event -> {
+                                 receivedEvents.add(event);
+                                 if (event.equals("task-1")) {
+                                     reactor[0].accept("task-2");
+                                     reactor[0].accept("task-3");
+                                 }
+                             },
+                             manualEventLoop, new RecordingMetrics(), 1,
+                             SessionQueueOptions.OverflowPolicy.DISCONNECT, () -> receivedEvents.add("overloaded"));
+        reactor[0].start();
+
+        reactor[0].accept("task-1");
+        for (int i = 0; i < 3; i++) {
+            manualEventLoop.runOneStep();
+        }
+
+        assertEquals(List.of("task-1", "task-2", "task-3"), receivedEvents);
+    }
+
+    /**
+     * Floods one reactor from a producer in a tight loop while a slow consumer handles its events,
+     * and checks that the other reactors, on their own event loops, still handle their events promptly.
+     */
+    @ParameterizedTest
+    @EnumSource(value = SessionQueueOptions.OverflowPolicy.class, names = {"BLOCK", "DROP_OLDEST"})
+    void flooding_one_reactor_keeps_its_queue_bounded_and_the_others_responsive(
+            final SessionQueueOptions.OverflowPolicy policy) throws InterruptedException {
+        final int capacity = 100;
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final Reactor<String> flooded = bounded(_ -> LockSupport.parkNanos(100_000), new DefaultEventLoop(), metrics,
+                                                capacity, policy, () -> {});
+        flooded.start();
+        final AtomicBoolean flooding = new AtomicBoolean(true);
+        // a platform thread, like a runaway timer service, a spinning virtual thread would hold a carrier thread
+        final Thread producer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; flooding.get(); i++) {
+                flooded.accept("move-" + (i % 10));
+            }
+        });
+
+        final int othersCount = 20;
+        final List<Reactor<String>> others = new ArrayList<>();
+        final CountDownLatch othersHandled = new CountDownLatch(othersCount);
+        try {
+            Thread.sleep(100);
+            for (int i = 0; i < othersCount; i++) {
+                final Reactor<String> other = new Reactor<>(_ -> othersHandled.countDown(), new DefaultEventLoop());
+                other.start();
+                others.add(other);
+            }
+            final long startedNanos = System.nanoTime();
+            others.forEach(other -> other.accept("click"));
+
+            assertTrue(othersHandled.await(2, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - startedNanos < TimeUnit.SECONDS.toNanos(1));
+        } finally {
+            flooding.set(false);
+            flooded.stop();
+            producer.join(2_000);
+            others.forEach(Reactor::stop);
+        }
+
+        assertFalse(producer.isAlive());
+        assertTrue(metrics.histogram(MetricNames.SESSION_QUEUE_DEPTH).max() <= capacity);
+        if (policy == SessionQueueOptions.OverflowPolicy.BLOCK) {
+            assertTrue(metrics.counter(MetricNames.SESSION_QUEUE_BLOCKED) > 0);
+        } else {
+            assertTrue(metrics.counter(MetricNames.SESSION_QUEUE_COALESCED) > 0);
+        }
+    }
+
+    /**
+     * Creates a reactor whose events starting with {@code move} coalesce by their name without the number.
+     */
+    private static Reactor<String> bounded(final Consumer<String> consumer,
+                                           final EventLoop eventLoop,
+                                           final RecordingMetrics metrics,
+                                           final int capacity,
+                                           final SessionQueueOptions.OverflowPolicy policy,
+                                           final Runnable overloaded) {
+        return new Reactor<>(consumer,
+                             eventLoop,
+                             () -> {},
+                             metrics,
+                             new SessionQueueOptions(capacity, policy),
+                             event -> event.startsWith("move") ? event.substring(0, event.indexOf('-')) : null,
+                             overloaded);
+    }
+
     /**
      * A manual, deterministic implementation of the EventLoop for testing.
      * It captures the event processing step and allows the test to execute it
@@ -0,0 +1,412 @@
+package rsp.page;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rsp.component.CommandsEnqueue;
+import rsp.component.ComponentCompositeKey;
+import rsp.component.ComponentContext;
+import rsp.component.ComponentStateSupplier;
+import rsp.component.ComponentView;
+import rsp.component.StateUpdater;
+import rsp.component.definitions.Component;
+import rsp.dom.XmlNs;
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
+import rsp.metrics.RecordingMetrics;
+import rsp.page.events.Command;
+import rsp.page.events.GenericTaskEvent;
+import rsp.page.events.RemoteCommand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderSchedulerTests {
+
+    private static final QualifiedSessionId SESSION_ID = new QualifiedSessionId("test-device", "test-session");
+
+    private final List<Command> commands = new ArrayList<>();
+    private RecordingMetrics metrics;
+    private PageBuilder pageBuilder;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new RecordingMetrics();
+        final CommandsEnqueue commandsEnqueue = commands::add;
+        final ComponentContext componentContext = new ComponentContext()
+                .with(Metrics.class, metrics)
+                .with(RenderScheduler.class, new RenderScheduler(commandsEnqueue, 0, metrics));
+        pageBuilder = new PageBuilder(SESSION_ID, "", componentContext, commandsEnqueue);
+    }
+
+    @Test
+    void folds_updates_of_a_segment_into_one_render() {
+        final Counter counter = new Counter("counter", false, true);
+        counter.render(pageBuilder);
+
+        for (int i = 0; i < 100; i++) {
+            counter.stateUpdater.applyStateTransformation(s -> s + 1);
+        }
+
+        assertEquals(1, commands.size(), "one flush task for a burst of updates");
+        flush();
+
+        assertEquals(1, modifyDomCommands().size());
+        assertEquals(2, counter.renders);
+        assertEquals(List.of(100), counter.updates);
+        assertEquals(100L, metrics.counter(MetricNames.RENDER_UPDATES_SCHEDULED));
+        assertEquals(99L, metrics.counter(MetricNames.RENDER_UPDATES_FOLDED));
+        assertEquals(1L, metrics.counter(MetricNames.RENDER_FLUSHES));
+    }
+
+    @Test
+    void applies_a_long_burst_of_updates_without_nesting_them() {
+        final RenderScheduler scheduler = new RenderScheduler(commands::add, 0, SessionQueueOptions.unbounded(), metrics);
+        final Counter counter = new Counter("counter", false, true);
+        counter.render(new PageBuilder(SESSION_ID, "", new ComponentContext().with(RenderScheduler.class, scheduler),
+                                       commands::add));
+
+        for (int i = 0; i < 1_000_000; i++) {
+            counter.stateUpdater.applyStateTransformation(s -> s + 1);
+        }
+        flush();
+
+        assertEquals(List.of(1_000_000), counter.updates);
+    }
+
+    @Test
+    void queues_updates_beyond_the_capacity_as_tasks_applied_in_order() {
+        final RenderScheduler scheduler = new RenderScheduler(commands::add,
+                                                              0,
+                                                              SessionQueueOptions.defaults().withCapacity(3),
+                                                              metrics);
+        final Counter counter = new Counter("counter", false, true);
+        counter.render(new PageBuilder(SESSION_ID, "", new ComponentContext().with(RenderScheduler.class, scheduler),
+                                       commands::add));
+
+        for (int i = 1; i <= 5; i++) {
+            final int digit = i;
+            counter.stateUpdater.applyStateTransformation(s -> s * 10 + digit);
+        }
+
+        assertEquals(3, scheduler.pendingCount());
+        assertEquals(3, commands.size(), "a flush task and a task per overflowed update");
+        assertEquals(2L, metrics.counter(MetricNames.RENDER_UPDATES_OVERFLOWED));
+        flush();
+
+        assertEquals(List.of(123, 1234, 12345), counter.updates);
+        assertEquals(0, scheduler.pendingCount());
+
+        counter.stateUpdater.applyStateTransformation(s -> s * 10 + 6);
+        assertEquals(1, scheduler.pendingCount(), "updates are pending again once the overflowed ones are applied");
+        flush();
+        assertEquals(123456, counter.updates.get(counter.updates.size() - 1));
+    }
+
+    @Test
+    void blocks_a_flood_of_updates_from_another_thread_and_applies_them_all() throws InterruptedException {
+        final Flood flood = flood(SessionQueueOptions.OverflowPolicy.BLOCK, 100_000);
+
+        assertTrue(flood.applied.await(30, TimeUnit.SECONDS));
+        flood.reactor.stop();
+        assertEquals(100_000, flood.counter.state);
+        assertTrue(flood.maxPendingCount <= 16, "pending updates stay within the capacity");
+        assertTrue(metrics.counter(MetricNames.SESSION_QUEUE_BLOCKED) > 0, "the producer waited for the event loop");
+        assertEquals(0L, metrics.counter(MetricNames.SESSION_OVERLOADED));
+    }
+
+    @Test
+    void disconnects_the_session_on_a_flood_of_updates_under_the_disconnect_policy() throws InterruptedException {
+        final Flood flood = flood(SessionQueueOptions.OverflowPolicy.DISCONNECT, 100_000);
+
+        assertTrue(flood.overloaded.await(30, TimeUnit.SECONDS));
+        flood.reactor.stop();
+        assertTrue(flood.maxPendingCount <= 16, "pending updates stay within the capacity");
+        assertEquals(1L, metrics.counter(MetricNames.SESSION_OVERLOADED));
+    }
+
+    @Test
+    void disconnects_the_session_on_a_flood_of_updates_under_the_drop_oldest_policy() throws InterruptedException {
+        final Flood flood = flood(SessionQueueOptions.OverflowPolicy.DROP_OLDEST, 100_000);
+
+        assertTrue(flood.overloaded.await(30, TimeUnit.SECONDS));
+        flood.reactor.stop();
+        assertTrue(flood.maxPendingCount <= 16, "pending updates stay within the capacity");
+        assertEquals(1L, metrics.counter(MetricNames.SESSION_OVERLOADED));
+        assertEquals(0L, metrics.counter(MetricNames.SESSION_QUEUE_COALESCED), "a state update is never dropped");
+    }
+
+    /**
+     * Floods a counter on a running event loop with updates from another thread,
+     * through a scheduler and a session queue of capacity 16 with the given policy.
+     */
+    private Flood flood(final SessionQueueOptions.OverflowPolicy policy, final int updates) throws InterruptedException {
+        final SessionQueueOptions queueOptions = new SessionQueueOptions(16, policy);
+        final CountDownLatch overloaded = new CountDownLatch(1);
+        final Reactor<Command> reactor = new Reactor<>(command -> {
+                                                           if (command instanceof GenericTaskEvent task) {
+                                                               task.task().run();
+                                                           }
+                                                       },
+                                                       new DefaultEventLoop(),
+                                                       () -> {},
+                                                       metrics,
+                                                       queueOptions,
+                                                       _ -> null,
+                                                       overloaded::countDown);
+        final RenderScheduler scheduler = new RenderScheduler(reactor::accept, 0, queueOptions, metrics);
+        final Counter counter = new Counter("counter", false, true);
+        counter.render(new PageBuilder(SESSION_ID, "", new ComponentContext().with(RenderScheduler.class, scheduler),
+                                       reactor::accept));
+        reactor.start();
+
+        final Flood flood = new Flood(reactor, counter, overloaded);
+        final Thread producer = Thread.startVirtualThread(() -> {
+            for (int i = 0; i < updates; i++) {
+                counter.stateUpdater.applyStateTransformation(s -> s + 1);
+                flood.maxPendingCount = Math.max(flood.maxPendingCount, scheduler.pendingCount());
+            }
+            reactor.accept(new GenericTaskEvent(flood.applied::countDown));
+        });
+        producer.join(30_000);
+        assertFalse(producer.isAlive());
+        return flood;
+    }
+
+    private static final class Flood {
+        private final Reactor<Command> reactor;
+        private final Counter counter;
+        private final CountDownLatch overloaded;
+        private final CountDownLatch applied = new CountDownLatch(1);
+        private volatile int maxPendingCount;
+
+        private Flood(final Reactor<Command> reactor, final Counter counter, final CountDownLatch overloaded) {
+            this.reactor = reactor;
+            this.counter = counter;
+            this.overloaded = overloaded;
+        }
+    }
+
+    @Test
+    void requests_a_new_flush_for_updates_after_a_flush() {
+        final Counter counter = new Counter("counter", false, true);
+        counter.render(pageBuilder);
+
+        counter.stateUpdater.setState(1);
+        flush();
+        counter.stateUpdater.setState(2);
+        flush();
+
+        assertEquals(List.of(1, 2), counter.updates);
+        assertEquals(2, modifyDomCommands().size());
+    }
+
+    @Test
+    void skips_render_when_folded_transformations_keep_the_state() {
+        final Counter counter = new Counter("counter", false, true);
+        counter.render(pageBuilder);
+
+        counter.stateUpdater.applyStateTransformationIfPresent(_ -> Optional.empty());
+        counter.stateUpdater.applyStateTransformationIfPresent(_ -> Optional.empty());
+        flush();
+
+        assertEquals(1, counter.renders);
+        assertTrue(modifyDomCommands().isEmpty());
+    }
+
+    @Test
+    void keeps_the_last_present_state_of_folded_transformations() {
+        final Counter counter = new Counter("counter", false, true);
+        counter.render(pageBuilder);
+
+        counter.stateUpdater.setState(5);
+        counter.stateUpdater.applyStateTransformationIfPresent(_ -> Optional.empty());
+        flush();
+
+        assertEquals(List.of(5), counter.updates);
+    }
+
+    @Test
+    void renders_dirty_child_as_part_of_dirty_parent() {
+        final Counter child = new Counter("child", true, true);
+        final Parent parent = new Parent(child, true);
+        parent.render(pageBuilder);
+
+        child.stateUpdater.setState(7);
+        parent.stateUpdater.setState(1);
+        flush();
+
+        assertEquals(1, modifyDomCommands().size(), "the parent's re-render includes the child's update");
+        assertEquals(2, parent.renders);
+        assertEquals(2, child.renders);
+        assertEquals(List.of(7), child.updates);
+        assertEquals(1L, metrics.counter(MetricNames.RENDER_SEGMENTS_STAGED));
+    }
+
+    @Test
+    void renders_dirty_child_separately_when_parent_vetoes_its_update() {
+        final Counter child = new Counter("child", true, true);
+        final Parent parent = new Parent(child, false);
+        parent.render(pageBuilder);
+
+        parent.stateUpdater.setState(1);
+        child.stateUpdater.setState(7);
+        flush();
+
+        assertEquals(1, parent.renders);
+        assertEquals(2, child.renders);
+        assertEquals(List.of(7), child.updates);
+        assertEquals(1, modifyDomCommands().size());
+    }
+
+    @Test
+    void drops_staged_update_of_child_replaced_by_parent_render() {
+        final Counter child = new Counter("child", false, true);
+        final Parent parent = new Parent(child, true);
+        parent.render(pageBuilder);
+        final StateUpdater<Integer> mountedChildUpdater = child.stateUpdater;
+
+        mountedChildUpdater.setState(7);
+        parent.stateUpdater.setState(1);
+        flush();
+
+        assertEquals(1L, metrics.counter(MetricNames.SEGMENT_UPDATE_DROPPED_UNMOUNTED));
+        assertEquals(1, modifyDomCommands().size());
+    }
+
+    @Test
+    void flushes_after_frame_interval() throws InterruptedException {
+        final CountDownLatch flushRequested = new CountDownLatch(1);
+        final RenderScheduler scheduler = new RenderScheduler(_ -> flushRequested.countDown(), 50, metrics);
+        final ComponentContext componentContext = new ComponentContext().with(RenderScheduler.class, scheduler);
+        final Counter counter = new Counter("counter", false, true);
+        counter.render(new PageBuilder(SESSION_ID, "", componentContext, commands::add));
+
+        final long startedAt = System.nanoTime();
+        counter.stateUpdater.setState(1);
+
+        assertTrue(flushRequested.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startedAt >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void rejects_negative_frame_interval() {
+        assertThrows(IllegalArgumentException.class, () -> new RenderScheduler(commands::add, -1, metrics));
+    }
+
+    private void flush() {
+        final List<Command> tasks = commands.stream().filter(c -> c instanceof GenericTaskEvent).toList();
+        commands.removeAll(tasks);
+        tasks.forEach(t -> ((GenericTaskEvent) t).task().run());
+    }
+
+    private List<RemoteCommand.ModifyDom> modifyDomCommands() {
+        return commands.stream()
+                       .filter(c -> c instanceof RemoteCommand.ModifyDom m && !m.domChanges().isEmpty())
+                       .map(c -> (RemoteCommand.ModifyDom) c)
+                       .toList();
+    }
+
+    private static final class Counter extends Component<Integer, Object> {
+        private final boolean reusable;
+        private final boolean acceptUpdates;
+        private final List<Integer> updates = new ArrayList<>();
+        private StateUpdater<Integer> stateUpdater;
+        private volatile int state;
+        private int renders;
+
+        private Counter(final Object componentType, final boolean reusable, final boolean acceptUpdates) {
+            super(componentType);
+            this.reusable = reusable;
+            this.acceptUpdates = acceptUpdates;
+        }
+
+        @Override
+        public ComponentStateSupplier<Integer> initStateSupplier() {
+            return (_, _) -> 0;
+        }
+
+        @Override
+        public ComponentView<Integer, Object> componentView() {
+            return _ -> state -> renderContext -> {
+                renders++;
+                renderContext.openNode(XmlNs.html, "span", false);
+                renderContext.addTextNode(Integer.toString(state));
+                renderContext.closeNode("span", false);
+            };
+        }
+
+        @Override
+        public boolean isReusable() {
+            return reusable;
+        }
+
+        @Override
+        public boolean onBeforeUpdated(final Integer newState, final CommandsEnqueue commandsEnqueue) {
+            return acceptUpdates;
+        }
+
+        @Override
+        public void onMounted(final ComponentCompositeKey componentId,
+                              final Integer state,
+                              final StateUpdater<Integer> stateUpdater) {
+            this.stateUpdater = stateUpdater;
+        }
+
+        @Override
+        public void onUpdated(final ComponentCompositeKey componentId,
+                              final Integer oldState,
+                              final Integer newState,
+                              final StateUpdater<Integer> stateUpdater) {
+            state = newState;
+            updates.add(newState);
+        }
+    }
+
+    private static final class Parent extends Component<Integer, Object> {
+        private final Counter child;
+        private final boolean acceptUpdates;
+        private StateUpdater<Integer> stateUpdater;
+        private int renders;
+
+        private Parent(final Counter child, final boolean acceptUpdates) {
+            super("parent");
+            this.child = child;
+            this.acceptUpdates = acceptUpdates;
+        }
+
+        @Override
+        public ComponentStateSupplier<Integer> initStateSupplier() {
+            return (_, _) -> 0;
+        }
+
+        @Override
+        public ComponentView<Integer, Object> componentView() {
+            return _ -> state -> renderContext -> {
+                renders++;
+                renderContext.openNode(XmlNs.html, "div", false);
+                renderContext.openNode(XmlNs.html, "p", false);
+                renderContext.addTextNode("parent " + state);
+                renderContext.closeNode("p", false);
+                child.render(renderContext);
+                renderContext.closeNode("div", false);
+            };
+        }
+
+        @Override
+        public boolean onBeforeUpdated(final Integer newState, final CommandsEnqueue commandsEnqueue) {
+            return acceptUpdates;
+        }
+
+        @Override
+        public void onMounted(final ComponentCompositeKey componentId,
+                              final Integer state,
+                              final StateUpdater<Integer> stateUpdater) {
+            this.stateUpdater = stateUpdater;
+        }
+    }
+}
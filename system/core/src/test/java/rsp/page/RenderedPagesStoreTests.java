@@ -0,0 +1,193 @@
+package rsp.page;
+
+import org.junit.jupiter.api.Test;
+import rsp.component.ComponentCompositeKey;
+import rsp.component.ComponentContext;
+import rsp.component.ComponentStateSupplier;
+import rsp.component.ComponentView;
+import rsp.component.definitions.Component;
+import rsp.dom.XmlNs;
+import rsp.metrics.MetricNames;
+import rsp.metrics.RecordingMetrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedPagesStoreTests {
+
+    private final RecordingMetrics metrics = new RecordingMetrics();
+    private final List<String> unmounted = new CopyOnWriteArrayList<>();
+    private final List<String> unmountingThreads = new CopyOnWriteArrayList<>();
+    private long nowNanos;
+
+    @Test
+    void removes_a_stored_page_once() {
+        final RenderedPagesStore store = store(RenderedPagesOptions.defaults());
+        final RenderedPage page = page("a");
+        store.put(sessionId("a"), page, 100);
+
+        assertSame(page, store.remove(sessionId("a")));
+        assertNull(store.remove(sessionId("a")));
+        assertTrue(store.isEmpty());
+        assertEquals(0, store.retainedBytes());
+        assertTrue(unmounted.isEmpty());
+    }
+
+    @Test
+    void evicts_the_oldest_pages_beyond_the_page_limit() {
+        final RenderedPagesStore store = store(RenderedPagesOptions.defaults().withMaxPages(2));
+
+        store.put(sessionId("a"), page("a"), 100);
+        store.put(sessionId("b"), page("b"), 100);
+        store.put(sessionId("c"), page("c"), 100);
+
+        assertEquals(List.of(sessionId("b"), sessionId("c")), List.copyOf(store.keySet()));
+        assertEquals(List.of("a"), unmounted);
+        assertEquals(1, metrics.counter(MetricNames.RENDERED_PAGES_EVICTED_SIZE));
+        assertEquals(3, metrics.counter(MetricNames.RENDERED_PAGES_STORED));
+        assertEquals(2, metrics.gauge(MetricNames.RENDERED_PAGES_COUNT));
+        assertEquals(200, metrics.gauge(MetricNames.RENDERED_PAGES_RETAINED_BYTES));
+    }
+
+    @Test
+    void evicts_the_oldest_pages_beyond_the_retained_bytes_limit() {
+        final RenderedPagesStore store = store(RenderedPagesOptions.defaults().withMaxRetainedBytes(1_000));
+
+        store.put(sessionId("a"), page("a"), 400);
+        store.put(sessionId("b"), page("b"), 400);
+        store.put(sessionId("c"), page("c"), 700);
+
+        assertEquals(List.of(sessionId("c")), List.copyOf(store.keySet()));
+        assertEquals(List.of("a", "b"), unmounted);
+        assertEquals(700, store.retainedBytes());
+    }
+
+    @Test
+    void keeps_a_new_page_larger_than_the_retained_bytes_limit() {
+        final RenderedPagesStore store = store(RenderedPagesOptions.defaults().withMaxRetainedBytes(1_000));
+
+        store.put(sessionId("a"), page("a"), 5_000);
+
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void sweep_evicts_expired_pages() {
+        final RenderedPagesStore store = store(RenderedPagesOptions.defaults().withTtlMs(1_000));
+        store.put(sessionId("a"), page("a"), 100);
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(600);
+        store.put(sessionId("b"), page("b"), 100);
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(600);
+
+        assertEquals(1, store.sweep());
+
+        assertEquals(List.of(sessionId("b")), List.copyOf(store.keySet()));
+        assertEquals(List.of("a"), unmounted);
+        assertEquals(1, metrics.counter(MetricNames.RENDERED_PAGES_EVICTED_EXPIRED));
+        assertEquals(1, metrics.gauge(MetricNames.RENDERED_PAGES_COUNT));
+    }
+
+    @Test
+    void does_not_return_an_expired_page() {
+        final RenderedPagesStore store = store(RenderedPagesOptions.defaults().withTtlMs(1_000));
+        store.put(sessionId("a"), page("a"), 100);
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(1_000);
+
+        assertNull(store.remove(sessionId("a")));
+        assertEquals(List.of("a"), unmounted);
+        assertEquals(1, metrics.counter(MetricNames.RENDERED_PAGES_EVICTED_EXPIRED));
+    }
+
+    @Test
+    void stop_shuts_down_all_pages() {
+        final RenderedPagesStore store = store(RenderedPagesOptions.defaults());
+        store.start();
+        store.put(sessionId("a"), page("a"), 100);
+        store.put(sessionId("b"), page("b"), 100);
+
+        store.stop();
+
+        assertTrue(store.isEmpty());
+        assertEquals(List.of("a", "b"), unmounted);
+        assertEquals(0, metrics.gauge(MetricNames.RENDERED_PAGES_RETAINED_BYTES));
+    }
+
+    @Test
+    void background_sweeper_evicts_expired_pages() throws InterruptedException {
+        final RenderedPagesStore store = new RenderedPagesStore(RenderedPagesOptions.defaults()
+                                                                                    .withTtlMs(20)
+                                                                                    .withSweepIntervalMs(10),
+                                                                metrics);
+        store.start();
+        try {
+            store.put(sessionId("a"), page("a"), 100);
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (unmounted.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertTrue(store.isEmpty());
+            assertEquals(List.of("a"), unmounted);
+            assertEquals(List.of("rsp-rendered-pages-shutdown"), unmountingThreads);
+            assertEquals(1, metrics.counter(MetricNames.RENDERED_PAGES_EVICTED_EXPIRED));
+        } finally {
+            store.stop();
+        }
+    }
+
+    @Test
+    void rejects_non_positive_bounds() {
+        assertThrows(IllegalArgumentException.class, () -> RenderedPagesOptions.defaults().withTtlMs(0));
+        assertThrows(IllegalArgumentException.class, () -> RenderedPagesOptions.defaults().withMaxPages(0));
+        assertThrows(IllegalArgumentException.class, () -> RenderedPagesOptions.defaults().withMaxRetainedBytes(0));
+        assertThrows(IllegalArgumentException.class, () -> RenderedPagesOptions.defaults().withSweepIntervalMs(0));
+    }
+
+    private RenderedPagesStore store(final RenderedPagesOptions options) {
+        return new RenderedPagesStore(options, metrics, () -> nowNanos);
+    }
+
+    private static QualifiedSessionId sessionId(final String sessionId) {
+        return new QualifiedSessionId("device", sessionId);
+    }
+
+    private RenderedPage page(final String name) {
+        final RedirectableEventsConsumer commandsEnqueue = new RedirectableEventsConsumer();
+        final PageBuilder pageBuilder = new PageBuilder(sessionId(name), "", new ComponentContext(), commandsEnqueue);
+        new Page(name).render(pageBuilder);
+        return new RenderedPage(pageBuilder, commandsEnqueue);
+    }
+
+    private final class Page extends Component<String, Object> {
+        private final String name;
+
+        private Page(final String name) {
+            super("page");
+            this.name = name;
+        }
+
+        @Override
+        public ComponentStateSupplier<String> initStateSupplier() {
+            return (_, _) -> name;
+        }
+
+        @Override
+        public ComponentView<String, Object> componentView() {
+            return _ -> state -> renderContext -> {
+                renderContext.openNode(XmlNs.html, "html", false);
+                renderContext.addTextNode(state);
+                renderContext.closeNode("html", false);
+            };
+        }
+
+        @Override
+        public void onUnmounted(final ComponentCompositeKey componentId, final String state) {
+            unmounted.add(state);
+            unmountingThreads.add(Thread.currentThread().getName());
+        }
+    }
+}
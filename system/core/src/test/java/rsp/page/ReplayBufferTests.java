@@ -0,0 +1,97 @@
+package rsp.page;
+
+import org.junit.jupiter.api.Test;
+import rsp.page.events.RemoteCommand;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayBufferTests {
+
+    @Test
+    void numbers_only_renders_with_commands() {
+        final ReplayBuffer buffer = new ReplayBuffer(10);
+
+        assertEquals(0, buffer.endRender());
+        buffer.add(push("/a"));
+        assertEquals(1, buffer.endRender());
+        assertEquals(0, buffer.endRender());
+        buffer.add(push("/b"));
+        assertEquals(2, buffer.endRender());
+        assertEquals(2, buffer.renderNumber());
+    }
+
+    @Test
+    void replays_the_renders_after_the_applied_one_and_the_current_render() {
+        final ReplayBuffer buffer = new ReplayBuffer(10);
+        buffer.add(push("/a"));
+        buffer.endRender();
+        buffer.add(push("/b"));
+        buffer.endRender();
+        buffer.add(push("/c"));
+
+        assertEquals(List.of(push("/b"), push("/c")), buffer.commandsAfter(1));
+        assertEquals(List.of(push("/a"), push("/b"), push("/c")), buffer.commandsAfter(0));
+    }
+
+    @Test
+    void drops_acknowledged_renders() {
+        final ReplayBuffer buffer = new ReplayBuffer(10);
+        buffer.add(push("/a"));
+        buffer.endRender();
+        buffer.add(push("/b"));
+        buffer.endRender();
+
+        buffer.acknowledge(1);
+
+        assertEquals(List.of(push("/b")), buffer.commandsAfter(1));
+        assertNull(buffer.commandsAfter(0));
+    }
+
+    @Test
+    void cannot_replay_renders_dropped_beyond_the_limit() {
+        final ReplayBuffer buffer = new ReplayBuffer(2);
+        buffer.add(push("/a"));
+        buffer.endRender();
+        buffer.add(push("/b"));
+        buffer.endRender();
+        buffer.add(push("/c"));
+        buffer.endRender();
+
+        assertNull(buffer.commandsAfter(0));
+        assertEquals(List.of(push("/b"), push("/c")), buffer.commandsAfter(1));
+    }
+
+    @Test
+    void drops_a_current_render_beyond_the_limit_as_a_whole() {
+        final ReplayBuffer buffer = new ReplayBuffer(2);
+        buffer.add(push("/a"));
+        buffer.endRender();
+        buffer.add(push("/b"));
+        buffer.add(push("/c"));
+        buffer.add(push("/d"));
+
+        assertNull(buffer.commandsAfter(1));
+        assertEquals(2, buffer.endRender());
+        assertNull(buffer.commandsAfter(1));
+        assertEquals(List.of(), buffer.commandsAfter(2));
+
+        buffer.add(push("/e"));
+        assertEquals(List.of(push("/e")), buffer.commandsAfter(2));
+    }
+
+    @Test
+    void cannot_replay_from_an_unknown_render() {
+        final ReplayBuffer buffer = new ReplayBuffer(10);
+        buffer.add(push("/a"));
+        buffer.endRender();
+
+        assertNull(buffer.commandsAfter(2));
+        assertEquals(List.of(), buffer.commandsAfter(1));
+    }
+
+    private static RemoteCommand push(final String path) {
+        return new RemoteCommand.PushHistory(path);
+    }
+}
@@ -0,0 +1,140 @@
+package rsp.page;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedEventLoopsTests {
+    private final SharedEventLoops eventLoops = new SharedEventLoops(2, 4);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        assertTrue(eventLoops.close(2_000));
+    }
+
+    @Test
+    void processes_events_in_order_including_those_queued_before_start() throws InterruptedException {
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(100);
+        final Reactor<Integer> reactor = new Reactor<>(event -> {
+            received.add(event);
+            done.countDown();
+        }, eventLoops.get());
+
+        reactor.accept(0);
+        reactor.start();
+        for (int i = 1; i < 100; i++) {
+            reactor.accept(i);
+        }
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, received.get(i));
+        }
+        reactor.stop();
+    }
+
+    @Test
+    void never_runs_one_loop_on_two_threads_at_once() throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final int producers = 4;
+        final int eventsPerProducer = 2_000;
+        final CountDownLatch done = new CountDownLatch(producers * eventsPerProducer);
+        final Reactor<Integer> reactor = new Reactor<>(_ -> {
+            if (!running.compareAndSet(false, true)) {
+                overlaps.incrementAndGet();
+            }
+            Thread.onSpinWait();
+            running.set(false);
+            done.countDown();
+        }, eventLoops.get());
+        reactor.start();
+
+        for (int p = 0; p < producers; p++) {
+            Thread.startVirtualThread(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    reactor.accept(i);
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        reactor.stop();
+    }
+
+    @Test
+    void a_busy_loop_does_not_starve_the_others() throws InterruptedException {
+        final SharedEventLoops singleWorker = new SharedEventLoops(1, 4);
+        try {
+            final int floodSize = 1_000;
+            final AtomicInteger floodHandled = new AtomicInteger();
+            final Reactor<Integer> busy = new Reactor<>(_ -> {
+                LockSupport.parkNanos(100_000);
+                floodHandled.incrementAndGet();
+            }, singleWorker.get());
+            final CountDownLatch otherHandled = new CountDownLatch(1);
+            final AtomicInteger floodHandledBeforeOther = new AtomicInteger();
+            final Reactor<Integer> other = new Reactor<>(_ -> {
+                floodHandledBeforeOther.set(floodHandled.get());
+                otherHandled.countDown();
+            }, singleWorker.get());
+            busy.start();
+            other.start();
+
+            for (int i = 0; i < floodSize; i++) {
+                busy.accept(i);
+            }
+            other.accept(0);
+
+            assertTrue(otherHandled.await(2, TimeUnit.SECONDS));
+            assertTrue(floodHandledBeforeOther.get() < floodSize,
+                       "handled " + floodHandledBeforeOther.get() + " flood events first");
+            busy.stop();
+            other.stop();
+        } finally {
+            assertTrue(singleWorker.close(2_000));
+        }
+    }
+
+    @Test
+    void stopped_loop_handles_no_more_events() throws InterruptedException {
+        final AtomicInteger handled = new AtomicInteger();
+        final CountDownLatch first = new CountDownLatch(1);
+        final Reactor<Integer> reactor = new Reactor<>(_ -> {
+            handled.incrementAndGet();
+            first.countDown();
+        }, eventLoops.get());
+        reactor.start();
+        reactor.accept(1);
+        assertTrue(first.await(2, TimeUnit.SECONDS));
+
+        reactor.stop();
+        reactor.accept(2);
+        Thread.sleep(100);
+
+        assertEquals(1, handled.get());
+    }
+
+    @Test
+    void runs_a_live_page_session() throws InterruptedException {
+        final LivePageSession session = new LivePageSession(eventLoops.get());
+        final CountDownLatch done = new CountDownLatch(1);
+        session.start();
+
+        session.eventsConsumer().accept(new rsp.page.events.GenericTaskEvent(done::countDown));
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+    }
+}
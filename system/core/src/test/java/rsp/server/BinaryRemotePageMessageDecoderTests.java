@@ -0,0 +1,62 @@
+package rsp.server;
+
+import org.junit.jupiter.api.Test;
+import rsp.dom.NodeId;
+import rsp.page.events.DomEventNotification;
+import rsp.server.protocol.BinaryRemotePageMessageDecoder;
+import rsp.util.json.JsonDataType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryRemotePageMessageDecoderTests {
+
+    @Test
+    void should_deserialize_dom_event_with_keyed_node_id_and_event_object() {
+        final TestSessonEventsConsumer collector = new TestSessonEventsConsumer();
+        final BinaryRemotePageMessageDecoder decoder = new BinaryRemotePageMessageDecoder(collector::offer);
+
+        decoder.decode(bytes(0, 7, 3, 2, 3, 0, 0, 3, 'k', 'n', '5', 0, 5, 'c', 'l', 'i', 'c', 'k',
+                             1, 0, 7, 'k', 'e', 'y', 'C', 'o', 'd', 'e', 2, '1', '3'));
+
+        final DomEventNotification result = (DomEventNotification) collector.list.getFirst();
+        assertEquals(7, result.renderNumber());
+        assertEquals(NodeId.of("1_2_kn5"), result.nodeId());
+        assertEquals("click", result.eventType());
+        assertEquals(new JsonDataType.Object().put("keyCode", new JsonDataType.String("13")), result.eventObject());
+    }
+
+    @Test
+    void should_resolve_interned_names_from_previous_messages() {
+        final TestSessonEventsConsumer collector = new TestSessonEventsConsumer();
+        final BinaryRemotePageMessageDecoder decoder = new BinaryRemotePageMessageDecoder(collector::offer);
+
+        decoder.decode(bytes(0, 1, 1, 2, 0, 5, 'c', 'l', 'i', 'c', 'k', 0));
+        decoder.decode(bytes(0, 2, 0, 2, 0));
+
+        final DomEventNotification second = (DomEventNotification) collector.list.get(1);
+        assertEquals("click", second.eventType());
+        assertEquals(NodeId.of(""), second.nodeId());
+        assertEquals(new JsonDataType.Object(), second.eventObject());
+    }
+
+    @Test
+    void should_ignore_malformed_messages() {
+        final TestSessonEventsConsumer collector = new TestSessonEventsConsumer();
+        final BinaryRemotePageMessageDecoder decoder = new BinaryRemotePageMessageDecoder(collector::offer);
+
+        decoder.decode(bytes(0, 1, 1, 2, 9));
+        decoder.decode(bytes(4, 0));
+        decoder.decode(bytes(0, 1, 0, 0, 2, 'a', 'b', 0, 0));
+
+        assertTrue(collector.list.isEmpty());
+    }
+
+    private static byte[] bytes(final int... values) {
+        final byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,124 @@
+package rsp.server;
+
+import org.junit.jupiter.api.Test;
+import rsp.dom.*;
+import rsp.server.protocol.BinaryRemotePageMessageEncoder;
+import rsp.server.protocol.MessageBatchingOptions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryRemotePageMessageEncoderTests {
+
+    @Test
+    void should_set_render_num_as_varint() {
+        final List<byte[]> messages = new ArrayList<>();
+        new BinaryRemotePageMessageEncoder(messages::add).setRenderNum(300);
+        assertArrayEquals(bytes(0, 0xAC, 0x02), messages.getFirst());
+    }
+
+    @Test
+    void should_listen_event_with_keyed_node_id_and_modifier() {
+        final List<byte[]> messages = new ArrayList<>();
+        final DomEventEntry e = new DomEventEntry("click", new DomEventEntry.Target(NodeId.of("1_2_kn5")),
+                                                  ec -> {},
+                                                  true,
+                                                  new DomEventEntry.DebounceModifier(100, false));
+        new BinaryRemotePageMessageEncoder(messages::add).listenEvents(List.of(e));
+        assertArrayEquals(bytes(2, 1,
+                                0, 5, 'c', 'l', 'i', 'c', 'k',
+                                1,
+                                3, 2, 3, 0, 0, 3, 'k', 'n', '5',
+                                2, 100, 0),
+                          messages.getFirst());
+    }
+
+    @Test
+    void should_modify_dom_and_intern_repeated_names() {
+        final List<byte[]> messages = new ArrayList<>();
+        new BinaryRemotePageMessageEncoder(messages::add).modifyDom(List.of(
+                new DefaultDomChangesContext.Create(NodeId.of("1_2_1"), XmlNs.html, "li"),
+                new DefaultDomChangesContext.Create(NodeId.of("1_2_2"), XmlNs.html, "li")));
+        assertArrayEquals(bytes(4, 2,
+                                0, 2, 2, 3, 3, 2, 3, 2, 0, 0, 2, 'l', 'i',
+                                0, 2, 2, 3, 3, 2, 3, 3, 0, 2),
+                          messages.getFirst());
+    }
+
+    @Test
+    void should_keep_string_table_between_messages() {
+        final List<byte[]> messages = new ArrayList<>();
+        final BinaryRemotePageMessageEncoder encoder = new BinaryRemotePageMessageEncoder(messages::add);
+        encoder.forgetEvent("click", NodeId.of("1"));
+        encoder.forgetEvent("click", NodeId.of("1"));
+        assertArrayEquals(bytes(15, 0, 5, 'c', 'l', 'i', 'c', 'k', 1, 2), messages.get(0));
+        assertArrayEquals(bytes(15, 2, 1, 2), messages.get(1));
+    }
+
+    @Test
+    void should_modify_dom_set_attr_with_namespace_and_utf8_value() {
+        final List<byte[]> messages = new ArrayList<>();
+        new BinaryRemotePageMessageEncoder(messages::add).modifyDom(List.of(
+                new DefaultDomChangesContext.SetAttr(NodeId.of("1_1"), XmlNs.svg, "class", "é\"", true)));
+        final byte[] message = messages.getFirst();
+        assertEquals(4, message[0]);
+        assertEquals(3, message[2]);
+        assertTrue(new String(message, StandardCharsets.UTF_8).endsWith("class\u0003é\"\u0001"));
+    }
+
+    @Test
+    void should_modify_dom_insert_before_append() {
+        final List<byte[]> messages = new ArrayList<>();
+        new BinaryRemotePageMessageEncoder(messages::add).modifyDom(List.of(
+                new DefaultDomChangesContext.InsertBefore(NodeId.of("1"), NodeId.of("1_2"), null)));
+        assertArrayEquals(bytes(4, 1, 7, 1, 2, 2, 2, 3, 0), messages.getFirst());
+    }
+
+    @Test
+    void should_encode_negative_eval_js_descriptor_as_zigzag() {
+        final List<byte[]> messages = new ArrayList<>();
+        new BinaryRemotePageMessageEncoder(messages::add).evalJs(-1, "f()");
+        assertArrayEquals(bytes(10, 1, 3, 'f', '(', ')'), messages.getFirst());
+    }
+
+    @Test
+    void should_extract_properties_with_interned_names() {
+        final List<byte[]> messages = new ArrayList<>();
+        new BinaryRemotePageMessageEncoder(messages::add).extractProperties(7, Map.of(NodeId.of("1_2"), Set.of("value")));
+        assertArrayEquals(bytes(17, 14, 1, 2, 2, 3, 1, 0, 5, 'v', 'a', 'l', 'u', 'e'), messages.getFirst());
+    }
+
+    @Test
+    void should_batch_messages_back_to_back_until_flush() {
+        final List<byte[]> messages = new ArrayList<>();
+        final BinaryRemotePageMessageEncoder encoder = new BinaryRemotePageMessageEncoder(messages::add,
+                                                                                          MessageBatchingOptions.defaults());
+        encoder.setRenderNum(1);
+        encoder.forgetEvent("click", NodeId.of("1"));
+        encoder.forgetEvent("click", NodeId.of("1_2"));
+        assertTrue(messages.isEmpty());
+
+        encoder.flush();
+        encoder.setRenderNum(2);
+        encoder.flush();
+
+        assertEquals(2, messages.size());
+        assertArrayEquals(bytes(16, 0, 1, 15, 0, 5, 'c', 'l', 'i', 'c', 'k', 1, 2, 15, 2, 2, 2, 3), messages.get(0));
+        assertArrayEquals(bytes(0, 2), messages.get(1));
+    }
+
+    private static byte[] bytes(final int... values) {
+        final byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+}
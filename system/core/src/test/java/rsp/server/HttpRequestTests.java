@@ -42,4 +42,21 @@ class HttpRequestTests {
         final String cookieValue = request.cookies("name4").stream().findFirst().orElse(null);
         assertNull(cookieValue);
     }
+
+    @Test
+    void header_returns_first_value_of_repeated_header() throws URISyntaxException {
+        final URI uri = new URI("http://foo/bar");
+        final HttpRequest request = new HttpRequest(HttpMethod.GET,
+                                                    uri,
+                                                    uri.toString(),
+                                                    Path.EMPTY,
+                                                    Query.EMPTY,
+                                                    List.of(new Header("Accept", "text/html"),
+                                                            new Header("Accept", "*/*"),
+                                                            new Header("Host", "foo")));
+
+        assertEquals("text/html", request.header("Accept"));
+        assertEquals("foo", request.header("Host"));
+        assertNull(request.header("Origin"));
+    }
 }
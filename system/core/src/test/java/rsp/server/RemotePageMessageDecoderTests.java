@@ -45,6 +45,21 @@ class RemotePageMessageDecoderTests {
         }
     }
 
+    @Test
+    void should_deserialize_extract_properties_response() {
+        final TestSessonEventsConsumer collector = new TestSessonEventsConsumer();
+        final RemotePageMessageDecoder p = createDecoder(e -> collector.offer(e));
+        p.decode("[7,\"3\",{\"1_1\":{\"value\":\"bar\",\"checked\":true},\"1_2\":{}}]");
+
+        final ExtractPropertiesResponseEvent result = assertInstanceOf(ExtractPropertiesResponseEvent.class,
+                                                                       collector.list.getFirst());
+        assertEquals(3, result.descriptorId());
+        final JsonDataType.Object first = assertInstanceOf(JsonDataType.Object.class, result.values().value("1_1"));
+        assertEquals(new JsonDataType.String("bar"), first.value("value"));
+        assertEquals(new JsonDataType.Boolean(true), first.value("checked"));
+        assertEquals(JsonDataType.Object.EMPTY, result.values().value("1_2"));
+    }
+
     @Test
     void should_deserialize_eval_js_response() {
         final TestSessonEventsConsumer collector = new TestSessonEventsConsumer();
@@ -57,6 +72,17 @@ class RemotePageMessageDecoderTests {
         assertEquals(new JsonDataType.String("foo"), result.value());
     }
 
+    @Test
+    void should_deserialize_heartbeat_render_number_as_acknowledgement() {
+        final TestSessonEventsConsumer collector = new TestSessonEventsConsumer();
+        final RemotePageMessageDecoder p = createDecoder(e -> collector.offer(e));
+        p.decode("[6]");
+        p.decode("[6,\"7\"]");
+
+        assertEquals(1, collector.list.size());
+        assertEquals(new RenderAcknowledgedEvent(7), collector.list.getFirst());
+    }
+
 
     private static RemotePageMessageDecoder createDecoder(final Consumer<Command> collector) {
         return new RemotePageMessageDecoder(JsonUtils.createParser(), collector);
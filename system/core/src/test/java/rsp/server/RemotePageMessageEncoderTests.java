@@ -4,9 +4,15 @@ package rsp.server;
 
 import org.junit.jupiter.api.Test;
 import rsp.dom.*;
+import rsp.server.protocol.MessageBatchingOptions;
 import rsp.server.protocol.RemotePageMessageEncoder;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -38,6 +44,16 @@ class RemotePageMessageEncoderTests {
         assertEquals("[3,\"32\",\"1_1\",\"value\"]", c.result); // TODO why descriptor id is in quotes?
     }
 
+    @Test
+    void should_extract_properties_of_several_elements() {
+        final MessagesConsumer c = new MessagesConsumer();
+        final Map<NodeId, Set<String>> properties = new LinkedHashMap<>();
+        properties.put(NodeId.of("1_1"), new LinkedHashSet<>(List.of("value", "checked")));
+        properties.put(NodeId.of("1_2"), Set.of("value"));
+        create(c).extractProperties(32, properties);
+        assertEquals("[17,32,\"1_1\",[\"value\",\"checked\"],\"1_2\",[\"value\"]]", c.result);
+    }
+
     @Test
     void should_modify_dom_create_tag() {
         final MessagesConsumer c = new MessagesConsumer();
@@ -167,6 +183,54 @@ class RemotePageMessageEncoderTests {
         assertEquals("[4,3,\"1_1\",0,\"innerHTML\",\"line1\\nline2\",true]", c.result);
     }
 
+    @Test
+    void should_batch_messages_until_flush() {
+        final List<String> messages = new ArrayList<>();
+        final RemotePageMessageEncoder encoder = new RemotePageMessageEncoder(messages::add,
+                                                                              MessageBatchingOptions.defaults());
+        encoder.setRenderNum(1);
+        encoder.forgetEvent("click", NodeId.of("1_1"));
+        assertEquals(List.of(), messages);
+
+        encoder.flush();
+        assertEquals(List.of("[16,[0,1],[15,\"click\",\"1_1\"]]"), messages);
+    }
+
+    @Test
+    void should_send_single_batched_message_as_is() {
+        final List<String> messages = new ArrayList<>();
+        final RemotePageMessageEncoder encoder = new RemotePageMessageEncoder(messages::add,
+                                                                              MessageBatchingOptions.defaults());
+        encoder.setRenderNum(1);
+        encoder.flush();
+        encoder.flush();
+        assertEquals(List.of("[0,1]"), messages);
+    }
+
+    @Test
+    void should_flush_batch_when_max_bytes_reached() {
+        final List<String> messages = new ArrayList<>();
+        final RemotePageMessageEncoder encoder = new RemotePageMessageEncoder(messages::add,
+                                                                              MessageBatchingOptions.defaults()
+                                                                                      .withMaxBytes(12));
+        encoder.setRenderNum(1);
+        encoder.setRenderNum(2);
+        encoder.setRenderNum(3);
+        encoder.flush();
+        assertEquals(List.of("[16,[0,1],[0,2]]", "[0,3]"), messages);
+    }
+
+    @Test
+    void should_not_hold_messages_with_zero_max_latency() {
+        final List<String> messages = new ArrayList<>();
+        final RemotePageMessageEncoder encoder = new RemotePageMessageEncoder(messages::add,
+                                                                              MessageBatchingOptions.defaults()
+                                                                                      .withMaxLatencyMs(0));
+        encoder.setRenderNum(1);
+        encoder.setRenderNum(2);
+        assertEquals(List.of("[0,1]", "[0,2]"), messages);
+    }
+
     private RemotePageMessageEncoder create(final Consumer<String> consumer) {
         return new RemotePageMessageEncoder(consumer);
     }
@@ -6,7 +6,9 @@ import rsp.dom.NodeId;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 public class TestCollectingRemoteOut implements RemoteOut {
     public final List<Message> commands = new ArrayList<>();
@@ -35,6 +37,11 @@ public class TestCollectingRemoteOut implements RemoteOut {
         commands.add(new ExtractPropertyOutMessage(descriptor, nodeId, name));
     }
 
+    @Override
+    public void extractProperties(final int descriptor, final Map<NodeId, Set<String>> properties) {
+        commands.add(new ExtractPropertiesOutMessage(descriptor, properties));
+    }
+
     @Override
     public void modifyDom(final List<DefaultDomChangesContext.DomChange> domChange) {
         commands.add(new ModifyDomOutMessage(domChange));
@@ -92,6 +99,10 @@ public class TestCollectingRemoteOut implements RemoteOut {
 
     }
 
+    public record ExtractPropertiesOutMessage(int descriptor, Map<NodeId, Set<String>> properties) implements Message {
+
+    }
+
     public static final class ModifyDomOutMessage implements Message {
         public final List<DefaultDomChangesContext.DomChange> domChange;
 
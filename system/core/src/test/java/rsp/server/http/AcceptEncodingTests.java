@@ -0,0 +1,30 @@
+package rsp.server.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AcceptEncodingTests {
+
+    @Test
+    void accepts_a_listed_coding() {
+        assertTrue(AcceptEncoding.accepts("gzip, deflate, br", "gzip"));
+        assertTrue(AcceptEncoding.accepts("GZIP;q=0.5", "gzip"));
+        assertFalse(AcceptEncoding.accepts("deflate", "gzip"));
+        assertFalse(AcceptEncoding.accepts(null, "gzip"));
+    }
+
+    @Test
+    void refuses_a_coding_with_zero_quality() {
+        assertFalse(AcceptEncoding.accepts("gzip;q=0, deflate", "gzip"));
+        assertFalse(AcceptEncoding.accepts("gzip; q=0.000", "gzip"));
+        assertTrue(AcceptEncoding.accepts("gzip;q=0.001", "gzip"));
+    }
+
+    @Test
+    void accepts_a_coding_matched_by_a_wildcard_unless_listed_otherwise() {
+        assertTrue(AcceptEncoding.accepts("*", "br"));
+        assertFalse(AcceptEncoding.accepts("*;q=0", "br"));
+        assertFalse(AcceptEncoding.accepts("*, gzip;q=0", "gzip"));
+    }
+}
@@ -0,0 +1,168 @@
+package rsp.server.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rsp.server.Path;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticContentTests {
+    private static final long LAST_MODIFIED_MS = 1_700_000_000_000L;
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    private java.nio.file.Path tempDir;
+
+    private final StaticContent content = StaticContent.of(CONTENT, "text/plain", LAST_MODIFIED_MS);
+
+    @Test
+    void responds_with_the_content_and_its_validators() throws IOException {
+        final HttpResponse response = content.respond(request(HttpMethod.GET), List.of(new Header("Cache-Control", "no-cache")));
+
+        assertEquals(200, response.status);
+        assertEquals(content.etag(), header(response, "ETag"));
+        assertEquals("Tue, 14 Nov 2023 22:13:20 GMT", header(response, "Last-Modified"));
+        assertEquals("no-cache", header(response, "Cache-Control"));
+        assertEquals("10", header(response, "Content-Length"));
+        assertEquals("bytes", header(response, "Accept-Ranges"));
+        assertEquals("0123456789", body(response));
+    }
+
+    @Test
+    void computes_a_strong_tag_from_the_content() {
+        assertTrue(content.etag().startsWith("\"") && content.etag().endsWith("\""));
+        assertEquals(content.etag(), StaticContent.of(CONTENT.clone(), "text/plain", 0).etag());
+        assertNotEquals(content.etag(), StaticContent.of("other".getBytes(StandardCharsets.UTF_8), "text/plain", 0).etag());
+    }
+
+    @Test
+    void responds_not_modified_to_a_matching_entity_tag() throws IOException {
+        final HttpResponse response = content.respond(request(HttpMethod.GET, "If-None-Match", "\"x\", W/" + content.etag()),
+                                                      List.of());
+
+        assertEquals(304, response.status);
+        assertEquals(content.etag(), header(response, "ETag"));
+        assertNull(header(response, "Content-Length"));
+        assertEquals("", body(response));
+    }
+
+    @Test
+    void responds_with_the_content_to_a_stale_entity_tag() {
+        final HttpResponse response = content.respond(request(HttpMethod.GET, "If-None-Match", "\"stale\""), List.of());
+
+        assertEquals(200, response.status);
+    }
+
+    @Test
+    void responds_not_modified_to_a_request_modified_since_check() {
+        final HttpResponse notModified = content.respond(request(HttpMethod.GET,
+                                                                 "If-Modified-Since", "Tue, 14 Nov 2023 22:13:20 GMT"),
+                                                         List.of());
+        final HttpResponse modified = content.respond(request(HttpMethod.GET,
+                                                              "If-Modified-Since", "Tue, 14 Nov 2023 22:13:19 GMT"),
+                                                      List.of());
+
+        assertEquals(304, notModified.status);
+        assertEquals(200, modified.status);
+    }
+
+    @Test
+    void responds_with_a_byte_range() throws IOException {
+        final HttpResponse bounded = content.respond(request(HttpMethod.GET, "Range", "bytes=2-5"), List.of());
+        final HttpResponse open = content.respond(request(HttpMethod.GET, "Range", "bytes=7-"), List.of());
+        final HttpResponse suffix = content.respond(request(HttpMethod.GET, "Range", "bytes=-3"), List.of());
+
+        assertEquals(206, bounded.status);
+        assertEquals("bytes 2-5/10", header(bounded, "Content-Range"));
+        assertEquals("4", header(bounded, "Content-Length"));
+        assertEquals("2345", body(bounded));
+        assertEquals("789", body(open));
+        assertEquals("789", body(suffix));
+    }
+
+    @Test
+    void responds_range_not_satisfiable_to_a_range_past_the_end() {
+        final HttpResponse response = content.respond(request(HttpMethod.GET, "Range", "bytes=10-20"), List.of());
+
+        assertEquals(416, response.status);
+        assertEquals("bytes */10", header(response, "Content-Range"));
+    }
+
+    @Test
+    void responds_with_the_whole_content_to_a_malformed_multiple_or_stale_range() {
+        assertEquals(200, content.respond(request(HttpMethod.GET, "Range", "bytes=5-2"), List.of()).status);
+        assertEquals(200, content.respond(request(HttpMethod.GET, "Range", "bytes=0-1,4-5"), List.of()).status);
+        assertEquals(200, content.respond(request(HttpMethod.GET, "Range", "items=0-1"), List.of()).status);
+        assertEquals(200, content.respond(request(HttpMethod.GET, "Range", "bytes=0-1", "If-Range", "\"stale\""),
+                                          List.of()).status);
+        assertEquals(206, content.respond(request(HttpMethod.GET, "Range", "bytes=0-1", "If-Range", content.etag()),
+                                          List.of()).status);
+    }
+
+    @Test
+    void responds_to_head_without_a_body() throws IOException {
+        final HttpResponse response = content.respond(request(HttpMethod.HEAD), List.of());
+
+        assertEquals(200, response.status);
+        assertEquals("10", header(response, "Content-Length"));
+        assertEquals("", body(response));
+    }
+
+    @Test
+    void transfers_a_range_of_a_file() throws IOException {
+        final java.nio.file.Path file = tempDir.resolve("content.txt");
+        Files.write(file, CONTENT);
+        final StaticContent fileContent = StaticContent.of(file,
+                                                           "text/plain",
+                                                           Optional.of("gzip"),
+                                                           CONTENT.length,
+                                                           LAST_MODIFIED_MS,
+                                                           StaticContent.entityTag(file));
+
+        final HttpResponse response = fileContent.respond(request(HttpMethod.GET, "Range", "bytes=1-3"), List.of());
+
+        assertEquals(content.etag(), fileContent.etag());
+        assertEquals("gzip", header(response, "Content-Encoding"));
+        assertEquals("123", body(response));
+    }
+
+    private static HttpRequest request(final HttpMethod method, final String... headerNamesAndValues) {
+        final List<Header> headers = new ArrayList<>();
+        for (int i = 0; i < headerNamesAndValues.length; i += 2) {
+            headers.add(new Header(headerNamesAndValues[i], headerNamesAndValues[i + 1]));
+        }
+        return new HttpRequest(method,
+                               URI.create("http://localhost/content.txt"),
+                               "http://localhost/content.txt",
+                               Path.of("/content.txt"),
+                               Query.EMPTY,
+                               headers);
+    }
+
+    private static String header(final HttpResponse response, final String name) {
+        return response.headers.stream()
+                .filter(h -> h.name().equals(name))
+                .map(Header::value)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String body(final HttpResponse response) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (response.bodyWriter != null) {
+            response.bodyWriter.writeTo(output);
+        } else {
+            response.bodyStream.transferTo(output);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,79 @@
+package rsp.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTests {
+
+    private final TimerWheel timerWheel = new TimerWheel(5, 8, Runnable::run);
+
+    @AfterEach
+    void tearDown() {
+        timerWheel.close();
+    }
+
+    @Test
+    void runs_a_task_after_its_delay() throws InterruptedException {
+        final CountDownLatch expired = new CountDownLatch(1);
+        final long startedNanos = System.nanoTime();
+
+        final TimerWheel.Timeout timeout = timerWheel.schedule(expired::countDown, 30);
+
+        assertTrue(expired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startedNanos >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertFalse(timeout.isPending());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void does_not_run_a_cancelled_task() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch later = new CountDownLatch(1);
+
+        final TimerWheel.Timeout timeout = timerWheel.schedule(runs::incrementAndGet, 10);
+        assertTrue(timeout.isPending());
+        assertTrue(timeout.cancel());
+        timerWheel.schedule(later::countDown, 50);
+
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertFalse(timeout.isPending());
+    }
+
+    @Test
+    void runs_a_task_with_a_delay_longer_than_a_rotation_of_the_wheel() throws InterruptedException {
+        final CountDownLatch expired = new CountDownLatch(1);
+        final long startedNanos = System.nanoTime();
+
+        // 8 buckets of 5 ms make a 40 ms rotation
+        timerWheel.schedule(expired::countDown, 100);
+
+        assertTrue(expired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startedNanos >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void runs_tasks_in_order_of_their_deadlines() throws InterruptedException {
+        final StringBuffer order = new StringBuffer();
+        final CountDownLatch expired = new CountDownLatch(3);
+
+        timerWheel.schedule(() -> { order.append("c"); expired.countDown(); }, 90);
+        timerWheel.schedule(() -> { order.append("a"); expired.countDown(); }, 10);
+        timerWheel.schedule(() -> { order.append("b"); expired.countDown(); }, 50);
+
+        assertTrue(expired.await(2, TimeUnit.SECONDS));
+        assertEquals("abc", order.toString());
+    }
+
+    @Test
+    void rejects_invalid_arguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel(0, 8, Runnable::run));
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel(5, 0, Runnable::run));
+    }
+}
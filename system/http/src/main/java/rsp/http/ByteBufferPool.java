@@ -0,0 +1,56 @@
+package rsp.http;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A bounded pool of equally sized heap buffers.
+ * <p>
+ * A buffer is taken for a frame being written or for a connection's lifetime and given back afterwards,
+ * so busy connections don't allocate a buffer per message. When the pool is empty a new buffer is allocated,
+ * and a buffer given back to a full pool is left to the garbage collector.
+ */
+final class ByteBufferPool {
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * @param bufferSize the capacity of every buffer, must be positive
+     * @param maxPooled how many free buffers are kept, must be positive
+     */
+    ByteBufferPool(final int bufferSize, final int maxPooled) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be greater than 0");
+        }
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * @return a cleared buffer of {@link #bufferSize()} bytes
+     */
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Gives a buffer back, its content must not be used afterwards.
+     */
+    void release(final ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && buffer.hasArray()) {
+            buffers.offer(buffer.clear());
+        }
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return the number of free buffers in the pool
+     */
+    int size() {
+        return buffers.size();
+    }
+}
@@ -0,0 +1,85 @@
+package rsp.http;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Immutable options of HTTP response compression.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()} or {@link #disabled()}.
+ * A response is compressed with the {@code gzip} or {@code deflate} coding the request's {@code Accept-Encoding}
+ * allows, as it is written, when its media type is listed and its body is not shorter than the minimum size.
+ * A rendered page streamed without a known length is compressed regardless of its size, as its headers are sent
+ * before its body is written.
+ *
+ * @param enabled whether responses are compressed
+ * @param minSizeBytes the size below which a body is sent as is, as compressing it saves too little;
+ *                     doesn't apply to streamed pages, must not be negative
+ * @param level the {@link Deflater} compression level, from {@code 1} for the fastest to {@code 9} for the best,
+ *              or {@link Deflater#DEFAULT_COMPRESSION}
+ * @param mimeTypes the compressible media types without parameters, as given by
+ *                  {@link rsp.server.http.MimeType#essence(String)}, must not be null
+ */
+public record HttpCompressionOptions(boolean enabled, int minSizeBytes, int level, Set<String> mimeTypes) {
+
+    /**
+     * The default minimum size, a body shorter than about one network packet gains nothing from compression.
+     */
+    public static final int DEFAULT_MIN_SIZE_BYTES = 1024;
+
+    /**
+     * The default compressible media types: markup, style sheets, scripts and other text formats.
+     */
+    public static final Set<String> DEFAULT_MIME_TYPES = Set.of("text/html",
+                                                                "text/css",
+                                                                "text/plain",
+                                                                "text/javascript",
+                                                                "application/javascript",
+                                                                "application/json",
+                                                                "application/xml",
+                                                                "image/svg+xml",
+                                                                "application/openmetrics-text");
+
+    public HttpCompressionOptions {
+        Objects.requireNonNull(mimeTypes);
+        mimeTypes = Set.copyOf(mimeTypes);
+        if (minSizeBytes < 0) {
+            throw new IllegalArgumentException("minSizeBytes must not be negative");
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("level must be from 1 to 9 or Deflater.DEFAULT_COMPRESSION");
+        }
+    }
+
+    /**
+     * Creates the default options: compression enabled for {@link #DEFAULT_MIME_TYPES} of at least
+     * {@link #DEFAULT_MIN_SIZE_BYTES} with {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public static HttpCompressionOptions defaults() {
+        return new HttpCompressionOptions(true, DEFAULT_MIN_SIZE_BYTES, Deflater.DEFAULT_COMPRESSION, DEFAULT_MIME_TYPES);
+    }
+
+    /**
+     * Creates options which send every response as is.
+     */
+    public static HttpCompressionOptions disabled() {
+        return defaults().withEnabled(false);
+    }
+
+    public HttpCompressionOptions withEnabled(final boolean enabled) {
+        return new HttpCompressionOptions(enabled, minSizeBytes, level, mimeTypes);
+    }
+
+    public HttpCompressionOptions withMinSizeBytes(final int minSizeBytes) {
+        return new HttpCompressionOptions(enabled, minSizeBytes, level, mimeTypes);
+    }
+
+    public HttpCompressionOptions withLevel(final int level) {
+        return new HttpCompressionOptions(enabled, minSizeBytes, level, mimeTypes);
+    }
+
+    public HttpCompressionOptions withMimeTypes(final Set<String> mimeTypes) {
+        return new HttpCompressionOptions(enabled, minSizeBytes, level, mimeTypes);
+    }
+}
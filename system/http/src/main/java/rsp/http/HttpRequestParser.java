@@ -6,7 +6,6 @@ import rsp.server.http.HttpMethod;
 import rsp.server.http.HttpRequest;
 import rsp.server.http.Query;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
@@ -19,6 +18,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 
+/**
+ * Parses HTTP/1.x request heads directly from bytes.
+ * <p>
+ * The request line and header fields are recognized by a single pass state machine over a connection's
+ * {@link RequestReadBuffer}, without decoding the head into an intermediate {@link String}. Method and
+ * version tokens and well-known header names resolve to shared constants; only the target, unknown
+ * header names and header values allocate strings.
+ */
 final class HttpRequestParser {
     static final int HEADER_READ_TIMEOUT_MS = 5_000;
     private static final int BODY_READ_TIMEOUT_MS = 10_000;
@@ -27,144 +34,402 @@ final class HttpRequestParser {
     private static final int MAX_HEADER_COUNT = 100;
     private static final int MAX_FORM_BODY_BYTES = 256 * 1024;
 
-    Optional<ParsedHttpRequest> parse(final Socket socket, final String scheme) throws IOException, HttpProtocolException {
-        final InputStream input = socket.getInputStream();
-        final byte[] headerBytes = readHeaderBytes(input);
-        if (headerBytes.length == 0) {
-            return Optional.empty();
-        }
-        // Headers are byte-oriented and use ISO-8859-1-compatible framing.
-        final String headerBlock = new String(headerBytes, StandardCharsets.ISO_8859_1);
-        final String[] lines = headerBlock.substring(0, headerBlock.length() - 4).split("\r\n", -1);
-        if (lines.length == 0 || lines[0].isBlank()) {
+    private static final String HTTP_1_1 = "HTTP/1.1";
+    private static final String HTTP_1_0 = "HTTP/1.0";
+    private static final HttpMethod[] METHODS = HttpMethod.values();
+    private static final byte[][] METHOD_TOKENS = tokens(METHODS);
+
+    /**
+     * Header names that are stored in this canonical spelling regardless of the case a client sends.
+     */
+    private static final String[] CANONICAL_HEADER_NAMES = {
+            "Accept",
+            "Accept-Encoding",
+            "Accept-Language",
+            "Authorization",
+            "Cache-Control",
+            "Connection",
+            "Content-Length",
+            "Content-Type",
+            "Cookie",
+            "Host",
+            "If-Modified-Since",
+            "If-None-Match",
+            "Origin",
+            "Range",
+            "Referer",
+            "Sec-WebSocket-Extensions",
+            "Sec-WebSocket-Key",
+            "Sec-WebSocket-Protocol",
+            "Sec-WebSocket-Version",
+            "Transfer-Encoding",
+            "Upgrade",
+            "User-Agent"
+    };
+    private static final byte[][] CANONICAL_HEADER_TOKENS = lowerCaseTokens(CANONICAL_HEADER_NAMES);
+    private static final byte[] CONTENT_LENGTH_TOKEN = "content-length".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] UPGRADE_TOKEN = "upgrade".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final int STATE_METHOD = 0;
+    private static final int STATE_TARGET = 1;
+    private static final int STATE_VERSION = 2;
+    private static final int STATE_LINE_START = 3;
+    private static final int STATE_NAME = 4;
+    private static final int STATE_VALUE = 5;
+
+    /**
+     * Reads and parses one request from a blocking socket.
+     */
+    Optional<ParsedHttpRequest> parse(final Socket socket,
+                                      final RequestReadBuffer buffer,
+                                      final String scheme) throws IOException, HttpProtocolException {
+        return parse(socket.getInputStream(), socket, buffer, scheme);
+    }
+
+    /**
+     * Parses one complete request already framed by {@link #frame(byte[], int)}.
+     */
+    Optional<ParsedHttpRequest> parse(final byte[] requestBytes, final String scheme) throws HttpProtocolException {
+        final int headerEnd = headerEnd(requestBytes, 0, 0, requestBytes.length);
+        if (headerEnd < 0) {
             throw new HttpProtocolException(400, "Bad Request");
         }
-        if (lines[0].getBytes(StandardCharsets.ISO_8859_1).length > MAX_REQUEST_LINE_BYTES) {
-            throw new HttpProtocolException(414, "URI Too Long");
+        final Head head = parseHead(requestBytes, 0, headerEnd);
+        final int contentLength = contentLength(head.headers());
+        if (headerEnd + contentLength != requestBytes.length) {
+            throw new HttpProtocolException(400, "Bad Request");
         }
+        final byte[] body = new byte[contentLength];
+        System.arraycopy(requestBytes, headerEnd, body, 0, contentLength);
+        return Optional.of(request(head, body, scheme));
+    }
 
-        final RequestLine requestLine = parseRequestLine(lines[0]);
-        final List<Header> headers = parseHeaders(lines);
-        final int contentLength = contentLength(headers);
-        byte[] body = new byte[0];
-        if (contentLength > 0) {
-            // This slice only needs bounded form bodies; generic request streaming belongs in a later slice.
-            if (contentLength > MAX_FORM_BODY_BYTES) {
-                throw new HttpProtocolException(413, "Payload Too Large");
-            }
-            socket.setSoTimeout(BODY_READ_TIMEOUT_MS);
-            body = input.readNBytes(contentLength);
-            if (body.length != contentLength) {
-                throw new HttpProtocolException(400, "Bad Request");
+    /**
+     * Reads and parses one request from a stream, keeping bytes past its end in the buffer.
+     *
+     * @param socket the stream's socket for switching to the body read timeout, or null
+     */
+    Optional<ParsedHttpRequest> parse(final InputStream input,
+                                      final Socket socket,
+                                      final RequestReadBuffer buffer,
+                                      final String scheme) throws IOException, HttpProtocolException {
+        int scanned = 0;
+        int headerEnd;
+        while ((headerEnd = headerEnd(buffer.array(), buffer.start(), buffer.start() + scanned - 3, buffer.limit())) < 0) {
+            if (buffer.available() > MAX_HEADER_BYTES) {
+                throw new HttpProtocolException(431, "Request Header Fields Too Large");
             }
-        }
-
-        final URI requestUri = requestUri(requestLine.target());
-        final String rawQuery = requestUri.getRawQuery();
-        final Query query = mergeQueryAndForm(rawQuery, headers, body);
-        final String path = requestUri.getPath() == null || requestUri.getPath().isEmpty() ? "/" : requestUri.getPath();
-        final String url = absoluteUrl(scheme, requestLine.target(), requestUri, headers);
-        final HttpRequest request = new HttpRequest(requestLine.method(),
-                                                    requestUri,
-                                                    url,
-                                                    Path.of(path),
-                                                    query,
-                                                    headers);
-        return Optional.of(new ParsedHttpRequest(request, requestLine.version()));
-    }
-
-    private byte[] readHeaderBytes(final InputStream input) throws IOException, HttpProtocolException {
-        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int b1 = -1;
-        int b2 = -1;
-        int b3 = -1;
-        int b4 = -1;
-        while (buffer.size() <= MAX_HEADER_BYTES) {
-            final int next;
+            // Resume the CRLFCRLF scan where it stopped; a terminator may straddle two reads.
+            scanned = buffer.available();
+            final int read;
             try {
-                next = input.read();
+                read = buffer.fill(input, MAX_HEADER_BYTES + 1);
             } catch (final SocketTimeoutException ex) {
                 throw new HttpProtocolException(408, "Request Timeout");
             }
-            if (next < 0) {
-                if (buffer.size() == 0) {
-                    return new byte[0];
+            if (read < 0) {
+                if (buffer.available() == 0) {
+                    return Optional.empty();
                 }
                 throw new HttpProtocolException(400, "Bad Request");
             }
-            buffer.write(next);
-            // Keep a rolling four-byte window so CRLFCRLF can be detected while reading one byte at a time.
-            b1 = b2;
-            b2 = b3;
-            b3 = b4;
-            b4 = next;
-            if (b1 == '\r' && b2 == '\n' && b3 == '\r' && b4 == '\n') {
-                return buffer.toByteArray();
+        }
+        if (headerEnd - buffer.start() > MAX_HEADER_BYTES + 1) {
+            throw new HttpProtocolException(431, "Request Header Fields Too Large");
+        }
+
+        final Head head = parseHead(buffer.array(), buffer.start(), headerEnd);
+        buffer.consume(headerEnd - buffer.start());
+        final int contentLength = contentLength(head.headers());
+        final byte[] body = new byte[contentLength];
+        if (contentLength > 0) {
+            final int buffered = buffer.drainTo(body, 0, contentLength);
+            if (buffered < contentLength) {
+                if (socket != null) {
+                    socket.setSoTimeout(BODY_READ_TIMEOUT_MS);
+                }
+                if (input.readNBytes(body, buffered, contentLength - buffered) != contentLength - buffered) {
+                    throw new HttpProtocolException(400, "Bad Request");
+                }
             }
         }
-        throw new HttpProtocolException(431, "Request Header Fields Too Large");
+        return Optional.of(request(head, body, scheme));
     }
 
-    private RequestLine parseRequestLine(final String line) throws HttpProtocolException {
-        final String[] tokens = line.split(" +", 3);
-        if (tokens.length != 3) {
-            throw new HttpProtocolException(400, "Bad Request");
+    /**
+     * Finds the end of the first complete request in a connection's read buffer.
+     *
+     * @param buffer bytes received on a connection and not consumed yet
+     * @param length the number of valid bytes in the buffer
+     * @return the first request's frame, or an empty result when more bytes are needed
+     * @throws HttpProtocolException when the buffered request can never become valid
+     */
+    static Optional<RequestFrame> frame(final byte[] buffer, final int length) throws HttpProtocolException {
+        final int headerEnd = headerEnd(buffer, 0, 0, Math.min(length, MAX_HEADER_BYTES + 1));
+        if (headerEnd < 0) {
+            if (length > MAX_HEADER_BYTES) {
+                throw new HttpProtocolException(431, "Request Header Fields Too Large");
+            }
+            return Optional.empty();
         }
-        final HttpMethod method;
-        try {
-            method = HttpMethod.valueOf(tokens[0]);
-        } catch (final IllegalArgumentException ex) {
-            throw new HttpProtocolException(501, "Not Implemented");
+        int contentLength = 0;
+        boolean upgrade = false;
+        int lineStart = indexOfLf(buffer, 0, headerEnd) + 1;
+        while (lineStart < headerEnd - 2) {
+            final int lineEnd = indexOfLf(buffer, lineStart, headerEnd);
+            final int separator = indexOf(buffer, (byte) ':', lineStart, lineEnd);
+            if (separator > lineStart) {
+                final int nameEnd = trimEnd(buffer, lineStart, separator);
+                if (equalsIgnoreCase(buffer, lineStart, nameEnd, UPGRADE_TOKEN)) {
+                    upgrade = true;
+                } else if (equalsIgnoreCase(buffer, lineStart, nameEnd, CONTENT_LENGTH_TOKEN)) {
+                    contentLength = parseContentLength(buffer, separator + 1, lineEnd);
+                }
+            }
+            lineStart = lineEnd + 1;
         }
-        if (!tokens[2].equals("HTTP/1.1") && !tokens[2].equals("HTTP/1.0")) {
-            throw new HttpProtocolException(400, "Bad Request");
+        if (contentLength > MAX_FORM_BODY_BYTES) {
+            throw new HttpProtocolException(413, "Payload Too Large");
         }
-        return new RequestLine(method, tokens[1], tokens[2]);
+        final int requestLength = headerEnd + contentLength;
+        return length >= requestLength ? Optional.of(new RequestFrame(requestLength, upgrade)) : Optional.empty();
     }
 
-    private List<Header> parseHeaders(final String[] lines) throws HttpProtocolException {
-        if (lines.length - 1 > MAX_HEADER_COUNT) {
-            throw new HttpProtocolException(431, "Request Header Fields Too Large");
+    /**
+     * Scans for the CRLFCRLF terminating a request head.
+     *
+     * @param from the first byte of the head
+     * @param scanFrom the first byte not scanned yet
+     * @param to the end of the valid bytes
+     * @return the offset after the terminator or {@code -1}
+     */
+    private static int headerEnd(final byte[] bytes, final int from, final int scanFrom, final int to) {
+        for (int i = Math.max(from + 3, scanFrom + 3); i < to; i++) {
+            if (bytes[i] == '\n' && bytes[i - 1] == '\r' && bytes[i - 2] == '\n' && bytes[i - 3] == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static Head parseHead(final byte[] bytes, final int from, final int to) throws HttpProtocolException {
+        if (indexOfLf(bytes, from, to) - from > MAX_REQUEST_LINE_BYTES) {
+            throw new HttpProtocolException(414, "URI Too Long");
         }
+        final int end = to - 2;
+        HttpMethod method = null;
+        String target = null;
+        String version = null;
         final List<Header> headers = new ArrayList<>();
-        for (int i = 1; i < lines.length; i++) {
-            final String line = lines[i];
-            if (line.isEmpty()) {
-                continue;
+        int state = STATE_METHOD;
+        int tokenStart = from;
+        String name = null;
+        int i = from;
+        while (i < end) {
+            final byte b = bytes[i];
+            switch (state) {
+                case STATE_METHOD -> {
+                    if (b == ' ') {
+                        method = method(bytes, tokenStart, i);
+                        i = skipSpaces(bytes, i, end);
+                        tokenStart = i;
+                        state = STATE_TARGET;
+                        continue;
+                    }
+                    if (b == '\r') {
+                        throw new HttpProtocolException(400, "Bad Request");
+                    }
+                }
+                case STATE_TARGET -> {
+                    if (b == ' ') {
+                        target = new String(bytes, tokenStart, i - tokenStart, StandardCharsets.ISO_8859_1);
+                        i = skipSpaces(bytes, i, end);
+                        tokenStart = i;
+                        state = STATE_VERSION;
+                        continue;
+                    }
+                    if (b == '\r') {
+                        throw new HttpProtocolException(400, "Bad Request");
+                    }
+                }
+                case STATE_VERSION -> {
+                    if (b == '\r') {
+                        version = version(bytes, tokenStart, i);
+                        i += 2;
+                        state = STATE_LINE_START;
+                        continue;
+                    }
+                }
+                case STATE_LINE_START -> {
+                    if (b == ' ' || b == '\t') {
+                        // Obsolete line folding is rejected as permitted by RFC 9112.
+                        throw new HttpProtocolException(400, "Bad Request");
+                    }
+                    if (b == '\r') {
+                        // An empty line inside the head is tolerated as the previous parser did.
+                        i += 2;
+                        continue;
+                    }
+                    if (headers.size() == MAX_HEADER_COUNT) {
+                        throw new HttpProtocolException(431, "Request Header Fields Too Large");
+                    }
+                    tokenStart = i;
+                    state = STATE_NAME;
+                    continue;
+                }
+                case STATE_NAME -> {
+                    if (b == ':') {
+                        if (i == tokenStart) {
+                            throw new HttpProtocolException(400, "Bad Request");
+                        }
+                        name = headerName(bytes, tokenStart, i);
+                        tokenStart = i + 1;
+                        state = STATE_VALUE;
+                    } else if (b == '\r') {
+                        throw new HttpProtocolException(400, "Bad Request");
+                    }
+                }
+                case STATE_VALUE -> {
+                    if (b == '\r') {
+                        headers.add(new Header(name, headerValue(bytes, tokenStart, i)));
+                        i += 2;
+                        state = STATE_LINE_START;
+                        continue;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown parser state: " + state);
             }
-            if (line.startsWith(" ") || line.startsWith("\t")) {
-                throw new HttpProtocolException(400, "Bad Request");
+            i++;
+        }
+        if (state != STATE_LINE_START) {
+            // Every line of a well-formed head, including the request line, ends with CRLF before the final one.
+            throw new HttpProtocolException(400, "Bad Request");
+        }
+        return new Head(method, target, version, headers);
+    }
+
+    private static int skipSpaces(final byte[] bytes, final int from, final int to) {
+        int i = from;
+        while (i < to && bytes[i] == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static HttpMethod method(final byte[] bytes, final int from, final int to) throws HttpProtocolException {
+        if (from == to) {
+            throw new HttpProtocolException(400, "Bad Request");
+        }
+        for (int m = 0; m < METHODS.length; m++) {
+            if (equals(bytes, from, to, METHOD_TOKENS[m])) {
+                return METHODS[m];
+            }
+        }
+        throw new HttpProtocolException(501, "Not Implemented");
+    }
+
+    private static String version(final byte[] bytes, final int from, final int to) throws HttpProtocolException {
+        if (to - from == 8
+            && bytes[from] == 'H' && bytes[from + 1] == 'T' && bytes[from + 2] == 'T' && bytes[from + 3] == 'P'
+            && bytes[from + 4] == '/' && bytes[from + 5] == '1' && bytes[from + 6] == '.') {
+            if (bytes[from + 7] == '1') {
+                return HTTP_1_1;
             }
-            final int separator = line.indexOf(':');
-            if (separator <= 0) {
+            if (bytes[from + 7] == '0') {
+                return HTTP_1_0;
+            }
+        }
+        throw new HttpProtocolException(400, "Bad Request");
+    }
+
+    private static String headerName(final byte[] bytes, final int from, final int to) {
+        final int length = to - from;
+        for (int n = 0; n < CANONICAL_HEADER_TOKENS.length; n++) {
+            final byte[] token = CANONICAL_HEADER_TOKENS[n];
+            if (token.length == length && equalsIgnoreCase(bytes, from, to, token)) {
+                return CANONICAL_HEADER_NAMES[n];
+            }
+        }
+        return new String(bytes, from, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String headerValue(final byte[] bytes, final int from, final int to) {
+        int start = from;
+        while (start < to && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        final int end = trimEnd(bytes, start, to);
+        return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int trimEnd(final byte[] bytes, final int from, final int to) {
+        int end = to;
+        while (end > from && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int parseContentLength(final byte[] bytes, final int from, final int to) throws HttpProtocolException {
+        int start = from;
+        while (start < to && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        final int end = trimEnd(bytes, start, to);
+        if (start == end || end - start > 10) {
+            throw new HttpProtocolException(400, "Bad Request");
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
                 throw new HttpProtocolException(400, "Bad Request");
             }
-            final String name = canonicalHeaderName(line.substring(0, separator));
-            final String value = line.substring(separator + 1).trim();
-            headers.add(new Header(name, value));
+            value = value * 10 + digit;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw new HttpProtocolException(413, "Payload Too Large");
         }
-        return headers;
+        return (int) value;
     }
 
-    private int contentLength(final List<Header> headers) throws HttpProtocolException {
+    private static int contentLength(final List<Header> headers) throws HttpProtocolException {
         final String contentLength = header(headers, "Content-Length");
         if (contentLength == null) {
             return 0;
         }
-        try {
-            final int parsed = Integer.parseInt(contentLength);
-            if (parsed < 0) {
-                throw new HttpProtocolException(400, "Bad Request");
-            }
-            return parsed;
-        } catch (final NumberFormatException ex) {
-            throw new HttpProtocolException(400, "Bad Request");
+        final byte[] bytes = contentLength.getBytes(StandardCharsets.ISO_8859_1);
+        final int parsed = parseContentLength(bytes, 0, bytes.length);
+        // This slice only needs bounded form bodies; generic request streaming belongs in a later slice.
+        if (parsed > MAX_FORM_BODY_BYTES) {
+            throw new HttpProtocolException(413, "Payload Too Large");
         }
+        return parsed;
     }
 
-    private Query mergeQueryAndForm(final String rawQuery,
-                                    final List<Header> headers,
-                                    final byte[] body) {
+    private static ParsedHttpRequest request(final Head head,
+                                             final byte[] body,
+                                             final String scheme) throws HttpProtocolException {
+        final URI targetUri = parseUri(head.target());
+        final URI requestUri = targetUri.isAbsolute() ? originForm(targetUri) : targetUri;
+        final String rawQuery = requestUri.getRawQuery();
+        final Query query = mergeQueryAndForm(rawQuery, head.headers(), body);
+        final String path = requestUri.getPath() == null || requestUri.getPath().isEmpty() ? "/" : requestUri.getPath();
+        final String url = targetUri.isAbsolute()
+                           ? targetUri.toString()
+                           : absoluteUrl(scheme, requestUri, head.headers());
+        final HttpRequest request = new HttpRequest(head.method(),
+                                                    requestUri,
+                                                    url,
+                                                    Path.of(path),
+                                                    query,
+                                                    head.headers());
+        return new ParsedHttpRequest(request, head.version(), body);
+    }
+
+    private static Query mergeQueryAndForm(final String rawQuery,
+                                           final List<Header> headers,
+                                           final byte[] body) {
         final List<Query.Parameter> parameters = new ArrayList<>(Query.of(rawQuery == null ? "" : rawQuery).parameters());
         final String contentType = header(headers, "Content-Type");
         if (body.length > 0
@@ -175,60 +440,106 @@ final class HttpRequestParser {
         return new Query(parameters);
     }
 
-    private URI requestUri(final String target) throws HttpProtocolException {
+    private static URI parseUri(final String target) throws HttpProtocolException {
         try {
-            final URI uri = new URI(target);
-            if (uri.isAbsolute()) {
-                // The core request model routes by path/query even when a client sends absolute-form.
-                final String rawPath = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
-                final String rawQuery = uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery();
-                return new URI(rawPath + rawQuery);
-            }
-            return uri;
+            return new URI(target);
         } catch (final URISyntaxException ex) {
             throw new HttpProtocolException(400, "Bad Request");
         }
     }
 
-    private String absoluteUrl(final String scheme,
-                               final String target,
-                               final URI requestUri,
-                               final List<Header> headers) {
-        final URI targetUri = URI.create(target);
-        if (targetUri.isAbsolute()) {
-            return targetUri.toString();
-        }
+    private static URI originForm(final URI uri) throws HttpProtocolException {
+        // The core request model routes by path/query even when a client sends absolute-form.
+        final String rawPath = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        final String rawQuery = uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery();
+        return parseUri(rawPath + rawQuery);
+    }
+
+    private static String absoluteUrl(final String scheme,
+                                      final URI requestUri,
+                                      final List<Header> headers) {
         final String host = header(headers, "Host");
         final String authority = host == null || host.isBlank() ? "localhost" : host;
         return scheme + "://" + authority + requestUri;
     }
 
     private static String header(final List<Header> headers, final String name) {
-        return headers.stream()
-                .filter(header -> name.equals(header.name()))
-                .map(Header::value)
-                .findFirst()
-                .orElse(null);
-    }
-
-    private static String canonicalHeaderName(final String name) {
-        return switch (name.toLowerCase(Locale.ROOT)) {
-            case "authorization" -> "Authorization";
-            case "connection" -> "Connection";
-            case "content-length" -> "Content-Length";
-            case "content-type" -> "Content-Type";
-            case "cookie" -> "Cookie";
-            case "host" -> "Host";
-            case "origin" -> "Origin";
-            case "sec-websocket-extensions" -> "Sec-WebSocket-Extensions";
-            case "sec-websocket-key" -> "Sec-WebSocket-Key";
-            case "sec-websocket-protocol" -> "Sec-WebSocket-Protocol";
-            case "sec-websocket-version" -> "Sec-WebSocket-Version";
-            case "upgrade" -> "Upgrade";
-            default -> name;
-        };
-    }
-
-    private record RequestLine(HttpMethod method, String target, String version) {
+        for (final Header header : headers) {
+            if (name.equals(header.name())) {
+                return header.value();
+            }
+        }
+        return null;
+    }
+
+    private static int indexOfLf(final byte[] bytes, final int from, final int to) {
+        final int index = indexOf(bytes, (byte) '\n', from, to);
+        return index < 0 ? to : index;
+    }
+
+    private static int indexOf(final byte[] bytes, final byte value, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equals(final byte[] bytes, final int from, final int to, final byte[] token) {
+        if (to - from != token.length) {
+            return false;
+        }
+        for (int i = 0; i < token.length; i++) {
+            if (bytes[from + i] != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares an ASCII region with a lower-case token, ignoring case.
+     */
+    private static boolean equalsIgnoreCase(final byte[] bytes, final int from, final int to, final byte[] lowerCaseToken) {
+        if (to - from != lowerCaseToken.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseToken.length; i++) {
+            final int b = bytes[from + i];
+            final int lower = b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+            if (lower != lowerCaseToken[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[][] tokens(final HttpMethod[] methods) {
+        final byte[][] tokens = new byte[methods.length][];
+        for (int i = 0; i < methods.length; i++) {
+            tokens[i] = methods[i].name().getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return tokens;
+    }
+
+    private static byte[][] lowerCaseTokens(final String[] names) {
+        final byte[][] tokens = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            tokens[i] = names[i].toLowerCase(Locale.ROOT).getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return tokens;
+    }
+
+    /**
+     * The boundary of one buffered request.
+     *
+     * @param length the number of bytes of the request including its body
+     * @param upgrade whether the request asks to switch protocols, so the bytes after it may not be HTTP
+     */
+    record RequestFrame(int length, boolean upgrade) {
+    }
+
+    private record Head(HttpMethod method, String target, String version, List<Header> headers) {
     }
 }
@@ -16,20 +16,100 @@ final class HttpResponseWriter {
     void write(final OutputStream output,
                final HttpResponse response,
                final HttpMethod requestMethod) throws IOException {
+        write(output, response, requestMethod, false);
+    }
+
+    /**
+     * Writes a response, framing its body so that the connection can carry the next request when allowed.
+     * <p>
+     * A persistent response keeps an explicit {@code Content-Length}; otherwise a body that fits one buffer
+     * gets a computed {@code Content-Length} and a longer one is sent with chunked transfer coding.
+     * A streamed body of a persistent response is always sent with chunked transfer coding, each flush of
+     * its writer sends the chunks written so far.
+     *
+     * @param keepAlive whether the client allows the connection to stay open after this response
+     * @return true if the connection stays open for the next request
+     */
+    boolean write(final OutputStream output,
+                  final HttpResponse response,
+                  final HttpMethod requestMethod,
+                  final boolean keepAlive) throws IOException {
         output.write(("HTTP/1.1 " + response.status + " " + reasonPhrase(response.status) + "\r\n")
                              .getBytes(StandardCharsets.ISO_8859_1));
         boolean hasConnection = false;
+        boolean persistent = keepAlive;
+        boolean hasContentLength = false;
         for (final Header header : response.headers) {
-            if ("connection".equals(header.name().toLowerCase(Locale.ROOT))) {
+            final String name = header.name().toLowerCase(Locale.ROOT);
+            if ("connection".equals(name)) {
                 hasConnection = true;
+                persistent &= !"close".equals(header.value().trim().toLowerCase(Locale.ROOT));
+            } else if ("content-length".equals(name)) {
+                hasContentLength = true;
+            } else if ("transfer-encoding".equals(name)) {
+                // The writer owns transfer coding; an application-supplied one cannot be honoured safely.
+                persistent = false;
             }
             output.write((header.name() + ": " + header.value() + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
         }
-        if (!hasConnection) {
-            output.write("Connection: close\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        if (!persistent) {
+            if (!hasConnection) {
+                output.write("Connection: close\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            }
+            output.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            copyBody(output, response, requestMethod);
+            return false;
         }
-        output.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
 
+        if (response.bodyWriter != null) {
+            if (requestMethod == HttpMethod.HEAD || hasContentLength || !hasBody(response.status)) {
+                output.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                writeBody(output, response, requestMethod);
+                return true;
+            }
+            output.write("Transfer-Encoding: chunked\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            response.bodyWriter.writeTo(new ChunkedOutputStream(output));
+            output.write("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            output.flush();
+            return true;
+        }
+
+        try (InputStream body = response.bodyStream) {
+            if (requestMethod == HttpMethod.HEAD || hasContentLength || !hasBody(response.status)) {
+                output.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                if (requestMethod != HttpMethod.HEAD && hasBody(response.status)) {
+                    body.transferTo(output);
+                }
+                output.flush();
+                return true;
+            }
+            final byte[] first = body.readNBytes(BUFFER_SIZE);
+            if (first.length < BUFFER_SIZE) {
+                output.write(("Content-Length: " + first.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                output.write(first);
+                output.flush();
+                return true;
+            }
+            output.write("Transfer-Encoding: chunked\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            writeChunk(output, first, 0, first.length);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = body.read(buffer)) > 0) {
+                writeChunk(output, buffer, 0, read);
+            }
+            output.write("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            output.flush();
+            return true;
+        }
+    }
+
+    private void copyBody(final OutputStream output,
+                          final HttpResponse response,
+                          final HttpMethod requestMethod) throws IOException {
+        if (response.bodyWriter != null) {
+            writeBody(output, response, requestMethod);
+            return;
+        }
         try (InputStream body = response.bodyStream) {
             if (requestMethod == HttpMethod.HEAD) {
                 output.flush();
@@ -44,10 +124,72 @@ final class HttpResponseWriter {
         }
     }
 
+    /**
+     * Invokes a body writer without framing, discarding the body where a response must not have one.
+     */
+    private static void writeBody(final OutputStream output,
+                                  final HttpResponse response,
+                                  final HttpMethod requestMethod) throws IOException {
+        if (requestMethod == HttpMethod.HEAD || !hasBody(response.status)) {
+            response.bodyWriter.writeTo(OutputStream.nullOutputStream());
+        } else {
+            response.bodyWriter.writeTo(output);
+        }
+        output.flush();
+    }
+
+    private static void writeChunk(final OutputStream output,
+                                   final byte[] buffer,
+                                   final int offset,
+                                   final int length) throws IOException {
+        output.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        output.write(buffer, offset, length);
+        output.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Frames each write as a chunk, leaving the last chunk to the response writer.
+     */
+    private static final class ChunkedOutputStream extends OutputStream {
+        private final OutputStream output;
+
+        private ChunkedOutputStream(final OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (length > 0) {
+                writeChunk(output, bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            output.flush();
+        }
+
+        @Override
+        public void close() {
+            // the response writer ends the body
+        }
+    }
+
+    private static boolean hasBody(final int status) {
+        return status >= 200 && status != 204 && status != 304;
+    }
+
     private static String reasonPhrase(final int status) {
         return switch (status) {
             case 200 -> "OK";
+            case 206 -> "Partial Content";
             case 302 -> "Found";
+            case 304 -> "Not Modified";
             case 400 -> "Bad Request";
             case 403 -> "Forbidden";
             case 404 -> "Not Found";
@@ -55,9 +197,11 @@ final class HttpResponseWriter {
             case 408 -> "Request Timeout";
             case 413 -> "Payload Too Large";
             case 414 -> "URI Too Long";
+            case 416 -> "Range Not Satisfiable";
             case 431 -> "Request Header Fields Too Large";
             case 500 -> "Internal Server Error";
             case 501 -> "Not Implemented";
+            case 503 -> "Service Unavailable";
             default -> "";
         };
     }
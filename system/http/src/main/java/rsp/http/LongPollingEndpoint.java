@@ -0,0 +1,271 @@
+package rsp.http;
+
+import rsp.metrics.Metrics;
+import rsp.page.EventLoop;
+import rsp.page.LivePageSession;
+import rsp.page.QualifiedSessionId;
+import rsp.page.RenderedPage;
+import rsp.page.RenderedPagesStore;
+import rsp.page.SessionQueueOptions;
+import rsp.page.SessionResumeOptions;
+import rsp.page.events.InitSessionCommand;
+import rsp.page.events.RemoteCommand;
+import rsp.page.events.ShutdownSessionCommand;
+import rsp.server.http.Header;
+import rsp.server.http.HttpMethod;
+import rsp.server.http.HttpRequest;
+import rsp.server.http.HttpResponse;
+import rsp.server.protocol.MessageBatchingOptions;
+import rsp.server.protocol.RemotePageMessageDecoder;
+import rsp.server.protocol.RemotePageMessageEncoder;
+import rsp.util.TimerWheel;
+import rsp.util.json.JsonUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.TRACE;
+
+/**
+ * Serves live page sessions over HTTP long polling, for clients which can't open a WebSocket.
+ * <p>
+ * A client polls {@code GET /bridge/long-polling/{deviceId}/{sessionId}/subscribe} for its session's messages and
+ * posts its own messages to {@code POST /bridge/long-polling/{deviceId}/{sessionId}/publish}, both in the text
+ * protocol. The first poll binds the rendered page to a new live page session. A poll is answered with all the
+ * messages buffered since the previous one, or with {@code 503} when none arrives within the hold time, and the
+ * client polls again either way. A published message goes to the same decoder a WebSocket's text frame does.
+ * <p>
+ * A session without a waiting poll for {@link LongPollingOptions#idleTimeoutMs()} is shut down. Long polling
+ * sessions are not parked for resume: a client which comes back after its session expired reloads the page.
+ */
+final class LongPollingEndpoint {
+    private static final System.Logger logger = System.getLogger(LongPollingEndpoint.class.getName());
+
+    private static final String ENDPOINT_PREFIX = "/bridge/long-polling";
+    private static final String SUBSCRIBE = "subscribe";
+    private static final String PUBLISH = "publish";
+    private static final List<Header> MESSAGE_HEADERS = List.of(new Header("Content-Type", "application/json; charset=utf-8"),
+                                                                new Header("Cache-Control", "no-store"));
+
+    private final Map<QualifiedSessionId, Session> sessions = new ConcurrentHashMap<>();
+    private final LongPollingOptions options;
+    private final RenderedPagesStore renderedPages;
+    private final Supplier<EventLoop> eventLoopSupplier;
+    private final SessionQueueOptions sessionQueue;
+    private final long remoteRequestTimeoutMs;
+    private final Metrics metrics;
+    private final TimerWheel timerWheel;
+
+    LongPollingEndpoint(final LongPollingOptions options,
+                        final RenderedPagesStore renderedPages,
+                        final Supplier<EventLoop> eventLoopSupplier,
+                        final SessionQueueOptions sessionQueue,
+                        final long remoteRequestTimeoutMs,
+                        final Metrics metrics) {
+        this.options = Objects.requireNonNull(options);
+        this.renderedPages = Objects.requireNonNull(renderedPages);
+        this.eventLoopSupplier = Objects.requireNonNull(eventLoopSupplier);
+        this.sessionQueue = Objects.requireNonNull(sessionQueue);
+        this.remoteRequestTimeoutMs = remoteRequestTimeoutMs;
+        this.metrics = Objects.requireNonNull(metrics);
+        this.timerWheel = TimerWheel.shared();
+    }
+
+    boolean matches(final HttpRequest request) {
+        return request.path.toString().equals(ENDPOINT_PREFIX)
+               || request.path.toString().startsWith(ENDPOINT_PREFIX + "/");
+    }
+
+    /**
+     * Answers a subscribe or publish request, a subscribe is held until the session has messages.
+     */
+    HttpResponse respond(final ParsedHttpRequest request) {
+        final HttpRequest httpRequest = request.request();
+        if (httpRequest.path.elementsCount() != 5
+            || !"bridge".equals(httpRequest.path.get(0))
+            || !"long-polling".equals(httpRequest.path.get(1))) {
+            return HttpResponses.text(404, "Long polling endpoint not found");
+        }
+        final QualifiedSessionId sessionId = new QualifiedSessionId(httpRequest.path.get(2), httpRequest.path.get(3));
+        final String action = httpRequest.path.get(4);
+        if (SUBSCRIBE.equals(action)) {
+            return request.method() == HttpMethod.GET
+                   ? subscribe(sessionId)
+                   : HttpResponses.text(405, "Method Not Allowed");
+        }
+        if (PUBLISH.equals(action)) {
+            return request.method() == HttpMethod.POST
+                   ? publish(sessionId, new String(request.body(), StandardCharsets.UTF_8))
+                   : HttpResponses.text(405, "Method Not Allowed");
+        }
+        return HttpResponses.text(404, "Long polling endpoint not found");
+    }
+
+    /**
+     * @return the number of live long polling sessions
+     */
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Shuts all the sessions down and releases their waiting polls.
+     */
+    void stop() {
+        for (final Session session : List.copyOf(sessions.values())) {
+            session.shutdown();
+        }
+    }
+
+    private HttpResponse subscribe(final QualifiedSessionId sessionId) {
+        final Session session = sessionFor(sessionId);
+        if (session == null) {
+            logger.log(DEBUG, () -> "Pre-rendered page not found for a long polling SID: " + sessionId);
+            return new HttpResponse(200, MESSAGE_HEADERS, reloadMessage());
+        }
+        return session.poll();
+    }
+
+    private HttpResponse publish(final QualifiedSessionId sessionId, final String message) {
+        final Session session = sessions.get(sessionId);
+        if (session == null) {
+            return HttpResponses.text(404, "Long polling session not found");
+        }
+        logger.log(TRACE, () -> sessionId + " -> " + message);
+        session.decode(message);
+        return HttpResponses.text(200, "");
+    }
+
+    /**
+     * Finds a session or starts one for its rendered page. Starting mounts the page's components and runs
+     * application code, so it happens outside the map rather than under one of its locks.
+     */
+    private Session sessionFor(final QualifiedSessionId sessionId) {
+        final Session existing = sessions.get(sessionId);
+        if (existing != null) {
+            return existing;
+        }
+        final Session started = start(sessionId);
+        if (started == null) {
+            // another poll may have taken the rendered page and started its session meanwhile
+            return sessions.get(sessionId);
+        }
+        final Session raced = sessions.putIfAbsent(sessionId, started);
+        if (raced != null) {
+            started.close();
+            return raced;
+        }
+        return started;
+    }
+
+    private Session start(final QualifiedSessionId sessionId) {
+        final RenderedPage renderedPage = renderedPages.remove(sessionId);
+        if (renderedPage == null) {
+            return null;
+        }
+        final Session session = new Session(sessionId,
+                                            new LivePageSession(eventLoopSupplier.get(),
+                                                                SessionResumeOptions.disabled(),
+                                                                sessionQueue,
+                                                                remoteRequestTimeoutMs,
+                                                                metrics));
+        final RemotePageMessageEncoder remoteOut = new RemotePageMessageEncoder(session.mailbox::add,
+                                                                                MessageBatchingOptions.disabled(),
+                                                                                metrics);
+        session.livePage.eventsConsumer().accept(new InitSessionCommand(renderedPage.pageBuilder(),
+                                                                        renderedPage.commandsEnqueue(),
+                                                                        remoteOut));
+        session.livePage.eventsConsumer().accept(new RemoteCommand.SetRenderNum(0));
+        session.livePage.start();
+        logger.log(DEBUG, () -> "Long polling live page session started: " + sessionId);
+        return session;
+    }
+
+    private static String reloadMessage() {
+        final StringBuilder message = new StringBuilder();
+        new RemotePageMessageEncoder(message::append).evalJs(-1, "RSP.reload()");
+        return message.toString();
+    }
+
+    private final class Session {
+        private final QualifiedSessionId sessionId;
+        private final LivePageSession livePage;
+        private final RemotePageMessageDecoder decoder;
+        private final LongPollingMailbox mailbox = new LongPollingMailbox();
+
+        /**
+         * Guarded by this session's monitor.
+         */
+        private int waitingPolls;
+        private TimerWheel.Timeout idleTimeout;
+
+        private Session(final QualifiedSessionId sessionId, final LivePageSession livePage) {
+            this.sessionId = sessionId;
+            this.livePage = livePage;
+            this.decoder = new RemotePageMessageDecoder(JsonUtils.createParser(), livePage.eventsConsumer());
+            this.idleTimeout = timerWheel.schedule(this::expire, options.idleTimeoutMs());
+        }
+
+        private HttpResponse poll() {
+            pollStarted();
+            try {
+                final Optional<String> messages = mailbox.poll(options.holdMs());
+                messages.ifPresent(m -> logger.log(TRACE, () -> sessionId + " <- " + m));
+                return messages.map(m -> new HttpResponse(200, MESSAGE_HEADERS, m))
+                               .orElseGet(() -> HttpResponses.text(503, "No messages"));
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return HttpResponses.text(503, "No messages");
+            } finally {
+                pollFinished();
+            }
+        }
+
+        private void decode(final String message) {
+            // concurrent publishes of one client share the decoder's JSON parser
+            synchronized (decoder) {
+                decoder.decode(message);
+            }
+        }
+
+        private synchronized void pollStarted() {
+            waitingPolls++;
+            idleTimeout.cancel();
+        }
+
+        private synchronized void pollFinished() {
+            waitingPolls--;
+            if (waitingPolls == 0) {
+                idleTimeout = timerWheel.schedule(this::expire, options.idleTimeoutMs());
+            }
+        }
+
+        private void expire() {
+            synchronized (this) {
+                if (waitingPolls > 0) {
+                    return;
+                }
+            }
+            logger.log(DEBUG, () -> "Long polling session expired without a poll: " + sessionId);
+            shutdown();
+        }
+
+        private void shutdown() {
+            if (sessions.remove(sessionId, this)) {
+                close();
+            }
+        }
+
+        private void close() {
+            mailbox.close();
+            livePage.eventsConsumer().accept(new ShutdownSessionCommand());
+            logger.log(DEBUG, () -> "Shutdown long polling session: " + sessionId);
+        }
+    }
+}
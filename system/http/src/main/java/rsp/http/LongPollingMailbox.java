@@ -0,0 +1,93 @@
+package rsp.http;
+
+import rsp.server.protocol.RemotePageMessageEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The outbound messages of a long polling session, waiting for its client's next poll.
+ * <p>
+ * Thread-safe: the session's event loop adds messages, request threads poll them. Only the latest poll waits,
+ * a newer poll of a client which gave up on the previous one makes the previous one return with nothing,
+ * so a message is never handed to a response nobody reads.
+ */
+final class LongPollingMailbox {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final List<String> messages = new ArrayList<>();
+    private long polls;
+    private boolean closed;
+
+    /**
+     * Adds a message and wakes the waiting poll up, a message added after {@link #close()} is dropped.
+     */
+    void add(final String message) {
+        Objects.requireNonNull(message);
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            messages.add(message);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the pending messages, waiting for one if there are none.
+     * @param holdMs how long to wait for a message, in milliseconds
+     * @return the messages as one message, a {@code BATCH} of them if there are several,
+     *         or empty if none arrived in time, a newer poll started or the mailbox was closed
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    Optional<String> poll(final long holdMs) throws InterruptedException {
+        lock.lock();
+        try {
+            final long poll = ++polls;
+            changed.signalAll();
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(holdMs);
+            while (messages.isEmpty() && !closed && poll == polls && remainingNanos > 0) {
+                remainingNanos = changed.awaitNanos(remainingNanos);
+            }
+            if (messages.isEmpty() || closed || poll != polls) {
+                return Optional.empty();
+            }
+            final String batch = RemotePageMessageEncoder.batch(messages);
+            messages.clear();
+            return Optional.of(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the pending messages and makes a waiting poll return with nothing.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            messages.clear();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return messages.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
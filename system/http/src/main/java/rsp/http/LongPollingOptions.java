@@ -0,0 +1,64 @@
+package rsp.http;
+
+/**
+ * Immutable options of the HTTP long polling endpoint, the live page transport of clients which can't open
+ * a WebSocket, for example behind a proxy which doesn't pass the {@code Upgrade} header on.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()} or {@link #disabled()}.
+ * A session's outbound messages wait in its mailbox between the client's polls and a poll returns all of them
+ * as one response. A poll which finds the mailbox empty is held until a message arrives or the hold time passes.
+ *
+ * @param enabled whether the endpoint serves long polling sessions
+ * @param holdMs how long a poll waits for a message before it is answered with nothing,
+ *               in milliseconds, must be positive
+ * @param idleTimeoutMs how long a session lives without a poll waiting before it is shut down,
+ *                      in milliseconds, must be positive
+ */
+public record LongPollingOptions(boolean enabled, long holdMs, long idleTimeoutMs) {
+
+    /**
+     * The default hold time, shorter than the usual idle timeouts of proxies.
+     */
+    public static final long DEFAULT_HOLD_MS = 20_000;
+
+    /**
+     * The default time a session waits for its client's next poll.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30_000;
+
+    public LongPollingOptions {
+        if (holdMs < 1) {
+            throw new IllegalArgumentException("holdMs must be greater than 0");
+        }
+        if (idleTimeoutMs < 1) {
+            throw new IllegalArgumentException("idleTimeoutMs must be greater than 0");
+        }
+    }
+
+    /**
+     * Creates the default options: the endpoint enabled with {@link #DEFAULT_HOLD_MS}
+     * and {@link #DEFAULT_IDLE_TIMEOUT_MS}.
+     */
+    public static LongPollingOptions defaults() {
+        return new LongPollingOptions(true, DEFAULT_HOLD_MS, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * Creates options without the endpoint, so a client which can't open a WebSocket has no live page.
+     */
+    public static LongPollingOptions disabled() {
+        return defaults().withEnabled(false);
+    }
+
+    public LongPollingOptions withEnabled(final boolean enabled) {
+        return new LongPollingOptions(enabled, holdMs, idleTimeoutMs);
+    }
+
+    public LongPollingOptions withHoldMs(final long holdMs) {
+        return new LongPollingOptions(enabled, holdMs, idleTimeoutMs);
+    }
+
+    public LongPollingOptions withIdleTimeoutMs(final long idleTimeoutMs) {
+        return new LongPollingOptions(enabled, holdMs, idleTimeoutMs);
+    }
+}
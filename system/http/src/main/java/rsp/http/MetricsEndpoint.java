@@ -0,0 +1,205 @@
+package rsp.http;
+
+import rsp.metrics.Histogram;
+import rsp.metrics.Metrics;
+import rsp.metrics.MetricsRegistry;
+import rsp.server.http.Header;
+import rsp.server.http.HttpMethod;
+import rsp.server.http.HttpRequest;
+import rsp.server.http.HttpResponse;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Renders the server's metrics in the OpenMetrics text format.
+ * <p>
+ * A scrape samples the server's gauges and the JVM's memory, thread and garbage collection statistics, then adds
+ * the values of a {@link MetricsRegistry}. Dotted metric names become underscored. Histograms are exported as
+ * summaries with fixed quantiles, timers as summaries in seconds. A registry value named like a sampled gauge
+ * is skipped, the sampled value is more current.
+ * <p>
+ * The JDK's management API has no virtual thread counts, the thread gauges are platform threads. The server's
+ * virtual threads are accounted for by its connection and WebSocket gauges, as each holds one of them.
+ */
+final class MetricsEndpoint {
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final String path;
+    private final Metrics metrics;
+    private final Map<String, LongSupplier> serverGauges;
+
+    /**
+     * Creates a new instance of the endpoint.
+     * @param path the request path the endpoint answers
+     * @param metrics the server's metrics, its values are exported if it is a {@link MetricsRegistry}
+     * @param serverGauges gauges sampled on every scrape, by metric name, in their export order
+     */
+    MetricsEndpoint(final String path, final Metrics metrics, final Map<String, LongSupplier> serverGauges) {
+        this.path = Objects.requireNonNull(path);
+        this.metrics = Objects.requireNonNull(metrics);
+        this.serverGauges = Objects.requireNonNull(serverGauges);
+    }
+
+    boolean matches(final HttpRequest request) {
+        return (request.method == HttpMethod.GET || request.method == HttpMethod.HEAD)
+               && path.equals(request.path.toString());
+    }
+
+    HttpResponse respond() {
+        return new HttpResponse(200, List.of(new Header("Content-Type", CONTENT_TYPE)), render());
+    }
+
+    String render() {
+        final Exposition out = new Exposition();
+        serverGauges.forEach((name, value) -> out.gauge(name, value.getAsLong()));
+        renderJvm(out);
+        if (metrics instanceof MetricsRegistry registry) {
+            registry.counters().forEach(out::counter);
+            registry.gauges().forEach(out::gauge);
+            registry.histograms().forEach((name, histogram) -> out.summary(name, histogram, 1.0, null));
+            registry.timers().forEach((name, histogram) -> out.summary(name, histogram, NANOS_PER_SECOND, "seconds"));
+        }
+        return out.end();
+    }
+
+    private static void renderJvm(final Exposition out) {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final MemoryUsage heap = memory.getHeapMemoryUsage();
+        final MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+        out.gauge("jvm.memory.heap.used.bytes", heap.getUsed());
+        out.gauge("jvm.memory.heap.committed.bytes", heap.getCommitted());
+        out.gauge("jvm.memory.heap.max.bytes", heap.getMax());
+        out.gauge("jvm.memory.non_heap.used.bytes", nonHeap.getUsed());
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        out.gauge("jvm.threads.live", threads.getThreadCount());
+        out.gauge("jvm.threads.daemon", threads.getDaemonThreadCount());
+        out.gauge("jvm.threads.peak", threads.getPeakThreadCount());
+
+        final int processors = Runtime.getRuntime().availableProcessors();
+        out.gauge("jvm.cpu.available_processors", processors);
+        out.gauge("jvm.virtual_threads.scheduler.parallelism",
+                  Integer.getInteger("jdk.virtualThreadScheduler.parallelism", processors));
+
+        long collections = 0;
+        long collectionMs = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0L, gc.getCollectionCount());
+            collectionMs += Math.max(0L, gc.getCollectionTime());
+        }
+        out.counter("jvm.gc.collections", collections);
+        out.counter("jvm.gc.collection.seconds", collectionMs / 1_000.0);
+        out.gauge("jvm.uptime.seconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1_000.0);
+    }
+
+    static String metricName(final String name) {
+        final StringBuilder sb = new StringBuilder(name.length() + 1);
+        if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+            sb.append('_');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            sb.append(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == ':'
+                      ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The text of one scrape, every metric family written once.
+     */
+    private static final class Exposition {
+        private final StringBuilder sb = new StringBuilder(8192);
+        private final Set<String> families = new HashSet<>();
+
+        void counter(final String name, final long value) {
+            counter(name, Long.toString(value));
+        }
+
+        void counter(final String name, final double value) {
+            counter(name, Double.toString(value));
+        }
+
+        private void counter(final String name, final String value) {
+            final String family = stripSuffix(metricName(name), "_total");
+            if (startFamily(family, "counter", null)) {
+                sample(family + "_total", null, value);
+            }
+        }
+
+        void gauge(final String name, final long value) {
+            gauge(name, Long.toString(value));
+        }
+
+        void gauge(final String name, final double value) {
+            gauge(name, Double.toString(value));
+        }
+
+        private void gauge(final String name, final String value) {
+            final String family = metricName(name);
+            if (startFamily(family, "gauge", null)) {
+                sample(family, null, value);
+            }
+        }
+
+        void summary(final String name, final Histogram histogram, final double divisor, final String unit) {
+            final String base = metricName(name);
+            final String family = unit == null ? base : base + "_" + unit;
+            if (!startFamily(family, "summary", unit)) {
+                return;
+            }
+            for (final double quantile : QUANTILES) {
+                sample(family,
+                       "quantile=\"" + quantile + "\"",
+                       number(histogram.valueAtPercentile(quantile * 100.0), divisor));
+            }
+            sample(family + "_sum", null, number(histogram.sum(), divisor));
+            sample(family + "_count", null, Long.toString(histogram.count()));
+        }
+
+        String end() {
+            sb.append("# EOF\n");
+            return sb.toString();
+        }
+
+        private boolean startFamily(final String family, final String type, final String unit) {
+            if (!families.add(family)) {
+                return false;
+            }
+            sb.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+            if (unit != null) {
+                sb.append("# UNIT ").append(family).append(' ').append(unit).append('\n');
+            }
+            return true;
+        }
+
+        private void sample(final String name, final String labels, final String value) {
+            sb.append(name);
+            if (labels != null) {
+                sb.append('{').append(labels).append('}');
+            }
+            sb.append(' ').append(value).append('\n');
+        }
+
+        private static String number(final long value, final double divisor) {
+            return divisor == 1.0 ? Long.toString(value) : Double.toString(value / divisor);
+        }
+
+        private static String stripSuffix(final String name, final String suffix) {
+            return name.endsWith(suffix) ? name.substring(0, name.length() - suffix.length()) : name;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package rsp.http;
+
+import java.util.Objects;
+
+/**
+ * Immutable options of the HTTP endpoint which exposes the server's metrics in the OpenMetrics text format.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()} or {@link #disabled()}.
+ * The endpoint always reports the server's connection, WebSocket and page store gauges and the JVM's memory,
+ * thread and garbage collection statistics. The values recorded through {@link WebServerOptions#metrics()} are
+ * reported too when it is a {@link rsp.metrics.MetricsRegistry}.
+ *
+ * @param enabled whether {@code GET} requests to the path are answered with the metrics instead of a page
+ * @param path the endpoint's request path, must start with {@code /}
+ */
+public record MetricsEndpointOptions(boolean enabled, String path) {
+
+    /**
+     * The conventional path Prometheus scrapes.
+     */
+    public static final String DEFAULT_PATH = "/metrics";
+
+    public MetricsEndpointOptions {
+        Objects.requireNonNull(path);
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("path must start with /");
+        }
+    }
+
+    /**
+     * Creates the default options: the endpoint enabled at {@link #DEFAULT_PATH}.
+     */
+    public static MetricsEndpointOptions defaults() {
+        return new MetricsEndpointOptions(true, DEFAULT_PATH);
+    }
+
+    /**
+     * Creates options without the endpoint, so its path is handled as any other page.
+     */
+    public static MetricsEndpointOptions disabled() {
+        return defaults().withEnabled(false);
+    }
+
+    public MetricsEndpointOptions withEnabled(final boolean enabled) {
+        return new MetricsEndpointOptions(enabled, path);
+    }
+
+    public MetricsEndpointOptions withPath(final String path) {
+        return new MetricsEndpointOptions(enabled, path);
+    }
+}
@@ -0,0 +1,122 @@
+package rsp.http;
+
+import rsp.page.LivePageSession;
+import rsp.page.QualifiedSessionId;
+import rsp.page.SessionResumeOptions;
+import rsp.page.events.ParkSessionCommand;
+import rsp.page.events.ShutdownSessionCommand;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.Logger.Level.DEBUG;
+
+/**
+ * Live page sessions that lost their WebSocket connections, waiting for their clients to reconnect.
+ * <p>
+ * A session is shut down when it is not resumed within {@link SessionResumeOptions#gracePeriodMs()}.
+ * Commands are posted to sessions outside this object's monitor, as a bounded session queue may block the poster.
+ */
+final class ParkedSessions {
+    private static final System.Logger logger = System.getLogger(ParkedSessions.class.getName());
+
+    private final SessionResumeOptions options;
+    private final Map<QualifiedSessionId, LivePageSession> sessions = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService expiryScheduler;
+    private boolean stopped;
+
+    ParkedSessions(final SessionResumeOptions options) {
+        this.options = Objects.requireNonNull(options);
+    }
+
+    SessionResumeOptions options() {
+        return options;
+    }
+
+    /**
+     * Accepts sessions for parking, after a {@link #stop()}.
+     */
+    synchronized void start() {
+        stopped = false;
+    }
+
+    /**
+     * Parks a session, or shuts it down if resuming is disabled or the server is stopped.
+     */
+    void park(final QualifiedSessionId sessionId, final LivePageSession session) {
+        Objects.requireNonNull(sessionId);
+        Objects.requireNonNull(session);
+        if (!options.enabled()) {
+            shutdown(sessionId, session);
+            return;
+        }
+        // before the session can be taken, so a resume always follows the park on its event loop
+        session.eventsConsumer().accept(new ParkSessionCommand());
+        final LivePageSession shutdownSession;
+        synchronized (this) {
+            if (stopped) {
+                shutdownSession = session;
+            } else {
+                if (expiryScheduler == null) {
+                    expiryScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                                                                                       .name("rsp-parked-sessions")
+                                                                                       .daemon()
+                                                                                       .factory());
+                }
+                final LivePageSession replaced = sessions.put(sessionId, session);
+                shutdownSession = replaced != session ? replaced : null;
+                expiryScheduler.schedule(() -> {
+                    if (sessions.remove(sessionId, session)) {
+                        logger.log(DEBUG, () -> "Parked session expired: " + sessionId);
+                        shutdown(sessionId, session);
+                    }
+                }, options.gracePeriodMs(), TimeUnit.MILLISECONDS);
+                logger.log(DEBUG, () -> "Session parked: " + sessionId);
+            }
+        }
+        if (shutdownSession != null) {
+            shutdown(sessionId, shutdownSession);
+        }
+    }
+
+    /**
+     * Takes a parked session out for resuming.
+     * @return the session, or null if there is no such parked session
+     */
+    synchronized LivePageSession take(final QualifiedSessionId sessionId) {
+        return sessions.remove(sessionId);
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Shuts down all the parked sessions and the sessions parked until the next {@link #start()}.
+     */
+    void stop() {
+        final Map<QualifiedSessionId, LivePageSession> stoppedSessions;
+        synchronized (this) {
+            stopped = true;
+            if (expiryScheduler != null) {
+                expiryScheduler.shutdownNow();
+                expiryScheduler = null;
+            }
+            stoppedSessions = Map.copyOf(sessions);
+            sessions.clear();
+        }
+        for (final Map.Entry<QualifiedSessionId, LivePageSession> entry : stoppedSessions.entrySet()) {
+            shutdown(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void shutdown(final QualifiedSessionId sessionId, final LivePageSession session) {
+        session.eventsConsumer().accept(new ShutdownSessionCommand());
+        logger.log(DEBUG, () -> "Shutdown session: " + sessionId);
+    }
+}
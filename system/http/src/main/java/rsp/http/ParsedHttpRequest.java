@@ -3,7 +3,13 @@ package rsp.http;
 import rsp.server.http.HttpMethod;
 import rsp.server.http.HttpRequest;
 
-record ParsedHttpRequest(HttpRequest request, String version) {
+/**
+ * A request as read from a connection.
+ * @param request the request
+ * @param version the request line's HTTP version
+ * @param body the request's body, empty when it has none; a form body is also merged into the request's query
+ */
+record ParsedHttpRequest(HttpRequest request, String version, byte[] body) {
     HttpMethod method() {
         return request.method;
     }
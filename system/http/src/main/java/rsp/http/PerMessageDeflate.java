@@ -0,0 +1,271 @@
+package rsp.http;
+
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.lang.System.Logger.Level.DEBUG;
+
+/**
+ * The permessage-deflate WebSocket extension, RFC 7692, for one connection.
+ * <p>
+ * Outbound messages at or above the threshold are compressed with a raw DEFLATE stream, flushed with
+ * {@link Deflater#SYNC_FLUSH}, without the trailing {@code 00 00 FF FF} marker. With context takeover the
+ * compressor keeps its window between messages, so a DOM update can refer back to tag names and node ids
+ * sent in earlier ones. Outbound writes are serialized by the owning {@link WebSocketSession};
+ * inbound messages are inflated on the connection's read thread.
+ */
+final class PerMessageDeflate {
+    static final String EXTENSION_NAME = "permessage-deflate";
+
+    private static final System.Logger logger = System.getLogger(PerMessageDeflate.class.getName());
+    private static final byte[] SYNC_FLUSH_TAIL = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+    private static final int INFLATE_CHUNK_BYTES = 8 * 1024;
+
+    private final Agreement agreement;
+    private final int thresholdBytes;
+    private final Metrics metrics;
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] inflateChunk = new byte[INFLATE_CHUNK_BYTES];
+
+    private long inputBytes;
+    private long outputBytes;
+    private boolean closed;
+
+    PerMessageDeflate(final Agreement agreement,
+                      final WebSocketCompressionOptions options,
+                      final Metrics metrics) {
+        this.agreement = Objects.requireNonNull(agreement);
+        this.thresholdBytes = options.thresholdBytes();
+        this.metrics = Objects.requireNonNull(metrics);
+        this.deflater = new Deflater(options.level(), true);
+        metrics.incrementCounter(MetricNames.WEBSOCKET_DEFLATE_NEGOTIATED);
+    }
+
+    /**
+     * Selects the first acceptable permessage-deflate offer of a {@code Sec-WebSocket-Extensions} header.
+     *
+     * @param extensionsHeader the header's value or null if the client sent none
+     * @param options the server's compression options
+     * @return the negotiated parameters or {@link Optional#empty()} if compression is not used
+     */
+    static Optional<Agreement> negotiate(final String extensionsHeader,
+                                         final WebSocketCompressionOptions options) {
+        if (extensionsHeader == null || !options.enabled()) {
+            return Optional.empty();
+        }
+        for (final String offer : extensionsHeader.split(",")) {
+            final Optional<Agreement> agreement = accept(offer, options);
+            if (agreement.isPresent()) {
+                return agreement;
+            }
+        }
+        return Optional.empty();
+    }
+
+    boolean shouldCompress(final int payloadLength) {
+        return !closed && payloadLength > 0 && payloadLength >= thresholdBytes;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Compresses one message.
+     *
+     * @return the payload of a frame with the RSV1 bit set
+     */
+    byte[] compress(final byte[] payload) {
+        deflater.setInput(payload);
+        byte[] output = new byte[Math.max(64, payload.length / 2)];
+        int length = 0;
+        while (true) {
+            length += deflater.deflate(output, length, output.length - length, Deflater.SYNC_FLUSH);
+            if (length < output.length) {
+                break;
+            }
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+        if (agreement.serverNoContextTakeover()) {
+            deflater.reset();
+        }
+        final int compressedLength = length - SYNC_FLUSH_TAIL.length;
+        inputBytes += payload.length;
+        outputBytes += compressedLength;
+        metrics.incrementCounter(MetricNames.WEBSOCKET_DEFLATE_MESSAGES);
+        metrics.incrementCounter(MetricNames.WEBSOCKET_DEFLATE_INPUT_BYTES, payload.length);
+        metrics.incrementCounter(MetricNames.WEBSOCKET_DEFLATE_OUTPUT_BYTES, compressedLength);
+        return Arrays.copyOf(output, compressedLength);
+    }
+
+    /**
+     * Inflates one message received with the RSV1 bit set.
+     *
+     * @param payload the message's assembled frame payloads
+     * @param maxBytes the limit for the inflated message
+     * @return the inflated message
+     */
+    byte[] decompress(final byte[] payload, final int maxBytes) throws WebSocketProtocolException {
+        final byte[] input = Arrays.copyOf(payload, payload.length + SYNC_FLUSH_TAIL.length);
+        System.arraycopy(SYNC_FLUSH_TAIL, 0, input, payload.length, SYNC_FLUSH_TAIL.length);
+        inflater.setInput(input);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(Math.min(maxBytes, payload.length * 4));
+        try {
+            while (true) {
+                final int count = inflater.inflate(inflateChunk);
+                if (count > 0) {
+                    if (output.size() + count > maxBytes) {
+                        throw new WebSocketProtocolException(WebSocketFrame.CLOSE_MESSAGE_TOO_BIG,
+                                                             "WebSocket message too large");
+                    }
+                    output.write(inflateChunk, 0, count);
+                } else if (inflater.needsInput() || inflater.finished()) {
+                    break;
+                } else if (inflater.needsDictionary()) {
+                    throw new WebSocketProtocolException(WebSocketFrame.CLOSE_INVALID_PAYLOAD,
+                                                         "Invalid permessage-deflate data");
+                }
+            }
+        } catch (final DataFormatException ex) {
+            throw new WebSocketProtocolException(WebSocketFrame.CLOSE_INVALID_PAYLOAD, "Invalid permessage-deflate data");
+        }
+        if (inflater.finished() || agreement.clientNoContextTakeover()) {
+            inflater.reset();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Releases the native zlib memory. Must be called by the thread that owns outbound writes.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        deflater.end();
+        inflater.end();
+        logger.log(DEBUG, () -> "permessage-deflate closed, compressed " + inputBytes + " bytes to " + outputBytes);
+    }
+
+    private static Optional<Agreement> accept(final String offer,
+                                              final WebSocketCompressionOptions options) {
+        final String[] tokens = offer.split(";");
+        if (!EXTENSION_NAME.equals(tokens[0].trim().toLowerCase(Locale.ROOT))) {
+            return Optional.empty();
+        }
+        boolean serverNoContextTakeover = !options.contextTakeover();
+        boolean clientNoContextTakeover = !options.contextTakeover();
+        boolean clientWindowBitsOffered = false;
+        int clientWindowBits = WebSocketCompressionOptions.MAX_WINDOW_BITS;
+        final Set<String> names = new HashSet<>();
+        for (int i = 1; i < tokens.length; i++) {
+            final String parameter = tokens[i].trim();
+            final int separator = parameter.indexOf('=');
+            final String name = (separator < 0 ? parameter : parameter.substring(0, separator)).trim().toLowerCase(Locale.ROOT);
+            final String value = separator < 0 ? null : unquote(parameter.substring(separator + 1).trim());
+            if (!names.add(name)) {
+                return Optional.empty();
+            }
+            switch (name) {
+                case "server_no_context_takeover" -> {
+                    if (value != null) {
+                        return Optional.empty();
+                    }
+                    serverNoContextTakeover = true;
+                }
+                case "client_no_context_takeover" -> {
+                    if (value != null) {
+                        return Optional.empty();
+                    }
+                    clientNoContextTakeover = true;
+                }
+                case "server_max_window_bits" -> {
+                    // The JDK's Deflater always uses a 32 KiB window, so a smaller limit can not be honoured
+                    if (windowBits(value) != WebSocketCompressionOptions.MAX_WINDOW_BITS) {
+                        return Optional.empty();
+                    }
+                }
+                case "client_max_window_bits" -> {
+                    clientWindowBitsOffered = true;
+                    if (value != null) {
+                        clientWindowBits = windowBits(value);
+                        if (clientWindowBits < 0) {
+                            return Optional.empty();
+                        }
+                    }
+                }
+                default -> {
+                    return Optional.empty();
+                }
+            }
+        }
+        final int responseClientWindowBits = Math.min(clientWindowBits, options.clientMaxWindowBits());
+        return Optional.of(new Agreement(serverNoContextTakeover,
+                                         clientNoContextTakeover,
+                                         clientWindowBitsOffered
+                                         && responseClientWindowBits < WebSocketCompressionOptions.MAX_WINDOW_BITS
+                                                 ? responseClientWindowBits : 0));
+    }
+
+    private static int windowBits(final String value) {
+        if (value == null || value.isEmpty() || value.length() > 2 || value.charAt(0) == '0') {
+            return -1;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        final int bits = Integer.parseInt(value);
+        return bits >= WebSocketCompressionOptions.MIN_WINDOW_BITS && bits <= WebSocketCompressionOptions.MAX_WINDOW_BITS
+               ? bits : -1;
+    }
+
+    private static String unquote(final String value) {
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+               ? value.substring(1, value.length() - 1)
+               : value;
+    }
+
+    /**
+     * The parameters both sides agreed on during the handshake.
+     *
+     * @param serverNoContextTakeover whether the server resets its compressor after every message
+     * @param clientNoContextTakeover whether the client resets its compressor after every message
+     * @param clientMaxWindowBits the window limit sent to the client, or {@code 0} if none is sent
+     */
+    record Agreement(boolean serverNoContextTakeover,
+                     boolean clientNoContextTakeover,
+                     int clientMaxWindowBits) {
+
+        /**
+         * @return the server's {@code Sec-WebSocket-Extensions} response header value
+         */
+        String responseHeaderValue() {
+            final StringBuilder value = new StringBuilder(EXTENSION_NAME);
+            if (serverNoContextTakeover) {
+                value.append("; server_no_context_takeover");
+            }
+            if (clientNoContextTakeover) {
+                value.append("; client_no_context_takeover");
+            }
+            if (clientMaxWindowBits > 0) {
+                value.append("; client_max_window_bits=").append(clientMaxWindowBits);
+            }
+            return value.toString();
+        }
+    }
+}
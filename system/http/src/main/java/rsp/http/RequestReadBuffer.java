@@ -0,0 +1,113 @@
+package rsp.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+/**
+ * A per-connection read buffer for HTTP request parsing.
+ * <p>
+ * Bytes are read from a socket in bulk rather than one {@link InputStream#read()} call at a time. Bytes received
+ * past the end of the current request stay buffered, so the next request or the first WebSocket frames
+ * after an upgrade are not lost.
+ */
+final class RequestReadBuffer {
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+
+    private byte[] bytes;
+    private int start;
+    private int limit;
+
+    RequestReadBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    RequestReadBuffer(final int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * @return the offset of the first unconsumed byte in {@link #array()}
+     */
+    int start() {
+        return start;
+    }
+
+    /**
+     * @return the offset after the last received byte in {@link #array()}
+     */
+    int limit() {
+        return limit;
+    }
+
+    int available() {
+        return limit - start;
+    }
+
+    /**
+     * Reads at least one byte unless the stream ends, growing the buffer while no more than {@code maxBytes}
+     * unconsumed bytes are buffered.
+     *
+     * @return the number of bytes read or {@code -1} at the end of the stream
+     */
+    int fill(final InputStream input, final int maxBytes) throws IOException {
+        if (limit == bytes.length) {
+            if (start > 0) {
+                System.arraycopy(bytes, start, bytes, 0, limit - start);
+                limit -= start;
+                start = 0;
+            } else {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length + 1, Math.min(bytes.length * 2, maxBytes)));
+            }
+        }
+        final int read = input.read(bytes, limit, bytes.length - limit);
+        if (read > 0) {
+            limit += read;
+        }
+        return read;
+    }
+
+    /**
+     * Marks bytes as consumed.
+     */
+    void consume(final int count) {
+        start += count;
+        if (start == limit) {
+            start = 0;
+            limit = 0;
+        }
+    }
+
+    /**
+     * Moves up to {@code length} buffered bytes to a destination array.
+     *
+     * @return the number of bytes moved
+     */
+    int drainTo(final byte[] destination, final int offset, final int length) {
+        final int count = Math.min(length, available());
+        System.arraycopy(bytes, start, destination, offset, count);
+        consume(count);
+        return count;
+    }
+
+    /**
+     * Continues a connection's input after the parsed request.
+     *
+     * @param input the socket's input stream
+     * @return a stream replaying bytes still buffered, then reading from the socket
+     */
+    InputStream remainderThen(final InputStream input) {
+        if (available() == 0) {
+            return input;
+        }
+        final byte[] remainder = Arrays.copyOfRange(bytes, start, limit);
+        consume(available());
+        return new SequenceInputStream(new ByteArrayInputStream(remainder), input);
+    }
+}
@@ -0,0 +1,220 @@
+package rsp.http;
+
+import rsp.server.http.AcceptEncoding;
+import rsp.server.http.Header;
+import rsp.server.http.HttpMethod;
+import rsp.server.http.HttpRequest;
+import rsp.server.http.HttpResponse;
+import rsp.server.http.MimeType;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses HTTP responses for clients which accept {@code gzip} or {@code deflate}.
+ * <p>
+ * A compressed body is encoded while it is written, so a streamed page is never held in memory, and a flush
+ * of the page's writer sends what it has compressed so far. Its length isn't known upfront, so a persistent
+ * connection carries it with chunked transfer coding. A streamed body is compressed whatever its size: its
+ * headers go out before its writer runs, so its length can't be compared with the minimum size. Every response
+ * of a compressible type varies by {@code Accept-Encoding}, including a {@code 304}, which repeats the
+ * {@code Vary} of the {@code 200} it revalidates, and a compressed response's entity tag is weakened, as its
+ * bytes differ from the identity representation's.
+ */
+final class ResponseCompression {
+    private static final int BUFFER_SIZE = 8192;
+    private static final List<String> CODINGS = List.of("gzip", "deflate");
+
+    private final HttpCompressionOptions options;
+
+    ResponseCompression(final HttpCompressionOptions options) {
+        this.options = Objects.requireNonNull(options);
+    }
+
+    /**
+     * Compresses a response if the request accepts a coding and the response is worth compressing.
+     * @return the compressed response, or the response as is
+     */
+    HttpResponse apply(final HttpRequest request, final HttpResponse response) {
+        if (!options.enabled()) {
+            return response;
+        }
+        if (response.status == 304) {
+            return isCompressibleType(notModifiedContentType(request, response))
+                   ? withHeaders(response, varied(response.headers))
+                   : response;
+        }
+        if (!isCompressible(response)) {
+            return response;
+        }
+        final List<Header> headers = varied(response.headers);
+        final Optional<String> coding = request.method == HttpMethod.HEAD
+                ? Optional.empty()
+                : CODINGS.stream().filter(c -> AcceptEncoding.accepts(request.header("Accept-Encoding"), c)).findFirst();
+        final String contentLength = header(headers, "Content-Length");
+        if (coding.isEmpty() || (contentLength != null && isShorterThanMinSize(contentLength))) {
+            return withHeaders(response, headers);
+        }
+        if (response.bodyWriter != null) {
+            return compressed(response.status, headers, coding.get(), response.bodyWriter);
+        }
+        final byte[] prefix;
+        try {
+            prefix = response.bodyStream.readNBytes(options.minSizeBytes());
+            if (prefix.length < options.minSizeBytes()) {
+                response.bodyStream.close();
+                return new HttpResponse(response.status, headers, new ByteArrayInputStream(prefix));
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        final InputStream body = new SequenceInputStream(new ByteArrayInputStream(prefix), response.bodyStream);
+        return compressed(response.status, headers, coding.get(), output -> {
+            try (body) {
+                body.transferTo(output);
+            }
+        });
+    }
+
+    private boolean isCompressible(final HttpResponse response) {
+        if (response.status < 200 || response.status == 204 || response.status == 206 || response.status == 304) {
+            return false;
+        }
+        if (hasHeader(response.headers, "Content-Encoding") || hasHeader(response.headers, "Content-Range")) {
+            return false;
+        }
+        return isCompressibleType(header(response.headers, "Content-Type"));
+    }
+
+    private boolean isCompressibleType(final String contentType) {
+        return contentType != null && options.mimeTypes().contains(MimeType.essence(contentType));
+    }
+
+    /**
+     * A {@code 304} usually has no {@code Content-Type}, the one of the revalidated resource is told by its path.
+     */
+    private static String notModifiedContentType(final HttpRequest request, final HttpResponse response) {
+        final String contentType = header(response.headers, "Content-Type");
+        if (contentType != null || request.path.isEmpty()) {
+            return contentType;
+        }
+        return MimeType.of(request.path.last());
+    }
+
+    private static List<Header> varied(final List<Header> responseHeaders) {
+        final List<Header> headers = new ArrayList<>(responseHeaders);
+        if (!hasHeader(headers, "Vary")) {
+            headers.add(new Header("Vary", "Accept-Encoding"));
+        }
+        return headers;
+    }
+
+    private boolean isShorterThanMinSize(final String contentLength) {
+        try {
+            return Long.parseLong(contentLength.trim()) < options.minSizeBytes();
+        } catch (final NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private HttpResponse compressed(final int status,
+                                    final List<Header> headers,
+                                    final String coding,
+                                    final HttpResponse.BodyWriter bodyWriter) {
+        final List<Header> compressedHeaders = new ArrayList<>(headers.size() + 1);
+        for (final Header header : headers) {
+            final String name = header.name().toLowerCase(Locale.ROOT);
+            if ("content-length".equals(name)) {
+                continue;
+            }
+            if ("etag".equals(name) && !header.value().startsWith("W/")) {
+                compressedHeaders.add(new Header(header.name(), "W/" + header.value()));
+            } else if ("accept-ranges".equals(name)) {
+                // ranges address the identity body, a range spliced into the compressed one would corrupt it
+                compressedHeaders.add(new Header(header.name(), "none"));
+            } else {
+                compressedHeaders.add(header);
+            }
+        }
+        compressedHeaders.add(new Header("Content-Encoding", coding));
+        return new HttpResponse(status, compressedHeaders, output -> {
+            try (DeflaterOutputStream encoder = encoder(coding, new NonClosingOutputStream(output))) {
+                bodyWriter.writeTo(encoder);
+            }
+        });
+    }
+
+    private DeflaterOutputStream encoder(final String coding, final OutputStream output) throws IOException {
+        final int level = options.level();
+        if ("gzip".equals(coding)) {
+            // syncFlush, so a flush of a streamed page sends the compressed bytes so far
+            return new GZIPOutputStream(output, BUFFER_SIZE, true) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        final Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(output, deflater, BUFFER_SIZE, true) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    private static HttpResponse withHeaders(final HttpResponse response, final List<Header> headers) {
+        return response.bodyWriter != null
+                ? new HttpResponse(response.status, headers, response.bodyWriter)
+                : new HttpResponse(response.status, headers, response.bodyStream);
+    }
+
+    private static boolean hasHeader(final List<Header> headers, final String name) {
+        return header(headers, name) != null;
+    }
+
+    private static String header(final List<Header> headers, final String name) {
+        for (final Header header : headers) {
+            if (header.name().equalsIgnoreCase(name)) {
+                return header.value();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the connection's stream open when the encoder is closed, the response writer owns it.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        private NonClosingOutputStream(final OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
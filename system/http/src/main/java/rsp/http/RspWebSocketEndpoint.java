@@ -1,22 +1,31 @@
 package rsp.http;
 
+import rsp.metrics.Metrics;
 import rsp.page.EventLoop;
 import rsp.page.LivePageSession;
 import rsp.page.QualifiedSessionId;
 import rsp.page.RenderedPage;
+import rsp.page.RenderedPagesStore;
+import rsp.page.SessionQueueOptions;
 import rsp.page.events.InitSessionCommand;
+import rsp.page.events.RemoteCommand;
+import rsp.page.events.ResumeSessionCommand;
 import rsp.page.events.ShutdownSessionCommand;
 import rsp.server.RemoteOut;
 import rsp.server.http.HttpRequest;
+import rsp.server.protocol.BinaryRemotePageMessageDecoder;
+import rsp.server.protocol.BinaryRemotePageMessageEncoder;
+import rsp.server.protocol.MessageBatchingOptions;
 import rsp.server.protocol.RemotePageMessageDecoder;
 import rsp.server.protocol.RemotePageMessageEncoder;
 import rsp.util.json.JsonUtils;
 
 import java.io.IOException;
 import java.util.Collections;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -29,13 +38,33 @@ import static java.lang.System.Logger.Level.WARNING;
 final class RspWebSocketEndpoint implements WebSocketEndpoint {
     private static final String ENDPOINT_PREFIX = "/bridge/web-socket";
 
-    private final Map<QualifiedSessionId, RenderedPage> renderedPages;
+    /**
+     * The query parameter of a reconnecting client with the last render number it applied.
+     */
+    static final String RENDER_NUMBER_PARAMETER = "renderNum";
+
+    private final RenderedPagesStore renderedPages;
+    private final ParkedSessions parkedSessions;
     private final Supplier<EventLoop> eventLoopSupplier;
+    private final MessageBatchingOptions messageBatching;
+    private final SessionQueueOptions sessionQueue;
+    private final long remoteRequestTimeoutMs;
+    private final Metrics metrics;
 
-    RspWebSocketEndpoint(final Map<QualifiedSessionId, RenderedPage> renderedPages,
-                         final Supplier<EventLoop> eventLoopSupplier) {
+    RspWebSocketEndpoint(final RenderedPagesStore renderedPages,
+                         final ParkedSessions parkedSessions,
+                         final Supplier<EventLoop> eventLoopSupplier,
+                         final MessageBatchingOptions messageBatching,
+                         final SessionQueueOptions sessionQueue,
+                         final long remoteRequestTimeoutMs,
+                         final Metrics metrics) {
         this.renderedPages = Objects.requireNonNull(renderedPages);
+        this.parkedSessions = Objects.requireNonNull(parkedSessions);
         this.eventLoopSupplier = Objects.requireNonNull(eventLoopSupplier);
+        this.messageBatching = Objects.requireNonNull(messageBatching);
+        this.sessionQueue = Objects.requireNonNull(sessionQueue);
+        this.remoteRequestTimeoutMs = remoteRequestTimeoutMs;
+        this.metrics = Objects.requireNonNull(metrics);
     }
 
     @Override
@@ -51,13 +80,23 @@ final class RspWebSocketEndpoint implements WebSocketEndpoint {
         }
     }
 
+    @Override
+    public List<String> supportedSubprotocols() {
+        return List.of(BinaryRemotePageMessageEncoder.SUBPROTOCOL);
+    }
+
     @Override
     public WebSocketListener open(final HttpRequest request, final WebSocketSession session) {
         return new RspWebSocketListener(request,
                                         session,
                                         sessionId(request).orElseThrow(),
                                         renderedPages,
-                                        eventLoopSupplier);
+                                        parkedSessions,
+                                        eventLoopSupplier,
+                                        messageBatching,
+                                        sessionQueue,
+                                        remoteRequestTimeoutMs,
+                                        metrics);
     }
 
     private Optional<QualifiedSessionId> sessionId(final HttpRequest request) {
@@ -76,48 +115,104 @@ final class RspWebSocketEndpoint implements WebSocketEndpoint {
         private final HttpRequest handshakeRequest;
         private final WebSocketSession session;
         private final QualifiedSessionId sessionId;
-        private final Map<QualifiedSessionId, RenderedPage> renderedPages;
+        private final RenderedPagesStore renderedPages;
+        private final ParkedSessions parkedSessions;
         private final Supplier<EventLoop> eventLoopSupplier;
-        private final AtomicBoolean shutdownSent = new AtomicBoolean();
+        private final MessageBatchingOptions messageBatching;
+        private final SessionQueueOptions sessionQueue;
+        private final long remoteRequestTimeoutMs;
+        private final Metrics metrics;
+        private final AtomicBoolean detached = new AtomicBoolean();
 
         private LivePageSession livePage;
         private RemotePageMessageDecoder decoder;
+        private BinaryRemotePageMessageDecoder binaryDecoder;
 
         private RspWebSocketListener(final HttpRequest handshakeRequest,
                                      final WebSocketSession session,
                                      final QualifiedSessionId sessionId,
-                                     final Map<QualifiedSessionId, RenderedPage> renderedPages,
-                                     final Supplier<EventLoop> eventLoopSupplier) {
+                                     final RenderedPagesStore renderedPages,
+                                     final ParkedSessions parkedSessions,
+                                     final Supplier<EventLoop> eventLoopSupplier,
+                                     final MessageBatchingOptions messageBatching,
+                                     final SessionQueueOptions sessionQueue,
+                                     final long remoteRequestTimeoutMs,
+                                     final Metrics metrics) {
             this.handshakeRequest = Objects.requireNonNull(handshakeRequest);
             this.session = Objects.requireNonNull(session);
             this.sessionId = Objects.requireNonNull(sessionId);
             this.renderedPages = Objects.requireNonNull(renderedPages);
+            this.parkedSessions = Objects.requireNonNull(parkedSessions);
             this.eventLoopSupplier = Objects.requireNonNull(eventLoopSupplier);
+            this.messageBatching = Objects.requireNonNull(messageBatching);
+            this.sessionQueue = Objects.requireNonNull(sessionQueue);
+            this.remoteRequestTimeoutMs = remoteRequestTimeoutMs;
+            this.metrics = Objects.requireNonNull(metrics);
         }
 
         @Override
         public void onOpen() {
-            final RemoteOut remoteOut = new RemotePageMessageEncoder(this::sendText);
+            final boolean binaryProtocol = isBinaryProtocol();
+            final RemoteOut remoteOut = binaryProtocol
+                                        ? new BinaryRemotePageMessageEncoder(this::sendBinary, messageBatching, metrics)
+                                        : new RemotePageMessageEncoder(this::sendText, messageBatching, metrics);
             final RenderedPage renderedPage = renderedPages.remove(sessionId);
             if (renderedPage == null) {
+                final OptionalInt lastRenderNumber = lastRenderNumber();
+                final LivePageSession parkedPage = lastRenderNumber.isPresent() ? parkedSessions.take(sessionId) : null;
+                if (parkedPage != null) {
+                    bind(parkedPage, binaryProtocol);
+                    livePage.eventsConsumer().accept(new ResumeSessionCommand(remoteOut, lastRenderNumber.getAsInt()));
+                    logger.log(DEBUG, () -> "Live page session resuming: " + sessionId);
+                    return;
+                }
                 logger.log(TRACE, () -> "Pre-rendered page not found for SID: " + sessionId);
                 if (!isKnownLostSession(sessionId)) {
                     logger.log(WARNING, () -> "Reload a remote on: " + handshakeRequest.url);
                     remoteOut.evalJs(-1, "RSP.reload()");
+                    remoteOut.flush();
                 }
                 return;
             }
 
-            livePage = new LivePageSession(eventLoopSupplier.get());
+            bind(new LivePageSession(eventLoopSupplier.get(),
+                                     parkedSessions.options(),
+                                     sessionQueue,
+                                     remoteRequestTimeoutMs,
+                                     metrics),
+                 binaryProtocol);
             livePage.eventsConsumer().accept(new InitSessionCommand(renderedPage.pageBuilder(),
                                                                     renderedPage.commandsEnqueue(),
                                                                     remoteOut));
-            decoder = new RemotePageMessageDecoder(JsonUtils.createParser(), livePage.eventsConsumer());
-            remoteOut.setRenderNum(0);
+            // The encoder belongs to the event loop from now on, it may hold a batch between turns
+            livePage.eventsConsumer().accept(new RemoteCommand.SetRenderNum(0));
             livePage.start();
             logger.log(DEBUG, () -> "Live page session started: " + sessionId);
         }
 
+        private void bind(final LivePageSession page, final boolean binaryProtocol) {
+            livePage = page;
+            decoder = new RemotePageMessageDecoder(JsonUtils.createParser(), livePage.eventsConsumer());
+            if (binaryProtocol) {
+                binaryDecoder = new BinaryRemotePageMessageDecoder(livePage.eventsConsumer());
+            }
+        }
+
+        /**
+         * @return the last render number a reconnecting client applied, or empty for a new page's client
+         */
+        private OptionalInt lastRenderNumber() {
+            final String value = handshakeRequest.queryParameters.parameterValue(RENDER_NUMBER_PARAMETER);
+            if (value == null) {
+                return OptionalInt.empty();
+            }
+            try {
+                return OptionalInt.of(Integer.parseInt(value));
+            } catch (final NumberFormatException ex) {
+                return OptionalInt.empty();
+            }
+        }
+
         @Override
         public void onText(final String message) {
             logger.log(TRACE, () -> sessionId + " -> " + message);
@@ -128,17 +223,25 @@ final class RspWebSocketEndpoint implements WebSocketEndpoint {
 
         @Override
         public void onBinary(final byte[] payload) throws IOException {
-            session.close(WebSocketFrame.CLOSE_UNSUPPORTED_DATA, "Binary RSP protocol is not supported yet");
+            if (!isBinaryProtocol()) {
+                session.close(WebSocketFrame.CLOSE_UNSUPPORTED_DATA, "Binary RSP protocol was not negotiated");
+                return;
+            }
+            logger.log(TRACE, () -> sessionId + " -> binary message, " + payload.length + " bytes");
+            if (binaryDecoder != null) {
+                binaryDecoder.decode(payload);
+            }
         }
 
         @Override
         public void onClose(final int code, final String reason) {
-            shutdownSession();
+            // a client closes normally when it doesn't intend to reconnect
+            detachSession(code != WebSocketFrame.CLOSE_NORMAL);
         }
 
         @Override
         public void onError(final Throwable throwable) {
-            shutdownSession();
+            detachSession(true);
         }
 
         private void sendText(final String text) {
@@ -154,10 +257,31 @@ final class RspWebSocketEndpoint implements WebSocketEndpoint {
             }
         }
 
-        private void shutdownSession() {
-            if (livePage != null && shutdownSent.compareAndSet(false, true)) {
-                livePage.eventsConsumer().accept(new ShutdownSessionCommand());
-                logger.log(DEBUG, () -> "Shutdown session: " + sessionId);
+        private void sendBinary(final byte[] message) {
+            if (!session.isOpen()) {
+                return;
+            }
+            try {
+                logger.log(TRACE, () -> sessionId + " <- binary message, " + message.length + " bytes");
+                session.sendBinary(message);
+            } catch (final IOException ex) {
+                logger.log(DEBUG, "WebSocket write failed", ex);
+                session.closeSocket();
+            }
+        }
+
+        private boolean isBinaryProtocol() {
+            return session.subprotocol().filter(BinaryRemotePageMessageEncoder.SUBPROTOCOL::equals).isPresent();
+        }
+
+        private void detachSession(final boolean resumable) {
+            if (livePage != null && detached.compareAndSet(false, true)) {
+                if (resumable) {
+                    parkedSessions.park(sessionId, livePage);
+                } else {
+                    livePage.eventsConsumer().accept(new ShutdownSessionCommand());
+                    logger.log(DEBUG, () -> "Shutdown session: " + sessionId);
+                }
             }
         }
 
@@ -0,0 +1,685 @@
+package rsp.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.lang.System.Logger.Level.ERROR;
+
+/**
+ * An HTTP/1.1 transport built on a single {@link Selector} thread.
+ * <p>
+ * The selector thread accepts sockets, reads and frames requests and writes buffered responses, so an idle
+ * persistent connection costs a selection key and a small buffer rather than a thread and a connection permit.
+ * Each connection handles its requests strictly in order on one worker at a time, which keeps pipelined
+ * responses ordered. A request asking to switch protocols stops framing on its connection; its handler can
+ * then {@link Connection#detach() detach} the socket into blocking mode and keep it, e.g. for a WebSocket.
+ * A connection whose queued output makes no progress for the keep-alive timeout is closed, failing its writer.
+ */
+final class SelectorTransport {
+    private static final System.Logger logger = System.getLogger(SelectorTransport.class.getName());
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 8 * 1024;
+    private static final int OUTBOUND_HIGH_WATERMARK = 256 * 1024;
+    private static final int MAX_SWEEP_INTERVAL_MS = 1_000;
+
+    /**
+     * Handles one framed request on a worker thread.
+     */
+    interface Handler {
+        /**
+         * @param connection the connection the request arrived on
+         * @param request the request's bytes including its body
+         * @return true if the connection can carry the next request
+         */
+        boolean handle(Connection connection, byte[] request);
+
+        /**
+         * Writes a response for a request that could not be framed; the connection is closed afterwards.
+         */
+        void reject(Connection connection, HttpProtocolException ex);
+    }
+
+    /**
+     * A socket taken over from the selector.
+     *
+     * @param socket a socket in blocking mode
+     * @param input the socket's input, starting with bytes received but not consumed by the transport
+     */
+    record DetachedSocket(Socket socket, InputStream input) {
+    }
+
+    private final int port;
+    private final WebServerOptions options;
+    private final Handler handler;
+    private final Executor workers;
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private volatile boolean running;
+
+    SelectorTransport(final int port,
+                      final WebServerOptions options,
+                      final Handler handler,
+                      final Executor workers) {
+        this.port = port;
+        this.options = Objects.requireNonNull(options);
+        this.handler = Objects.requireNonNull(handler);
+        this.workers = Objects.requireNonNull(workers);
+    }
+
+    /**
+     * Binds the listening socket.
+     *
+     * @return the bound port
+     */
+    int bind() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Runs the selector loop until {@link #close()}.
+     */
+    void run() {
+        final long sweepIntervalMs = Math.min(MAX_SWEEP_INTERVAL_MS, Math.max(1, options.keepAliveTimeoutMs() / 2));
+        long lastSweep = System.currentTimeMillis();
+        try {
+            while (running) {
+                runSelectorTasks();
+                selector.select(sweepIntervalMs);
+                for (final SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        final Connection connection = (Connection) key.attachment();
+                        if (key.isWritable()) {
+                            connection.onWritable();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable();
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+                final long now = System.currentTimeMillis();
+                if (now - lastSweep >= sweepIntervalMs) {
+                    sweepIdleConnections(now);
+                    lastSweep = now;
+                }
+            }
+        } catch (final ClosedSelectorException ex) {
+            logger.log(DEBUG, () -> "Selector closed");
+        } catch (final IOException | RuntimeException ex) {
+            if (running) {
+                logger.log(ERROR, "HTTP selector loop failed", ex);
+            }
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Stops the selector loop and closes the listening socket and all connections still owned by the selector.
+     */
+    void close() {
+        running = false;
+        final Selector currentSelector = selector;
+        if (currentSelector != null) {
+            currentSelector.wakeup();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                final Connection connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (final IOException ex) {
+                logger.log(DEBUG, "Failed to register an accepted HTTP connection", ex);
+                channel.close();
+            }
+        }
+    }
+
+    private void runSelectorTasks() {
+        Runnable task;
+        while ((task = selectorTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void sweepIdleConnections(final long now) {
+        for (final SelectionKey key : selector.keys()) {
+            if (key.isValid() && key.attachment() instanceof Connection connection) {
+                connection.sweep(now);
+            }
+        }
+    }
+
+    private void closeAll() {
+        running = false;
+        try {
+            for (final SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    connection.close();
+                }
+            }
+        } catch (final ClosedSelectorException ignored) {
+            // Already closed by a failed loop.
+        }
+        try {
+            serverChannel.close();
+        } catch (final IOException ex) {
+            logger.log(DEBUG, "Error closing server channel", ex);
+        }
+        try {
+            selector.close();
+        } catch (final IOException ex) {
+            logger.log(DEBUG, "Error closing selector", ex);
+        }
+    }
+
+    /**
+     * One accepted socket owned by the selector.
+     * <p>
+     * Fields are guarded by {@link #lock}: the selector thread appends and frames received bytes, and at most
+     * one worker at a time consumes framed requests and writes their responses.
+     */
+    final class Connection {
+        private final SocketChannel channel;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition drained = lock.newCondition();
+        private final ArrayDeque<byte[]> requests = new ArrayDeque<>();
+        private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+        private final ChannelOutputStream output = new ChannelOutputStream();
+
+        private SelectionKey key;
+        private byte[] received = new byte[0];
+        private int receivedLength;
+        private long receivedSince;
+        private long lastActivity = System.currentTimeMillis();
+        /**
+         * When queued output was last written to the socket, or was queued while none was.
+         */
+        private long lastWriteProgress;
+        private long outboundBytes;
+        private HttpProtocolException pendingError;
+        private boolean busy;
+        private boolean upgrading;
+        private boolean endOfInput;
+        private boolean closeAfterFlush;
+        private boolean detached;
+        private boolean closed;
+
+        private Connection(final SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * A buffered output stream for responses; blocks the writing worker while too many bytes are queued.
+         */
+        OutputStream output() {
+            return output;
+        }
+
+        /**
+         * Flushes queued output, removes the socket from the selector and switches it to blocking mode.
+         * Only the worker handling the connection's last framed request may call this method.
+         */
+        DetachedSocket detach() throws IOException {
+            output.flush();
+            awaitDrained();
+            final CompletableFuture<Void> deregistered = new CompletableFuture<>();
+            selectorTasks.add(() -> {
+                key.cancel();
+                try {
+                    // Deregisters the cancelled key so the channel can switch to blocking mode.
+                    selector.selectNow();
+                } catch (final IOException ex) {
+                    logger.log(DEBUG, "Selector failed while detaching a connection", ex);
+                }
+                deregistered.complete(null);
+            });
+            selector.wakeup();
+            try {
+                deregistered.get(WebServer.WEB_SOCKET_CLOSE_GRACE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (final ExecutionException | TimeoutException ex) {
+                throw new IOException("HTTP connection could not be detached from the selector", ex);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while detaching an HTTP connection", ex);
+            }
+
+            final byte[] leftover;
+            lock.lock();
+            try {
+                detached = true;
+                leftover = Arrays.copyOf(received, receivedLength);
+                received = new byte[0];
+                receivedLength = 0;
+            } finally {
+                lock.unlock();
+            }
+            channel.configureBlocking(true);
+            final Socket socket = channel.socket();
+            return new DetachedSocket(socket, new SequenceInputStream(new ByteArrayInputStream(leftover),
+                                                                      socket.getInputStream()));
+        }
+
+        private void onReadable() {
+            lock.lock();
+            try {
+                // One read per selection bounds how much a busy connection can buffer before its interest is cleared.
+                readBuffer.clear();
+                final int read = channel.read(readBuffer);
+                if (read > 0) {
+                    append(readBuffer.array(), read);
+                } else if (read < 0) {
+                    endOfInput = true;
+                }
+                lastActivity = System.currentTimeMillis();
+                frameRequests();
+                if (endOfInput && !busy && requests.isEmpty()) {
+                    close();
+                }
+            } catch (final IOException ex) {
+                logger.log(DEBUG, "HTTP connection read failed", ex);
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void onWritable() {
+            lock.lock();
+            try {
+                writeOutbound();
+            } catch (final IOException ex) {
+                logger.log(DEBUG, "HTTP connection write failed", ex);
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void sweep(final long now) {
+            lock.lock();
+            try {
+                if (closed || detached) {
+                    return;
+                }
+                if (!outbound.isEmpty()) {
+                    // a client that stops reading would otherwise hold the connection and its writing worker
+                    if (now - lastWriteProgress > options.keepAliveTimeoutMs()) {
+                        logger.log(DEBUG, "Closing an HTTP connection whose client stopped reading its response");
+                        close();
+                    }
+                    return;
+                }
+                if (busy) {
+                    return;
+                }
+                if (receivedLength == 0 && now - lastActivity > options.keepAliveTimeoutMs()) {
+                    close();
+                } else if (receivedLength > 0 && now - receivedSince > HttpRequestParser.HEADER_READ_TIMEOUT_MS) {
+                    pendingError = new HttpProtocolException(408, "Request Timeout");
+                    dispatch();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void append(final byte[] bytes, final int length) {
+            if (receivedLength == 0) {
+                receivedSince = System.currentTimeMillis();
+            }
+            if (received.length < receivedLength + length) {
+                received = Arrays.copyOf(received, Math.max(receivedLength + length, received.length * 2));
+            }
+            System.arraycopy(bytes, 0, received, receivedLength, length);
+            receivedLength += length;
+        }
+
+        private void frameRequests() {
+            try {
+                while (!upgrading && pendingError == null && canBufferRequest()) {
+                    final Optional<HttpRequestParser.RequestFrame> frame = HttpRequestParser.frame(received, receivedLength);
+                    if (frame.isEmpty()) {
+                        break;
+                    }
+                    final int length = frame.get().length();
+                    requests.add(Arrays.copyOf(received, length));
+                    System.arraycopy(received, length, received, 0, receivedLength - length);
+                    receivedLength -= length;
+                    receivedSince = System.currentTimeMillis();
+                    upgrading = frame.get().upgrade();
+                }
+            } catch (final HttpProtocolException ex) {
+                pendingError = ex;
+            }
+            final boolean readable = !upgrading
+                                     && !endOfInput
+                                     && pendingError == null
+                                     && canBufferRequest();
+            setInterest(SelectionKey.OP_READ, readable);
+            dispatch();
+        }
+
+        /**
+         * Whether another request may be framed, called holding the lock. A worker takes the request it handles
+         * out of the queue, an idle connection's queue still holds the request to be handled next.
+         */
+        private boolean canBufferRequest() {
+            return requests.size() < options.maxPipelinedRequests() + (busy ? 0 : 1);
+        }
+
+        /**
+         * @return the number of framed requests waiting for a worker
+         */
+        int bufferedRequests() {
+            lock.lock();
+            try {
+                return requests.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void dispatch() {
+            if (busy || closed || (requests.isEmpty() && pendingError == null)) {
+                return;
+            }
+            busy = true;
+            try {
+                workers.execute(this::work);
+            } catch (final RejectedExecutionException ex) {
+                busy = false;
+                close();
+            }
+        }
+
+        private void work() {
+            while (true) {
+                final byte[] request;
+                final HttpProtocolException error;
+                lock.lock();
+                try {
+                    if (closed) {
+                        busy = false;
+                        return;
+                    }
+                    request = requests.poll();
+                    error = request == null ? pendingError : null;
+                    if (request == null && error == null) {
+                        busy = false;
+                        if (endOfInput && receivedLength == 0) {
+                            closeAfterFlush();
+                        }
+                        return;
+                    }
+                    if (request != null) {
+                        frameRequests();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    if (request == null) {
+                        handler.reject(this, error);
+                        closeAfterResponse();
+                        return;
+                    }
+                    final boolean keepAlive = handler.handle(this, request);
+                    if (isDetached()) {
+                        return;
+                    }
+                    if (!keepAlive) {
+                        closeAfterResponse();
+                        return;
+                    }
+                    output.flush();
+                    resumeAfterDeclinedUpgrade();
+                } catch (final IOException | RuntimeException ex) {
+                    logger.log(DEBUG, "HTTP connection closed with error", ex);
+                    closeAfterResponse();
+                    return;
+                }
+            }
+        }
+
+        private void closeAfterResponse() {
+            try {
+                output.flush();
+            } catch (final IOException ex) {
+                logger.log(DEBUG, "Failed to flush an HTTP response", ex);
+            }
+            lock.lock();
+            try {
+                busy = false;
+                closeAfterFlush();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Frames the bytes after a request that asked to switch protocols but was answered as plain HTTP,
+         * e.g. an {@code h2c} upgrade offer.
+         */
+        private void resumeAfterDeclinedUpgrade() {
+            lock.lock();
+            try {
+                if (upgrading) {
+                    upgrading = false;
+                    frameRequests();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isDetached() {
+            lock.lock();
+            try {
+                return detached;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void enqueue(final ByteBuffer buffer) throws IOException {
+            lock.lock();
+            try {
+                if (closed || detached) {
+                    throw new IOException("HTTP connection is closed");
+                }
+                if (outbound.isEmpty()) {
+                    channel.write(buffer);
+                }
+                if (buffer.hasRemaining()) {
+                    if (outbound.isEmpty()) {
+                        lastWriteProgress = System.currentTimeMillis();
+                    }
+                    outbound.add(buffer);
+                    outboundBytes += buffer.remaining();
+                    setInterest(SelectionKey.OP_WRITE, true);
+                    selector.wakeup();
+                }
+                while (outboundBytes > OUTBOUND_HIGH_WATERMARK && !closed) {
+                    drained.await();
+                }
+                if (closed) {
+                    throw new IOException("HTTP connection is closed");
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing an HTTP response", ex);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void awaitDrained() throws IOException {
+            lock.lock();
+            try {
+                while (!outbound.isEmpty() && !closed) {
+                    drained.await();
+                }
+                if (closed) {
+                    throw new IOException("HTTP connection is closed");
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing an HTTP response", ex);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void writeOutbound() throws IOException {
+            while (!outbound.isEmpty()) {
+                final ByteBuffer head = outbound.peek();
+                final int written = channel.write(head);
+                if (written > 0) {
+                    outboundBytes -= written;
+                    lastWriteProgress = System.currentTimeMillis();
+                }
+                if (head.hasRemaining()) {
+                    break;
+                }
+                outbound.poll();
+            }
+            if (outbound.isEmpty()) {
+                setInterest(SelectionKey.OP_WRITE, false);
+                if (closeAfterFlush) {
+                    close();
+                }
+            }
+            drained.signalAll();
+        }
+
+        private void closeAfterFlush() {
+            if (outbound.isEmpty()) {
+                close();
+            } else {
+                closeAfterFlush = true;
+            }
+        }
+
+        private void setInterest(final int operation, final boolean enabled) {
+            if (closed || detached || !key.isValid()) {
+                return;
+            }
+            try {
+                final int current = key.interestOps();
+                final int updated = enabled ? current | operation : current & ~operation;
+                if (updated != current) {
+                    key.interestOps(updated);
+                    if (enabled) {
+                        selector.wakeup();
+                    }
+                }
+            } catch (final CancelledKeyException ignored) {
+                // The selector is closing the connection concurrently.
+            }
+        }
+
+        private void close() {
+            lock.lock();
+            try {
+                if (closed || detached) {
+                    return;
+                }
+                closed = true;
+                key.cancel();
+                outbound.clear();
+                outboundBytes = 0;
+                drained.signalAll();
+                try {
+                    channel.close();
+                } catch (final IOException ex) {
+                    logger.log(DEBUG, "Error closing HTTP connection", ex);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private final class ChannelOutputStream extends OutputStream {
+            private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(WRITE_BUFFER_SIZE);
+
+            @Override
+            public void write(final int b) throws IOException {
+                buffer.write(b);
+                flushIfFull();
+            }
+
+            @Override
+            public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+                buffer.write(bytes, offset, length);
+                flushIfFull();
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (buffer.size() > 0) {
+                    final ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+                    buffer.reset();
+                    enqueue(bytes);
+                }
+            }
+
+            private void flushIfFull() throws IOException {
+                if (buffer.size() >= WRITE_BUFFER_SIZE) {
+                    flush();
+                }
+            }
+        }
+    }
+}
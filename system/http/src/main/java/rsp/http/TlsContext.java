@@ -0,0 +1,293 @@
+package rsp.http;
+
+import rsp.server.SslConfiguration;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/**
+ * The TLS side of a {@link WebServer}: an {@link SSLContext} with the server's key material and session cache.
+ * <p>
+ * The context's key manager delegates to the key material loaded last, so a reloaded keystore is used by the
+ * handshakes of new connections while the listening socket, the open connections and the resumable sessions
+ * stay as they are. The keystore file is checked for changes on a thread of its own, not on a thread
+ * accepting or serving connections.
+ */
+final class TlsContext {
+    private static final System.Logger logger = System.getLogger(TlsContext.class.getName());
+
+    private final SslConfiguration configuration;
+    private final TlsOptions options;
+    private final ReloadableKeyManager keyManager;
+    private final SSLContext sslContext;
+
+    private volatile long keyStoreLastModifiedMs;
+    private volatile long lastCheckMs;
+    private ScheduledExecutorService reloadScheduler;
+
+    private TlsContext(final SslConfiguration configuration,
+                       final TlsOptions options,
+                       final ReloadableKeyManager keyManager,
+                       final SSLContext sslContext,
+                       final long keyStoreLastModifiedMs) {
+        this.configuration = configuration;
+        this.options = options;
+        this.keyManager = keyManager;
+        this.sslContext = sslContext;
+        this.keyStoreLastModifiedMs = keyStoreLastModifiedMs;
+        this.lastCheckMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Loads the keystore and creates the server's TLS context.
+     * @throws IOException if the keystore can't be read or has no usable key
+     */
+    static TlsContext create(final SslConfiguration configuration, final TlsOptions options) throws IOException {
+        Objects.requireNonNull(configuration);
+        Objects.requireNonNull(options);
+        final long lastModifiedMs = lastModified(configuration);
+        final ReloadableKeyManager keyManager = new ReloadableKeyManager(loadKeyManager(configuration));
+        try {
+            final SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(new KeyManager[] { keyManager }, null, null);
+            final SSLSessionContext sessions = sslContext.getServerSessionContext();
+            sessions.setSessionCacheSize(options.sessionCacheSize());
+            sessions.setSessionTimeout(options.sessionTimeoutSeconds());
+            return new TlsContext(configuration, options, keyManager, sslContext, lastModifiedMs);
+        } catch (final GeneralSecurityException ex) {
+            throw new IOException("Failed to create a TLS context", ex);
+        }
+    }
+
+    /**
+     * Creates an unbound listening socket whose accepted sockets handshake with this context's options.
+     */
+    SSLServerSocket createServerSocket() throws IOException {
+        final SSLServerSocket serverSocket = (SSLServerSocket) sslContext.getServerSocketFactory().createServerSocket();
+        final SSLParameters parameters = serverSocket.getSSLParameters();
+        parameters.setProtocols(options.protocols().toArray(String[]::new));
+        parameters.setApplicationProtocols(options.applicationProtocols().toArray(String[]::new));
+        parameters.setUseCipherSuitesOrder(true);
+        serverSocket.setSSLParameters(parameters);
+        return serverSocket;
+    }
+
+    /**
+     * The key manager the handshakes use.
+     */
+    X509ExtendedKeyManager keyManager() {
+        return keyManager;
+    }
+
+    /**
+     * The server's resumable sessions.
+     */
+    SSLSessionContext sessions() {
+        return sslContext.getServerSessionContext();
+    }
+
+    /**
+     * Starts checking the keystore file for changes every {@link TlsOptions#keyStoreReloadIntervalMs()},
+     * unless the interval is {@code 0}.
+     */
+    synchronized void startReloadChecks() {
+        final long intervalMs = options.keyStoreReloadIntervalMs();
+        if (intervalMs == 0 || reloadScheduler != null) {
+            return;
+        }
+        reloadScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                                                                           .name("rsp-tls-reload")
+                                                                           .daemon()
+                                                                           .factory());
+        reloadScheduler.scheduleWithFixedDelay(this::reloadIfModified, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the keystore change checks.
+     */
+    synchronized void stopReloadChecks() {
+        if (reloadScheduler != null) {
+            reloadScheduler.shutdownNow();
+            reloadScheduler = null;
+        }
+    }
+
+    /**
+     * Loads the keystore again, new handshakes use its key material.
+     * @throws IOException if the keystore can't be read, the previous key material stays in use
+     */
+    synchronized void reload() throws IOException {
+        final long lastModifiedMs = lastModified(configuration);
+        keyManager.reload(loadKeyManager(configuration));
+        keyStoreLastModifiedMs = lastModifiedMs;
+        logger.log(INFO, () -> "TLS keystore reloaded: " + configuration.keyStorePath());
+    }
+
+    /**
+     * Reloads the keystore if its file changed and the reload interval has passed since the last check.
+     * A keystore which can't be loaded, e.g. one being rewritten, is retried at the next check.
+     */
+    void reloadIfChanged(final long nowMs) {
+        if (options.keyStoreReloadIntervalMs() == 0 || nowMs - lastCheckMs < options.keyStoreReloadIntervalMs()) {
+            return;
+        }
+        lastCheckMs = nowMs;
+        reloadIfModified();
+    }
+
+    private void reloadIfModified() {
+        try {
+            if (lastModified(configuration) != keyStoreLastModifiedMs) {
+                reload();
+            }
+        } catch (final IOException ex) {
+            logger.log(WARNING, "Failed to reload the TLS keystore: " + configuration.keyStorePath(), ex);
+        }
+    }
+
+    private static long lastModified(final SslConfiguration configuration) throws IOException {
+        return Files.getLastModifiedTime(Path.of(configuration.keyStorePath())).toMillis();
+    }
+
+    private static X509ExtendedKeyManager loadKeyManager(final SslConfiguration configuration) throws IOException {
+        final char[] password = configuration.keyStorePassword().toCharArray();
+        try {
+            final KeyStore keyStore = KeyStore.getInstance(Path.of(configuration.keyStorePath()).toFile(), password);
+            final KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            factory.init(keyStore, password);
+            for (final KeyManager manager : factory.getKeyManagers()) {
+                if (manager instanceof X509ExtendedKeyManager x509) {
+                    return x509;
+                }
+            }
+            throw new IOException("No X.509 key manager for the keystore: " + configuration.keyStorePath());
+        } catch (final GeneralSecurityException ex) {
+            throw new IOException("Failed to load the keystore: " + configuration.keyStorePath(), ex);
+        }
+    }
+
+    /**
+     * Delegates to the key material loaded last.
+     * <p>
+     * A handshake chooses its alias and then asks for the alias's certificate chain and private key in separate
+     * calls, between which the keystore can be reloaded. So the aliases handed out are tagged with the generation
+     * of the key material they were chosen from, and the chain and the key are resolved from that same key
+     * material. The previous generation is kept for the handshakes in progress during a reload.
+     */
+    private static final class ReloadableKeyManager extends X509ExtendedKeyManager {
+        private static final char GENERATION_SEPARATOR = '#';
+
+        private volatile Generations generations;
+
+        private ReloadableKeyManager(final X509ExtendedKeyManager delegate) {
+            this.generations = new Generations(new Generation(0, delegate), null);
+        }
+
+        private void reload(final X509ExtendedKeyManager delegate) {
+            final Generations current = generations;
+            generations = new Generations(new Generation(current.latest().number() + 1, delegate), current.latest());
+        }
+
+        @Override
+        public String[] getClientAliases(final String keyType, final Principal[] issuers) {
+            final Generation latest = generations.latest();
+            return latest.tag(latest.delegate().getClientAliases(keyType, issuers));
+        }
+
+        @Override
+        public String chooseClientAlias(final String[] keyTypes, final Principal[] issuers, final Socket socket) {
+            final Generation latest = generations.latest();
+            return latest.tag(latest.delegate().chooseClientAlias(keyTypes, issuers, socket));
+        }
+
+        @Override
+        public String chooseEngineClientAlias(final String[] keyTypes, final Principal[] issuers, final SSLEngine engine) {
+            final Generation latest = generations.latest();
+            return latest.tag(latest.delegate().chooseEngineClientAlias(keyTypes, issuers, engine));
+        }
+
+        @Override
+        public String[] getServerAliases(final String keyType, final Principal[] issuers) {
+            final Generation latest = generations.latest();
+            return latest.tag(latest.delegate().getServerAliases(keyType, issuers));
+        }
+
+        @Override
+        public String chooseServerAlias(final String keyType, final Principal[] issuers, final Socket socket) {
+            final Generation latest = generations.latest();
+            return latest.tag(latest.delegate().chooseServerAlias(keyType, issuers, socket));
+        }
+
+        @Override
+        public String chooseEngineServerAlias(final String keyType, final Principal[] issuers, final SSLEngine engine) {
+            final Generation latest = generations.latest();
+            return latest.tag(latest.delegate().chooseEngineServerAlias(keyType, issuers, engine));
+        }
+
+        @Override
+        public X509Certificate[] getCertificateChain(final String alias) {
+            final int separator = separatorIndex(alias);
+            final Generation generation = separator < 0 ? null : generations.find(alias.substring(0, separator));
+            return generation == null ? null : generation.delegate().getCertificateChain(alias.substring(separator + 1));
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(final String alias) {
+            final int separator = separatorIndex(alias);
+            final Generation generation = separator < 0 ? null : generations.find(alias.substring(0, separator));
+            return generation == null ? null : generation.delegate().getPrivateKey(alias.substring(separator + 1));
+        }
+
+        private static int separatorIndex(final String alias) {
+            return alias == null ? -1 : alias.indexOf(GENERATION_SEPARATOR);
+        }
+
+        private record Generation(long number, X509ExtendedKeyManager delegate) {
+            String tag(final String alias) {
+                return alias == null ? null : Long.toString(number) + GENERATION_SEPARATOR + alias;
+            }
+
+            String[] tag(final String[] aliases) {
+                return aliases == null ? null : Arrays.stream(aliases).map(this::tag).toArray(String[]::new);
+            }
+        }
+
+        /**
+         * The latest key material and the one it replaced, read as one.
+         */
+        private record Generations(Generation latest, Generation previous) {
+            Generation find(final String number) {
+                if (Long.toString(latest.number()).equals(number)) {
+                    return latest;
+                }
+                if (previous != null && Long.toString(previous.number()).equals(number)) {
+                    return previous;
+                }
+                return null;
+            }
+        }
+    }
+}
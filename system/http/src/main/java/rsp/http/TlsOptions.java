@@ -0,0 +1,116 @@
+package rsp.http;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable options of the TLS connections of a {@link WebServer} given an {@link rsp.server.SslConfiguration}.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()}.
+ * A client reconnecting within the session timeout resumes its TLS session with an abbreviated handshake,
+ * which matters as the blocking transport handles one request per connection. The keystore is checked
+ * for changes periodically, so a renewed certificate is used by new connections without a restart.
+ *
+ * @param protocols the enabled TLS protocol versions, such as {@code TLSv1.3}, must not be null or empty
+ * @param applicationProtocols the ALPN protocols the server agrees to, either {@code http/1.1}, the only protocol
+ *                             the server speaks, or an empty list, which leaves ALPN out of the handshake,
+ *                             must not be null
+ * @param sessionCacheSize the maximum number of cached TLS sessions available for resumption,
+ *                         {@code 0} for no limit, must not be negative
+ * @param sessionTimeoutSeconds how long a cached TLS session can be resumed, in seconds, must be positive
+ * @param keyStoreReloadIntervalMs how often the keystore file is checked for changes, in milliseconds,
+ *                                 {@code 0} to reload it only with {@link WebServer#reloadTls()},
+ *                                 must not be negative
+ */
+public record TlsOptions(List<String> protocols,
+                         List<String> applicationProtocols,
+                         int sessionCacheSize,
+                         int sessionTimeoutSeconds,
+                         long keyStoreReloadIntervalMs) {
+
+    /**
+     * The default enabled protocol versions.
+     */
+    public static final List<String> DEFAULT_PROTOCOLS = List.of("TLSv1.3", "TLSv1.2");
+
+    /**
+     * The default ALPN protocols, the server speaks HTTP/1.1 only.
+     */
+    public static final List<String> DEFAULT_APPLICATION_PROTOCOLS = List.of("http/1.1");
+
+    /**
+     * The default number of resumable TLS sessions.
+     */
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 10_000;
+
+    /**
+     * The default lifetime of a resumable TLS session.
+     */
+    public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 3_600;
+
+    /**
+     * The default interval of keystore change checks.
+     */
+    public static final long DEFAULT_KEY_STORE_RELOAD_INTERVAL_MS = 60_000;
+
+    public TlsOptions {
+        Objects.requireNonNull(protocols);
+        Objects.requireNonNull(applicationProtocols);
+        protocols = List.copyOf(protocols);
+        applicationProtocols = List.copyOf(applicationProtocols);
+        if (protocols.isEmpty()) {
+            throw new IllegalArgumentException("protocols must not be empty");
+        }
+        if (!DEFAULT_APPLICATION_PROTOCOLS.containsAll(applicationProtocols)) {
+            throw new IllegalArgumentException("applicationProtocols must contain only http/1.1: "
+                                               + applicationProtocols);
+        }
+        if (sessionCacheSize < 0) {
+            throw new IllegalArgumentException("sessionCacheSize must not be negative");
+        }
+        if (sessionTimeoutSeconds < 1) {
+            throw new IllegalArgumentException("sessionTimeoutSeconds must be greater than 0");
+        }
+        if (keyStoreReloadIntervalMs < 0) {
+            throw new IllegalArgumentException("keyStoreReloadIntervalMs must not be negative");
+        }
+    }
+
+    /**
+     * Creates the default options: {@link #DEFAULT_PROTOCOLS}, {@link #DEFAULT_APPLICATION_PROTOCOLS},
+     * {@link #DEFAULT_SESSION_CACHE_SIZE} sessions resumable for {@link #DEFAULT_SESSION_TIMEOUT_SECONDS}
+     * and a keystore check every {@link #DEFAULT_KEY_STORE_RELOAD_INTERVAL_MS}.
+     */
+    public static TlsOptions defaults() {
+        return new TlsOptions(DEFAULT_PROTOCOLS,
+                              DEFAULT_APPLICATION_PROTOCOLS,
+                              DEFAULT_SESSION_CACHE_SIZE,
+                              DEFAULT_SESSION_TIMEOUT_SECONDS,
+                              DEFAULT_KEY_STORE_RELOAD_INTERVAL_MS);
+    }
+
+    public TlsOptions withProtocols(final List<String> protocols) {
+        return new TlsOptions(protocols, applicationProtocols, sessionCacheSize, sessionTimeoutSeconds,
+                              keyStoreReloadIntervalMs);
+    }
+
+    public TlsOptions withApplicationProtocols(final List<String> applicationProtocols) {
+        return new TlsOptions(protocols, applicationProtocols, sessionCacheSize, sessionTimeoutSeconds,
+                              keyStoreReloadIntervalMs);
+    }
+
+    public TlsOptions withSessionCacheSize(final int sessionCacheSize) {
+        return new TlsOptions(protocols, applicationProtocols, sessionCacheSize, sessionTimeoutSeconds,
+                              keyStoreReloadIntervalMs);
+    }
+
+    public TlsOptions withSessionTimeoutSeconds(final int sessionTimeoutSeconds) {
+        return new TlsOptions(protocols, applicationProtocols, sessionCacheSize, sessionTimeoutSeconds,
+                              keyStoreReloadIntervalMs);
+    }
+
+    public TlsOptions withKeyStoreReloadIntervalMs(final long keyStoreReloadIntervalMs) {
+        return new TlsOptions(protocols, applicationProtocols, sessionCacheSize, sessionTimeoutSeconds,
+                              keyStoreReloadIntervalMs);
+    }
+}
@@ -1,22 +1,29 @@
 package rsp.http;
 
 import rsp.component.definitions.Component;
+import rsp.metrics.MetricNames;
 import rsp.page.DefaultEventLoop;
 import rsp.page.EventLoop;
 import rsp.page.HttpHandler;
-import rsp.page.QualifiedSessionId;
-import rsp.page.RenderedPage;
+import rsp.page.RenderedPagesStore;
 import rsp.server.SslConfiguration;
 import rsp.server.StaticResourceHandler;
 import rsp.server.StaticResources;
 import rsp.server.http.HttpRequest;
 import rsp.server.http.HttpResponse;
 
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -30,7 +37,9 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 import static java.lang.System.Logger.Level.DEBUG;
@@ -40,8 +49,12 @@ import static java.lang.System.Logger.Level.INFO;
 /**
  * Zero-runtime-dependency HTTP server for RSP applications.
  * <p>
- * This slice serves regular HTTP requests through {@link HttpHandler}. WebSocket and TLS transport
- * support are intentionally left for later slices.
+ * This slice serves regular HTTP requests through {@link HttpHandler} and live page sessions over WebSocket.
+ * The transport is selected by {@link WebServerOptions#transport()}: the default blocking transport handles one
+ * request per connection on a virtual thread, and the selector transport keeps persistent and pipelined HTTP/1.1
+ * connections open without holding a thread or a connection permit while they are idle.
+ * Given an {@link SslConfiguration}, the blocking transport serves HTTPS and secure WebSockets itself,
+ * with the session resumption, ALPN and keystore reload options of {@link WebServerOptions#tls()}.
  */
 public class WebServer {
     private static final System.Logger logger = System.getLogger(WebServer.class.getName());
@@ -57,29 +70,39 @@ public class WebServer {
     public static final int DEFAULT_HEARTBEAT_INTERVAL_MS = 10_000;
     static final int WEB_SOCKET_CLOSE_GRACE_TIMEOUT_MS = 1_000;
     static final String WEB_SOCKET_SERVER_STOP_REASON = "Server stopping";
+    private static final int RESPONSE_BUFFER_SIZE = 8192;
 
     /**
-     * Rendered pages waiting for their WebSocket session to bind.
+     * Rendered pages waiting for their WebSocket session to bind, bounded by {@link WebServerOptions#renderedPages()}.
      */
-    public final Map<QualifiedSessionId, RenderedPage> pagesStorage = new ConcurrentHashMap<>();
+    public final RenderedPagesStore pagesStorage;
+
+    private final ParkedSessions parkedSessions;
 
     private final int configuredPort;
     private final Function<HttpRequest, Component<?, ?>> rootComponentDefinition;
     private final Optional<StaticResources> staticResources;
     private final Optional<SslConfiguration> sslConfiguration;
+    private final WebServerOptions options;
     private final int connectionLimit;
     private final Supplier<EventLoop> eventLoopSupplier;
     private final Optional<StaticResourceHandler> staticResourceHandler;
     private final HttpHandler httpHandler;
+    private final Optional<MetricsEndpoint> metricsEndpoint;
+    private final Optional<LongPollingEndpoint> longPollingEndpoint;
     private final HttpRequestParser requestParser = new HttpRequestParser();
     private final HttpResponseWriter responseWriter = new HttpResponseWriter();
-    private final WebSocketUpgrader webSocketUpgrader = new WebSocketUpgrader();
+    private final ResponseCompression responseCompression;
+    private final WebSocketUpgrader webSocketUpgrader;
     private final WebSocketEndpoint rspWebSocketEndpoint;
     private final Object lifecycleLock = new Object();
     private final Semaphore connectionPermits;
+    private final Semaphore webSocketPermits;
     private final Set<WebSocketConnection> activeWebSockets = ConcurrentHashMap.newKeySet();
 
     private volatile ServerSocket serverSocket;
+    private volatile TlsContext tlsContext;
+    private volatile SelectorTransport selectorTransport;
     private volatile ExecutorService connectionExecutor;
     private volatile Thread acceptorThread;
     private volatile boolean running;
@@ -92,30 +115,109 @@ public class WebServer {
      * @param rootComponentDefinition a root component's definition
      * @param staticResources a setup object for an optional static resources handler
      * @param sslConfiguration a TLS connection configuration or {@link Optional#empty()} for HTTP
-     * @param connectionLimit maximum number of concurrently handled HTTP connections
+     * @param options transport options, e.g. the transport model and connection limits
      * @param eventLoopSupplier creates event loops for live page sessions
      */
     public WebServer(final int port,
                      final Function<HttpRequest, Component<?, ?>> rootComponentDefinition,
                      final Optional<StaticResources> staticResources,
                      final Optional<SslConfiguration> sslConfiguration,
-                     final int connectionLimit,
+                     final WebServerOptions options,
                      final Supplier<EventLoop> eventLoopSupplier) {
         this.configuredPort = port;
         this.rootComponentDefinition = Objects.requireNonNull(rootComponentDefinition);
         this.staticResources = Objects.requireNonNull(staticResources);
         this.sslConfiguration = Objects.requireNonNull(sslConfiguration);
-        this.connectionLimit = requirePositiveConnectionLimit(connectionLimit);
+        this.options = Objects.requireNonNull(options);
+        this.connectionLimit = options.connectionLimit();
         this.eventLoopSupplier = Objects.requireNonNull(eventLoopSupplier);
         this.connectionPermits = new Semaphore(this.connectionLimit);
+        this.webSocketPermits = new Semaphore(options.webSocketLimit());
+        this.webSocketUpgrader = new WebSocketUpgrader(options.webSocketCompression());
+        this.responseCompression = new ResponseCompression(options.compression());
         this.boundPort = port;
-        this.rspWebSocketEndpoint = new RspWebSocketEndpoint(pagesStorage, this.eventLoopSupplier);
+        this.pagesStorage = new RenderedPagesStore(options.renderedPages(), options.metrics());
+        this.parkedSessions = new ParkedSessions(options.sessionResume());
+        this.rspWebSocketEndpoint = new RspWebSocketEndpoint(pagesStorage,
+                                                             parkedSessions,
+                                                             this.eventLoopSupplier,
+                                                             options.messageBatching(),
+                                                             options.sessionQueue(),
+                                                             options.remoteRequestTimeoutMs(),
+                                                             options.metrics());
+        this.longPollingEndpoint = options.longPolling().enabled()
+                ? Optional.of(new LongPollingEndpoint(options.longPolling(),
+                                                      pagesStorage,
+                                                      this.eventLoopSupplier,
+                                                      options.sessionQueue(),
+                                                      options.remoteRequestTimeoutMs(),
+                                                      options.metrics()))
+                : Optional.empty();
         this.staticResourceHandler = this.staticResources.map(sr -> new StaticResourceHandler(sr.resourcesBaseDir(),
                                                                                               sr.contextPath()));
         this.httpHandler = new HttpHandler(pagesStorage,
                                            this.rootComponentDefinition,
                                            this.staticResourceHandler,
-                                           DEFAULT_HEARTBEAT_INTERVAL_MS);
+                                           DEFAULT_HEARTBEAT_INTERVAL_MS,
+                                           options.renderFrameIntervalMs(),
+                                           options.streamingRendering(),
+                                           options.sessionQueue(),
+                                           options.metrics());
+        this.metricsEndpoint = options.metricsEndpoint().enabled()
+                ? Optional.of(new MetricsEndpoint(options.metricsEndpoint().path(),
+                                                  options.metrics(),
+                                                  serverGauges(this.connectionLimit,
+                                                               this.connectionPermits,
+                                                               this.activeWebSockets,
+                                                               this.parkedSessions,
+                                                               this.longPollingEndpoint,
+                                                               this.pagesStorage)))
+                : Optional.empty();
+    }
+
+    /**
+     * The server's gauges, sampled on every scrape. They read the counted objects, not the server,
+     * as they are created in the constructor.
+     */
+    private static Map<String, LongSupplier> serverGauges(final int connectionLimit,
+                                                          final Semaphore connectionPermits,
+                                                          final Set<WebSocketConnection> activeWebSockets,
+                                                          final ParkedSessions parkedSessions,
+                                                          final Optional<LongPollingEndpoint> longPollingEndpoint,
+                                                          final RenderedPagesStore pagesStorage) {
+        final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+        gauges.put(MetricNames.SERVER_CONNECTIONS_IN_USE, () -> connectionLimit - connectionPermits.availablePermits());
+        gauges.put(MetricNames.SERVER_CONNECTIONS_LIMIT, () -> connectionLimit);
+        gauges.put(MetricNames.SERVER_WEBSOCKETS_ACTIVE, activeWebSockets::size);
+        gauges.put(MetricNames.SERVER_SESSIONS_PARKED, parkedSessions::size);
+        gauges.put(MetricNames.SERVER_LONG_POLLING_SESSIONS,
+                   () -> longPollingEndpoint.map(LongPollingEndpoint::size).orElse(0));
+        gauges.put(MetricNames.RENDERED_PAGES_COUNT, pagesStorage::size);
+        return gauges;
+    }
+
+    /**
+     * Creates a web server instance for hosting an application with the blocking transport.
+     *
+     * @param port a web server's listening port
+     * @param rootComponentDefinition a root component's definition
+     * @param staticResources a setup object for an optional static resources handler
+     * @param sslConfiguration a TLS connection configuration or {@link Optional#empty()} for HTTP
+     * @param connectionLimit maximum number of concurrently handled HTTP connections
+     * @param eventLoopSupplier creates event loops for live page sessions
+     */
+    public WebServer(final int port,
+                     final Function<HttpRequest, Component<?, ?>> rootComponentDefinition,
+                     final Optional<StaticResources> staticResources,
+                     final Optional<SslConfiguration> sslConfiguration,
+                     final int connectionLimit,
+                     final Supplier<EventLoop> eventLoopSupplier) {
+        this(port,
+             rootComponentDefinition,
+             staticResources,
+             sslConfiguration,
+             WebServerOptions.defaults().withConnectionLimit(connectionLimit),
+             eventLoopSupplier);
     }
 
     public WebServer(final int port,
@@ -173,8 +275,8 @@ public class WebServer {
      * Starts the server.
      */
     public void start() {
-        if (sslConfiguration.isPresent()) {
-            throw new UnsupportedOperationException("TLS is not implemented in system/http yet");
+        if (sslConfiguration.isPresent() && options.transport() == WebServerOptions.Transport.SELECTOR) {
+            throw new UnsupportedOperationException("TLS is supported by the blocking transport only");
         }
 
         synchronized (lifecycleLock) {
@@ -182,14 +284,13 @@ public class WebServer {
                 throw new IllegalStateException("WebServer is already running");
             }
             try {
-                final ServerSocket newServerSocket = new ServerSocket();
-                newServerSocket.setReuseAddress(true);
-                newServerSocket.bind(new InetSocketAddress(configuredPort));
-                serverSocket = newServerSocket;
-                boundPort = newServerSocket.getLocalPort();
-                connectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
-                running = true;
-                acceptorThread = Thread.startVirtualThread(this::acceptLoop);
+                if (options.transport() == WebServerOptions.Transport.SELECTOR) {
+                    startSelectorTransport();
+                } else {
+                    startBlockingTransport();
+                }
+                pagesStorage.start();
+                parkedSessions.start();
             } catch (final IOException ex) {
                 throw new RuntimeException(ex);
             }
@@ -197,6 +298,37 @@ public class WebServer {
         logger.log(INFO, () -> "Server started, listening on port: " + boundPort);
     }
 
+    private void startBlockingTransport() throws IOException {
+        final Optional<TlsContext> newTlsContext = sslConfiguration.isPresent()
+                ? Optional.of(TlsContext.create(sslConfiguration.get(), options.tls()))
+                : Optional.empty();
+        final ServerSocket newServerSocket = newTlsContext.isPresent()
+                ? newTlsContext.get().createServerSocket()
+                : new ServerSocket();
+        newServerSocket.setReuseAddress(true);
+        newServerSocket.bind(new InetSocketAddress(configuredPort));
+        serverSocket = newServerSocket;
+        tlsContext = newTlsContext.orElse(null);
+        newTlsContext.ifPresent(TlsContext::startReloadChecks);
+        boundPort = newServerSocket.getLocalPort();
+        connectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        running = true;
+        acceptorThread = Thread.startVirtualThread(this::acceptLoop);
+    }
+
+    private void startSelectorTransport() throws IOException {
+        final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        final SelectorTransport transport = new SelectorTransport(configuredPort,
+                                                                  options,
+                                                                  new SelectorRequestHandler(),
+                                                                  executor);
+        boundPort = transport.bind();
+        selectorTransport = transport;
+        connectionExecutor = executor;
+        running = true;
+        acceptorThread = Thread.ofPlatform().name("rsp-http-selector").daemon().start(transport::run);
+    }
+
     /**
      * Blocks the current thread while the server is running.
      */
@@ -218,19 +350,29 @@ public class WebServer {
      */
     public void stop() {
         final ServerSocket socketToClose;
+        final SelectorTransport transportToClose;
         final ExecutorService executorToClose;
         final Thread threadToInterrupt;
+        final TlsContext tlsContextToClose;
         final Set<WebSocketConnection> webSocketsToClose;
         synchronized (lifecycleLock) {
-            if (!running && serverSocket == null && connectionExecutor == null && activeWebSockets.isEmpty()) {
+            if (!running
+                && serverSocket == null
+                && selectorTransport == null
+                && connectionExecutor == null
+                && activeWebSockets.isEmpty()) {
                 return;
             }
             running = false;
             socketToClose = serverSocket;
+            transportToClose = selectorTransport;
             executorToClose = connectionExecutor;
             threadToInterrupt = acceptorThread;
             webSocketsToClose = Set.copyOf(activeWebSockets);
+            tlsContextToClose = tlsContext;
             serverSocket = null;
+            tlsContext = null;
+            selectorTransport = null;
             connectionExecutor = null;
             acceptorThread = null;
         }
@@ -242,19 +384,45 @@ public class WebServer {
                 logger.log(DEBUG, "Error closing server socket", ex);
             }
         }
-        if (threadToInterrupt != null) {
+        if (tlsContextToClose != null) {
+            tlsContextToClose.stopReloadChecks();
+        }
+        if (transportToClose != null) {
+            transportToClose.close();
+        } else if (threadToInterrupt != null) {
             threadToInterrupt.interrupt();
         }
-        pagesStorage.clear();
+        pagesStorage.stop();
         if (executorToClose != null) {
             executorToClose.shutdown();
         }
         initiateWebSocketShutdown(webSocketsToClose);
         awaitWebSocketsClosed(webSocketsToClose, WEB_SOCKET_CLOSE_GRACE_TIMEOUT_MS);
         forceCloseWebSockets(webSocketsToClose);
+        parkedSessions.stop();
+        longPollingEndpoint.ifPresent(LongPollingEndpoint::stop);
         awaitConnectionExecutor(executorToClose);
     }
 
+    /**
+     * Loads the keystore of the server's {@link SslConfiguration} again, e.g. after a certificate renewal.
+     * New connections handshake with the reloaded key material, open connections are not affected.
+     *
+     * @throws IllegalStateException if the server is not running with TLS
+     * @throws UncheckedIOException if the keystore can't be loaded, the previous key material stays in use
+     */
+    public void reloadTls() {
+        final TlsContext currentTlsContext = tlsContext;
+        if (currentTlsContext == null) {
+            throw new IllegalStateException("WebServer is not running with TLS");
+        }
+        try {
+            currentTlsContext.reload();
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
     /**
      * Returns the configured listening port before start and the actual bound port after start.
      *
@@ -280,6 +448,10 @@ public class WebServer {
         return connectionLimit;
     }
 
+    protected WebServerOptions options() {
+        return options;
+    }
+
     protected Supplier<EventLoop> eventLoopSupplier() {
         return eventLoopSupplier;
     }
@@ -296,6 +468,14 @@ public class WebServer {
         return activeWebSockets.size();
     }
 
+    int parkedSessionCount() {
+        return parkedSessions.size();
+    }
+
+    int longPollingSessionCount() {
+        return longPollingEndpoint.map(LongPollingEndpoint::size).orElse(0);
+    }
+
     private void acceptLoop() {
         while (running) {
             Socket socket = null;
@@ -306,13 +486,15 @@ public class WebServer {
                     return;
                 }
                 socket = currentServerSocket.accept();
+                socket.setTcpNoDelay(true);
                 connectionPermits.acquire();
                 final Socket acceptedSocket = socket;
+                final ConnectionPermit permit = new ConnectionPermit();
                 currentExecutor.submit(() -> {
                     try {
-                        handleConnection(acceptedSocket);
+                        handleConnection(acceptedSocket, permit);
                     } finally {
-                        connectionPermits.release();
+                        permit.release();
                     }
                 });
                 socket = null;
@@ -341,32 +523,28 @@ public class WebServer {
         }
     }
 
-    private void handleConnection(final Socket socket) {
+    private void handleConnection(final Socket socket, final ConnectionPermit permit) {
         try (socket) {
             socket.setSoTimeout(HttpRequestParser.HEADER_READ_TIMEOUT_MS);
-            final Optional<ParsedHttpRequest> parsedRequest = requestParser.parse(socket, "http");
+            final RequestReadBuffer readBuffer = new RequestReadBuffer();
+            final String scheme = socket instanceof SSLSocket ? "https" : "http";
+            final Optional<ParsedHttpRequest> parsedRequest = requestParser.parse(socket, readBuffer, scheme);
             if (parsedRequest.isEmpty()) {
                 return;
             }
             final ParsedHttpRequest request = parsedRequest.get();
             if (isWebSocketDispatch(request.request())) {
-                handleWebSocket(socket, request);
+                handleWebSocket(socket, readBuffer.remainderThen(socket.getInputStream()), request);
                 return;
             }
-            if (!isSupportedHttpMethod(request.method())) {
-                responseWriter.write(socket.getOutputStream(),
-                                     HttpResponses.text(405, "Method Not Allowed"),
-                                     request.method());
-                return;
+            if (isLongPollingDispatch(request.request())) {
+                // a held poll waits without a permit, as on the selector transport, so polls can't starve page loads
+                permit.release();
             }
-            final HttpResponse response = httpHandler.handle(request.request()).handle((resp, ex) -> {
-                if (ex == null) {
-                    return resp;
-                }
-                logger.log(ERROR, "HTTP rendering exception", ex);
-                return HttpResponses.text(500, "500 Internal server error\nException: " + ex.getMessage());
-            }).join();
-            responseWriter.write(socket.getOutputStream(), response, request.method());
+            // buffered, so a response head goes out in one TLS record and TCP segment rather than one per line
+            responseWriter.write(new BufferedOutputStream(socket.getOutputStream(), RESPONSE_BUFFER_SIZE),
+                                 respond(request),
+                                 request.method());
         } catch (final HttpProtocolException ex) {
             writeProtocolError(socket, ex);
         } catch (final IOException ex) {
@@ -377,14 +555,44 @@ public class WebServer {
         }
     }
 
-    private void handleWebSocket(final Socket socket, final ParsedHttpRequest request) throws IOException {
+    private HttpResponse respond(final ParsedHttpRequest request) {
+        return responseCompression.apply(request.request(), dispatch(request));
+    }
+
+    private HttpResponse dispatch(final ParsedHttpRequest request) {
+        if (!isSupportedHttpMethod(request.method())) {
+            return HttpResponses.text(405, "Method Not Allowed");
+        }
+        if (metricsEndpoint.isPresent() && metricsEndpoint.get().matches(request.request())) {
+            return metricsEndpoint.get().respond();
+        }
+        if (isLongPollingDispatch(request.request())) {
+            return longPollingEndpoint.get().respond(request);
+        }
+        return httpHandler.handle(request.request()).handle((resp, ex) -> {
+            if (ex == null) {
+                return resp;
+            }
+            logger.log(ERROR, "HTTP rendering exception", ex);
+            return HttpResponses.text(500, "500 Internal server error\nException: " + ex.getMessage());
+        }).join();
+    }
+
+    private void handleWebSocket(final Socket socket,
+                                 final InputStream input,
+                                 final ParsedHttpRequest request) throws IOException {
         try {
             final WebSocketEndpoint endpoint = webSocketEndpoint(request.request())
                     .orElseThrow(() -> new WebSocketHandshakeException(404, "WebSocket endpoint not found"));
             endpoint.validate(request.request());
-            webSocketUpgrader.upgrade(socket, request, endpoint.supportedSubprotocols());
-            final WebSocketSession session = new WebSocketSession(socket);
+            final WebSocketUpgrader.Handshake handshake =
+                    webSocketUpgrader.upgrade(socket.getOutputStream(), request, endpoint.supportedSubprotocols());
+            final WebSocketSession session = new WebSocketSession(socket,
+                                                                  handshake.subprotocol(),
+                                                                  handshake.compression().map(agreement ->
+                    new PerMessageDeflate(agreement, options.webSocketCompression(), options.metrics())));
             final WebSocketConnection connection = new WebSocketConnection(socket,
+                                                                           input,
                                                                            session,
                                                                            endpoint.open(request.request(), session));
             final boolean shouldRun = registerWebSocket(connection);
@@ -458,6 +666,10 @@ public class WebServer {
         return webSocketUpgrader.isWebSocketRequest(request) || webSocketEndpoint(request).isPresent();
     }
 
+    private boolean isLongPollingDispatch(final HttpRequest request) {
+        return longPollingEndpoint.isPresent() && longPollingEndpoint.get().matches(request);
+    }
+
     private Optional<WebSocketEndpoint> webSocketEndpoint(final HttpRequest request) {
         if (rspWebSocketEndpoint.matches(request)) {
             return Optional.of(rspWebSocketEndpoint);
@@ -499,10 +711,100 @@ public class WebServer {
                || method == rsp.server.http.HttpMethod.POST;
     }
 
-    private static int requirePositiveConnectionLimit(final int connectionLimit) {
-        if (connectionLimit < 1) {
-            throw new IllegalArgumentException("connectionLimit must be greater than 0");
+    private static boolean isKeepAlive(final ParsedHttpRequest request) {
+        final String connection = request.request().header("Connection");
+        final boolean close = connection != null && connection.toLowerCase(Locale.ROOT).contains("close");
+        return "HTTP/1.1".equals(request.version()) && !close;
+    }
+
+    /**
+     * The connection permit of a blocking transport's connection, which can be given back before the connection ends.
+     */
+    private final class ConnectionPermit {
+        private final AtomicBoolean held = new AtomicBoolean(true);
+
+        void release() {
+            if (held.compareAndSet(true, false)) {
+                connectionPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Serves requests framed by the selector transport on its worker threads.
+     * <p>
+     * A connection permit is held only while a request is handled, and an upgraded WebSocket holds
+     * a WebSocket permit instead, so idle persistent connections and live sessions do not starve page loads.
+     */
+    private final class SelectorRequestHandler implements SelectorTransport.Handler {
+        @Override
+        public boolean handle(final SelectorTransport.Connection connection, final byte[] requestBytes) {
+            final OutputStream output = connection.output();
+            try {
+                final Optional<ParsedHttpRequest> parsedRequest = requestParser.parse(requestBytes, "http");
+                if (parsedRequest.isEmpty()) {
+                    return false;
+                }
+                final ParsedHttpRequest request = parsedRequest.get();
+                if (isWebSocketDispatch(request.request())) {
+                    handleWebSocket(connection, request);
+                    return false;
+                }
+                if (isLongPollingDispatch(request.request())) {
+                    // a held poll waits without a permit, like a WebSocket it must not starve page loads
+                    return responseWriter.write(output,
+                                                longPollingEndpoint.get().respond(request),
+                                                request.method(),
+                                                isKeepAlive(request));
+                }
+                connectionPermits.acquire();
+                try {
+                    return responseWriter.write(output, respond(request), request.method(), isKeepAlive(request));
+                } finally {
+                    connectionPermits.release();
+                }
+            } catch (final HttpProtocolException ex) {
+                reject(connection, ex);
+            } catch (final IOException ex) {
+                logger.log(DEBUG, "HTTP connection closed with I/O error", ex);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (final RuntimeException ex) {
+                logger.log(ERROR, "Unexpected HTTP connection error", ex);
+                writeQuietly(output, HttpResponses.text(500, "500 Internal server error\nException: " + ex.getMessage()));
+            }
+            return false;
+        }
+
+        @Override
+        public void reject(final SelectorTransport.Connection connection, final HttpProtocolException ex) {
+            writeQuietly(connection.output(), HttpResponses.text(ex.status(), ex.getMessage()));
+        }
+
+        private void handleWebSocket(final SelectorTransport.Connection connection,
+                                     final ParsedHttpRequest request) throws IOException {
+            if (!webSocketPermits.tryAcquire()) {
+                responseWriter.write(connection.output(),
+                                     HttpResponses.text(503, "Too many WebSocket sessions"),
+                                     request.method());
+                return;
+            }
+            try {
+                final SelectorTransport.DetachedSocket detached = connection.detach();
+                try (Socket socket = detached.socket()) {
+                    WebServer.this.handleWebSocket(socket, detached.input(), request);
+                }
+            } finally {
+                webSocketPermits.release();
+            }
+        }
+
+        private void writeQuietly(final OutputStream output, final HttpResponse response) {
+            try {
+                responseWriter.write(output, response, null);
+            } catch (final IOException ioEx) {
+                logger.log(DEBUG, "Failed to write HTTP error response", ioEx);
+            }
         }
-        return connectionLimit;
     }
 }
@@ -0,0 +1,287 @@
+package rsp.http;
+
+import rsp.metrics.Metrics;
+import rsp.page.LivePageSession;
+import rsp.page.RenderedPagesOptions;
+import rsp.page.SessionQueueOptions;
+import rsp.page.SessionResumeOptions;
+import rsp.server.protocol.MessageBatchingOptions;
+
+import java.util.Objects;
+
+/**
+ * Immutable transport options for {@link WebServer}.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()}.
+ *
+ * @param transport the connection handling model, must not be null
+ * @param connectionLimit maximum number of concurrently handled HTTP connections for the blocking transport,
+ *                        or concurrently handled HTTP requests for the selector transport, must be positive
+ * @param webSocketLimit maximum number of concurrently open WebSocket sessions for the selector transport,
+ *                       must be positive
+ * @param keepAliveTimeoutMs how long an idle persistent connection stays open, in milliseconds, must be positive
+ * @param maxPipelinedRequests maximum number of complete requests buffered ahead of the one being handled
+ *                             on a persistent connection, must not be negative
+ * @param webSocketCompression permessage-deflate options for live page WebSockets, must not be null
+ * @param messageBatching how the messages of a live page's event loop turn are coalesced into frames,
+ *                        must not be null
+ * @param renderFrameIntervalMs how long a live page collects deferred component state updates before rendering
+ *                              them, in milliseconds; {@code 0} renders them on the page's next event loop turn,
+ *                              must not be negative
+ * @param streamingRendering whether pages are encoded straight into their responses with chunked transfer coding,
+ *                           flushing the {@code <head>} before the body, instead of being built as strings first
+ * @param renderedPages bounds of the store of rendered pages waiting for their WebSocket sessions, must not be null
+ * @param sessionResume whether live pages whose WebSockets close wait for their clients to reconnect,
+ *                      must not be null
+ * @param metrics receives server-level metrics such as WebSocket compression ratios and request and event timings,
+ *                and is put into every page's root context, must not be null
+ * @param metricsEndpoint whether and where the server exposes its metrics in the OpenMetrics text format,
+ *                        must not be null
+ * @param sessionQueue the capacity of every live page session's events queue and what happens when it overflows,
+ *                     must not be null
+ * @param remoteRequestTimeoutMs how long a live page waits for its browser's result of a JavaScript evaluation
+ *                               or a DOM property read, in milliseconds, 0 for no timeout, must not be negative
+ * @param longPolling whether and how live pages are served over HTTP long polling to clients which can't open
+ *                    a WebSocket, must not be null
+ * @param compression which HTTP responses are compressed for clients which accept gzip or deflate, must not be null
+ * @param tls session resumption, ALPN and keystore reload options of TLS connections, used when the server
+ *            is given an {@link rsp.server.SslConfiguration}, must not be null
+ */
+public record WebServerOptions(Transport transport,
+                               int connectionLimit,
+                               int webSocketLimit,
+                               int keepAliveTimeoutMs,
+                               int maxPipelinedRequests,
+                               WebSocketCompressionOptions webSocketCompression,
+                               MessageBatchingOptions messageBatching,
+                               long renderFrameIntervalMs,
+                               boolean streamingRendering,
+                               RenderedPagesOptions renderedPages,
+                               SessionResumeOptions sessionResume,
+                               Metrics metrics,
+                               MetricsEndpointOptions metricsEndpoint,
+                               SessionQueueOptions sessionQueue,
+                               long remoteRequestTimeoutMs,
+                               LongPollingOptions longPolling,
+                               HttpCompressionOptions compression,
+                               TlsOptions tls) {
+
+    /**
+     * The default number of concurrently open WebSocket sessions on the selector transport.
+     */
+    public static final int DEFAULT_WEB_SOCKET_LIMIT = 10_000;
+
+    /**
+     * The default idle timeout of a persistent HTTP connection.
+     */
+    public static final int DEFAULT_KEEP_ALIVE_TIMEOUT_MS = 15_000;
+
+    /**
+     * The default number of pipelined requests buffered per connection.
+     */
+    public static final int DEFAULT_MAX_PIPELINED_REQUESTS = 16;
+
+    /**
+     * A connection handling model.
+     */
+    public enum Transport {
+        /**
+         * One virtual thread per accepted socket, one request per connection.
+         */
+        BLOCKING,
+
+        /**
+         * A single {@link java.nio.channels.Selector} thread owns accepted sockets, keeps idle connections open
+         * without a thread and hands complete requests to virtual threads.
+         */
+        SELECTOR
+    }
+
+    public WebServerOptions {
+        Objects.requireNonNull(transport);
+        Objects.requireNonNull(webSocketCompression);
+        Objects.requireNonNull(messageBatching);
+        Objects.requireNonNull(renderedPages);
+        Objects.requireNonNull(sessionResume);
+        Objects.requireNonNull(metrics);
+        Objects.requireNonNull(metricsEndpoint);
+        Objects.requireNonNull(sessionQueue);
+        Objects.requireNonNull(longPolling);
+        Objects.requireNonNull(compression);
+        Objects.requireNonNull(tls);
+        if (connectionLimit < 1) {
+            throw new IllegalArgumentException("connectionLimit must be greater than 0");
+        }
+        if (webSocketLimit < 1) {
+            throw new IllegalArgumentException("webSocketLimit must be greater than 0");
+        }
+        if (keepAliveTimeoutMs < 1) {
+            throw new IllegalArgumentException("keepAliveTimeoutMs must be greater than 0");
+        }
+        if (maxPipelinedRequests < 0) {
+            throw new IllegalArgumentException("maxPipelinedRequests must not be negative");
+        }
+        if (renderFrameIntervalMs < 0) {
+            throw new IllegalArgumentException("renderFrameIntervalMs must not be negative");
+        }
+        if (remoteRequestTimeoutMs < 0) {
+            throw new IllegalArgumentException("remoteRequestTimeoutMs must not be negative");
+        }
+    }
+
+    /**
+     * Creates the default options: the blocking transport with {@link WebServer#DEFAULT_CONNECTION_LIMIT},
+     * {@link WebSocketCompressionOptions#defaults()}, {@link MessageBatchingOptions#defaults()},
+     * no render frame interval, non-streaming rendering, {@link RenderedPagesOptions#defaults()},
+     * {@link SessionResumeOptions#disabled()}, no-op metrics,
+     * {@link MetricsEndpointOptions#disabled()}, {@link SessionQueueOptions#defaults()},
+     * {@link LivePageSession#DEFAULT_REMOTE_REQUEST_TIMEOUT_MS}, {@link LongPollingOptions#defaults()},
+     * {@link HttpCompressionOptions#defaults()} and {@link TlsOptions#defaults()}.
+     */
+    public static WebServerOptions defaults() {
+        return new WebServerOptions(Transport.BLOCKING,
+                                    WebServer.DEFAULT_CONNECTION_LIMIT,
+                                    DEFAULT_WEB_SOCKET_LIMIT,
+                                    DEFAULT_KEEP_ALIVE_TIMEOUT_MS,
+                                    DEFAULT_MAX_PIPELINED_REQUESTS,
+                                    WebSocketCompressionOptions.defaults(),
+                                    MessageBatchingOptions.defaults(),
+                                    0,
+                                    false,
+                                    RenderedPagesOptions.defaults(),
+                                    SessionResumeOptions.disabled(),
+                                    Metrics.noop(),
+                                    MetricsEndpointOptions.disabled(),
+                                    SessionQueueOptions.defaults(),
+                                    LivePageSession.DEFAULT_REMOTE_REQUEST_TIMEOUT_MS,
+                                    LongPollingOptions.defaults(),
+                                    HttpCompressionOptions.defaults(),
+                                    TlsOptions.defaults());
+    }
+
+    public WebServerOptions withTransport(final Transport transport) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withConnectionLimit(final int connectionLimit) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withWebSocketLimit(final int webSocketLimit) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withKeepAliveTimeoutMs(final int keepAliveTimeoutMs) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withMaxPipelinedRequests(final int maxPipelinedRequests) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withWebSocketCompression(final WebSocketCompressionOptions webSocketCompression) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withMessageBatching(final MessageBatchingOptions messageBatching) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withRenderFrameIntervalMs(final long renderFrameIntervalMs) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withStreamingRendering(final boolean streamingRendering) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withRenderedPages(final RenderedPagesOptions renderedPages) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withSessionResume(final SessionResumeOptions sessionResume) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withMetrics(final Metrics metrics) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withMetricsEndpoint(final MetricsEndpointOptions metricsEndpoint) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withSessionQueue(final SessionQueueOptions sessionQueue) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withRemoteRequestTimeoutMs(final long remoteRequestTimeoutMs) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withLongPolling(final LongPollingOptions longPolling) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withCompression(final HttpCompressionOptions compression) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+
+    public WebServerOptions withTls(final TlsOptions tls) {
+        return new WebServerOptions(transport, connectionLimit, webSocketLimit, keepAliveTimeoutMs, maxPipelinedRequests,
+                                    webSocketCompression, messageBatching, renderFrameIntervalMs, streamingRendering,
+                                    renderedPages, sessionResume, metrics, metricsEndpoint, sessionQueue,
+                                    remoteRequestTimeoutMs, longPolling, compression, tls);
+    }
+}
@@ -0,0 +1,92 @@
+package rsp.http;
+
+import java.util.zip.Deflater;
+
+/**
+ * Immutable permessage-deflate (RFC 7692) options for live page WebSockets.
+ * <p>
+ * Uses builder-style with* methods for immutable updates, starting from {@link #defaults()} or {@link #disabled()}.
+ * The server compresses with a fixed 32 KiB window, because {@link Deflater} has no window size parameter,
+ * so client offers that limit {@code server_max_window_bits} below 15 are declined.
+ *
+ * @param enabled whether the server accepts a client's permessage-deflate offer
+ * @param contextTakeover whether both sides keep their LZ77 window between messages; keeping it compresses
+ *                        repetitive messages much better at the cost of per-connection memory
+ * @param clientMaxWindowBits the base-2 logarithm of the largest window a client may compress with,
+ *                            from 8 to 15, sent only to clients that advertise {@code client_max_window_bits}
+ * @param thresholdBytes messages with fewer UTF-8 or binary payload bytes are sent uncompressed,
+ *                       must not be negative
+ * @param level a {@link Deflater} compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+ */
+public record WebSocketCompressionOptions(boolean enabled,
+                                          boolean contextTakeover,
+                                          int clientMaxWindowBits,
+                                          int thresholdBytes,
+                                          int level) {
+
+    /**
+     * The largest LZ77 window, as a base-2 logarithm, that permessage-deflate allows.
+     */
+    public static final int MAX_WINDOW_BITS = 15;
+
+    /**
+     * The smallest LZ77 window, as a base-2 logarithm, that permessage-deflate allows.
+     */
+    public static final int MIN_WINDOW_BITS = 8;
+
+    /**
+     * The default size below which messages are not compressed; shorter messages rarely gain a round trip.
+     */
+    public static final int DEFAULT_THRESHOLD_BYTES = 256;
+
+    public WebSocketCompressionOptions {
+        if (clientMaxWindowBits < MIN_WINDOW_BITS || clientMaxWindowBits > MAX_WINDOW_BITS) {
+            throw new IllegalArgumentException("clientMaxWindowBits must be between 8 and 15");
+        }
+        if (thresholdBytes < 0) {
+            throw new IllegalArgumentException("thresholdBytes must not be negative");
+        }
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("level must be between 0 and 9 or -1");
+        }
+    }
+
+    /**
+     * Creates the default options: compression enabled with context takeover, full windows
+     * and a {@link #DEFAULT_THRESHOLD_BYTES} threshold.
+     */
+    public static WebSocketCompressionOptions defaults() {
+        return new WebSocketCompressionOptions(true,
+                                               true,
+                                               MAX_WINDOW_BITS,
+                                               DEFAULT_THRESHOLD_BYTES,
+                                               Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates options that decline every permessage-deflate offer.
+     */
+    public static WebSocketCompressionOptions disabled() {
+        return defaults().withEnabled(false);
+    }
+
+    public WebSocketCompressionOptions withEnabled(final boolean enabled) {
+        return new WebSocketCompressionOptions(enabled, contextTakeover, clientMaxWindowBits, thresholdBytes, level);
+    }
+
+    public WebSocketCompressionOptions withContextTakeover(final boolean contextTakeover) {
+        return new WebSocketCompressionOptions(enabled, contextTakeover, clientMaxWindowBits, thresholdBytes, level);
+    }
+
+    public WebSocketCompressionOptions withClientMaxWindowBits(final int clientMaxWindowBits) {
+        return new WebSocketCompressionOptions(enabled, contextTakeover, clientMaxWindowBits, thresholdBytes, level);
+    }
+
+    public WebSocketCompressionOptions withThresholdBytes(final int thresholdBytes) {
+        return new WebSocketCompressionOptions(enabled, contextTakeover, clientMaxWindowBits, thresholdBytes, level);
+    }
+
+    public WebSocketCompressionOptions withLevel(final int level) {
+        return new WebSocketCompressionOptions(enabled, contextTakeover, clientMaxWindowBits, thresholdBytes, level);
+    }
+}
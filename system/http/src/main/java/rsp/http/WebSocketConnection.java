@@ -3,6 +3,7 @@ package rsp.http;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
@@ -21,28 +22,45 @@ final class WebSocketConnection {
     private static final System.Logger logger = System.getLogger(WebSocketConnection.class.getName());
 
     private final Socket socket;
+    private final InputStream input;
     private final WebSocketSession session;
     private final WebSocketListener listener;
+    private final PerMessageDeflate compression;
     private final CompletableFuture<Void> closed = new CompletableFuture<>();
 
     private int fragmentedOpcode = -1;
+    private boolean fragmentedCompressed;
     private ByteArrayOutputStream fragmentedPayload;
     private volatile int closeCode = 1006;
     private volatile String closeReason = "";
 
     WebSocketConnection(final Socket socket,
+                        final WebSocketSession session,
+                        final WebSocketListener listener) throws IOException {
+        this(socket, socket.getInputStream(), session, listener);
+    }
+
+    /**
+     * Creates a connection reading frames from a given stream, e.g. one that first replays bytes
+     * a selector transport has already buffered past the upgrade request.
+     */
+    WebSocketConnection(final Socket socket,
+                        final InputStream input,
                         final WebSocketSession session,
                         final WebSocketListener listener) {
         this.socket = Objects.requireNonNull(socket);
+        this.input = Objects.requireNonNull(input);
         this.session = Objects.requireNonNull(session);
         this.listener = Objects.requireNonNull(listener);
+        this.compression = session.compression().orElse(null);
     }
 
     void run() throws IOException {
         socket.setSoTimeout(READ_TIMEOUT_MS);
+        final WebSocketFrameReader reader = new WebSocketFrameReader(input, MAX_INBOUND_MESSAGE_BYTES, compression != null);
         try {
             listener.onOpen();
-            readLoop();
+            readLoop(reader);
         } catch (final EOFException | SocketException ex) {
             logger.log(DEBUG, () -> "WebSocket closed");
         } catch (final WebSocketProtocolException ex) {
@@ -56,6 +74,8 @@ final class WebSocketConnection {
             try {
                 listener.onClose(closeCode, closeReason);
             } finally {
+                reader.release();
+                session.releaseCompression();
                 closed.complete(null);
             }
         }
@@ -84,16 +104,19 @@ final class WebSocketConnection {
         return closed;
     }
 
-    private void readLoop() throws IOException, WebSocketProtocolException {
+    private void readLoop(final WebSocketFrameReader reader) throws IOException, WebSocketProtocolException {
         while (!socket.isClosed()) {
-            final WebSocketFrame frame = WebSocketFrame.readClientFrame(socket.getInputStream(), MAX_INBOUND_MESSAGE_BYTES);
-            if (!handle(frame)) {
+            reader.next();
+            if (!handle(reader)) {
                 return;
             }
         }
     }
 
-    private boolean handle(final WebSocketFrame frame) throws IOException, WebSocketProtocolException {
+    /**
+     * Handles the reader's current frame, whose payload is valid until the next frame is read.
+     */
+    private boolean handle(final WebSocketFrameReader frame) throws IOException, WebSocketProtocolException {
         return switch (frame.opcode()) {
             case WebSocketFrame.OPCODE_CLOSE -> handleClose(frame);
             case WebSocketFrame.OPCODE_PING -> {
@@ -110,54 +133,67 @@ final class WebSocketConnection {
         };
     }
 
-    private boolean handleData(final WebSocketFrame frame) throws IOException, WebSocketProtocolException {
+    private boolean handleData(final WebSocketFrameReader frame) throws IOException, WebSocketProtocolException {
         if (fragmentedOpcode != -1) {
             throw new WebSocketProtocolException(WebSocketFrame.CLOSE_PROTOCOL_ERROR, "Unexpected WebSocket data frame");
         }
+        if (frame.fin() && !frame.compressed() && frame.opcode() == WebSocketFrame.OPCODE_TEXT) {
+            // decoded straight from the reader's buffer
+            listener.onText(frame.text());
+            return session.isOpen();
+        }
         if (frame.fin()) {
-            deliver(frame.opcode(), frame.payload());
+            deliver(frame.opcode(), frame.compressed(), frame.payload());
             return session.isOpen();
         } else {
             fragmentedOpcode = frame.opcode();
+            fragmentedCompressed = frame.compressed();
             fragmentedPayload = new ByteArrayOutputStream();
-            appendFragment(frame.payload());
+            appendFragment(frame);
         }
         return true;
     }
 
-    private boolean handleContinuation(final WebSocketFrame frame) throws IOException, WebSocketProtocolException {
+    private boolean handleContinuation(final WebSocketFrameReader frame) throws IOException, WebSocketProtocolException {
         if (fragmentedOpcode == -1) {
             throw new WebSocketProtocolException(WebSocketFrame.CLOSE_PROTOCOL_ERROR, "Unexpected WebSocket continuation frame");
         }
-        appendFragment(frame.payload());
+        appendFragment(frame);
         if (frame.fin()) {
             final byte[] payload = fragmentedPayload.toByteArray();
             final int opcode = fragmentedOpcode;
+            final boolean compressed = fragmentedCompressed;
             fragmentedOpcode = -1;
+            fragmentedCompressed = false;
             fragmentedPayload = null;
-            deliver(opcode, payload);
+            deliver(opcode, compressed, payload);
             return session.isOpen();
         }
         return true;
     }
 
-    private boolean handleClose(final WebSocketFrame frame) throws IOException, WebSocketProtocolException {
-        final CloseInfo closeInfo = closeInfo(frame.payload());
+    private boolean handleClose(final WebSocketFrameReader frame) throws IOException, WebSocketProtocolException {
+        final byte[] payload = frame.payload();
+        final CloseInfo closeInfo = closeInfo(payload);
         closeCode = closeInfo.code();
         closeReason = closeInfo.reason();
-        session.sendClosePayload(frame.payload());
+        session.sendClosePayload(payload);
         return false;
     }
 
-    private void appendFragment(final byte[] payload) throws WebSocketProtocolException {
-        if (fragmentedPayload.size() + payload.length > MAX_INBOUND_MESSAGE_BYTES) {
+    private void appendFragment(final WebSocketFrameReader frame) throws WebSocketProtocolException {
+        if (fragmentedPayload.size() + frame.payloadLength() > MAX_INBOUND_MESSAGE_BYTES) {
             throw new WebSocketProtocolException(WebSocketFrame.CLOSE_MESSAGE_TOO_BIG, "WebSocket message too large");
         }
-        fragmentedPayload.writeBytes(payload);
+        frame.appendPayloadTo(fragmentedPayload);
     }
 
     private void deliver(final int opcode,
-                         final byte[] payload) throws IOException, WebSocketProtocolException {
+                         final boolean compressed,
+                         final byte[] framesPayload) throws IOException, WebSocketProtocolException {
+        final byte[] payload = compressed
+                               ? compression.decompress(framesPayload, MAX_INBOUND_MESSAGE_BYTES)
+                               : framesPayload;
         if (opcode == WebSocketFrame.OPCODE_TEXT) {
             listener.onText(text(payload));
         } else if (opcode == WebSocketFrame.OPCODE_BINARY) {
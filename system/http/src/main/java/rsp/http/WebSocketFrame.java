@@ -1,15 +1,20 @@
 package rsp.http;
 
 import java.io.ByteArrayOutputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 
-record WebSocketFrame(boolean fin, int opcode, byte[] payload) {
+/**
+ * A WebSocket frame.
+ *
+ * @param fin whether this is the final fragment of a message
+ * @param compressed whether the RSV1 bit is set, which marks the first frame of a permessage-deflate message
+ * @param opcode the frame's opcode
+ * @param payload the unmasked payload, held as given rather than copied
+ */
+record WebSocketFrame(boolean fin, boolean compressed, int opcode, byte[] payload) {
     static final int OPCODE_CONTINUATION = 0x0;
     static final int OPCODE_TEXT = 0x1;
     static final int OPCODE_BINARY = 0x2;
@@ -24,59 +29,50 @@ record WebSocketFrame(boolean fin, int opcode, byte[] payload) {
     static final int CLOSE_INVALID_PAYLOAD = 1007;
     static final int CLOSE_MESSAGE_TOO_BIG = 1009;
 
-    WebSocketFrame {
-        payload = Arrays.copyOf(payload, payload.length);
+    WebSocketFrame(final boolean fin, final int opcode, final byte[] payload) {
+        this(fin, false, opcode, payload);
     }
 
     static WebSocketFrame readClientFrame(final InputStream input,
                                           final int maxPayloadBytes) throws IOException, WebSocketProtocolException {
-        final int first = readByte(input);
-        final int second = readByte(input);
-        final boolean fin = (first & 0x80) != 0;
-        final boolean hasReservedBits = (first & 0x70) != 0;
-        final int opcode = first & 0x0F;
-        final boolean masked = (second & 0x80) != 0;
-        final int lengthCode = second & 0x7F;
-
-        if (hasReservedBits || !isKnownOpcode(opcode)) {
-            throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid WebSocket frame header");
-        }
-        if (!masked) {
-            throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Client WebSocket frames must be masked");
-        }
+        return readClientFrame(input, maxPayloadBytes, false);
+    }
 
-        final long payloadLength = payloadLength(input, lengthCode);
-        if (isControl(opcode) && (!fin || payloadLength > 125)) {
-            throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid WebSocket control frame");
-        }
-        if (payloadLength > maxPayloadBytes) {
-            throw new WebSocketProtocolException(CLOSE_MESSAGE_TOO_BIG, "WebSocket message too large");
+    /**
+     * Reads a single client frame.
+     * The reader buffers ahead of the frame, so a connection reads its frames with one {@link WebSocketFrameReader}.
+     *
+     * @param compressionNegotiated whether permessage-deflate was negotiated, which allows the RSV1 bit
+     *                              on the first frame of a data message
+     */
+    static WebSocketFrame readClientFrame(final InputStream input,
+                                          final int maxPayloadBytes,
+                                          final boolean compressionNegotiated) throws IOException, WebSocketProtocolException {
+        final WebSocketFrameReader reader = new WebSocketFrameReader(input, maxPayloadBytes, compressionNegotiated);
+        try {
+            reader.next();
+            return new WebSocketFrame(reader.fin(), reader.compressed(), reader.opcode(), reader.payload());
+        } finally {
+            reader.release();
         }
+    }
 
-        final byte[] mask = readBytes(input, 4);
-        final byte[] payload = readBytes(input, Math.toIntExact(payloadLength));
-        for (int i = 0; i < payload.length; i++) {
-            payload[i] = (byte) (payload[i] ^ mask[i % 4]);
-        }
-        return new WebSocketFrame(fin, opcode, payload);
+    static void writeServerFrame(final OutputStream output,
+                                 final int opcode,
+                                 final byte[] payload) throws IOException {
+        writeServerFrame(output, opcode, false, payload);
     }
 
+    /**
+     * Writes an unfragmented server frame.
+     *
+     * @param compressed whether to set the RSV1 bit for a permessage-deflate compressed payload
+     */
     static void writeServerFrame(final OutputStream output,
                                  final int opcode,
+                                 final boolean compressed,
                                  final byte[] payload) throws IOException {
-        output.write(0x80 | opcode);
-        if (payload.length <= 125) {
-            output.write(payload.length);
-        } else if (payload.length <= 0xFFFF) {
-            output.write(126);
-            output.write((payload.length >>> 8) & 0xFF);
-            output.write(payload.length & 0xFF);
-        } else {
-            output.write(127);
-            output.write(ByteBuffer.allocate(Long.BYTES).putLong(payload.length).array());
-        }
-        output.write(payload);
-        output.flush();
+        new WebSocketFrameWriter(output).write(opcode, compressed, payload);
     }
 
     static byte[] closePayload(final int code, final String reason) {
@@ -88,54 +84,7 @@ record WebSocketFrame(boolean fin, int opcode, byte[] payload) {
         return payload.toByteArray();
     }
 
-    private static long payloadLength(final InputStream input,
-                                      final int lengthCode) throws IOException, WebSocketProtocolException {
-        if (lengthCode < 126) {
-            return lengthCode;
-        }
-        if (lengthCode == 126) {
-            final int length = (readByte(input) << 8) | readByte(input);
-            if (length < 126) {
-                throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Non-minimal WebSocket payload length");
-            }
-            return length;
-        }
-        long length = 0;
-        for (int i = 0; i < Long.BYTES; i++) {
-            length = (length << 8) | readByte(input);
-        }
-        if (length < 0x10000L || length < 0) {
-            throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid WebSocket payload length");
-        }
-        return length;
-    }
-
-    private static boolean isKnownOpcode(final int opcode) {
-        return opcode == OPCODE_CONTINUATION
-               || opcode == OPCODE_TEXT
-               || opcode == OPCODE_BINARY
-               || opcode == OPCODE_CLOSE
-               || opcode == OPCODE_PING
-               || opcode == OPCODE_PONG;
-    }
-
     static boolean isControl(final int opcode) {
         return opcode >= 0x8;
     }
-
-    private static int readByte(final InputStream input) throws IOException {
-        final int value = input.read();
-        if (value < 0) {
-            throw new EOFException("Unexpected end of WebSocket frame");
-        }
-        return value;
-    }
-
-    private static byte[] readBytes(final InputStream input, final int length) throws IOException {
-        final byte[] bytes = input.readNBytes(length);
-        if (bytes.length != length) {
-            throw new EOFException("Unexpected end of WebSocket frame");
-        }
-        return bytes;
-    }
 }
@@ -0,0 +1,260 @@
+package rsp.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static rsp.http.WebSocketFrame.CLOSE_INVALID_PAYLOAD;
+import static rsp.http.WebSocketFrame.CLOSE_MESSAGE_TOO_BIG;
+import static rsp.http.WebSocketFrame.CLOSE_PROTOCOL_ERROR;
+import static rsp.http.WebSocketFrame.OPCODE_BINARY;
+import static rsp.http.WebSocketFrame.OPCODE_TEXT;
+
+/**
+ * Reads the client frames of one WebSocket connection through a buffer taken from a pool.
+ * <p>
+ * Frames are read from the buffer, which is filled with as many bytes as the stream has available, so a frame
+ * header costs no reads of its own. A payload which fits the buffer is unmasked in place, eight bytes at a time,
+ * and stays there until the next frame is read: a text message is decoded from the buffer and a fragment is
+ * appended from it, without a copy of the payload. A longer payload is read into an array of its own.
+ * A reader is used by the connection's reading thread only.
+ */
+final class WebSocketFrameReader {
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final ByteBufferPool BUFFERS = new ByteBufferPool(BUFFER_SIZE, 1024);
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final InputStream input;
+    private final int maxPayloadBytes;
+    private final boolean compressionNegotiated;
+    private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+                                                              .onMalformedInput(CodingErrorAction.REPORT)
+                                                              .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final byte[] mask = new byte[Long.BYTES];
+
+    private ByteBuffer buffer;
+    private boolean fin;
+    private boolean compressed;
+    private int opcode = -1;
+    private byte[] payload;
+    private int payloadOffset;
+    private int payloadLength;
+
+    /**
+     * @param maxPayloadBytes the longest payload accepted, a longer one fails with {@code 1009}
+     * @param compressionNegotiated whether permessage-deflate was negotiated, which allows the RSV1 bit
+     *                              on the first frame of a data message
+     */
+    WebSocketFrameReader(final InputStream input, final int maxPayloadBytes, final boolean compressionNegotiated) {
+        this.input = Objects.requireNonNull(input);
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.compressionNegotiated = compressionNegotiated;
+        this.buffer = BUFFERS.acquire().flip();
+    }
+
+    /**
+     * Reads the next frame, the previous frame's payload is no longer available afterwards.
+     */
+    void next() throws IOException, WebSocketProtocolException {
+        if (buffer == null) {
+            throw new IllegalStateException("WebSocket frame reader is released");
+        }
+        require(2);
+        final int first = buffer.get() & 0xFF;
+        final int second = buffer.get() & 0xFF;
+        final boolean finalFragment = (first & 0x80) != 0;
+        final boolean rsv1 = (first & 0x40) != 0;
+        final boolean hasReservedBits = (first & 0x30) != 0;
+        final int frameOpcode = first & 0x0F;
+        final boolean masked = (second & 0x80) != 0;
+        final int lengthCode = second & 0x7F;
+
+        if (hasReservedBits || !isKnownOpcode(frameOpcode)) {
+            throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid WebSocket frame header");
+        }
+        if (rsv1 && (!compressionNegotiated || (frameOpcode != OPCODE_TEXT && frameOpcode != OPCODE_BINARY))) {
+            throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid WebSocket frame header");
+        }
+        if (!masked) {
+            throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Client WebSocket frames must be masked");
+        }
+
+        final long length = payloadLength(lengthCode);
+        if (WebSocketFrame.isControl(frameOpcode) && (!finalFragment || length > 125)) {
+            throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid WebSocket control frame");
+        }
+        if (length > maxPayloadBytes) {
+            throw new WebSocketProtocolException(CLOSE_MESSAGE_TOO_BIG, "WebSocket message too large");
+        }
+
+        require(4);
+        buffer.get(mask, 0, 4);
+        System.arraycopy(mask, 0, mask, 4, 4);
+        final int frameLength = (int) length;
+        if (frameLength <= buffer.capacity()) {
+            require(frameLength);
+            payload = buffer.array();
+            payloadOffset = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + frameLength);
+        } else {
+            payload = new byte[frameLength];
+            final int buffered = buffer.remaining();
+            buffer.get(payload, 0, buffered);
+            if (input.readNBytes(payload, buffered, frameLength - buffered) != frameLength - buffered) {
+                throw new EOFException("Unexpected end of WebSocket frame");
+            }
+            payloadOffset = 0;
+        }
+        payloadLength = frameLength;
+        unmask(payload, payloadOffset, payloadLength, mask);
+        fin = finalFragment;
+        compressed = rsv1;
+        opcode = frameOpcode;
+    }
+
+    boolean fin() {
+        return fin;
+    }
+
+    /**
+     * @return whether the RSV1 bit is set, which marks the first frame of a permessage-deflate message
+     */
+    boolean compressed() {
+        return compressed;
+    }
+
+    int opcode() {
+        return opcode;
+    }
+
+    int payloadLength() {
+        return payloadLength;
+    }
+
+    /**
+     * @return a copy of the current frame's unmasked payload
+     */
+    byte[] payload() {
+        return Arrays.copyOfRange(payload, payloadOffset, payloadOffset + payloadLength);
+    }
+
+    /**
+     * Decodes the current frame's payload as UTF-8 text.
+     *
+     * @throws WebSocketProtocolException with {@code 1007} if the payload is not valid UTF-8
+     */
+    String text() throws WebSocketProtocolException {
+        return decode(ByteBuffer.wrap(payload, payloadOffset, payloadLength));
+    }
+
+    /**
+     * Decodes a UTF-8 text with this reader's decoder.
+     *
+     * @throws WebSocketProtocolException with {@code 1007} if the bytes are not valid UTF-8
+     */
+    String decode(final ByteBuffer bytes) throws WebSocketProtocolException {
+        try {
+            return utf8.reset().decode(bytes).toString();
+        } catch (final CharacterCodingException ex) {
+            throw new WebSocketProtocolException(CLOSE_INVALID_PAYLOAD, "Invalid UTF-8 WebSocket text message");
+        }
+    }
+
+    /**
+     * Appends the current frame's payload to a message's fragments.
+     */
+    void appendPayloadTo(final ByteArrayOutputStream fragments) {
+        fragments.write(payload, payloadOffset, payloadLength);
+    }
+
+    /**
+     * Gives the buffer back to the pool, the reader can't be used afterwards.
+     */
+    void release() {
+        if (buffer != null) {
+            BUFFERS.release(buffer);
+            buffer = null;
+            payload = null;
+        }
+    }
+
+    /**
+     * XORs a payload with its masking key, eight bytes at a time.
+     *
+     * @param mask the four key bytes repeated twice
+     */
+    static void unmask(final byte[] payload, final int offset, final int length, final byte[] mask) {
+        final long maskLong = (long) LONGS.get(mask, 0);
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            LONGS.set(payload, offset + i, (long) LONGS.get(payload, offset + i) ^ maskLong);
+        }
+        for (; i < length; i++) {
+            payload[offset + i] ^= mask[i & 3];
+        }
+    }
+
+    /**
+     * Makes sure the buffer holds at least the given number of unread bytes, reading what the stream has.
+     */
+    private void require(final int count) throws IOException {
+        if (buffer.remaining() >= count) {
+            return;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < count) {
+                final int read = input.read(buffer.array(),
+                                            buffer.arrayOffset() + buffer.position(),
+                                            buffer.remaining());
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of WebSocket frame");
+                }
+                buffer.position(buffer.position() + read);
+            }
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    private long payloadLength(final int lengthCode) throws IOException, WebSocketProtocolException {
+        if (lengthCode < 126) {
+            return lengthCode;
+        }
+        if (lengthCode == 126) {
+            require(2);
+            final int length = buffer.getShort() & 0xFFFF;
+            if (length < 126) {
+                throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Non-minimal WebSocket payload length");
+            }
+            return length;
+        }
+        require(Long.BYTES);
+        final long length = buffer.getLong();
+        if (length < 0x10000L) {
+            throw new WebSocketProtocolException(CLOSE_PROTOCOL_ERROR, "Invalid WebSocket payload length");
+        }
+        return length;
+    }
+
+    private static boolean isKnownOpcode(final int opcode) {
+        return opcode == WebSocketFrame.OPCODE_CONTINUATION
+               || opcode == OPCODE_TEXT
+               || opcode == OPCODE_BINARY
+               || opcode == WebSocketFrame.OPCODE_CLOSE
+               || opcode == WebSocketFrame.OPCODE_PING
+               || opcode == WebSocketFrame.OPCODE_PONG;
+    }
+}
@@ -0,0 +1,93 @@
+package rsp.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+
+/**
+ * Writes unfragmented server frames, each with a single write of its header and payload.
+ * <p>
+ * A socket with a channel, such as one detached from the selector transport, gets a gathering write of the
+ * header buffer and the payload. Otherwise the header and as much of the payload as fits are copied into a
+ * buffer taken from a pool and written at once, so a small frame is one TCP segment, or one TLS record,
+ * rather than one per header field.
+ */
+final class WebSocketFrameWriter {
+    /**
+     * The size of the pooled frame buffers, the largest TLS record's plaintext.
+     */
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final ByteBufferPool BUFFERS = new ByteBufferPool(BUFFER_SIZE, 256);
+
+    private final SocketChannel channel;
+    private final OutputStreamSource output;
+
+    /**
+     * Creates a writer to a socket, which writes through the socket's channel if it has one in blocking mode.
+     */
+    WebSocketFrameWriter(final Socket socket) {
+        Objects.requireNonNull(socket);
+        final SocketChannel socketChannel = socket.getChannel();
+        this.channel = socketChannel != null && socketChannel.isBlocking() ? socketChannel : null;
+        this.output = socket::getOutputStream;
+    }
+
+    WebSocketFrameWriter(final OutputStream output) {
+        Objects.requireNonNull(output);
+        this.channel = null;
+        this.output = () -> output;
+    }
+
+    /**
+     * Writes a frame and flushes it.
+     *
+     * @param compressed whether to set the RSV1 bit for a permessage-deflate compressed payload
+     */
+    void write(final int opcode, final boolean compressed, final byte[] payload) throws IOException {
+        final ByteBuffer frame = BUFFERS.acquire();
+        try {
+            putHeader(frame, opcode, compressed, payload.length);
+            if (channel != null) {
+                frame.flip();
+                final ByteBuffer body = ByteBuffer.wrap(payload);
+                final ByteBuffer[] buffers = {frame, body};
+                while (frame.hasRemaining() || body.hasRemaining()) {
+                    channel.write(buffers);
+                }
+                return;
+            }
+            final int copied = Math.min(payload.length, frame.remaining());
+            frame.put(payload, 0, copied);
+            final OutputStream stream = output.get();
+            stream.write(frame.array(), frame.arrayOffset(), frame.position());
+            if (copied < payload.length) {
+                stream.write(payload, copied, payload.length - copied);
+            }
+            stream.flush();
+        } finally {
+            BUFFERS.release(frame);
+        }
+    }
+
+    static void putHeader(final ByteBuffer frame, final int opcode, final boolean compressed, final int length) {
+        frame.put((byte) (0x80 | (compressed ? 0x40 : 0x00) | opcode));
+        if (length <= 125) {
+            frame.put((byte) length);
+        } else if (length <= 0xFFFF) {
+            frame.put((byte) 126);
+            frame.putShort((short) length);
+        } else {
+            frame.put((byte) 127);
+            frame.putLong(length);
+        }
+    }
+
+    @FunctionalInterface
+    private interface OutputStreamSource {
+        OutputStream get() throws IOException;
+    }
+}
@@ -3,33 +3,59 @@ package rsp.http;
 import java.io.IOException;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 final class WebSocketSession {
     private final Socket socket;
+    private final WebSocketFrameWriter writer;
     private final Object writeLock = new Object();
     private final AtomicBoolean closeSent = new AtomicBoolean();
+    private final Optional<String> subprotocol;
+    private final PerMessageDeflate compression;
 
     WebSocketSession(final Socket socket) {
+        this(socket, Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * Creates a session.
+     *
+     * @param subprotocol the subprotocol selected during the handshake, if any
+     * @param compression the permessage-deflate context if the handshake negotiated one
+     */
+    WebSocketSession(final Socket socket,
+                     final Optional<String> subprotocol,
+                     final Optional<PerMessageDeflate> compression) {
         this.socket = Objects.requireNonNull(socket);
+        this.writer = new WebSocketFrameWriter(socket);
+        this.subprotocol = Objects.requireNonNull(subprotocol);
+        this.compression = Objects.requireNonNull(compression).orElse(null);
+    }
+
+    Optional<String> subprotocol() {
+        return subprotocol;
     }
 
     boolean isOpen() {
         return !closeSent.get() && !socket.isClosed();
     }
 
+    Optional<PerMessageDeflate> compression() {
+        return Optional.ofNullable(compression);
+    }
+
     void sendText(final String text) throws IOException {
-        sendFrame(WebSocketFrame.OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
+        sendMessage(WebSocketFrame.OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
     }
 
     void sendBinary(final byte[] payload) throws IOException {
-        sendFrame(WebSocketFrame.OPCODE_BINARY, Arrays.copyOf(payload, payload.length));
+        sendMessage(WebSocketFrame.OPCODE_BINARY, payload);
     }
 
     void sendPong(final byte[] payload) throws IOException {
-        sendFrame(WebSocketFrame.OPCODE_PONG, Arrays.copyOf(payload, payload.length));
+        sendFrame(WebSocketFrame.OPCODE_PONG, payload);
     }
 
     void close(final int code, final String reason) throws IOException {
@@ -38,7 +64,18 @@ final class WebSocketSession {
 
     void sendClosePayload(final byte[] payload) throws IOException {
         if (closeSent.compareAndSet(false, true)) {
-            sendFrame(WebSocketFrame.OPCODE_CLOSE, Arrays.copyOf(payload, payload.length));
+            sendFrame(WebSocketFrame.OPCODE_CLOSE, payload);
+        }
+    }
+
+    /**
+     * Releases the compression context once the connection's read loop has ended.
+     */
+    void releaseCompression() {
+        if (compression != null) {
+            synchronized (writeLock) {
+                compression.close();
+            }
         }
     }
 
@@ -50,12 +87,33 @@ final class WebSocketSession {
         }
     }
 
+    private void sendMessage(final int opcode, final byte[] payload) throws IOException {
+        if (compression == null) {
+            sendFrame(opcode, payload);
+            return;
+        }
+        if (closeSent.get()) {
+            return;
+        }
+        // Compress under the write lock, so messages reach the socket in the compressor's stream order
+        synchronized (writeLock) {
+            if (compression.isClosed()) {
+                return;
+            }
+            if (compression.shouldCompress(payload.length)) {
+                writer.write(opcode, true, compression.compress(payload));
+            } else {
+                writer.write(opcode, false, payload);
+            }
+        }
+    }
+
     private void sendFrame(final int opcode, final byte[] payload) throws IOException {
         if (closeSent.get() && opcode != WebSocketFrame.OPCODE_CLOSE) {
             return;
         }
         synchronized (writeLock) {
-            WebSocketFrame.writeServerFrame(socket.getOutputStream(), opcode, payload);
+            writer.write(opcode, false, payload);
         }
     }
 }
@@ -5,7 +5,6 @@ import rsp.server.http.HttpRequest;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -18,12 +17,18 @@ import java.util.Optional;
 final class WebSocketUpgrader {
     private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
 
+    private final WebSocketCompressionOptions compressionOptions;
+
+    WebSocketUpgrader(final WebSocketCompressionOptions compressionOptions) {
+        this.compressionOptions = Objects.requireNonNull(compressionOptions);
+    }
+
     boolean isWebSocketRequest(final HttpRequest request) {
         final String upgrade = request.header("Upgrade");
         return upgrade != null && "websocket".equals(upgrade.toLowerCase(Locale.ROOT));
     }
 
-    Optional<String> upgrade(final Socket socket,
+    Handshake upgrade(final OutputStream output,
                              final ParsedHttpRequest parsedRequest,
                              final List<String> supportedSubprotocols) throws IOException, WebSocketHandshakeException {
         final HttpRequest request = parsedRequest.request();
@@ -36,10 +41,13 @@ final class WebSocketUpgrader {
         validateUpgradeHeaders(request);
         final Optional<String> subprotocol = negotiateSubprotocol(request.header("Sec-WebSocket-Protocol"),
                                                                   supportedSubprotocols);
-        writeSwitchingProtocols(socket.getOutputStream(),
+        final Optional<PerMessageDeflate.Agreement> compression =
+                PerMessageDeflate.negotiate(request.header("Sec-WebSocket-Extensions"), compressionOptions);
+        writeSwitchingProtocols(output,
                                 acceptKey(request.header("Sec-WebSocket-Key")),
-                                subprotocol);
-        return subprotocol;
+                                subprotocol,
+                                compression);
+        return new Handshake(subprotocol, compression);
     }
 
     private void validateUpgradeHeaders(final HttpRequest request) throws WebSocketHandshakeException {
@@ -106,7 +114,8 @@ final class WebSocketUpgrader {
 
     private void writeSwitchingProtocols(final OutputStream output,
                                          final String acceptKey,
-                                         final Optional<String> subprotocol) throws IOException {
+                                         final Optional<String> subprotocol,
+                                         final Optional<PerMessageDeflate.Agreement> compression) throws IOException {
         output.write(("HTTP/1.1 101 Switching Protocols\r\n"
                       + "Upgrade: websocket\r\n"
                       + "Connection: Upgrade\r\n"
@@ -116,7 +125,20 @@ final class WebSocketUpgrader {
             output.write(("Sec-WebSocket-Protocol: " + subprotocol.get() + "\r\n")
                                  .getBytes(StandardCharsets.ISO_8859_1));
         }
+        if (compression.isPresent()) {
+            output.write(("Sec-WebSocket-Extensions: " + compression.get().responseHeaderValue() + "\r\n")
+                                 .getBytes(StandardCharsets.ISO_8859_1));
+        }
         output.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
         output.flush();
     }
+
+    /**
+     * The result of a successful handshake.
+     *
+     * @param subprotocol the selected subprotocol, if any
+     * @param compression the negotiated permessage-deflate parameters, if any
+     */
+    record Handshake(Optional<String> subprotocol, Optional<PerMessageDeflate.Agreement> compression) {
+    }
 }
@@ -0,0 +1,30 @@
+package rsp.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Manual driver for the JMH microbenchmarks of the {@code http} module.
+ *
+ * <p>Gated behind {@code -Dbench.run=true}, so it never runs in the normal build. Select benchmarks with a
+ * regular expression over their class and method names, for example:
+ * {@code mvn -pl system/http -am test -Dtest=BenchmarksManualTest -Dbench.run=true -Dbench.include=HttpRequestParserBenchmark}.
+ */
+class BenchmarksManualTest {
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench.run", matches = "true")
+    void run_benchmarks() throws Exception {
+        final Options options = new OptionsBuilder()
+                .include("rsp\\.http\\..*(" + System.getProperty("bench.include", "Benchmark") + ").*")
+                .forks(Integer.getInteger("bench.forks", 1))
+                .build();
+
+        assertFalse(new Runner(options).run().isEmpty(), "No benchmarks matched bench.include");
+    }
+}
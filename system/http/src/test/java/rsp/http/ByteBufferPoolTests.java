@@ -0,0 +1,38 @@
+package rsp.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ByteBufferPoolTests {
+    @Test
+    void reuses_a_released_buffer_cleared() {
+        final ByteBufferPool pool = new ByteBufferPool(16, 2);
+        final ByteBuffer buffer = pool.acquire();
+        buffer.put((byte) 1).flip();
+
+        pool.release(buffer);
+        final ByteBuffer reused = pool.acquire();
+
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(16, reused.limit());
+    }
+
+    @Test
+    void keeps_at_most_the_configured_number_of_free_buffers() {
+        final ByteBufferPool pool = new ByteBufferPool(16, 2);
+
+        pool.release(pool.acquire());
+        pool.release(ByteBuffer.allocate(16));
+        pool.release(ByteBuffer.allocate(16));
+        pool.release(ByteBuffer.allocate(8));
+
+        assertEquals(2, pool.size());
+        assertThrows(IllegalArgumentException.class, () -> new ByteBufferPool(0, 2));
+    }
+}
@@ -0,0 +1,144 @@
+package rsp.http;
+
+import org.junit.jupiter.api.Test;
+import rsp.server.http.HttpMethod;
+import rsp.server.http.HttpRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpRequestParserTests {
+    private final HttpRequestParser parser = new HttpRequestParser();
+
+    @Test
+    void parses_request_line_headers_and_url() throws Exception {
+        final ParsedHttpRequest parsed = parse("GET /items?id=7 HTTP/1.1\r\n"
+                                               + "host: example.com:8080\r\n"
+                                               + "X-Custom:   padded value \r\n"
+                                               + "\r\n");
+        final HttpRequest request = parsed.request();
+
+        assertEquals(HttpMethod.GET, request.method);
+        assertEquals("HTTP/1.1", parsed.version());
+        assertEquals("/items", request.path.toString());
+        assertEquals("7", request.queryParameters.parameterValue("id"));
+        assertEquals("http://example.com:8080/items?id=7", request.url);
+        assertEquals("example.com:8080", request.header("Host"));
+        assertEquals("padded value", request.header("X-Custom"));
+    }
+
+    @Test
+    void resolves_version_and_known_header_names_to_shared_constants() throws Exception {
+        final ParsedHttpRequest first = parse("GET / HTTP/1.1\r\nUSER-AGENT: a\r\n\r\n");
+        final ParsedHttpRequest second = parse("GET / HTTP/1.1\r\nuser-agent: b\r\n\r\n");
+
+        assertSame(first.version(), second.version());
+        assertEquals("a", first.request().header("User-Agent"));
+        assertEquals("b", second.request().header("User-Agent"));
+    }
+
+    @Test
+    void finds_header_terminator_split_across_reads() throws Exception {
+        final byte[] bytes = "GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        final Optional<ParsedHttpRequest> parsed = parser.parse(new OneByteInputStream(bytes), null, new RequestReadBuffer(8), "http");
+
+        assertEquals("/slow", parsed.orElseThrow().request().path.toString());
+    }
+
+    @Test
+    void keeps_bytes_after_request_in_buffer() throws Exception {
+        final byte[] bytes = ("POST /form HTTP/1.1\r\n"
+                              + "Content-Type: application/x-www-form-urlencoded\r\n"
+                              + "Content-Length: 7\r\n"
+                              + "\r\n"
+                              + "name=Adnext").getBytes(StandardCharsets.ISO_8859_1);
+        final RequestReadBuffer buffer = new RequestReadBuffer();
+        final InputStream input = new ByteArrayInputStream(bytes);
+
+        final HttpRequest request = parser.parse(input, null, buffer, "http").orElseThrow().request();
+
+        assertEquals("Ad", request.queryParameters.parameterValue("name"));
+        assertEquals("next", new String(buffer.remainderThen(input).readAllBytes(), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void returns_empty_result_for_closed_connection() throws Exception {
+        assertFalse(parser.parse(new ByteArrayInputStream(new byte[0]), null, new RequestReadBuffer(), "http").isPresent());
+    }
+
+    @Test
+    void rejects_malformed_requests_with_matching_status() {
+        assertStatus(400, "\r\n\r\n");
+        assertStatus(400, "GET / HTTP/2.0\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\nHost: a\r\n folded\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\nNoSeparator\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\n: empty name\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\nContent-Length: -1\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\nContent-Length: 10\r\n\r\nshort");
+        assertStatus(501, "BREW / HTTP/1.1\r\n\r\n");
+        assertStatus(414, "GET /" + "a".repeat(9_000) + " HTTP/1.1\r\n\r\n");
+        assertStatus(431, "GET / HTTP/1.1\r\nX: " + "a".repeat(17_000) + "\r\n\r\n");
+        assertStatus(431, "GET / HTTP/1.1\r\n" + "X: a\r\n".repeat(101) + "\r\n");
+        assertStatus(413, "POST / HTTP/1.1\r\nContent-Length: 300000\r\n\r\n");
+    }
+
+    @Test
+    void frames_pipelined_requests_and_flags_upgrades() throws Exception {
+        final byte[] bytes = ("POST /a HTTP/1.1\r\ncontent-length: 3\r\n\r\nabc"
+                              + "GET /ws HTTP/1.1\r\nUpgrade: websocket\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+        final HttpRequestParser.RequestFrame first = HttpRequestParser.frame(bytes, bytes.length).orElseThrow();
+        assertFalse(first.upgrade());
+        final byte[] rest = java.util.Arrays.copyOfRange(bytes, first.length(), bytes.length);
+        final HttpRequestParser.RequestFrame second = HttpRequestParser.frame(rest, rest.length).orElseThrow();
+
+        assertEquals(rest.length, second.length());
+        assertTrue(second.upgrade());
+        assertFalse(HttpRequestParser.frame(bytes, first.length() - 1).isPresent());
+    }
+
+    private ParsedHttpRequest parse(final String request) throws Exception {
+        final byte[] bytes = request.getBytes(StandardCharsets.ISO_8859_1);
+        return parser.parse(new ByteArrayInputStream(bytes), null, new RequestReadBuffer(), "http").orElseThrow();
+    }
+
+    private void assertStatus(final int status, final String request) {
+        final HttpProtocolException ex = assertThrows(HttpProtocolException.class, () -> parse(request), request);
+        assertEquals(status, ex.status(), request.length() > 80 ? request.substring(0, 80) : request);
+    }
+
+    private static final class OneByteInputStream extends InputStream {
+        private final byte[] bytes;
+        private int position;
+
+        private OneByteInputStream(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) {
+            if (position == bytes.length) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            buffer[offset] = bytes[position++];
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package rsp.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongPollingMailboxTests {
+
+    private final LongPollingMailbox mailbox = new LongPollingMailbox();
+
+    @Test
+    void returns_a_single_message_as_is() throws InterruptedException {
+        mailbox.add("[0,0]");
+
+        assertEquals(Optional.of("[0,0]"), mailbox.poll(1_000));
+        assertEquals(0, mailbox.size());
+    }
+
+    @Test
+    void batches_the_messages_buffered_between_polls() throws InterruptedException {
+        mailbox.add("[0,0]");
+        mailbox.add("[10,-1,\"x\"]");
+
+        assertEquals(Optional.of("[16,[0,0],[10,-1,\"x\"]]"), mailbox.poll(1_000));
+    }
+
+    @Test
+    void returns_nothing_when_no_message_arrives_within_the_hold_time() throws InterruptedException {
+        final long startedNanos = System.nanoTime();
+
+        assertEquals(Optional.empty(), mailbox.poll(50));
+        assertTrue(System.nanoTime() - startedNanos >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void wakes_a_waiting_poll_up_on_a_new_message() throws Exception {
+        final CompletableFuture<Optional<String>> poll = pollAsync(5_000);
+        awaitWaiting();
+
+        mailbox.add("[0,0]");
+
+        assertEquals(Optional.of("[0,0]"), poll.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void a_newer_poll_takes_over_from_a_waiting_one() throws Exception {
+        final CompletableFuture<Optional<String>> first = pollAsync(5_000);
+        awaitWaiting();
+
+        final CompletableFuture<Optional<String>> second = pollAsync(5_000);
+        assertEquals(Optional.empty(), first.get(2, TimeUnit.SECONDS));
+
+        mailbox.add("[0,0]");
+        assertEquals(Optional.of("[0,0]"), second.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void close_releases_a_waiting_poll_and_drops_messages() throws Exception {
+        final CompletableFuture<Optional<String>> poll = pollAsync(5_000);
+        awaitWaiting();
+
+        mailbox.close();
+        mailbox.add("[0,0]");
+
+        assertEquals(Optional.empty(), poll.get(2, TimeUnit.SECONDS));
+        assertEquals(0, mailbox.size());
+    }
+
+    private CompletableFuture<Optional<String>> pollAsync(final long holdMs) {
+        final CompletableFuture<Optional<String>> result = new CompletableFuture<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                result.complete(mailbox.poll(holdMs));
+            } catch (final InterruptedException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    private static void awaitWaiting() throws InterruptedException {
+        // the poll can't be observed waiting, give its thread time to reach the condition
+        Thread.sleep(100);
+    }
+}
@@ -0,0 +1,69 @@
+package rsp.http;
+
+import org.junit.jupiter.api.Test;
+import rsp.metrics.Metrics;
+import rsp.metrics.MetricsRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsEndpointTests {
+
+    @Test
+    void renders_registry_values_as_openmetrics_families() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.incrementCounter("rsp.test.events", 3);
+        registry.setGauge("rsp.test.depth", 7);
+        for (int i = 1; i <= 20; i++) {
+            registry.recordValue("rsp.test.size", i);
+        }
+        registry.recordTime("rsp.test.time", 2_000_000L);
+
+        final String text = new MetricsEndpoint("/metrics", registry, Map.of()).render();
+
+        assertTrue(text.contains("# TYPE rsp_test_events counter\nrsp_test_events_total 3\n"));
+        assertTrue(text.contains("# TYPE rsp_test_depth gauge\nrsp_test_depth 7\n"));
+        assertTrue(text.contains("# TYPE rsp_test_size summary\n"
+                                 + "rsp_test_size{quantile=\"0.5\"} 10\n"
+                                 + "rsp_test_size{quantile=\"0.9\"} 18\n"));
+        assertTrue(text.contains("rsp_test_size_sum 210\nrsp_test_size_count 20\n"));
+        assertTrue(text.contains("# TYPE rsp_test_time_seconds summary\n# UNIT rsp_test_time_seconds seconds\n"));
+        assertTrue(text.contains("rsp_test_time_seconds_sum 0.002\nrsp_test_time_seconds_count 1\n"));
+        assertTrue(text.endsWith("# EOF\n"));
+    }
+
+    @Test
+    void sampled_server_gauges_take_precedence_over_registry_gauges() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.setGauge("rsp.pages.count", 5);
+        final Map<String, LongSupplier> serverGauges = new LinkedHashMap<>();
+        serverGauges.put("rsp.pages.count", () -> 2);
+
+        final String text = new MetricsEndpoint("/metrics", registry, serverGauges).render();
+
+        assertTrue(text.contains("rsp_pages_count 2\n"));
+        assertFalse(text.contains("rsp_pages_count 5\n"));
+        assertEquals(text.indexOf("# TYPE rsp_pages_count"), text.lastIndexOf("# TYPE rsp_pages_count"));
+    }
+
+    @Test
+    void renders_jvm_statistics_without_a_registry() {
+        final String text = new MetricsEndpoint("/metrics", Metrics.noop(), Map.of()).render();
+
+        assertTrue(text.contains("# TYPE jvm_memory_heap_used_bytes gauge\n"));
+        assertTrue(text.contains("# TYPE jvm_gc_collections counter\n"));
+        assertTrue(text.contains("jvm_cpu_available_processors " + Runtime.getRuntime().availableProcessors() + "\n"));
+        assertTrue(text.endsWith("# EOF\n"));
+    }
+
+    @Test
+    void converts_names_to_the_metric_name_charset() {
+        assertEquals("rsp_session_dom_event_time", MetricsEndpoint.metricName("rsp.session.dom_event.time"));
+        assertEquals("_1a_b", MetricsEndpoint.metricName("1a-b"));
+    }
+}
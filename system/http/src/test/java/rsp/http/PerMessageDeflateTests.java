@@ -0,0 +1,167 @@
+package rsp.http;
+
+import org.junit.jupiter.api.Test;
+import rsp.metrics.MetricNames;
+import rsp.metrics.Metrics;
+import rsp.metrics.RecordingMetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerMessageDeflateTests {
+    private static final String MODIFY_DOM = "[4,[[2,\"1_2_3_1\",\"li\"],[5,\"1_2_3_1\",\"class\",\"item\"],"
+                                             + "[2,\"1_2_3_2\",\"li\"],[5,\"1_2_3_2\",\"class\",\"item\"],"
+                                             + "[2,\"1_2_3_3\",\"li\"],[5,\"1_2_3_3\",\"class\",\"item\"]]]";
+
+    @Test
+    void accepts_browser_offer_with_default_parameters() {
+        final PerMessageDeflate.Agreement agreement =
+                PerMessageDeflate.negotiate("permessage-deflate; client_max_window_bits",
+                                            WebSocketCompressionOptions.defaults()).orElseThrow();
+
+        assertEquals("permessage-deflate", agreement.responseHeaderValue());
+    }
+
+    @Test
+    void declines_offer_limiting_server_window_and_takes_next_one() {
+        final PerMessageDeflate.Agreement agreement =
+                PerMessageDeflate.negotiate("permessage-deflate; server_max_window_bits=10, "
+                                            + "permessage-deflate; server_no_context_takeover; client_max_window_bits=\"12\"",
+                                            WebSocketCompressionOptions.defaults()).orElseThrow();
+
+        assertEquals("permessage-deflate; server_no_context_takeover; client_max_window_bits=12",
+                     agreement.responseHeaderValue());
+    }
+
+    @Test
+    void declines_invalid_unknown_or_disabled_offers() {
+        final WebSocketCompressionOptions options = WebSocketCompressionOptions.defaults();
+
+        assertFalse(PerMessageDeflate.negotiate(null, options).isPresent());
+        assertFalse(PerMessageDeflate.negotiate("x-webkit-deflate-frame", options).isPresent());
+        assertFalse(PerMessageDeflate.negotiate("permessage-deflate; client_max_window_bits=7", options).isPresent());
+        assertFalse(PerMessageDeflate.negotiate("permessage-deflate; client_max_window_bits=010", options).isPresent());
+        assertFalse(PerMessageDeflate.negotiate("permessage-deflate; server_no_context_takeover=1", options).isPresent());
+        assertFalse(PerMessageDeflate.negotiate("permessage-deflate; server_no_context_takeover; server_no_context_takeover",
+                                                options).isPresent());
+        assertFalse(PerMessageDeflate.negotiate("permessage-deflate; unknown", options).isPresent());
+        assertFalse(PerMessageDeflate.negotiate("permessage-deflate", WebSocketCompressionOptions.disabled()).isPresent());
+    }
+
+    @Test
+    void applies_configured_window_bits_and_context_takeover() {
+        final WebSocketCompressionOptions options = WebSocketCompressionOptions.defaults()
+                .withContextTakeover(false)
+                .withClientMaxWindowBits(10);
+
+        assertEquals("permessage-deflate; server_no_context_takeover; client_no_context_takeover; client_max_window_bits=10",
+                     PerMessageDeflate.negotiate("permessage-deflate; client_max_window_bits", options)
+                             .orElseThrow()
+                             .responseHeaderValue());
+        assertEquals("permessage-deflate; server_no_context_takeover; client_no_context_takeover",
+                     PerMessageDeflate.negotiate("permessage-deflate", options)
+                             .orElseThrow()
+                             .responseHeaderValue());
+    }
+
+    @Test
+    void context_takeover_shrinks_repeated_messages() throws Exception {
+        final PerMessageDeflate withTakeover = deflate(WebSocketCompressionOptions.defaults(), Metrics.noop());
+        final PerMessageDeflate withoutTakeover = deflate(WebSocketCompressionOptions.defaults().withContextTakeover(false),
+                                                          Metrics.noop());
+        final byte[] message = MODIFY_DOM.getBytes(StandardCharsets.UTF_8);
+        final Inflater client = new Inflater(true);
+
+        final byte[] first = withTakeover.compress(message);
+        final byte[] second = withTakeover.compress(message);
+        final byte[] firstWithoutTakeover = withoutTakeover.compress(message);
+        final byte[] secondWithoutTakeover = withoutTakeover.compress(message);
+
+        assertEquals(MODIFY_DOM, inflate(client, first));
+        assertEquals(MODIFY_DOM, inflate(client, second));
+        assertTrue(second.length < first.length / 4, "second message should refer back to the first one");
+        assertArrayEquals(firstWithoutTakeover, secondWithoutTakeover);
+        client.end();
+        withTakeover.close();
+        withoutTakeover.close();
+    }
+
+    @Test
+    void leaves_messages_below_threshold_uncompressed() {
+        final PerMessageDeflate deflate = deflate(WebSocketCompressionOptions.defaults().withThresholdBytes(100),
+                                                  Metrics.noop());
+
+        assertFalse(deflate.shouldCompress(0));
+        assertFalse(deflate.shouldCompress(99));
+        assertTrue(deflate.shouldCompress(100));
+        deflate.close();
+        assertFalse(deflate.shouldCompress(100));
+    }
+
+    @Test
+    void inflates_client_messages_and_enforces_limit() throws Exception {
+        final PerMessageDeflate deflate = deflate(WebSocketCompressionOptions.defaults(), Metrics.noop());
+        final Deflater client = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final byte[] message = MODIFY_DOM.getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(message, deflate.decompress(clientCompress(client, message), 1024));
+        assertArrayEquals(message, deflate.decompress(clientCompress(client, message), 1024));
+        final WebSocketProtocolException ex =
+                assertThrows(WebSocketProtocolException.class,
+                             () -> deflate.decompress(clientCompress(client, message), message.length - 1));
+        assertEquals(WebSocketFrame.CLOSE_MESSAGE_TOO_BIG, ex.closeCode());
+        assertEquals(WebSocketFrame.CLOSE_INVALID_PAYLOAD,
+                     assertThrows(WebSocketProtocolException.class,
+                                  () -> deflate(WebSocketCompressionOptions.defaults(), Metrics.noop())
+                                          .decompress(new byte[] {(byte) 0xFF, (byte) 0xFF}, 1024))
+                             .closeCode());
+        client.end();
+        deflate.close();
+    }
+
+    @Test
+    void reports_compression_ratio_counters() {
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final PerMessageDeflate deflate = deflate(WebSocketCompressionOptions.defaults(), metrics);
+        final byte[] message = MODIFY_DOM.getBytes(StandardCharsets.UTF_8);
+
+        final int compressed = deflate.compress(message).length + deflate.compress(message).length;
+
+        assertEquals(1, metrics.counter(MetricNames.WEBSOCKET_DEFLATE_NEGOTIATED));
+        assertEquals(2, metrics.counter(MetricNames.WEBSOCKET_DEFLATE_MESSAGES));
+        assertEquals(2L * message.length, metrics.counter(MetricNames.WEBSOCKET_DEFLATE_INPUT_BYTES));
+        assertEquals(compressed, metrics.counter(MetricNames.WEBSOCKET_DEFLATE_OUTPUT_BYTES));
+        deflate.close();
+    }
+
+    private static PerMessageDeflate deflate(final WebSocketCompressionOptions options, final Metrics metrics) {
+        return new PerMessageDeflate(PerMessageDeflate.negotiate("permessage-deflate", options).orElseThrow(),
+                                     options,
+                                     metrics);
+    }
+
+    private static String inflate(final Inflater inflater, final byte[] payload) throws Exception {
+        final byte[] input = Arrays.copyOf(payload, payload.length + 4);
+        input[payload.length + 2] = (byte) 0xFF;
+        input[payload.length + 3] = (byte) 0xFF;
+        inflater.setInput(input);
+        final byte[] output = new byte[4096];
+        final int length = inflater.inflate(output);
+        return new String(output, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] clientCompress(final Deflater deflater, final byte[] message) {
+        deflater.setInput(message);
+        final byte[] output = new byte[message.length + 64];
+        final int length = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+        return Arrays.copyOf(output, length - 4);
+    }
+}
@@ -0,0 +1,204 @@
+package rsp.http;
+
+import org.junit.jupiter.api.Test;
+import rsp.server.Path;
+import rsp.server.http.Header;
+import rsp.server.http.HttpMethod;
+import rsp.server.http.HttpRequest;
+import rsp.server.http.HttpResponse;
+import rsp.server.http.Query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCompressionTests {
+    private static final String HTML = "<html><body>" + "<p>row</p>".repeat(500) + "</body></html>";
+
+    private final ResponseCompression compression = new ResponseCompression(HttpCompressionOptions.defaults());
+
+    @Test
+    void compresses_an_accepted_html_body_with_gzip() throws IOException {
+        final HttpResponse response = compression.apply(request("gzip, deflate, br"),
+                                                        response("text/html; charset=utf-8", HTML));
+
+        assertEquals("gzip", header(response, "Content-Encoding"));
+        assertEquals("Accept-Encoding", header(response, "Vary"));
+        assertNull(header(response, "Content-Length"));
+        final byte[] compressed = body(response);
+        assertTrue(compressed.length < HTML.length() / 10);
+        assertEquals(HTML, new String(new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes(),
+                                      StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void compresses_with_deflate_when_gzip_is_not_accepted() throws IOException {
+        final HttpResponse response = compression.apply(request("gzip;q=0, deflate"),
+                                                        response("application/json", HTML));
+
+        assertEquals("deflate", header(response, "Content-Encoding"));
+        assertEquals(HTML, new String(new InflaterInputStream(new ByteArrayInputStream(body(response))).readAllBytes(),
+                                      StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void sends_a_body_shorter_than_the_minimum_size_as_is() throws IOException {
+        final HttpResponse response = compression.apply(request("gzip"), response("text/html", "<p>short</p>"));
+
+        assertNull(header(response, "Content-Encoding"));
+        assertEquals("Accept-Encoding", header(response, "Vary"));
+        assertEquals("<p>short</p>", new String(body(response), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void sends_an_unlisted_type_or_an_encoded_body_as_is() {
+        final HttpResponse image = response("image/png", HTML);
+        final HttpResponse encoded = new HttpResponse(200,
+                                                      List.of(new Header("Content-Type", "text/css"),
+                                                              new Header("Content-Encoding", "br")),
+                                                      HTML);
+
+        assertSame(image, compression.apply(request("gzip"), image));
+        assertSame(encoded, compression.apply(request("gzip"), encoded));
+    }
+
+    @Test
+    void varies_a_compressible_response_by_accept_encoding_without_compressing_it_for_other_clients() throws IOException {
+        final HttpResponse response = compression.apply(request(null), response("text/html", HTML));
+
+        assertNull(header(response, "Content-Encoding"));
+        assertEquals("Accept-Encoding", header(response, "Vary"));
+        assertEquals(HTML, new String(body(response), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void weakens_the_entity_tag_of_a_compressed_response() {
+        final HttpResponse response = compression.apply(request("gzip"),
+                                                        new HttpResponse(200,
+                                                                         List.of(new Header("Content-Type", "text/css"),
+                                                                                 new Header("ETag", "\"abc\""),
+                                                                                 new Header("Content-Length", "5000")),
+                                                                         HTML));
+
+        assertEquals("W/\"abc\"", header(response, "ETag"));
+    }
+
+    @Test
+    void disables_ranges_of_a_compressed_response() {
+        final List<Header> headers = List.of(new Header("Content-Type", "text/css"),
+                                             new Header("Accept-Ranges", "bytes"),
+                                             new Header("Content-Length", "5000"));
+
+        final HttpResponse compressed = compression.apply(request("gzip"), new HttpResponse(200, headers, HTML));
+        final HttpResponse identity = compression.apply(request(null), new HttpResponse(200, headers, HTML));
+
+        assertEquals("none", header(compressed, "Accept-Ranges"));
+        assertEquals("bytes", header(identity, "Accept-Ranges"));
+    }
+
+    @Test
+    void varies_a_not_modified_response_of_a_compressible_type_by_accept_encoding() {
+        final List<Header> validators = List.of(new Header("ETag", "\"abc\""));
+        final HttpResponse stylesheet = compression.apply(request("gzip", "/res/site.css"),
+                                                          new HttpResponse(304, validators, ""));
+        final HttpResponse image = compression.apply(request("gzip", "/res/logo.png"),
+                                                     new HttpResponse(304, validators, ""));
+
+        assertEquals(304, stylesheet.status);
+        assertEquals("Accept-Encoding", header(stylesheet, "Vary"));
+        assertNull(header(stylesheet, "Content-Encoding"));
+        assertNull(header(image, "Vary"));
+    }
+
+    @Test
+    void compresses_a_streamed_body_shorter_than_the_minimum_size() throws IOException {
+        final HttpResponse response = compression.apply(request("gzip"),
+                                                        new HttpResponse(200,
+                                                                         List.of(new Header("Content-Type", "text/html")),
+                                                                         output -> output.write("<p>short</p>".getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals("gzip", header(response, "Content-Encoding"));
+        assertEquals("<p>short</p>", new String(new GZIPInputStream(new ByteArrayInputStream(body(response))).readAllBytes(),
+                                                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void flushes_a_streamed_body_as_it_is_compressed() throws IOException {
+        final List<Integer> flushedSizes = new ArrayList<>();
+        final ByteArrayOutputStream connection = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushedSizes.add(size());
+            }
+        };
+        final HttpResponse response = compression.apply(request("gzip"),
+                                                        new HttpResponse(200,
+                                                                         List.of(new Header("content-type", "text/html")),
+                                                                         output -> {
+                                                                             output.write("<html><head></head>".getBytes(StandardCharsets.UTF_8));
+                                                                             output.flush();
+                                                                             output.write(HTML.getBytes(StandardCharsets.UTF_8));
+                                                                         }));
+
+        response.bodyWriter.writeTo(connection);
+
+        assertEquals("gzip", header(response, "Content-Encoding"));
+        assertTrue(flushedSizes.getFirst() > 10, "the head is sent on the writer's flush");
+        assertEquals("<html><head></head>" + HTML,
+                     new String(new GZIPInputStream(new ByteArrayInputStream(connection.toByteArray())).readAllBytes(),
+                                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void leaves_responses_as_is_when_disabled() {
+        final ResponseCompression disabled = new ResponseCompression(HttpCompressionOptions.disabled());
+        final HttpResponse response = response("text/html", HTML);
+
+        assertSame(response, disabled.apply(request("gzip"), response));
+    }
+
+    private static HttpRequest request(final String acceptEncoding) {
+        return request(acceptEncoding, "/page");
+    }
+
+    private static HttpRequest request(final String acceptEncoding, final String path) {
+        return new HttpRequest(HttpMethod.GET,
+                               URI.create("http://localhost" + path),
+                               "http://localhost" + path,
+                               Path.of(path),
+                               Query.EMPTY,
+                               acceptEncoding == null ? List.of() : List.of(new Header("Accept-Encoding", acceptEncoding)));
+    }
+
+    private static HttpResponse response(final String contentType, final String body) {
+        return new HttpResponse(200, List.of(new Header("Content-Type", contentType)), body);
+    }
+
+    private static String header(final HttpResponse response, final String name) {
+        return response.headers.stream()
+                .filter(h -> h.name().equalsIgnoreCase(name))
+                .map(Header::value)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static byte[] body(final HttpResponse response) throws IOException {
+        if (response.bodyWriter != null) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            response.bodyWriter.writeTo(output);
+            return output.toByteArray();
+        }
+        try (InputStream input = response.bodyStream) {
+            return input.readAllBytes();
+        }
+    }
+}
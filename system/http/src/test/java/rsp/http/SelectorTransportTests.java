@@ -0,0 +1,437 @@
+package rsp.http;
+
+import org.junit.jupiter.api.Test;
+import rsp.component.definitions.Component;
+import rsp.component.definitions.StatelessComponent;
+import rsp.component.definitions.StatelessComponent.Unit;
+import rsp.page.DefaultEventLoop;
+import rsp.page.QualifiedSessionId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.net.http.HttpResponse.BodyHandlers;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static rsp.dsl.Html.HeadType.PLAIN;
+import static rsp.dsl.Html.body;
+import static rsp.dsl.Html.h1;
+import static rsp.dsl.Html.head;
+import static rsp.dsl.Html.html;
+import static rsp.dsl.Html.title;
+
+class SelectorTransportTests {
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void serves_sequential_requests_over_one_persistent_connection() throws Exception {
+        final WebServer server = started(WebServerOptions.defaults());
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.setSoTimeout(3_000);
+            socket.getOutputStream().write(request("/first").getBytes(StandardCharsets.ISO_8859_1));
+            final RawResponse first = readResponse(socket.getInputStream());
+            socket.getOutputStream().write(request("/second").getBytes(StandardCharsets.ISO_8859_1));
+            final RawResponse second = readResponse(socket.getInputStream());
+
+            assertEquals(200, first.status());
+            assertTrue(first.body().contains("/first"));
+            assertEquals(200, second.status());
+            assertTrue(second.body().contains("/second"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void answers_pipelined_requests_in_order() throws Exception {
+        final WebServer server = started(WebServerOptions.defaults());
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.setSoTimeout(3_000);
+            socket.getOutputStream().write((request("/one") + request("/two") + request("/three"))
+                                                   .getBytes(StandardCharsets.ISO_8859_1));
+
+            assertTrue(readResponse(socket.getInputStream()).body().contains("/one"));
+            assertTrue(readResponse(socket.getInputStream()).body().contains("/two"));
+            assertTrue(readResponse(socket.getInputStream()).body().contains("/three"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void buffers_at_most_max_pipelined_requests_ahead_of_the_one_being_handled() throws Exception {
+        final int maxPipelinedRequests = 2;
+        final CountDownLatch handling = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<SelectorTransport.Connection> blocked = new CompletableFuture<>();
+        final SelectorTransport transport = new SelectorTransport(0,
+                WebServerOptions.defaults().withMaxPipelinedRequests(maxPipelinedRequests),
+                new SelectorTransport.Handler() {
+                    @Override
+                    public boolean handle(final SelectorTransport.Connection connection, final byte[] request) {
+                        try {
+                            if (blocked.complete(connection)) {
+                                handling.countDown();
+                                release.await();
+                            }
+                            connection.output().write('x');
+                            connection.output().flush();
+                            return true;
+                        } catch (final Exception ex) {
+                            return false;
+                        }
+                    }
+
+                    @Override
+                    public void reject(final SelectorTransport.Connection connection, final HttpProtocolException ex) {
+                    }
+                },
+                Executors.newVirtualThreadPerTaskExecutor());
+        final int port = transport.bind();
+        final Thread selector = Thread.ofPlatform().start(transport::run);
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(3_000);
+            final int sent = maxPipelinedRequests + 3;
+            socket.getOutputStream().write(request("/r").repeat(sent).getBytes(StandardCharsets.ISO_8859_1));
+            assertTrue(handling.await(3, TimeUnit.SECONDS));
+            final SelectorTransport.Connection connection = blocked.get();
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+            while (connection.bufferedRequests() < maxPipelinedRequests && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+
+            assertEquals(maxPipelinedRequests, connection.bufferedRequests());
+
+            release.countDown();
+            assertEquals("x".repeat(sent),
+                         new String(socket.getInputStream().readNBytes(sent), StandardCharsets.ISO_8859_1));
+        } finally {
+            release.countDown();
+            transport.close();
+            selector.join(3_000);
+        }
+    }
+
+    @Test
+    void streams_rendered_pages_with_chunked_transfer_coding() throws Exception {
+        final WebServer server = started(WebServerOptions.defaults().withStreamingRendering(true));
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.setSoTimeout(3_000);
+            socket.getOutputStream().write(request("/streamed").getBytes(StandardCharsets.ISO_8859_1));
+            final RawResponse first = readResponse(socket.getInputStream());
+            socket.getOutputStream().write(request("/next").getBytes(StandardCharsets.ISO_8859_1));
+            final RawResponse second = readResponse(socket.getInputStream());
+
+            assertEquals(200, first.status());
+            assertEquals("chunked", first.header("transfer-encoding"));
+            assertEquals("<!DOCTYPE html><html><head><title>Selector test</title></head>"
+                         + "<body><h1>/streamed</h1></body></html>", first.body());
+            assertTrue(second.body().contains("<h1>/next</h1>"));
+            assertEquals(2, server.pagesStorage.size());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void closes_connection_after_response_when_client_asks() throws Exception {
+        final WebServer server = started(WebServerOptions.defaults());
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.setSoTimeout(3_000);
+            socket.getOutputStream().write(("GET /bye HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                                                   .getBytes(StandardCharsets.ISO_8859_1));
+
+            final RawResponse response = readResponse(socket.getInputStream());
+
+            assertEquals("close", response.header("connection"));
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void closes_idle_persistent_connection_after_keep_alive_timeout() throws Exception {
+        final WebServer server = started(WebServerOptions.defaults().withKeepAliveTimeoutMs(200));
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.setSoTimeout(5_000);
+            socket.getOutputStream().write(request("/idle").getBytes(StandardCharsets.ISO_8859_1));
+            assertEquals(200, readResponse(socket.getInputStream()).status());
+
+            final long startedAt = System.nanoTime();
+            assertEquals(-1, socket.getInputStream().read());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) < 4_000);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void closes_connection_whose_client_stops_reading_and_fails_its_writer() throws Exception {
+        final CompletableFuture<Exception> writeFailure = new CompletableFuture<>();
+        final SelectorTransport transport = new SelectorTransport(0,
+                WebServerOptions.defaults().withKeepAliveTimeoutMs(200),
+                new SelectorTransport.Handler() {
+                    @Override
+                    public boolean handle(final SelectorTransport.Connection connection, final byte[] request) {
+                        final byte[] chunk = new byte[64 * 1024];
+                        try {
+                            // far more than the socket buffers and the outbound high watermark hold
+                            for (int i = 0; i < 1_024; i++) {
+                                connection.output().write(chunk);
+                            }
+                            connection.output().flush();
+                            writeFailure.complete(null);
+                            return true;
+                        } catch (final Exception ex) {
+                            writeFailure.complete(ex);
+                            return false;
+                        }
+                    }
+
+                    @Override
+                    public void reject(final SelectorTransport.Connection connection, final HttpProtocolException ex) {
+                    }
+                },
+                Executors.newVirtualThreadPerTaskExecutor());
+        final int port = transport.bind();
+        final Thread selector = Thread.ofPlatform().start(transport::run);
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setReceiveBufferSize(4 * 1024);
+            socket.getOutputStream().write(request("/large").getBytes(StandardCharsets.ISO_8859_1));
+
+            assertInstanceOf(IOException.class, writeFailure.get(5, TimeUnit.SECONDS));
+        } finally {
+            transport.close();
+            selector.join(3_000);
+        }
+    }
+
+    @Test
+    void rejects_oversized_request_headers_with_431() throws Exception {
+        final WebServer server = started(WebServerOptions.defaults());
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.setSoTimeout(3_000);
+            socket.getOutputStream().write(("GET / HTTP/1.1\r\nX-Large: " + "a".repeat(20_000) + "\r\n\r\n")
+                                                   .getBytes(StandardCharsets.ISO_8859_1));
+
+            assertEquals(431, readResponse(socket.getInputStream()).status());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void binds_live_page_session_over_websocket() throws Exception {
+        final WebServer server = started(WebServerOptions.defaults());
+        try {
+            client.send(java.net.http.HttpRequest.newBuilder(uri(server, "/live")).GET().build(), BodyHandlers.ofString());
+            final QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+            final CompletableFuture<String> firstText = new CompletableFuture<>();
+
+            final WebSocket webSocket = client.newWebSocketBuilder()
+                    .buildAsync(webSocketUri(server, sessionId), new FirstTextListener(firstText))
+                    .join();
+
+            assertEquals("[0,0]", firstText.get(2, TimeUnit.SECONDS));
+            assertTrue(server.pagesStorage.isEmpty());
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void websockets_do_not_consume_http_connection_permits() throws Exception {
+        final WebServer server = started(WebServerOptions.defaults().withConnectionLimit(1));
+        try (Socket socket = new Socket("localhost", server.port())) {
+            client.send(java.net.http.HttpRequest.newBuilder(uri(server, "/a")).GET().build(), BodyHandlers.ofString());
+            final QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+            writeHandshake(socket, server.port(), sessionId);
+            assertTrue(readHeaders(socket.getInputStream()).startsWith("HTTP/1.1 101 Switching Protocols"));
+            awaitActiveWebSockets(server, 1);
+
+            final HttpResponse<String> response = client.send(java.net.http.HttpRequest.newBuilder(uri(server, "/b"))
+                                                                      .timeout(java.time.Duration.ofSeconds(3))
+                                                                      .GET()
+                                                                      .build(),
+                                                              BodyHandlers.ofString());
+
+            assertEquals(200, response.statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void rejects_websocket_above_session_limit_with_503() throws Exception {
+        final WebServer server = started(WebServerOptions.defaults().withWebSocketLimit(1));
+        try (Socket first = new Socket("localhost", server.port());
+             Socket second = new Socket("localhost", server.port())) {
+            second.setSoTimeout(3_000);
+            client.send(java.net.http.HttpRequest.newBuilder(uri(server, "/a")).GET().build(), BodyHandlers.ofString());
+            client.send(java.net.http.HttpRequest.newBuilder(uri(server, "/b")).GET().build(), BodyHandlers.ofString());
+            final var sessions = server.pagesStorage.keySet().iterator();
+            writeHandshake(first, server.port(), sessions.next());
+            assertTrue(readHeaders(first.getInputStream()).startsWith("HTTP/1.1 101 Switching Protocols"));
+            awaitActiveWebSockets(server, 1);
+
+            writeHandshake(second, server.port(), sessions.next());
+
+            assertTrue(readHeaders(second.getInputStream()).startsWith("HTTP/1.1 503 Service Unavailable"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static WebServer started(final WebServerOptions options) {
+        final WebServer server = new WebServer(0,
+                                               request -> page(request.path.toString()),
+                                               Optional.empty(),
+                                               Optional.empty(),
+                                               options.withTransport(WebServerOptions.Transport.SELECTOR),
+                                               DefaultEventLoop::new);
+        server.start();
+        return server;
+    }
+
+    private static String request(final String path) {
+        return "GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+    }
+
+    private static URI uri(final WebServer server, final String path) {
+        return URI.create("http://localhost:" + server.port() + path);
+    }
+
+    private static URI webSocketUri(final WebServer server, final QualifiedSessionId sessionId) {
+        return URI.create("ws://localhost:" + server.port()
+                          + "/bridge/web-socket/" + sessionId.deviceId() + "/" + sessionId.sessionId());
+    }
+
+    private static void writeHandshake(final Socket socket,
+                                       final int port,
+                                       final QualifiedSessionId sessionId) throws Exception {
+        socket.getOutputStream().write(("GET /bridge/web-socket/" + sessionId.deviceId() + "/" + sessionId.sessionId()
+                                        + " HTTP/1.1\r\n"
+                                        + "Host: localhost:" + port + "\r\n"
+                                        + "Upgrade: websocket\r\n"
+                                        + "Connection: Upgrade\r\n"
+                                        + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                                        + "Sec-WebSocket-Version: 13\r\n"
+                                        + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        socket.getOutputStream().flush();
+    }
+
+    private static String readHeaders(final InputStream input) throws Exception {
+        final StringBuilder headers = new StringBuilder();
+        while (!headers.toString().endsWith("\r\n\r\n")) {
+            final int next = input.read();
+            if (next < 0) {
+                break;
+            }
+            headers.append((char) next);
+        }
+        return headers.toString();
+    }
+
+    private static RawResponse readResponse(final InputStream input) throws Exception {
+        final String headers = readHeaders(input);
+        final String[] lines = headers.split("\r\n");
+        final int status = Integer.parseInt(lines[0].split(" ")[1]);
+        final RawResponse response = new RawResponse(status, headers, "");
+        final String contentLength = response.header("content-length");
+        if (contentLength != null) {
+            return new RawResponse(status, headers,
+                                   new String(input.readNBytes(Integer.parseInt(contentLength)), StandardCharsets.UTF_8));
+        }
+        if ("chunked".equals(response.header("transfer-encoding"))) {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int size;
+            while ((size = Integer.parseInt(readLine(input), 16)) > 0) {
+                body.writeBytes(input.readNBytes(size));
+                readLine(input);
+            }
+            readLine(input);
+            return new RawResponse(status, headers, body.toString(StandardCharsets.UTF_8));
+        }
+        return new RawResponse(status, headers, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private static String readLine(final InputStream input) throws Exception {
+        final StringBuilder line = new StringBuilder();
+        int next;
+        while ((next = input.read()) != '\n' && next >= 0) {
+            if (next != '\r') {
+                line.append((char) next);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void awaitActiveWebSockets(final WebServer server,
+                                              final int expected) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (server.activeWebSocketCount() == expected) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        assertEquals(expected, server.activeWebSocketCount());
+    }
+
+    private static Component<?, ?> page(final String text) {
+        return new StatelessComponent((rsp.component.View<Unit>) _ -> html(head(PLAIN, title("Selector test")),
+                                                                           body(h1(text))));
+    }
+
+    private record RawResponse(int status, String headers, String body) {
+        String header(final String name) {
+            for (final String line : headers.split("\r\n")) {
+                final int separator = line.indexOf(':');
+                if (separator > 0 && line.substring(0, separator).toLowerCase(Locale.ROOT).equals(name)) {
+                    return line.substring(separator + 1).trim();
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class FirstTextListener implements WebSocket.Listener {
+        private final CompletableFuture<String> firstText;
+
+        private FirstTextListener(final CompletableFuture<String> firstText) {
+            this.firstText = firstText;
+        }
+
+        @Override
+        public void onOpen(final WebSocket webSocket) {
+            webSocket.request(10);
+        }
+
+        @Override
+        public CompletionStage<?> onText(final WebSocket webSocket,
+                                         final CharSequence data,
+                                         final boolean last) {
+            firstText.complete(data.toString());
+            webSocket.request(1);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
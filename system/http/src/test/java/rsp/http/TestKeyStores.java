@@ -0,0 +1,71 @@
+package rsp.http;
+
+import rsp.server.SslConfiguration;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Self-signed keystores generated with the JDK's {@code keytool} at test time, so no key material is checked in.
+ */
+final class TestKeyStores {
+    static final String PASSWORD = "changeit";
+
+    private TestKeyStores() {
+    }
+
+    /**
+     * Generates a PKCS#12 keystore with an EC key and a self-signed certificate valid for {@code localhost}.
+     *
+     * @param file the keystore file to write, replaced if it exists
+     * @param commonName the certificate subject's CN
+     */
+    static SslConfiguration generate(final Path file, final String commonName) throws IOException, InterruptedException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        final Process keytool = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                                                   "-genkeypair",
+                                                   "-alias", "server",
+                                                   "-keyalg", "EC",
+                                                   "-groupname", "secp256r1",
+                                                   "-dname", "CN=" + commonName,
+                                                   "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                                                   "-validity", "1",
+                                                   "-storetype", "PKCS12",
+                                                   "-keystore", temporary.toString(),
+                                                   "-storepass", PASSWORD,
+                                                   "-keypass", PASSWORD)
+                .redirectErrorStream(true)
+                .start();
+        final String output = new String(keytool.getInputStream().readAllBytes());
+        if (!keytool.waitFor(30, TimeUnit.SECONDS) || keytool.exitValue() != 0) {
+            throw new IOException("keytool failed: " + output);
+        }
+        // moved into place in one step, as a certificate renewal would be
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new SslConfiguration(file.toString(), PASSWORD);
+    }
+
+    /**
+     * Creates a client context which trusts the certificates of the given keystores.
+     */
+    static SSLContext trusting(final SslConfiguration... configurations) throws Exception {
+        final KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        for (int i = 0; i < configurations.length; i++) {
+            final KeyStore keyStore = KeyStore.getInstance(Path.of(configurations[i].keyStorePath()).toFile(),
+                                                           configurations[i].keyStorePassword().toCharArray());
+            trustStore.setCertificateEntry("server-" + i, keyStore.getCertificate("server"));
+        }
+        final TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init(trustStore);
+        final SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, factory.getTrustManagers(), null);
+        return context;
+    }
+}
@@ -0,0 +1,169 @@
+package rsp.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rsp.page.DefaultEventLoop;
+import rsp.server.SslConfiguration;
+import rsp.server.StaticResources;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares connections to the server over TLS with plaintext ones: the rate of connections which handshake
+ * and get a small static resource, and the rate of 1 KiB WebSocket text messages sent on an open connection.
+ * <p>
+ * The blocking transport serves one request per connection, so {@code tls_resumed} is the rate of a returning
+ * browser with an abbreviated handshake and {@code tls_full} the rate of new clients. Client and server share
+ * the machine, so the handshake rate includes the client's side of the cryptography.
+ * Run with {@code -Dbench.run=true -Dbench.include=TlsBenchmark}, see {@link BenchmarksManualTest}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TlsBenchmark {
+
+    private static final byte[] REQUEST = ("GET /res/small.txt HTTP/1.1\r\n"
+                                           + "Host: localhost\r\n"
+                                           + "Connection: close\r\n"
+                                           + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"plaintext", "tls_resumed", "tls_full"})
+        public String mode;
+
+        private Path directory;
+        private WebServer server;
+        private SSLContext client;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            directory = Files.createTempDirectory("rsp-tls-benchmark");
+            Files.writeString(directory.resolve("small.txt"), "x".repeat(512));
+            final Optional<SslConfiguration> ssl = "plaintext".equals(mode)
+                    ? Optional.empty()
+                    : Optional.of(TestKeyStores.generate(directory.resolve("server.p12"), "localhost"));
+            if (ssl.isPresent()) {
+                client = TestKeyStores.trusting(ssl.get());
+            }
+            server = new WebServer(0,
+                                   _ -> { throw new IllegalStateException("Only static resources are requested"); },
+                                   Optional.of(new StaticResources(directory.toFile(), "/res/")),
+                                   ssl,
+                                   WebServerOptions.defaults().withConnectionLimit(256),
+                                   DefaultEventLoop::new);
+            server.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            server.stop();
+            deleteDirectory(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class WebSocketPair {
+        @Param({"plaintext", "tls"})
+        public String transport;
+
+        private Path directory;
+        private ServerSocket listener;
+        private Socket serverSide;
+        private Socket clientSide;
+        private WebSocketSession session;
+        private Thread reader;
+        private final String message = "m".repeat(1024);
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            directory = Files.createTempDirectory("rsp-tls-benchmark");
+            if ("tls".equals(transport)) {
+                final SslConfiguration ssl = TestKeyStores.generate(directory.resolve("server.p12"), "localhost");
+                listener = TlsContext.create(ssl, TlsOptions.defaults()).createServerSocket();
+                listener.bind(new InetSocketAddress("localhost", 0));
+                clientSide = TestKeyStores.trusting(ssl).getSocketFactory().createSocket("localhost", listener.getLocalPort());
+            } else {
+                listener = new ServerSocket(0);
+                clientSide = new Socket("localhost", listener.getLocalPort());
+            }
+            serverSide = listener.accept();
+            session = new WebSocketSession(serverSide);
+            final InputStream input = clientSide.getInputStream();
+            reader = Thread.ofPlatform().daemon().start(() -> {
+                final byte[] buffer = new byte[16 * 1024];
+                try {
+                    while (input.read(buffer) >= 0) {
+                        // drains the frames, as a browser would
+                    }
+                } catch (final IOException ignored) {
+                    // closed at tear down
+                }
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            clientSide.close();
+            serverSide.close();
+            listener.close();
+            reader.join();
+            deleteDirectory(directory);
+        }
+    }
+
+    @Benchmark
+    public int connectAndGetStaticResource(final Server server) throws IOException {
+        try (Socket socket = server.client == null
+                ? new Socket("localhost", server.server.port())
+                : server.client.getSocketFactory().createSocket("localhost", server.server.port())) {
+            final OutputStream output = socket.getOutputStream();
+            output.write(REQUEST);
+            output.flush();
+            final int read = socket.getInputStream().readAllBytes().length;
+            if ("tls_full".equals(server.mode)) {
+                ((SSLSocket) socket).getSession().invalidate();
+            }
+            return read;
+        }
+    }
+
+    @Benchmark
+    public void sendWebSocketTextMessage(final WebSocketPair pair) throws IOException {
+        pair.session.sendText(pair.message);
+    }
+
+    private static void deleteDirectory(final Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (final Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,210 @@
+package rsp.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rsp.server.SslConfiguration;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TlsContextTests {
+
+    @TempDir
+    private static Path generatedDir;
+
+    @TempDir
+    private Path tempDir;
+
+    private static SslConfiguration generated;
+    private static SslConfiguration generatedRenewal;
+
+    private SslConfiguration keyStore;
+    private Path renewedKeyStore;
+    private SSLContext client;
+    private SSLContext otherClient;
+    private SSLServerSocket serverSocket;
+
+    @BeforeAll
+    static void generateKeyStores() throws Exception {
+        generated = TestKeyStores.generate(generatedDir.resolve("server.p12"), "first");
+        generatedRenewal = TestKeyStores.generate(generatedDir.resolve("renewed.p12"), "renewed");
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // copied, as tests replace the keystore file
+        keyStore = copy(generated, tempDir.resolve("server.p12"));
+        final SslConfiguration renewed = copy(generatedRenewal, tempDir.resolve("renewed.p12"));
+        renewedKeyStore = Path.of(renewed.keyStorePath());
+        client = TestKeyStores.trusting(keyStore, renewed);
+        // a client without cached sessions, which can't resume the first client's
+        otherClient = TestKeyStores.trusting(keyStore, renewed);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    @Test
+    void agrees_to_the_preferred_application_protocol_the_client_offers() throws Exception {
+        final TlsContext tlsContext = TlsContext.create(keyStore, TlsOptions.defaults());
+
+        final Handshake handshake = handshake(tlsContext, client, "h2", "http/1.1");
+
+        assertEquals("http/1.1", handshake.applicationProtocol());
+    }
+
+    @Test
+    void resumes_a_session_on_reconnect() throws Exception {
+        final TlsContext tlsContext = TlsContext.create(keyStore, TlsOptions.defaults().withProtocols(List.of("TLSv1.2")));
+
+        final Handshake initial = handshake(tlsContext, client);
+        final Handshake resumed = handshake(tlsContext, client);
+        final Handshake full = handshake(tlsContext, otherClient);
+
+        assertArrayEquals(initial.session().getId(), resumed.session().getId());
+        assertFalse(Arrays.equals(initial.session().getId(), full.session().getId()));
+        assertEquals(TlsOptions.DEFAULT_SESSION_TIMEOUT_SECONDS, tlsContext.sessions().getSessionTimeout());
+    }
+
+    @Test
+    void reloads_a_changed_keystore_once_the_reload_interval_has_passed() throws Exception {
+        final TlsContext tlsContext = TlsContext.create(keyStore, TlsOptions.defaults());
+        Files.copy(renewedKeyStore, Path.of(keyStore.keyStorePath()), StandardCopyOption.REPLACE_EXISTING);
+
+        tlsContext.reloadIfChanged(System.currentTimeMillis());
+        assertEquals("CN=first", subject(handshake(tlsContext, client)));
+
+        tlsContext.reloadIfChanged(System.currentTimeMillis() + TlsOptions.DEFAULT_KEY_STORE_RELOAD_INTERVAL_MS);
+        assertEquals("CN=renewed", subject(handshake(tlsContext, otherClient)));
+    }
+
+    @Test
+    void accepts_http_1_1_or_no_application_protocols() {
+        assertEquals(List.of(), TlsOptions.defaults().withApplicationProtocols(List.of()).applicationProtocols());
+        assertEquals(List.of("http/1.1"),
+                     TlsOptions.defaults().withApplicationProtocols(List.of("http/1.1")).applicationProtocols());
+    }
+
+    @Test
+    void checks_the_keystore_for_changes_on_a_thread_of_its_own() throws Exception {
+        final TlsContext tlsContext = TlsContext.create(keyStore, TlsOptions.defaults().withKeyStoreReloadIntervalMs(50));
+        // the file times may not change within the same filesystem tick
+        Files.copy(renewedKeyStore, Path.of(keyStore.keyStorePath()), StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(Path.of(keyStore.keyStorePath()),
+                                  FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        tlsContext.startReloadChecks();
+        try {
+            final long deadline = System.currentTimeMillis() + 5_000;
+            String subject = subject(handshake(tlsContext, client));
+            while (!"CN=renewed".equals(subject) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+                subject = subject(handshake(tlsContext, otherClient));
+            }
+            assertEquals("CN=renewed", subject);
+        } finally {
+            tlsContext.stopReloadChecks();
+        }
+    }
+
+    @Test
+    void completes_handshakes_with_the_key_material_of_the_chosen_alias() throws Exception {
+        final TlsContext tlsContext = TlsContext.create(keyStore, TlsOptions.defaults());
+        final X509ExtendedKeyManager keyManager = tlsContext.keyManager();
+        final String alias = keyManager.chooseServerAlias("EC", null, null);
+        Files.copy(renewedKeyStore, Path.of(keyStore.keyStorePath()), StandardCopyOption.REPLACE_EXISTING);
+
+        tlsContext.reload();
+
+        assertEquals("CN=first", keyManager.getCertificateChain(alias)[0].getSubjectX500Principal().getName());
+        assertNotNull(keyManager.getPrivateKey(alias));
+        assertEquals("CN=renewed", subject(handshake(tlsContext, otherClient)));
+    }
+
+    @Test
+    void keeps_the_key_material_when_a_reload_fails() throws Exception {
+        final TlsContext tlsContext = TlsContext.create(keyStore, TlsOptions.defaults());
+        Files.writeString(Path.of(keyStore.keyStorePath()), "truncated");
+
+        assertThrows(IOException.class, tlsContext::reload);
+
+        assertEquals("CN=first", subject(handshake(tlsContext, client)));
+    }
+
+    @Test
+    void rejects_invalid_options() {
+        assertThrows(IllegalArgumentException.class, () -> TlsOptions.defaults().withProtocols(List.of()));
+        assertThrows(IllegalArgumentException.class,
+                     () -> TlsOptions.defaults().withApplicationProtocols(List.of("h2", "http/1.1")));
+        assertThrows(IllegalArgumentException.class,
+                     () -> TlsOptions.defaults().withApplicationProtocols(List.of("spdy/3")));
+        assertThrows(IllegalArgumentException.class, () -> TlsOptions.defaults().withSessionCacheSize(-1));
+        assertThrows(IllegalArgumentException.class, () -> TlsOptions.defaults().withSessionTimeoutSeconds(0));
+        assertThrows(IllegalArgumentException.class, () -> TlsOptions.defaults().withKeyStoreReloadIntervalMs(-1));
+    }
+
+    private Handshake handshake(final TlsContext tlsContext,
+                                final SSLContext clientContext,
+                                final String... applicationProtocols) throws Exception {
+        if (serverSocket == null) {
+            serverSocket = tlsContext.createServerSocket();
+            serverSocket.bind(new InetSocketAddress("localhost", 0));
+        }
+        final CompletableFuture<Void> accepted = CompletableFuture.runAsync(() -> {
+            try (SSLSocket socket = (SSLSocket) serverSocket.accept()) {
+                socket.startHandshake();
+                // waits for the client's close, so the session is complete on both sides
+                socket.getInputStream().read();
+            } catch (final IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        try (SSLSocket socket = (SSLSocket) clientContext.getSocketFactory()
+                                                         .createSocket("localhost", serverSocket.getLocalPort())) {
+            final SSLParameters parameters = socket.getSSLParameters();
+            parameters.setApplicationProtocols(applicationProtocols);
+            socket.setSSLParameters(parameters);
+            socket.startHandshake();
+            final Handshake handshake = new Handshake(socket.getSession(), socket.getApplicationProtocol());
+            socket.close();
+            accepted.get(5, TimeUnit.SECONDS);
+            return handshake;
+        }
+    }
+
+    private static SslConfiguration copy(final SslConfiguration configuration, final Path file) throws IOException {
+        Files.copy(Path.of(configuration.keyStorePath()), file);
+        return new SslConfiguration(file.toString(), configuration.keyStorePassword());
+    }
+
+    private static String subject(final Handshake handshake) throws Exception {
+        return ((X509Certificate) handshake.session().getPeerCertificates()[0]).getSubjectX500Principal().getName();
+    }
+
+    private record Handshake(SSLSession session, String applicationProtocol) {
+    }
+}
@@ -5,9 +5,19 @@ import org.junit.jupiter.api.io.TempDir;
 import rsp.component.definitions.Component;
 import rsp.component.definitions.StatelessComponent;
 import rsp.component.definitions.StatelessComponent.Unit;
+import rsp.metrics.MetricNames;
+import rsp.metrics.MetricsRegistry;
+import rsp.metrics.RecordingMetrics;
+import rsp.page.DefaultEventLoop;
+import rsp.page.RenderedPagesOptions;
+import rsp.page.SessionResumeOptions;
+import rsp.server.SslConfiguration;
 import rsp.server.StaticResources;
 import rsp.server.http.HttpRequest;
+import rsp.server.protocol.BinaryRemotePageMessageEncoder;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
 import java.net.URI;
 import java.net.Socket;
 import java.net.http.WebSocket;
@@ -17,13 +27,20 @@ import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.Inflater;
 
 import static java.net.http.HttpRequest.BodyPublishers;
 import static java.net.http.HttpResponse.BodyHandlers;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -97,6 +114,89 @@ class WebServerTests {
         }
     }
 
+    @Test
+    void revalidates_static_resources_with_entity_tags() throws Exception {
+        Files.writeString(tempDir.resolve("app.js"), "console.log('app');");
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("not static"),
+                                                       new StaticResources(tempDir.toFile(), "/res/")));
+        try {
+            final HttpResponse<String> first = client.send(get(server, "/res/app.js"), BodyHandlers.ofString());
+            final String etag = first.headers().firstValue("etag").orElseThrow();
+            assertEquals("no-cache", first.headers().firstValue("cache-control").orElse(null));
+
+            final java.net.http.HttpRequest conditional = java.net.http.HttpRequest.newBuilder(uri(server, "/res/app.js"))
+                    .header("If-None-Match", etag)
+                    .build();
+            final HttpResponse<String> revalidated = client.send(conditional, BodyHandlers.ofString());
+            assertEquals(304, revalidated.statusCode());
+            assertEquals("", revalidated.body());
+
+            final java.net.http.HttpRequest range = java.net.http.HttpRequest.newBuilder(uri(server, "/res/app.js"))
+                    .header("Range", "bytes=0-6")
+                    .build();
+            final HttpResponse<String> partial = client.send(range, BodyHandlers.ofString());
+            assertEquals(206, partial.statusCode());
+            assertEquals("console", partial.body());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void serves_a_precompressed_sibling_to_a_client_which_accepts_it() throws Exception {
+        Files.writeString(tempDir.resolve("app.js"), "plain");
+        Files.writeString(tempDir.resolve("app.js.gz"), "gzipped");
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("not static"),
+                                                       new StaticResources(tempDir.toFile(), "/res/")));
+        try {
+            final java.net.http.HttpRequest gzip = java.net.http.HttpRequest.newBuilder(uri(server, "/res/app.js"))
+                    .header("Accept-Encoding", "gzip, deflate")
+                    .build();
+            final HttpResponse<String> compressed = client.send(gzip, BodyHandlers.ofString());
+            assertEquals("gzipped", compressed.body());
+            assertEquals("gzip", compressed.headers().firstValue("content-encoding").orElse(null));
+            assertEquals("Accept-Encoding", compressed.headers().firstValue("vary").orElse(null));
+            assertEquals("application/javascript", compressed.headers().firstValue("content-type").orElse(null));
+
+            final HttpResponse<String> plain = client.send(get(server, "/res/app.js"), BodyHandlers.ofString());
+            assertEquals("plain", plain.body());
+            assertTrue(plain.headers().firstValue("content-encoding").isEmpty());
+            assertFalse(plain.headers().firstValue("etag").equals(compressed.headers().firstValue("etag")));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void caches_the_fingerprinted_js_client_bundle_for_good() throws Exception {
+        final WebServer server = started(new WebServer(0, _ -> new StatelessComponent(
+                (rsp.component.View<Unit>) _ -> html(head(title("live")), body(h1("bundle"))))));
+        try {
+            final String html = client.send(get(server, "/bundle"), BodyHandlers.ofString()).body();
+            final java.util.regex.Matcher src = java.util.regex.Pattern
+                    .compile("src=\"(/static/js-client\\.min\\.js\\?v=[A-Za-z0-9_-]+)\"")
+                    .matcher(html);
+            assertTrue(src.find(), html);
+
+            final HttpResponse<String> fingerprinted = client.send(get(server, src.group(1)), BodyHandlers.ofString());
+            assertEquals(200, fingerprinted.statusCode());
+            assertEquals("public, max-age=31536000, immutable",
+                         fingerprinted.headers().firstValue("cache-control").orElse(null));
+
+            final java.net.http.HttpRequest conditional =
+                    java.net.http.HttpRequest.newBuilder(uri(server, "/static/js-client.min.js"))
+                    .header("If-None-Match", fingerprinted.headers().firstValue("etag").orElseThrow())
+                    .build();
+            final HttpResponse<String> revalidated = client.send(conditional, BodyHandlers.ofString());
+            assertEquals(304, revalidated.statusCode());
+            assertEquals("no-cache", revalidated.headers().firstValue("cache-control").orElse(null));
+        } finally {
+            server.stop();
+        }
+    }
+
     @Test
     void serves_js_client_bundle_from_runtime_dependency() throws Exception {
         final WebServer server = started(new WebServer(0, _ -> page("bundle")));
@@ -112,6 +212,25 @@ class WebServerTests {
         }
     }
 
+    @Test
+    void compresses_a_rendered_page_for_a_client_which_accepts_gzip() throws Exception {
+        final WebServer server = started(new WebServer(0, _ -> page("compressed ".repeat(200))));
+        try {
+            final java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder(uri(server, "/compressed"))
+                    .header("Accept-Encoding", "gzip")
+                    .build();
+            final HttpResponse<byte[]> response = client.send(request, BodyHandlers.ofByteArray());
+
+            assertEquals(200, response.statusCode());
+            assertEquals("gzip", response.headers().firstValue("content-encoding").orElse(null));
+            final String html = new String(new java.util.zip.GZIPInputStream(
+                    new java.io.ByteArrayInputStream(response.body())).readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(html.contains("compressed compressed"));
+        } finally {
+            server.stop();
+        }
+    }
+
     @Test
     void head_request_omits_response_body() throws Exception {
         final WebServer server = started(new WebServer(0, _ -> page("head body")));
@@ -285,6 +404,127 @@ class WebServerTests {
         }
     }
 
+    @Test
+    void evicts_the_oldest_rendered_page_beyond_the_store_limit() throws Exception {
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withRenderedPages(RenderedPagesOptions.defaults().withMaxPages(1))
+                .withMetrics(metrics);
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("bounded"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try {
+            client.send(get(server, "/first"), BodyHandlers.ofString());
+            final rsp.page.QualifiedSessionId first = server.pagesStorage.keySet().iterator().next();
+            client.send(get(server, "/second"), BodyHandlers.ofString());
+
+            assertEquals(1, server.pagesStorage.size());
+            assertFalse(server.pagesStorage.keySet().contains(first));
+            assertEquals(1, metrics.counter(MetricNames.RENDERED_PAGES_EVICTED_SIZE));
+            assertEquals(1, metrics.gauge(MetricNames.RENDERED_PAGES_COUNT));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void serves_metrics_in_openmetrics_text_format() throws Exception {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withMetrics(metrics)
+                .withMetricsEndpoint(MetricsEndpointOptions.defaults());
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("metered"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try {
+            client.send(get(server, "/page"), BodyHandlers.ofString());
+
+            final HttpResponse<String> response = client.send(get(server, "/metrics"), BodyHandlers.ofString());
+
+            assertEquals(200, response.statusCode());
+            assertEquals(MetricsEndpoint.CONTENT_TYPE, response.headers().firstValue("content-type").orElseThrow());
+            assertTrue(response.body().contains("rsp_pages_count 1\n"));
+            assertTrue(response.body().contains("rsp_server_connections_in_use 1\n"));
+            assertTrue(response.body().contains("rsp_pages_stored_total 1\n"));
+            assertTrue(response.body().contains("# TYPE rsp_http_page_time_seconds summary\n"));
+            assertTrue(response.body().contains("jvm_threads_live "));
+            assertTrue(response.body().endsWith("# EOF\n"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void resumes_a_parked_live_page_session_on_reconnect() throws Exception {
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withSessionResume(SessionResumeOptions.defaults());
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("resume"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try {
+            client.send(get(server, "/resume"), BodyHandlers.ofString());
+            final rsp.page.QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+            final CompletableFuture<String> firstText = new CompletableFuture<>();
+            final WebSocket webSocket = client.newWebSocketBuilder()
+                    .buildAsync(webSocketUri(server, sessionId), new TestWebSocketListener(firstText, new CompletableFuture<>()))
+                    .join();
+            assertEquals("[0,0]", firstText.get(2, TimeUnit.SECONDS));
+
+            webSocket.abort();
+            awaitParkedSessions(server, 1);
+
+            final CompletableFuture<String> resumedText = new CompletableFuture<>();
+            final WebSocket resumedWebSocket = client.newWebSocketBuilder()
+                    .buildAsync(URI.create(webSocketUri(server, sessionId) + "?renderNum=0"),
+                                new TestWebSocketListener(resumedText, new CompletableFuture<>()))
+                    .join();
+
+            assertFalse(resumedText.get(2, TimeUnit.SECONDS).contains("RSP.reload()"));
+            assertEquals(0, server.parkedSessionCount());
+            resumedWebSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+        } finally {
+            server.stop();
+        }
+        assertEquals(0, server.parkedSessionCount());
+    }
+
+    @Test
+    void normal_client_close_does_not_park_the_session() throws Exception {
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withSessionResume(SessionResumeOptions.defaults());
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("no resume"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try {
+            client.send(get(server, "/no-resume"), BodyHandlers.ofString());
+            final rsp.page.QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+            final CompletableFuture<String> firstText = new CompletableFuture<>();
+            final WebSocket webSocket = client.newWebSocketBuilder()
+                    .buildAsync(webSocketUri(server, sessionId), new TestWebSocketListener(firstText, new CompletableFuture<>()))
+                    .join();
+            assertEquals("[0,0]", firstText.get(2, TimeUnit.SECONDS));
+
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+            awaitActiveWebSockets(server, 0);
+
+            assertEquals(0, server.parkedSessionCount());
+        } finally {
+            server.stop();
+        }
+    }
+
     @Test
     void websocket_handshake_returns_rfc_accept_key() throws Exception {
         final WebServer server = started(new WebServer(0, _ -> page("handshake")));
@@ -300,6 +540,94 @@ class WebServerTests {
         }
     }
 
+    @Test
+    void negotiates_permessage_deflate_and_compresses_live_page_messages() throws Exception {
+        final RecordingMetrics metrics = new RecordingMetrics();
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withWebSocketCompression(WebSocketCompressionOptions.defaults().withThresholdBytes(0))
+                .withMetrics(metrics);
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("deflate"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try {
+            client.send(get(server, "/deflate"), BodyHandlers.ofString());
+            final rsp.page.QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+            try (Socket socket = new Socket("localhost", server.port())) {
+                writeHandshake(socket,
+                               server.port(),
+                               sessionId.deviceId(),
+                               sessionId.sessionId(),
+                               "dGhlIHNhbXBsZSBub25jZQ==",
+                               "Sec-WebSocket-Extensions: permessage-deflate; client_max_window_bits\r\n");
+
+                final String response = readHttpHeaders(socket);
+                assertTrue(response.startsWith("HTTP/1.1 101 Switching Protocols"));
+                assertTrue(response.contains("Sec-WebSocket-Extensions: permessage-deflate\r\n"));
+
+                final int first = socket.getInputStream().read();
+                assertEquals(0xC0 | WebSocketFrame.OPCODE_TEXT, first);
+                final byte[] compressed = socket.getInputStream().readNBytes(socket.getInputStream().read());
+                final Inflater inflater = new Inflater(true);
+                inflater.setInput(compressed);
+                final byte[] inflated = new byte[64];
+                final int length = inflater.inflate(inflated);
+                inflater.end();
+                assertEquals("[0,0]", new String(inflated, 0, length, StandardCharsets.UTF_8));
+                assertEquals(1, metrics.counter(MetricNames.WEBSOCKET_DEFLATE_NEGOTIATED));
+                assertTrue(metrics.counter(MetricNames.WEBSOCKET_DEFLATE_INPUT_BYTES) >= 5);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void declines_permessage_deflate_when_disabled() throws Exception {
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withWebSocketCompression(WebSocketCompressionOptions.disabled());
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("no deflate"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try (Socket socket = new Socket("localhost", server.port())) {
+            writeHandshake(socket, server.port(), "device", "session", "dGhlIHNhbXBsZSBub25jZQ==",
+                           "Sec-WebSocket-Extensions: permessage-deflate\r\n");
+
+            final String response = readHttpHeaders(socket);
+
+            assertTrue(response.startsWith("HTTP/1.1 101 Switching Protocols"));
+            assertFalse(response.contains("Sec-WebSocket-Extensions"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void negotiates_binary_rsp_protocol_and_sends_binary_messages() throws Exception {
+        final WebServer server = started(new WebServer(0, _ -> page("binary")));
+        try (Socket socket = new Socket("localhost", server.port())) {
+            client.send(get(server, "/binary"), BodyHandlers.ofString());
+            final rsp.page.QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+            writeHandshake(socket, server.port(), sessionId.deviceId(), sessionId.sessionId(), "dGhlIHNhbXBsZSBub25jZQ==",
+                           "Sec-WebSocket-Protocol: " + BinaryRemotePageMessageEncoder.SUBPROTOCOL + "\r\n");
+
+            final String response = readHttpHeaders(socket);
+            final RawServerFrame frame = readServerFrame(socket);
+
+            assertTrue(response.startsWith("HTTP/1.1 101 Switching Protocols"));
+            assertTrue(response.contains("Sec-WebSocket-Protocol: " + BinaryRemotePageMessageEncoder.SUBPROTOCOL));
+            assertEquals(WebSocketFrame.OPCODE_BINARY, frame.opcode());
+            assertArrayEquals(new byte[] {0, 0}, frame.payload());
+        } finally {
+            server.stop();
+        }
+    }
+
     @Test
     void invalid_websocket_key_returns_http_400() throws Exception {
         final WebServer server = started(new WebServer(0, _ -> page("bad key")));
@@ -418,6 +746,227 @@ class WebServerTests {
         }
     }
 
+    @Test
+    void serves_a_live_page_session_over_long_polling() throws Exception {
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withLongPolling(LongPollingOptions.defaults().withHoldMs(200));
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("long polling"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try {
+            client.send(get(server, "/long-polling"), BodyHandlers.ofString());
+            final rsp.page.QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+
+            final HttpResponse<String> first = client.send(get(server, longPollingPath(sessionId, "subscribe")),
+                                                           BodyHandlers.ofString());
+            assertEquals(200, first.statusCode());
+            assertEquals("[0,0]", first.body());
+            assertTrue(server.pagesStorage.isEmpty());
+            assertEquals(1, server.longPollingSessionCount());
+
+            final java.net.http.HttpRequest heartbeat =
+                    java.net.http.HttpRequest.newBuilder(uri(server, longPollingPath(sessionId, "publish")))
+                    .POST(BodyPublishers.ofString("[6,\"0\"]"))
+                    .build();
+            assertEquals(200, client.send(heartbeat, BodyHandlers.ofString()).statusCode());
+
+            final HttpResponse<String> empty = client.send(get(server, longPollingPath(sessionId, "subscribe")),
+                                                           BodyHandlers.ofString());
+            assertEquals(503, empty.statusCode());
+        } finally {
+            server.stop();
+        }
+        assertEquals(0, server.longPollingSessionCount());
+    }
+
+    @Test
+    void long_polling_for_an_unknown_session_reloads_the_client() throws Exception {
+        final WebServer server = started(new WebServer(0, _ -> page("unknown")));
+        try {
+            final rsp.page.QualifiedSessionId sessionId = new rsp.page.QualifiedSessionId("device-lp", "session-lp");
+
+            final HttpResponse<String> poll = client.send(get(server, longPollingPath(sessionId, "subscribe")),
+                                                          BodyHandlers.ofString());
+            assertEquals(200, poll.statusCode());
+            assertEquals("[10,-1,\"RSP.reload()\"]", poll.body());
+
+            final java.net.http.HttpRequest publish =
+                    java.net.http.HttpRequest.newBuilder(uri(server, longPollingPath(sessionId, "publish")))
+                    .POST(BodyPublishers.ofString("[6,\"0\"]"))
+                    .build();
+            assertEquals(404, client.send(publish, BodyHandlers.ofString()).statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void shuts_down_a_long_polling_session_without_polls() throws Exception {
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withLongPolling(LongPollingOptions.defaults().withHoldMs(50).withIdleTimeoutMs(200));
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("idle"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try {
+            client.send(get(server, "/idle"), BodyHandlers.ofString());
+            final rsp.page.QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+            client.send(get(server, longPollingPath(sessionId, "subscribe")), BodyHandlers.ofString());
+            assertEquals(1, server.longPollingSessionCount());
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.longPollingSessionCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, server.longPollingSessionCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void held_long_poll_does_not_take_a_selector_connection_permit() throws Exception {
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withTransport(WebServerOptions.Transport.SELECTOR)
+                .withConnectionLimit(1)
+                .withLongPolling(LongPollingOptions.defaults().withHoldMs(5_000));
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("held"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try {
+            client.send(get(server, "/held"), BodyHandlers.ofString());
+            final rsp.page.QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+            assertEquals(200, client.send(get(server, longPollingPath(sessionId, "subscribe")),
+                                          BodyHandlers.ofString()).statusCode());
+
+            final CompletableFuture<HttpResponse<String>> held =
+                    client.sendAsync(get(server, longPollingPath(sessionId, "subscribe")), BodyHandlers.ofString());
+            final HttpResponse<String> page = HttpClient.newHttpClient()
+                    .sendAsync(get(server, "/another"), BodyHandlers.ofString())
+                    .get(3, TimeUnit.SECONDS);
+
+            assertEquals(200, page.statusCode());
+            assertFalse(held.isDone());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void held_long_polls_do_not_take_blocking_connection_permits() throws Exception {
+        final int connectionLimit = 2;
+        final WebServerOptions options = WebServerOptions.defaults()
+                .withConnectionLimit(connectionLimit)
+                .withLongPolling(LongPollingOptions.defaults().withHoldMs(5_000));
+        final WebServer server = started(new WebServer(0,
+                                                       _ -> page("held"),
+                                                       Optional.empty(),
+                                                       Optional.empty(),
+                                                       options,
+                                                       DefaultEventLoop::new));
+        try {
+            final List<CompletableFuture<HttpResponse<String>>> held = new ArrayList<>();
+            for (int i = 0; i <= connectionLimit; i++) {
+                client.send(get(server, "/held"), BodyHandlers.ofString());
+                final rsp.page.QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+                assertEquals(200, client.send(get(server, longPollingPath(sessionId, "subscribe")),
+                                              BodyHandlers.ofString()).statusCode());
+                held.add(client.sendAsync(get(server, longPollingPath(sessionId, "subscribe")), BodyHandlers.ofString()));
+            }
+
+            final HttpResponse<String> page = HttpClient.newHttpClient()
+                    .sendAsync(get(server, "/another"), BodyHandlers.ofString())
+                    .get(3, TimeUnit.SECONDS);
+
+            assertEquals(200, page.statusCode());
+            assertTrue(held.stream().noneMatch(CompletableFuture::isDone));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void serves_a_page_and_its_live_session_over_tls() throws Exception {
+        final SslConfiguration ssl = TestKeyStores.generate(tempDir.resolve("server.p12"), "localhost");
+        final HttpClient tlsClient = HttpClient.newBuilder().sslContext(TestKeyStores.trusting(ssl)).build();
+        final WebServer server = started(tlsServer(ssl, _ -> page("Hello over TLS")));
+        try {
+            final HttpResponse<String> response = tlsClient.send(java.net.http.HttpRequest.newBuilder(
+                    URI.create("https://localhost:" + server.port() + "/secure")).GET().build(), BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().contains("Hello over TLS"));
+            assertEquals(HttpClient.Version.HTTP_1_1, response.version());
+
+            final rsp.page.QualifiedSessionId sessionId = server.pagesStorage.keySet().iterator().next();
+            final CompletableFuture<String> firstText = new CompletableFuture<>();
+            final WebSocket webSocket = tlsClient.newWebSocketBuilder()
+                    .buildAsync(URI.create("wss://localhost:" + server.port() + "/bridge/web-socket/"
+                                           + sessionId.deviceId() + "/" + sessionId.sessionId()),
+                                new TestWebSocketListener(firstText, new CompletableFuture<>()))
+                    .join();
+
+            assertEquals("[0,0]", firstText.get(2, TimeUnit.SECONDS));
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void reloads_the_tls_keystore_without_a_restart() throws Exception {
+        final SslConfiguration ssl = TestKeyStores.generate(tempDir.resolve("server.p12"), "first");
+        final SslConfiguration renewal = TestKeyStores.generate(tempDir.resolve("renewed.p12"), "renewed");
+        final SSLContext trusting = TestKeyStores.trusting(ssl, renewal);
+        final WebServer server = started(tlsServer(ssl, _ -> page("reloaded")));
+        try {
+            assertEquals("CN=first", peerSubject(trusting, server));
+            Files.copy(Path.of(renewal.keyStorePath()), Path.of(ssl.keyStorePath()),
+                       StandardCopyOption.REPLACE_EXISTING);
+
+            server.reloadTls();
+
+            // a fresh client context, as a resumed session would keep the first certificate
+            assertEquals("CN=renewed", peerSubject(TestKeyStores.trusting(ssl), server));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void rejects_tls_with_the_selector_transport() throws Exception {
+        final SslConfiguration ssl = TestKeyStores.generate(tempDir.resolve("server.p12"), "localhost");
+        final WebServer server = new WebServer(0,
+                                               _ -> page("selector"),
+                                               Optional.empty(),
+                                               Optional.of(ssl),
+                                               WebServerOptions.defaults().withTransport(WebServerOptions.Transport.SELECTOR),
+                                               DefaultEventLoop::new);
+
+        assertThrows(UnsupportedOperationException.class, server::start);
+        assertThrows(IllegalStateException.class, server::reloadTls);
+    }
+
+    private static WebServer tlsServer(final SslConfiguration ssl,
+                                       final Function<HttpRequest, Component<?, ?>> root) {
+        return new WebServer(0, root, Optional.empty(), Optional.of(ssl), WebServerOptions.defaults(), DefaultEventLoop::new);
+    }
+
+    private static String peerSubject(final SSLContext context, final WebServer server) throws Exception {
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost", server.port())) {
+            socket.startHandshake();
+            return ((X509Certificate) socket.getSession().getPeerCertificates()[0])
+                    .getSubjectX500Principal().getName();
+        }
+    }
+
     private static WebServer started(final WebServer server) {
         server.start();
         return server;
@@ -431,6 +980,10 @@ class WebServerTests {
         return URI.create("http://localhost:" + server.port() + path);
     }
 
+    private static String longPollingPath(final rsp.page.QualifiedSessionId sessionId, final String action) {
+        return "/bridge/long-polling/" + sessionId.deviceId() + "/" + sessionId.sessionId() + "/" + action;
+    }
+
     private static URI webSocketUri(final WebServer server, final rsp.page.QualifiedSessionId sessionId) {
         return URI.create("ws://localhost:" + server.port()
                           + "/bridge/web-socket/" + sessionId.deviceId() + "/" + sessionId.sessionId());
@@ -441,12 +994,22 @@ class WebServerTests {
                                        final String deviceId,
                                        final String sessionId,
                                        final String key) throws Exception {
+        writeHandshake(socket, port, deviceId, sessionId, key, "");
+    }
+
+    private static void writeHandshake(final Socket socket,
+                                       final int port,
+                                       final String deviceId,
+                                       final String sessionId,
+                                       final String key,
+                                       final String extraHeaders) throws Exception {
         socket.getOutputStream().write(("GET /bridge/web-socket/" + deviceId + "/" + sessionId + " HTTP/1.1\r\n"
                                         + "Host: localhost:" + port + "\r\n"
                                         + "Upgrade: websocket\r\n"
                                         + "Connection: Upgrade\r\n"
                                         + "Sec-WebSocket-Key: " + key + "\r\n"
                                         + "Sec-WebSocket-Version: 13\r\n"
+                                        + extraHeaders
                                         + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
         socket.getOutputStream().flush();
     }
@@ -567,6 +1130,18 @@ class WebServerTests {
         assertEquals(expected, server.activeWebSocketCount());
     }
 
+    private static void awaitParkedSessions(final WebServer server,
+                                            final int expected) throws Exception {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (server.parkedSessionCount() == expected) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        assertEquals(expected, server.parkedSessionCount());
+    }
+
     private static Component<?, ?> page(final String text) {
         return new StatelessComponent((rsp.component.View<Unit>) _ -> html(head(PLAIN, title("HTTP test")),
                                                                            body(h1(text), p("served"))));
@@ -1,11 +1,16 @@
 package rsp.http;
 
 import org.junit.jupiter.api.Test;
+import rsp.metrics.Metrics;
 
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -49,10 +54,51 @@ class WebSocketConnectionTests {
         }
     }
 
+    @Test
+    void inflates_compressed_text_messages_when_permessage_deflate_is_negotiated() throws Exception {
+        final CompletableFuture<String> text = new CompletableFuture<>();
+        final WebSocketCompressionOptions options = WebSocketCompressionOptions.defaults();
+        final PerMessageDeflate compression = new PerMessageDeflate(
+                PerMessageDeflate.negotiate("permessage-deflate", options).orElseThrow(), options, Metrics.noop());
+
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             Socket clientSocket = new Socket("localhost", serverSocket.getLocalPort());
+             Socket serverSideSocket = serverSocket.accept()) {
+            Thread.startVirtualThread(() -> {
+                try {
+                    final WebSocketSession session = new WebSocketSession(serverSideSocket, Optional.empty(), Optional.of(compression));
+                    new WebSocketConnection(serverSideSocket, session, new WebSocketListener() {
+                        @Override
+                        public void onText(final String message) {
+                            text.complete(message);
+                        }
+                    }).run();
+                } catch (final Exception ex) {
+                    text.completeExceptionally(ex);
+                }
+            });
+
+            final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput("compressed hello".getBytes(StandardCharsets.UTF_8));
+            final byte[] compressed = new byte[64];
+            final int length = deflater.deflate(compressed, 0, compressed.length, Deflater.SYNC_FLUSH);
+            deflater.end();
+            clientSocket.getOutputStream().write(maskedClientFrame(0x40, WebSocketFrame.OPCODE_TEXT,
+                                                                   Arrays.copyOf(compressed, length - 4)));
+            clientSocket.getOutputStream().flush();
+
+            assertEquals("compressed hello", text.get(2, TimeUnit.SECONDS));
+        }
+    }
+
     private static byte[] maskedClientFrame(final int opcode, final byte[] payload) {
+        return maskedClientFrame(0x00, opcode, payload);
+    }
+
+    private static byte[] maskedClientFrame(final int reservedBits, final int opcode, final byte[] payload) {
         final byte[] mask = new byte[] {0x01, 0x02, 0x03, 0x04};
         final byte[] frame = new byte[2 + mask.length + payload.length];
-        frame[0] = (byte) (0x80 | opcode);
+        frame[0] = (byte) (0x80 | reservedBits | opcode);
         frame[1] = (byte) (0x80 | payload.length);
         System.arraycopy(mask, 0, frame, 2, mask.length);
         for (int i = 0; i < payload.length; i++) {
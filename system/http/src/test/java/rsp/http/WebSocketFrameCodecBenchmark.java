@@ -0,0 +1,206 @@
+package rsp.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the buffered WebSocket frame reader and writer with the byte-at-a-time code they replaced,
+ * in frames per millisecond for a run of masked client frames and for unmasked server frames.
+ * <p>
+ * Frames are read from memory, so the legacy reader's cost of a socket read per header byte is not included
+ * and the measured read difference is unmasking and copying only. Frames are written to a loopback socket
+ * drained by another thread, where the legacy writer's separate writes of the header fields are system calls.
+ * Run with {@code -Dbench.run=true -Dbench.include=WebSocketFrameCodecBenchmark}, see {@link BenchmarksManualTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketFrameCodecBenchmark {
+
+    private static final int FRAMES = 64;
+
+    @Param({"16", "1024", "65536"})
+    public int payloadSize;
+
+    private byte[] clientFrames;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadSize];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) ('a' + i % 26);
+        }
+        final byte[] mask = {0x12, 0x34, 0x56, 0x78};
+        final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int n = 0; n < FRAMES; n++) {
+            final ByteBuffer header = ByteBuffer.allocate(2 + Long.BYTES);
+            WebSocketFrameWriter.putHeader(header, WebSocketFrame.OPCODE_BINARY, false, payload.length);
+            header.put(1, (byte) (header.get(1) | 0x80));
+            frames.write(header.array(), 0, header.position());
+            frames.writeBytes(mask);
+            for (int i = 0; i < payload.length; i++) {
+                frames.write(payload[i] ^ mask[i % 4]);
+            }
+        }
+        clientFrames = frames.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void readFrames(final Blackhole blackhole) throws Exception {
+        final WebSocketFrameReader reader = new WebSocketFrameReader(new ByteArrayInputStream(clientFrames),
+                                                                     Integer.MAX_VALUE,
+                                                                     false);
+        try {
+            for (int n = 0; n < FRAMES; n++) {
+                reader.next();
+                blackhole.consume(reader.payloadLength());
+            }
+        } finally {
+            reader.release();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void readFramesLegacy(final Blackhole blackhole) throws Exception {
+        final InputStream input = new ByteArrayInputStream(clientFrames);
+        for (int n = 0; n < FRAMES; n++) {
+            blackhole.consume(Legacy.readClientFrame(input).length);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Loopback {
+        private ServerSocket listener;
+        private Socket serverSide;
+        private Socket clientSide;
+        private Thread reader;
+        private WebSocketFrameWriter writer;
+        private OutputStream output;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            listener = new ServerSocket(0);
+            clientSide = new Socket("localhost", listener.getLocalPort());
+            serverSide = listener.accept();
+            serverSide.setTcpNoDelay(true);
+            writer = new WebSocketFrameWriter(serverSide);
+            output = serverSide.getOutputStream();
+            final InputStream input = clientSide.getInputStream();
+            reader = Thread.ofPlatform().daemon().start(() -> {
+                final byte[] buffer = new byte[64 * 1024];
+                try {
+                    while (input.read(buffer) >= 0) {
+                        // drains the frames, as a browser would
+                    }
+                } catch (final IOException ignored) {
+                    // closed at tear down
+                }
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            clientSide.close();
+            serverSide.close();
+            listener.close();
+            reader.join();
+        }
+    }
+
+    @Benchmark
+    public void writeFrame(final Loopback loopback) throws IOException {
+        loopback.writer.write(WebSocketFrame.OPCODE_BINARY, false, payload);
+    }
+
+    @Benchmark
+    public void writeFrameLegacy(final Loopback loopback) throws IOException {
+        Legacy.writeServerFrame(loopback.output, WebSocketFrame.OPCODE_BINARY, payload);
+    }
+
+    /**
+     * The previous frame code, reduced to what the benchmark exercises.
+     */
+    private static final class Legacy {
+        static byte[] readClientFrame(final InputStream input) throws IOException {
+            readByte(input);
+            final int lengthCode = readByte(input) & 0x7F;
+            long length = lengthCode;
+            if (lengthCode == 126) {
+                length = (readByte(input) << 8) | readByte(input);
+            } else if (lengthCode == 127) {
+                length = 0;
+                for (int i = 0; i < Long.BYTES; i++) {
+                    length = (length << 8) | readByte(input);
+                }
+            }
+            final byte[] mask = readBytes(input, 4);
+            final byte[] payload = readBytes(input, Math.toIntExact(length));
+            for (int i = 0; i < payload.length; i++) {
+                payload[i] = (byte) (payload[i] ^ mask[i % 4]);
+            }
+            return payload;
+        }
+
+        static void writeServerFrame(final OutputStream output, final int opcode, final byte[] payload) throws IOException {
+            output.write(0x80 | opcode);
+            if (payload.length <= 125) {
+                output.write(payload.length);
+            } else if (payload.length <= 0xFFFF) {
+                output.write(126);
+                output.write((payload.length >>> 8) & 0xFF);
+                output.write(payload.length & 0xFF);
+            } else {
+                output.write(127);
+                output.write(ByteBuffer.allocate(Long.BYTES).putLong(payload.length).array());
+            }
+            output.write(payload);
+            output.flush();
+        }
+
+        private static int readByte(final InputStream input) throws IOException {
+            final int value = input.read();
+            if (value < 0) {
+                throw new EOFException("Unexpected end of WebSocket frame");
+            }
+            return value;
+        }
+
+        private static byte[] readBytes(final InputStream input, final int length) throws IOException {
+            final byte[] bytes = input.readNBytes(length);
+            if (bytes.length != length) {
+                throw new EOFException("Unexpected end of WebSocket frame");
+            }
+            return bytes;
+        }
+    }
+}
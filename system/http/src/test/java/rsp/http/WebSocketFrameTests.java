@@ -4,7 +4,15 @@ import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -69,6 +77,22 @@ class WebSocketFrameTests {
         assertEquals(WebSocketFrame.CLOSE_PROTOCOL_ERROR, ex.closeCode());
     }
 
+    @Test
+    void accepts_rsv1_only_on_data_frames_after_compression_was_negotiated() throws Exception {
+        final byte[] compressedText = maskedFrame(0xC0 | WebSocketFrame.OPCODE_TEXT, new byte[] {0x01});
+        final byte[] compressedPing = maskedFrame(0xC0 | WebSocketFrame.OPCODE_PING, new byte[] {0x01});
+
+        assertTrue(WebSocketFrame.readClientFrame(new ByteArrayInputStream(compressedText), 1024, true).compressed());
+        assertEquals(WebSocketFrame.CLOSE_PROTOCOL_ERROR,
+                     assertThrows(WebSocketProtocolException.class,
+                                  () -> WebSocketFrame.readClientFrame(new ByteArrayInputStream(compressedText), 1024))
+                             .closeCode());
+        assertEquals(WebSocketFrame.CLOSE_PROTOCOL_ERROR,
+                     assertThrows(WebSocketProtocolException.class,
+                                  () -> WebSocketFrame.readClientFrame(new ByteArrayInputStream(compressedPing), 1024, true))
+                             .closeCode());
+    }
+
     @Test
     void writes_unmasked_server_frame() throws Exception {
         final ByteArrayOutputStream output = new ByteArrayOutputStream();
@@ -85,15 +109,132 @@ class WebSocketFrameTests {
         assertEquals('k', frame[3]);
     }
 
+    @Test
+    void reads_consecutive_frames_of_every_length_encoding_with_one_reader() throws Exception {
+        final byte[] small = payload(5);
+        final byte[] medium = payload(300);
+        final byte[] large = payload(WebSocketFrameReader.BUFFER_SIZE * 8 + 3);
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.writeBytes(maskedFrame(WebSocketFrame.OPCODE_BINARY, small));
+        stream.writeBytes(maskedFrame(0x80 | WebSocketFrame.OPCODE_CONTINUATION, medium));
+        stream.writeBytes(maskedFrame(0x80 | WebSocketFrame.OPCODE_BINARY, large));
+        stream.writeBytes(maskedFrame(0x80 | WebSocketFrame.OPCODE_TEXT, "done".getBytes(StandardCharsets.UTF_8)));
+        final WebSocketFrameReader reader = new WebSocketFrameReader(trickling(stream.toByteArray()), 1024 * 1024, false);
+
+        try {
+            final ByteArrayOutputStream fragments = new ByteArrayOutputStream();
+            reader.next();
+            assertFalse(reader.fin());
+            reader.appendPayloadTo(fragments);
+            reader.next();
+            assertEquals(WebSocketFrame.OPCODE_CONTINUATION, reader.opcode());
+            reader.appendPayloadTo(fragments);
+            assertArrayEquals(concat(small, medium), fragments.toByteArray());
+
+            reader.next();
+            assertEquals(large.length, reader.payloadLength());
+            assertArrayEquals(large, reader.payload());
+
+            reader.next();
+            assertEquals("done", reader.text());
+        } finally {
+            reader.release();
+        }
+    }
+
+    @Test
+    void unmasks_payloads_of_lengths_not_divisible_by_eight() {
+        final byte[] mask = new byte[] {0x11, 0x22, 0x33, 0x44, 0x11, 0x22, 0x33, 0x44};
+        for (int length = 0; length <= 19; length++) {
+            final byte[] payload = payload(length + 3);
+            final byte[] expected = payload.clone();
+            for (int i = 0; i < length; i++) {
+                expected[3 + i] ^= mask[i % 4];
+            }
+
+            WebSocketFrameReader.unmask(payload, 3, length, mask);
+
+            assertArrayEquals(expected, payload, "length " + length);
+        }
+    }
+
+    @Test
+    void rejects_invalid_utf8_text_with_1007() throws Exception {
+        final byte[] frameBytes = maskedFrame(0x80 | WebSocketFrame.OPCODE_TEXT, new byte[] {(byte) 0xC3, 0x28});
+        final WebSocketFrameReader reader = new WebSocketFrameReader(new ByteArrayInputStream(frameBytes), 1024, false);
+        reader.next();
+
+        final WebSocketProtocolException ex = assertThrows(WebSocketProtocolException.class, reader::text);
+
+        assertEquals(WebSocketFrame.CLOSE_INVALID_PAYLOAD, ex.closeCode());
+        reader.release();
+    }
+
+    @Test
+    void writes_server_frame_through_a_socket_channel() throws Exception {
+        final byte[] payload = payload(WebSocketFrameWriter.BUFFER_SIZE * 5);
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+             SocketChannel client = SocketChannel.open(server.getLocalAddress());
+             SocketChannel accepted = server.accept()) {
+            final Thread writing = Thread.ofPlatform().start(() -> {
+                try {
+                    new WebSocketFrameWriter(accepted.socket()).write(WebSocketFrame.OPCODE_BINARY, false, payload);
+                } catch (final Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+
+            final byte[] frame = client.socket().getInputStream().readNBytes(2 + Long.BYTES + payload.length);
+            writing.join();
+
+            assertEquals(0x80 | WebSocketFrame.OPCODE_BINARY, frame[0] & 0xFF);
+            assertEquals(127, frame[1] & 0xFF);
+            assertEquals(payload.length, ByteBuffer.wrap(frame, 2, Long.BYTES).getLong());
+            assertArrayEquals(payload, Arrays.copyOfRange(frame, 2 + Long.BYTES, frame.length));
+        }
+    }
+
+    private static byte[] payload(final int length) {
+        final byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (i * 31);
+        }
+        return payload;
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        final byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * A stream which returns at most three bytes per read, as a slow network would.
+     */
+    private static InputStream trickling(final byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 3));
+            }
+        };
+    }
+
     private static byte[] maskedFrame(final int firstByte, final byte[] payload) {
         final byte[] mask = new byte[] {0x01, 0x02, 0x03, 0x04};
-        final byte[] frame = new byte[2 + mask.length + payload.length];
-        frame[0] = (byte) firstByte;
-        frame[1] = (byte) (0x80 | payload.length);
-        System.arraycopy(mask, 0, frame, 2, mask.length);
+        final ByteBuffer frame = ByteBuffer.allocate(2 + Long.BYTES + mask.length + payload.length);
+        frame.put((byte) firstByte);
+        if (payload.length < 126) {
+            frame.put((byte) (0x80 | payload.length));
+        } else if (payload.length <= 0xFFFF) {
+            frame.put((byte) (0x80 | 126)).putShort((short) payload.length);
+        } else {
+            frame.put((byte) (0x80 | 127)).putLong(payload.length);
+        }
+        frame.put(mask);
         for (int i = 0; i < payload.length; i++) {
-            frame[2 + mask.length + i] = (byte) (payload[i] ^ mask[i % mask.length]);
+            frame.put((byte) (payload[i] ^ mask[i % mask.length]));
         }
-        return frame;
+        return Arrays.copyOf(frame.array(), frame.position());
     }
 }
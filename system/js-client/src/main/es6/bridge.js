@@ -14,7 +14,7 @@
  *  limitations under the License.
  */
 
-import { RSP, CallbackType } from './rsp.js';
+import { RSP, CallbackType, BinaryDecoder, BinaryEncoder } from './rsp.js';
 import { Connection } from './connection.js';
 
 const ProtocolDebugEnabledKey = "$bridge.protocolDebugEnabled";
@@ -36,7 +36,9 @@ const MessageType = {
     LIST_FILES: 12,
     UPLOAD_FILE: 13,
     REST_FORM: 14,
-    FORGET_EVENT: 15
+    FORGET_EVENT: 15,
+    BATCH: 16,
+    EXTRACT_PROPERTIES: 17
 }
 
 var protocolDebugEnabled = window.localStorage.getItem(ProtocolDebugEnabledKey) === 'true';
@@ -50,6 +52,9 @@ export class Bridge {
     this._RSP = new RSP(config, this._onCallback.bind(this));
     this._RSP.registerRoot(document.documentElement);
     this._connection = connection;
+    // String tables of the binary protocol live as long as the connection
+    this._binaryDecoder = new BinaryDecoder();
+    this._binaryEncoder = connection.binaryProtocol ? new BinaryEncoder() : null;
     this._messageHandler = this._onMessage.bind(this);
 
     connection.dispatcher.addEventListener("message", this._messageHandler);
@@ -57,7 +62,8 @@ export class Bridge {
     let interval = parseInt(config['heartbeatInterval'], 10);
 
     if (interval > 0) {
-      this._intervalId = setInterval(() => this._onCallback(CallbackType.HEARTBEAT), interval);
+      // A heartbeat acknowledges the applied renders
+      this._intervalId = setInterval(() => this._onCallback(CallbackType.HEARTBEAT, '' + this._RSP.renderNum), interval);
     }
   }
 
@@ -67,6 +73,20 @@ export class Bridge {
    * @param {Object} [eventObject]
    */
   _onCallback(type, argsString, eventObject) {
+    if (this._binaryEncoder !== null
+        && type === CallbackType.DOM_EVENT
+        && BinaryEncoder.canEncode(eventObject)) {
+      // `$renderNum:$elementId:$eventType`, the element id may contain ':' in a key segment
+      let first = argsString.indexOf(':');
+      let last = argsString.lastIndexOf(':');
+      if (protocolDebugEnabled)
+        console.log('<- binary', type, argsString, eventObject);
+      this._connection.send(this._binaryEncoder.domEvent(parseInt(argsString.substring(0, first), 10),
+                                                         argsString.substring(first + 1, last),
+                                                         argsString.substring(last + 1),
+                                                         eventObject));
+      return;
+    }
     let messageArr = [];
     messageArr.push(type);
     if (argsString) {
@@ -82,9 +102,16 @@ export class Bridge {
   }
 
   _onMessage(event) {
+    let commands = typeof event.data === 'string'
+                   ? /** @type {Array} */ (JSON.parse(event.data))
+                   : this._binaryDecoder.decode(/** @type {ArrayBuffer} */ (event.data));
     if (protocolDebugEnabled)
-      console.log('->', event.data);
-    let commands = /** @type {Array} */ (JSON.parse(event.data));
+      console.log('->', typeof event.data === 'string' ? event.data : commands);
+    this._dispatch(commands);
+  }
+
+  /** @param {Array} commands */
+  _dispatch(commands) {
     let pCode = commands.shift();
     let k = this._RSP;
     switch (pCode) {
@@ -104,6 +131,8 @@ export class Bridge {
       case MessageType.UPLOAD_FILE: k.uploadFile.apply(k, commands); break;
       case MessageType.REST_FORM: k.resetForm.apply(k, commands); break;
       case MessageType.FORGET_EVENT: k.forgetEvent.apply(k, commands); break;
+      case MessageType.BATCH: commands.forEach(message => this._dispatch(message)); break;
+      case MessageType.EXTRACT_PROPERTIES: k.extractProperties.apply(k, commands); break;
       default: console.error(`Procedure ${pCode} is undefined`);
     }
   }
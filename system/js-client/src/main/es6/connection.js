@@ -14,6 +14,8 @@
  *  limitations under the License.
  */
 
+import { BINARY_PROTOCOL, binaryProtocolSupported } from './rsp.js';
+
 const MIN_RECONNECT_TIMEOUT = 200;
 const MAX_RECONNECT_TIMEOUT = 5000;
 
@@ -44,6 +46,8 @@ export class Connection {
     this._useSSL = location.protocol === "https:";
 
     this._reconnectTimeout = MIN_RECONNECT_TIMEOUT;
+    /** @type {?number} */
+    this._resumeRenderNum = null;
     this._webSocket = null;
     this._webSocketsSupported = window.WebSocket !== undefined;
     this._connectionType = ConnectionType.LONG_POLLING;
@@ -59,6 +63,22 @@ export class Connection {
 
   get dispatcher() { return this._dispatcher }
 
+  /**
+   * Sets the last render number the page applied, so that the next WebSocket asks the server to resume
+   * the page's session instead of starting a new one.
+   * @param {number} renderNum
+   */
+  set resumeRenderNum(renderNum) { this._resumeRenderNum = renderNum }
+
+  /**
+   * @return {boolean} whether the server accepted the binary protocol for the current WebSocket
+   */
+  get binaryProtocol() {
+    return this._connectionType === ConnectionType.WEB_SOCKET
+           && this._webSocket !== null
+           && this._webSocket.protocol === BINARY_PROTOCOL;
+  }
+
   /**
    * @param {string} type
    * @private
@@ -97,8 +117,13 @@ export class Connection {
     let url = (this._useSSL ? "wss://" : "ws://") + this._hostPort;
     let path = this._serverRootPath + `bridge/web-socket/${this._deviceId}/${this._sessionId}`;
     let uri = url + path;
+    if (this._resumeRenderNum !== null) {
+      uri += `?renderNum=${this._resumeRenderNum}`;
+    }
 
-    this._webSocket = new WebSocket(uri);
+    // A server without the binary protocol selects no subprotocol and the text protocol is used
+    this._webSocket = binaryProtocolSupported() ? new WebSocket(uri, [BINARY_PROTOCOL]) : new WebSocket(uri);
+    this._webSocket.binaryType = 'arraybuffer';
     this._send = (data) => this._webSocket.send(data);
     this._connectionType = ConnectionType.WEB_SOCKET;
 
@@ -202,7 +227,7 @@ export class Connection {
 
 
   /**
-   * @param {string} data
+   * @param {string|ArrayBuffer} data
    * @private
    */
   _onMessage(data) {
@@ -212,7 +237,7 @@ export class Connection {
   }
 
   /**
-   * @param {string} data
+   * @param {string|ArrayBuffer} data
    */
   send(data) {
     this._send(data);
@@ -103,14 +103,16 @@ window.document.addEventListener("DOMContentLoaded", () => {
     };
 
     let closeHandler = (event) => {
+      connection
+        .dispatcher
+        .removeEventListener('close', closeHandler);
+      // A server that kept the session resumes it from the last applied render
+      connection.resumeRenderNum = bridge._RSP.renderNum;
       bridge.destroy();
       if (reconnect) {
         clw.show();
         connection.connect();
       }
-/*      connection
-        .dispatcher
-        .removeEventListener('close', closeHandler);*/
     };
     connection
       .dispatcher
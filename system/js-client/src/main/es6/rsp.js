@@ -32,7 +32,8 @@ export const CallbackType = {
   HISTORY: 3, // URL
   EVALJS_RESPONSE: 4, // `$descriptor:$status:$value`
   EXTRACT_EVENT_DATA_RESPONSE: 5, // `$descriptor:$dataJson`
-  HEARTBEAT: 6 // `$descriptor`
+  HEARTBEAT: 6, // `$renderNum`
+  EXTRACT_PROPERTIES_RESPONSE: 7 // `$descriptor`, {$elementId: {$propertyName: $value}}
 };
 
 /** @enum {number} */
@@ -66,6 +67,289 @@ const VirtualDomPaths = {
   DOCUMENT_PATH: '1'
 };
 
+/** The WebSocket subprotocol of the binary protocol, see BinaryRemotePageMessageEncoder on the server. */
+export const BINARY_PROTOCOL = 'rsp.binary.v1';
+
+/** Must match BinaryMessageWriter.STRING_TABLE_CAPACITY on the server. */
+const STRING_TABLE_CAPACITY = 4096;
+
+const utf8Decoder = typeof TextDecoder !== 'undefined' ? new TextDecoder('utf-8', { 'fatal': true }) : null;
+const utf8Encoder = typeof TextEncoder !== 'undefined' ? new TextEncoder() : null;
+
+/**
+ * Reads binary protocol messages into the same arrays the text protocol's JSON messages parse to.
+ * Keeps the server's string table of interned names for the lifetime of a connection.
+ */
+export class BinaryDecoder {
+
+  constructor() {
+    /** @type {Array<string>} */
+    this.names = [];
+    /** @type {Uint8Array} */
+    this.bytes = new Uint8Array(0);
+    /** @type {number} */
+    this.pos = 0;
+  }
+
+  /**
+   * @param {ArrayBuffer} buffer
+   * @return {Array} a message type code followed by its arguments
+   */
+  decode(buffer) {
+    this.bytes = new Uint8Array(buffer);
+    this.pos = 0;
+    let type = this.byte();
+    if (type !== 16) { // BATCH
+      return this.message(type);
+    }
+    let result = [type];
+    while (this.pos < this.bytes.length) {
+      let batchedType = this.byte();
+      if (batchedType === 16) {
+        throw new Error('Nested binary batch message');
+      }
+      result.push(this.message(batchedType));
+    }
+    return result;
+  }
+
+  /**
+   * @param {number} type
+   * @return {Array}
+   */
+  message(type) {
+    let result = [type];
+    switch (type) {
+      case 0: // SET_RENDER_NUM
+        result.push(this.varint());
+        break;
+      case 2: // LISTEN_EVENT
+        for (let count = this.varint(); count > 0; count--) {
+          result.push(this.name(), this.bool(), this.nodeId(), this.modifier());
+        }
+        break;
+      case 3: // EXTRACT_PROPERTY
+        result.push(this.signedVarint(), this.nodeId(), this.name());
+        break;
+      case 4: // MODIFY_DOM
+        for (let count = this.varint(); count > 0; count--) {
+          this.domChange(result);
+        }
+        break;
+      case 6: // CHANGE_PAGE_URL
+        result.push(this.byte(), this.string());
+        break;
+      case 10: // EVAL_JS
+        result.push(this.signedVarint(), this.string());
+        break;
+      case 15: // FORGET_EVENT
+        result.push(this.name(), this.nodeId());
+        break;
+      case 17: // EXTRACT_PROPERTIES
+        result.push(this.signedVarint());
+        for (let count = this.varint(); count > 0; count--) {
+          let id = this.nodeId();
+          let names = [];
+          for (let namesCount = this.varint(); namesCount > 0; namesCount--) {
+            names.push(this.name());
+          }
+          result.push(id, names);
+        }
+        break;
+      default:
+        throw new Error(`Unsupported binary message type ${type}`);
+    }
+    return result;
+  }
+
+  /** @param {Array} result */
+  domChange(result) {
+    let command = this.byte();
+    result.push(command);
+    switch (command) {
+      case 0: result.push(this.nodeId(), this.nodeId(), this.xmlNs(), this.name()); break;
+      case 1: result.push(this.nodeId(), this.nodeId(), this.string()); break;
+      case 2: result.push(this.nodeId(), this.nodeId()); break;
+      case 3: result.push(this.nodeId(), this.xmlNs(), this.name(), this.string(), this.bool()); break;
+      case 4: result.push(this.nodeId(), this.xmlNs(), this.name(), this.bool()); break;
+      case 5: result.push(this.nodeId(), this.name(), this.string()); break;
+      case 6: result.push(this.nodeId(), this.name()); break;
+      case 7: result.push(this.nodeId(), this.nodeId(), this.bool() ? this.nodeId() : ''); break;
+      default: throw new Error(`Unsupported binary DOM command ${command}`);
+    }
+  }
+
+  /** @return {number} */
+  byte() {
+    if (this.pos >= this.bytes.length) throw new Error('Truncated binary message');
+    return this.bytes[this.pos++];
+  }
+
+  /** @return {boolean} */
+  bool() {
+    return this.byte() !== 0;
+  }
+
+  /** @return {number} */
+  varint() {
+    let result = 0, multiplier = 1, b;
+    do {
+      b = this.byte();
+      result += (b & 0x7F) * multiplier;
+      multiplier *= 128;
+    } while (b & 0x80);
+    return result;
+  }
+
+  /** @return {number} */
+  signedVarint() {
+    let value = this.varint();
+    return value % 2 === 0 ? value / 2 : -(value + 1) / 2;
+  }
+
+  /** @return {string} */
+  string() {
+    let length = this.varint();
+    let end = this.pos + length;
+    if (end > this.bytes.length) throw new Error('Truncated binary message');
+    let value = utf8Decoder.decode(this.bytes.subarray(this.pos, end));
+    this.pos = end;
+    return value;
+  }
+
+  /** @return {string} */
+  name() {
+    let reference = this.varint();
+    if (reference >= 2) return this.names[reference - 2];
+    let value = this.string();
+    if (reference === 0) this.names.push(value);
+    return value;
+  }
+
+  /** @return {string} a node id in its `_`-separated wire form */
+  nodeId() {
+    let segments = [];
+    for (let count = this.varint(); count > 0; count--) {
+      let segment = this.varint();
+      segments.push(segment === 0 ? this.name() : String(segment - 1));
+    }
+    return segments.join('_');
+  }
+
+  /** @return {number|string} 0 for HTML or a namespace URI */
+  xmlNs() {
+    return this.byte() === 0 ? 0 : this.name();
+  }
+
+  /** @return {string} an event modifier in the text protocol's form */
+  modifier() {
+    switch (this.byte()) {
+      case EventModifierType.THROTTLE_EVENT_MODIFIER:
+        return EventModifierType.THROTTLE_EVENT_MODIFIER + ':' + this.varint();
+      case EventModifierType.DEBOUNCE_EVENT_MODIFIER:
+        return EventModifierType.DEBOUNCE_EVENT_MODIFIER + ':' + this.varint() + ':' + this.bool();
+      default:
+        return EventModifierType.NO_EVENT_MODIFIER.toString();
+    }
+  }
+}
+
+/**
+ * Writes DOM event notifications as binary protocol messages.
+ * Keeps the client's string table of interned names for the lifetime of a connection.
+ */
+export class BinaryEncoder {
+
+  constructor() {
+    /** @type {Map<string, number>} */
+    this.names = new Map();
+    /** @type {Array<number>} */
+    this.bytes = [];
+  }
+
+  /**
+   * @param {Object} eventObject
+   * @return {boolean} whether the event object has string values only and can be sent as a binary message
+   */
+  static canEncode(eventObject) {
+    return Object.keys(eventObject).every((key) => typeof eventObject[key] === 'string');
+  }
+
+  /**
+   * @param {number} renderNum
+   * @param {string} id
+   * @param {string} eventType
+   * @param {Object} eventObject with string values
+   * @return {ArrayBuffer}
+   */
+  domEvent(renderNum, id, eventType, eventObject) {
+    this.bytes = [];
+    this.bytes.push(CallbackType.DOM_EVENT);
+    this.varint(renderNum);
+    this.nodeId(id);
+    this.name(eventType);
+    let keys = Object.keys(eventObject);
+    this.varint(keys.length);
+    keys.forEach((key) => {
+      this.name(key);
+      this.string(eventObject[key]);
+    });
+    return new Uint8Array(this.bytes).buffer;
+  }
+
+  /** @param {number} value */
+  varint(value) {
+    while (value >= 0x80) {
+      this.bytes.push((value & 0x7F) | 0x80);
+      value = Math.floor(value / 128);
+    }
+    this.bytes.push(value);
+  }
+
+  /** @param {string} value */
+  string(value) {
+    let encoded = utf8Encoder.encode(value);
+    this.varint(encoded.length);
+    for (let i = 0; i < encoded.length; i++) this.bytes.push(encoded[i]);
+  }
+
+  /** @param {string} value */
+  name(value) {
+    let index = this.names.get(value);
+    if (index !== undefined) {
+      this.varint(index + 2);
+    } else if (this.names.size < STRING_TABLE_CAPACITY) {
+      this.names.set(value, this.names.size);
+      this.varint(0);
+      this.string(value);
+    } else {
+      this.varint(1);
+      this.string(value);
+    }
+  }
+
+  /** @param {string} id */
+  nodeId(id) {
+    let segments = id === '' ? [] : id.split('_');
+    this.varint(segments.length);
+    segments.forEach((segment) => {
+      if (/^(0|[1-9][0-9]{0,8})$/.test(segment)) {
+        this.varint(parseInt(segment, 10) + 1);
+      } else {
+        this.varint(0);
+        this.name(segment);
+      }
+    });
+  }
+}
+
+/**
+ * @return {boolean} whether the browser can encode and decode the binary protocol
+ */
+export function binaryProtocolSupported() {
+  return utf8Decoder !== null && utf8Encoder !== null && typeof Map === 'function';
+}
+
 export class RSP {
 
   /**
@@ -349,6 +633,30 @@ export class RSP {
           result);
   }
 
+   /**
+    * Reads properties of several elements and responds with one object,
+    * undefined properties, functions and missing elements are left out.
+    * @param {number} descriptor
+    * @param {...(string|Array<string>)} idsAndNames an element's id followed by its properties' names, repeated
+    */
+  extractProperties(descriptor, ...idsAndNames) {
+    let result = {};
+    for (let i = 0; i + 1 < idsAndNames.length; i += 2) {
+      let id = idsAndNames[i];
+      let element = id === '1' ? window : this.els[id];
+      if (!element) continue;
+      let values = {};
+      for (let name of idsAndNames[i + 1]) {
+        let value = element[name];
+        if (typeof value !== 'undefined' && typeof value !== 'function') {
+          values[name] = value;
+        }
+      }
+      result[id] = values;
+    }
+    this.callback(CallbackType.EXTRACT_PROPERTIES_RESPONSE, `${descriptor}`, result);
+  }
+
    /**
     * @param {string} id
     * @param {string} name